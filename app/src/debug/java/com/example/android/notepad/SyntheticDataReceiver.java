@@ -0,0 +1,41 @@
+package com.example.android.notepad;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * debug包的合成数据入口，只能通过显式广播触发：
+ * adb shell am broadcast -n com.example.android.notepad/.SyntheticDataReceiver --ei count 10000 --el seed 42
+ * 可选参数：years、max_body_bytes。
+ */
+public class SyntheticDataReceiver extends BroadcastReceiver {
+    private static final String TAG = "SyntheticNotes";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        final SyntheticNotes.Config config = new SyntheticNotes.Config();
+        config.count = intent.getIntExtra("count", config.count);
+        config.seed = intent.getLongExtra("seed", config.seed);
+        config.years = intent.getIntExtra("years", config.years);
+        config.maxBodyBytes = intent.getIntExtra("max_body_bytes", config.maxBodyBytes);
+
+        final Context appContext = context.getApplicationContext();
+        final PendingResult pending = goAsync();
+        new Thread(() -> {
+            long start = SystemClock.elapsedRealtime();
+            try {
+                int inserted = SyntheticNotes.insert(appContext.getContentResolver(), config,
+                        (done, total) -> Log.i(TAG, done + "/" + total));
+                Log.i(TAG, "inserted " + inserted + " notes (seed=" + config.seed + ") in "
+                        + (SystemClock.elapsedRealtime() - start) + "ms");
+            } catch (InterruptedException e) {
+                Log.w(TAG, "interrupted");
+            } finally {
+                pending.finish();
+            }
+        }, "SyntheticDataReceiver").start();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.android.notepad;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 长正文的压缩存储格式。不少于 {@link #MIN_CHARS} 个字符的正文整篇压缩后存入note_data列，
+ * 首字节为编码标记（目前只有 {@link #CODEC_DEFLATE}）；note列只保留前 {@link #HEAD_CHARS} 个字符的明文，
+ * 内存搜索索引只索引这么多字符，不必解压；SQL的关键字搜索在写入时记下的检索词中查找其余部分（见 {@link BodyMatches}）。
+ * 压缩省不下四分之一时仍存明文，note_data为NULL。列表与标题查询两列都不读。
+ *
+ * 纯Java实现，benchmark模块直接编译本文件；读写两列的Android部分见 {@link NoteBodies}。
+ */
+final class BodyCodec {
+    static final int MIN_CHARS = 8192;
+    // 比搜索索引多一个字符，索引据此判断正文被截断
+    static final int HEAD_CHARS = NoteSearchIndex.MAX_INDEXED_CHARS + 1;
+    static final int CODEC_DEFLATE = 1;
+
+    private BodyCodec() {
+    }
+
+    /**
+     * 存入note_data列的数据；正文较短或压缩效果不好时返回null，正文整篇以明文存入note列。
+     */
+    static byte[] encode(String body) {
+        if (body.length() < MIN_CHARS) {
+            return null;
+        }
+        byte[] raw = body.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+        out.write(CODEC_DEFLATE);
+        // 保存时在写事务中压缩：最快一档比默认档快约四倍，压缩率只差几个百分点
+        deflate(raw, Deflater.BEST_SPEED, out);
+        int headBytes = head(body).getBytes(StandardCharsets.UTF_8).length;
+        if (out.size() + headBytes > raw.length / 4 * 3) {
+            return null;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 压缩存储时note列中的明文开头，不在代理对中间截断。
+     */
+    static String head(String body) {
+        int end = Math.min(HEAD_CHARS, body.length());
+        if (end < body.length() && Character.isHighSurrogate(body.charAt(end - 1))) {
+            end++;
+        }
+        return body.substring(0, end);
+    }
+
+    /**
+     * 还原note_data列中的正文；标记未知或数据损坏时抛出IllegalArgumentException。
+     */
+    static String decode(byte[] data) {
+        if (data.length == 0 || data[0] != CODEC_DEFLATE) {
+            throw new IllegalArgumentException("Unknown body codec " + (data.length == 0 ? -1 : data[0]));
+        }
+        return new String(inflate(data, 1), StandardCharsets.UTF_8);
+    }
+
+    // note与note_data两列还原出完整正文
+    static String body(String note, byte[] data) {
+        return data != null ? decode(data) : note;
+    }
+
+    // 不带zlib头尾的deflate数据追加到out（版本快照也用这一格式）
+    static void deflate(byte[] raw, int level, ByteArrayOutputStream out) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // 解开从offset起的deflate数据；数据损坏时抛出IllegalArgumentException
+    static byte[] inflate(byte[] data, int offset) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data, offset, data.length - offset);
+            ByteArrayOutputStream out = new ByteArrayOutputStream((data.length - offset) * 3);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated deflate data");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt deflate data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.android.notepad;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 关键字在压缩存储的正文（见 {@link BodyCodec}）中的查找。note列只有正文开头，SQL的LIKE、摘要与命中次数
+ * 看不到后面的部分：写入时由 {@link #terms} 为压缩行记下检索词，关键字条件与相关度排序在检索词中查找，
+ * 不必解压；摘要与命中位置只对查询返回的压缩行，在读取时由 {@link #find} 在完整正文中算出（见NoteBodies.wrap）。
+ *
+ * 与SQL中的lower()和LIKE一样只对ASCII字母忽略大小写，摘要的截取方式与 {@link NotePadSchema} 中的表达式相同。
+ * 纯Java实现，benchmark模块直接编译本文件。非线程安全，每个游标一个。
+ */
+final class BodyMatches {
+    private final String mKeyword;
+    private String mSnippet;
+    private int mSnippetMatch = -1;
+
+    BodyMatches(String keyword) {
+        mKeyword = lowerAscii(keyword);
+    }
+
+    /**
+     * 在完整正文中查找关键字的第一处命中，算出摘要与摘要中的命中位置；没有命中时摘要为null、位置为-1。
+     */
+    void find(String body) {
+        int first = mKeyword.isEmpty() ? -1 : lowerAscii(body).indexOf(mKeyword);
+        if (first > NotePadSchema.SNIPPET_CONTEXT) {
+            int start = first - NotePadSchema.SNIPPET_CONTEXT;
+            mSnippet = "…" + singleLine(body.substring(start,
+                    Math.min(body.length(), start + NotePadSchema.SNIPPET_LENGTH)));
+            mSnippetMatch = NotePadSchema.SNIPPET_CONTEXT + 1;
+        } else if (first >= 0) {
+            mSnippet = singleLine(body.substring(0, Math.min(body.length(), NotePadSchema.SNIPPET_LENGTH)));
+            mSnippetMatch = first;
+        } else {
+            mSnippet = null;
+            mSnippetMatch = -1;
+        }
+    }
+
+    String snippet() {
+        return mSnippet;
+    }
+
+    int snippetMatch() {
+        return mSnippetMatch;
+    }
+
+    /**
+     * SQL在note列开头中截出的摘要是否完整：摘要截到了开头的末尾时变短，须改从完整正文中截取。
+     * 长度按字符（码点）计，与SQL的substr一致。
+     */
+    static boolean isComplete(String snippet) {
+        int length = snippet.codePointCount(0, snippet.length());
+        return length >= NotePadSchema.SNIPPET_LENGTH + (snippet.startsWith("…") ? 1 : 0);
+    }
+
+    /**
+     * 压缩行的检索词：正文按空白切分后的不重复的词，转为小写，按首次出现的顺序以空格连接。
+     * 不含空白的关键字出现在正文中时必然是某个词的一部分，对检索词的LIKE与对完整正文的LIKE结果相同；
+     * 含空白的关键字在note列的开头之外不保证能找到。检索词不保留重复，通常只有正文的几分之一。
+     */
+    static String terms(String body) {
+        Set<String> words = new LinkedHashSet<>();
+        String lower = lowerAscii(body);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            if (i == lower.length() || Character.isWhitespace(lower.charAt(i))) {
+                if (start >= 0) {
+                    words.add(lower.substring(start, i));
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        StringBuilder terms = new StringBuilder(lower.length() / 4);
+        for (String word : words) {
+            if (terms.length() > 0) {
+                terms.append(' ');
+            }
+            terms.append(word);
+        }
+        return terms.toString();
+    }
+
+    // 与SQLite的lower()相同，只转换ASCII字母，长度与下标不变
+    static String lowerAscii(String text) {
+        char[] chars = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                if (chars == null) {
+                    chars = text.toCharArray();
+                }
+                chars[i] = (char) (c + ('a' - 'A'));
+            }
+        }
+        return chars != null ? new String(chars) : text;
+    }
+
+    private static String singleLine(String text) {
+        return text.replace('\n', ' ').replace('\r', ' ');
+    }
+}
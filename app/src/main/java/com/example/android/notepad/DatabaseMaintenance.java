@@ -0,0 +1,176 @@
+package com.example.android.notepad;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据库维护步骤，每一步都很短，由 {@link MaintenanceJobService} 通过
+ * ContentProvider.call() 逐步调用，步骤之间前台查询可以正常获得数据库锁。
+ */
+public final class DatabaseMaintenance {
+    private DatabaseMaintenance() {}
+
+    private static final String TAG = "DatabaseMaintenance";
+
+    // call()的arg：要执行的维护步骤
+    public static final String STEP_ENABLE_AUTO_VACUUM = "enable_auto_vacuum";
+    public static final String STEP_INCREMENTAL_VACUUM = "incremental_vacuum";
+    public static final String STEP_OPTIMIZE = "optimize";
+    // 彻底删除回收站中过期的笔记
+    public static final String STEP_PURGE_TRASH = "purge_trash";
+
+    // call()的extras：单次步骤的时间预算
+    public static final String EXTRA_BUDGET_MS = "budget_ms";
+
+    public static final String RESULT_FREE_PAGES = "free_pages";
+    public static final String RESULT_PAGE_COUNT = "page_count";
+    // purge_trash本步删除的笔记数，为0时已清理完
+    public static final String RESULT_PURGED = "purged";
+
+    // 每条incremental_vacuum语句回收的页数，越小越不影响前台
+    private static final int PAGES_PER_STATEMENT = 32;
+    private static final long DEFAULT_BUDGET_MS = 50;
+    // 清理回收站时每个事务删除的笔记数，删除会触发签名、标签、链接的级联清理
+    private static final int PURGE_BATCH_SIZE = 100;
+
+    // auto_vacuum取值：0=NONE，1=FULL，2=INCREMENTAL
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    public static Bundle run(SQLiteDatabase db, String step, Bundle extras) {
+        long budget = extras != null ? extras.getLong(EXTRA_BUDGET_MS, DEFAULT_BUDGET_MS) : DEFAULT_BUDGET_MS;
+        Bundle result = new Bundle();
+        if (STEP_ENABLE_AUTO_VACUUM.equals(step)) {
+            enableIncrementalAutoVacuum(db);
+        } else if (STEP_INCREMENTAL_VACUUM.equals(step)) {
+            incrementalVacuum(db, budget);
+        } else if (STEP_OPTIMIZE.equals(step)) {
+            optimize(db);
+        } else if (STEP_PURGE_TRASH.equals(step)) {
+            result.putInt(RESULT_PURGED, purgeTrash(db, budget));
+        } else {
+            throw new IllegalArgumentException("Unknown maintenance step: " + step);
+        }
+        result.putLong(RESULT_FREE_PAGES, pragmaLong(db, "freelist_count"));
+        result.putLong(RESULT_PAGE_COUNT, pragmaLong(db, "page_count"));
+        return result;
+    }
+
+    /**
+     * 旧库默认auto_vacuum=NONE，切换为INCREMENTAL需要一次完整VACUUM。
+     * 只在首次维护时发生，之后空闲页都通过incremental_vacuum小步回收。
+     */
+    private static void enableIncrementalAutoVacuum(SQLiteDatabase db) {
+        if (pragmaLong(db, "auto_vacuum") == AUTO_VACUUM_INCREMENTAL) {
+            return;
+        }
+        long start = SystemClock.elapsedRealtime();
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+        db.execSQL("VACUUM");
+        Log.i(TAG, "auto_vacuum switched to INCREMENTAL in " + (SystemClock.elapsedRealtime() - start) + "ms");
+    }
+
+    // 在时间预算内分多条语句回收空闲页
+    private static void incrementalVacuum(SQLiteDatabase db, long budgetMs) {
+        long deadline = SystemClock.elapsedRealtime() + budgetMs;
+        while (SystemClock.elapsedRealtime() < deadline && pragmaLong(db, "freelist_count") > 0) {
+            Cursor c = db.rawQuery("PRAGMA incremental_vacuum(" + PAGES_PER_STATEMENT + ")", null);
+            try {
+                // incremental_vacuum每步进一次回收一页，必须读完
+                while (c.moveToNext()) {
+                    // no-op
+                }
+            } finally {
+                c.close();
+            }
+        }
+    }
+
+    /**
+     * 在时间预算内分批彻底删除移入回收站超过保留期的笔记，每批一个事务，同时写入同步墓碑。
+     * 签名、标签关联和出链由触发器删除；这些笔记移入回收站时已从标签索引中移除。
+     */
+    private static int purgeTrash(SQLiteDatabase db, long budgetMs) {
+        long deadline = SystemClock.elapsedRealtime() + budgetMs;
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(NotePad.Trash.RETENTION_DAYS);
+        int total = 0;
+        int purged;
+        do {
+            purged = purgeTrashBatch(db, cutoff);
+            total += purged;
+        } while (purged == PURGE_BATCH_SIZE && SystemClock.elapsedRealtime() < deadline);
+        return total;
+    }
+
+    private static int purgeTrashBatch(SQLiteDatabase db, long cutoff) {
+        db.beginTransaction();
+        try {
+            Cursor c = db.rawQuery(NotePadSchema.expiredTrashSql(PURGE_BATCH_SIZE),
+                    new String[]{String.valueOf(cutoff)});
+            long[] ids;
+            try {
+                ids = new long[c.getCount()];
+                for (int i = 0; c.moveToNext(); i++) {
+                    ids[i] = c.getLong(0);
+                }
+            } finally {
+                c.close();
+            }
+            if (ids.length > 0) {
+                String selection = NotePadSchema.idSelection(ids, false);
+                NotePadProvider.writeTombstones(db, selection, null);
+                db.delete(NotePad.Notes.TABLE_NAME, selection, null);
+            }
+            db.setTransactionSuccessful();
+            return ids.length;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // 更新查询规划器统计信息；PRAGMA optimize需要SQLite 3.18+，旧设备退回ANALYZE
+    private static void optimize(SQLiteDatabase db) {
+        if (sqliteVersionAtLeast(db, 3, 18)) {
+            Cursor c = db.rawQuery("PRAGMA optimize", null);
+            try {
+                while (c.moveToNext()) {
+                    // no-op
+                }
+            } finally {
+                c.close();
+            }
+        } else {
+            db.execSQL("ANALYZE");
+        }
+    }
+
+    private static boolean sqliteVersionAtLeast(SQLiteDatabase db, int major, int minor) {
+        Cursor c = db.rawQuery("SELECT sqlite_version()", null);
+        try {
+            if (!c.moveToFirst()) {
+                return false;
+            }
+            String[] parts = c.getString(0).split("\\.");
+            int ma = Integer.parseInt(parts[0]);
+            int mi = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return ma > major || (ma == major && mi >= minor);
+        } catch (NumberFormatException e) {
+            return false;
+        } finally {
+            c.close();
+        }
+    }
+
+    static long pragmaLong(SQLiteDatabase db, String pragma) {
+        Cursor c = db.rawQuery("PRAGMA " + pragma, null);
+        try {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        } finally {
+            c.close();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.android.notepad;
+
+import android.app.AlertDialog;
+import android.app.ListActivity;
+import android.content.ContentUris;
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 重复笔记检查：列出近似重复组（同组相邻，组按大小降序），点击打开笔记，删除图标把该篇移入回收站。
+ * 分组由Provider的duplicates查询在后台线程完成，返回本页时重新加载。
+ */
+public class DuplicatesActivity extends ListActivity {
+    private static final String[] PROJECTION = {
+            NotePad.Notes._ID,
+            NotePad.Notes.COLUMN_NAME_TITLE,
+            NotePad.Notes.COLUMN_NAME_CREATED_TIME,
+            NotePad.Duplicates.COLUMN_NAME_GROUP,
+            NotePad.Duplicates.COLUMN_NAME_SIMILARITY,
+    };
+
+    private final ExecutorService loader = Executors.newSingleThreadExecutor();
+    private final DuplicatesAdapter adapter = new DuplicatesAdapter();
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setTitle("重复笔记");
+        getListView().setAdapter(adapter);
+        getListView().setOnItemClickListener((parent, view, position, id) -> {
+            Intent intent = new Intent(DuplicatesActivity.this, NoteEditor.class);
+            intent.setData(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, id));
+            startActivity(intent);
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        load();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        loader.shutdownNow();
+    }
+
+    private void load() {
+        loader.execute(() -> {
+            Cursor c = getContentResolver().query(NotePad.Duplicates.CONTENT_URI, PROJECTION, null, null, null);
+            if (c == null) {
+                return;
+            }
+            final Rows rows;
+            try {
+                rows = new Rows(c.getCount());
+                for (int i = 0; c.moveToNext(); i++) {
+                    rows.ids[i] = c.getLong(0);
+                    rows.titles[i] = c.getString(1);
+                    rows.createdTimes[i] = c.getLong(2);
+                    rows.groups[i] = c.getInt(3);
+                    rows.similarities[i] = c.getDouble(4);
+                }
+            } finally {
+                c.close();
+            }
+            runOnUiThread(() -> {
+                if (isDestroyed()) {
+                    return;
+                }
+                adapter.setRows(rows);
+                if (rows.ids.length == 0) {
+                    Toast.makeText(DuplicatesActivity.this, "没有发现重复笔记", Toast.LENGTH_SHORT).show();
+                }
+            });
+        });
+    }
+
+    private void showDeleteDialog(final long noteId) {
+        new AlertDialog.Builder(this)
+                .setTitle("删除笔记")
+                .setMessage("笔记将移入回收站，" + NotePad.Trash.RETENTION_DAYS + "天内可以恢复。")
+                .setPositiveButton("删除", (dialog, which) -> {
+                    Uri noteUri = ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, noteId);
+                    if (getContentResolver().delete(noteUri, null, null) > 0) {
+                        Toast.makeText(DuplicatesActivity.this, "已移入回收站", Toast.LENGTH_SHORT).show();
+                        load();
+                    } else {
+                        Toast.makeText(DuplicatesActivity.this, "删除失败", Toast.LENGTH_SHORT).show();
+                    }
+                })
+                .setNegativeButton("取消", null)
+                .show();
+    }
+
+    // 一次加载的结果，加载完成后不再修改
+    private static final class Rows {
+        final long[] ids;
+        final String[] titles;
+        final long[] createdTimes;
+        final int[] groups;
+        final double[] similarities;
+
+        Rows(int count) {
+            ids = new long[count];
+            titles = new String[count];
+            createdTimes = new long[count];
+            groups = new int[count];
+            similarities = new double[count];
+        }
+    }
+
+    private final class DuplicatesAdapter extends BaseAdapter {
+        private Rows rows = new Rows(0);
+
+        void setRows(Rows rows) {
+            this.rows = rows;
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public int getCount() {
+            return rows.ids.length;
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return rows.ids[position];
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return rows.ids[position];
+        }
+
+        @Override
+        public boolean hasStableIds() {
+            return true;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            View view = convertView != null ? convertView
+                    : getLayoutInflater().inflate(R.layout.note_list_item, parent, false);
+            ((TextView) view.findViewById(android.R.id.text1)).setText(rows.titles[position]);
+            TextView group = view.findViewById(R.id.tv_note_snippet);
+            group.setVisibility(View.VISIBLE);
+            group.setText("第" + rows.groups[position] + "组 · 相似度"
+                    + Math.round(rows.similarities[position] * 100) + "%");
+            ((TextView) view.findViewById(R.id.tv_note_timestamp))
+                    .setText(ListSnapshotCache.formatTime(rows.createdTimes[position]));
+            final long noteId = rows.ids[position];
+            view.findViewById(R.id.iv_delete).setOnClickListener(v -> showDeleteDialog(noteId));
+            return view;
+        }
+    }
+}
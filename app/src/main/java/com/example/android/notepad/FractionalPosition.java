@@ -0,0 +1,42 @@
+package com.example.android.notepad;
+
+/**
+ * 手动排序的位置值：每篇笔记一个实数，列表按位置升序排列。
+ *
+ * 移动一篇笔记只需取前后两篇的位置，给它赋中间值，不必给其他行重新编号；放到最前/最后时
+ * 在现有最小/最大值上减/加 {@link #STEP}，不会缩小间隔。同一处反复插入会把间隔对半缩小，
+ * 间隔小于 {@link #MIN_GAP} 后由后台整体重排（{@link #rebalanced}）。
+ * 纯Java实现，benchmark模块直接编译本文件。
+ */
+final class FractionalPosition {
+    // 重排后相邻位置的间隔，也是放到两端时的步长
+    static final double STEP = 1.0;
+    // 约20次在同一处插入后触发重排；位置的绝对值远小于2^53，此间隔下仍能精确区分
+    static final double MIN_GAP = 1e-6;
+
+    private FractionalPosition() {
+    }
+
+    /**
+     * 前后两篇之间的位置；NaN表示该侧没有笔记。两侧都没有时返回0。
+     */
+    static double between(double previous, double next) {
+        if (Double.isNaN(previous)) {
+            return Double.isNaN(next) ? 0 : next - STEP;
+        }
+        if (Double.isNaN(next)) {
+            return previous + STEP;
+        }
+        return previous + (next - previous) / 2;
+    }
+
+    // 插入到这两篇之间后是否需要重排
+    static boolean needsRebalance(double previous, double next) {
+        return !Double.isNaN(previous) && !Double.isNaN(next) && next - previous < 2 * MIN_GAP;
+    }
+
+    // 重排后第index篇（从0起）的位置
+    static double rebalanced(int index) {
+        return (index + 1) * STEP;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.android.notepad;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * 列表首屏快照：把未筛选列表的前 {@link #MAX_ROWS} 行（id、标题、创建时间、分类）
+ * 写成紧凑的二进制文件。下次冷启动时先用快照画出首屏，不必等数据库打开、升级和完整查询，
+ * 实际数据在后台查询完成后再替换进来。
+ *
+ * 文件格式：魔数 | 版本 | 行数 | 每行 (long id, UTF 标题, long 创建时间, UTF 分类)。
+ * 快照只是缓存，读取失败时直接当作不存在。
+ */
+final class ListSnapshotCache {
+    private static final String TAG = "ListSnapshotCache";
+
+    static final String FILE_NAME = "list_snapshot.bin";
+    static final int MAX_ROWS = 30;
+
+    private static final int MAGIC = 0x4E50534E; // "NPSN"
+    // 版本2：时间改存原始值，由列表绑定时格式化
+    private static final int VERSION = 2;
+
+    // SimpleDateFormat不是线程安全的，快照在后台线程写、列表在主线程绑定
+    private static final ThreadLocal<SimpleDateFormat> sTimeFormat = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.CHINA);
+        }
+    };
+
+    private ListSnapshotCache() {
+    }
+
+    static String formatTime(long time) {
+        return time <= 0 ? "未知时间" : sTimeFormat.get().format(new Date(time));
+    }
+
+    /**
+     * 读取快照为列表模型（不接受增量）；没有快照或格式不符时返回null。
+     */
+    static NoteListModel read(Context context) {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            int count = Math.min(in.readInt(), MAX_ROWS);
+            NoteListModel model = new NoteListModel(null, count);
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                String title = in.readUTF();
+                long time = in.readLong();
+                String category = in.readUTF();
+                model.add(id, title, time, category);
+            }
+            return model;
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable snapshot", e);
+            file.delete();
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * 用列表模型的前几行覆盖快照，需在模型交给主线程之前调用。
+     * 先写临时文件再改名，避免读到写了一半的快照。
+     */
+    static void write(Context context, NoteListModel model) {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        File tmp = new File(context.getFilesDir(), FILE_NAME + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            int count = Math.min(model.size(), MAX_ROWS);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(model.getId(i));
+                out.writeUTF(model.getTitle(i));
+                out.writeLong(model.getCreatedTime(i));
+                out.writeUTF(model.getCategory(i));
+            }
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) {
+                Log.w(TAG, "Failed to replace snapshot");
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write snapshot", e);
+        } finally {
+            closeQuietly(out);
+            tmp.delete();
+        }
+    }
+
+    private static void closeQuietly(Closeable c) {
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
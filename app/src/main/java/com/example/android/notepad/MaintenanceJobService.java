@@ -0,0 +1,121 @@
+package com.example.android.notepad;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 空闲且充电时执行的数据库维护任务：清理回收站中过期的笔记、回收空闲页、更新统计信息，
+ * 并记录维护前后的数据库文件大小和耗时。
+ */
+public class MaintenanceJobService extends JobService {
+    private static final String TAG = "MaintenanceJob";
+
+    private static final int JOB_ID = 1001;
+    private static final long PERIOD_MS = TimeUnit.DAYS.toMillis(1);
+
+    // 每个步骤的时间预算，以及步骤之间让给前台查询的间隔
+    private static final long CHUNK_BUDGET_MS = 50;
+    private static final long PAUSE_BETWEEN_CHUNKS_MS = 20;
+
+    public static final String PREFS_NAME = "maintenance";
+    public static final String PREF_LAST_REPORT = "last_report";
+
+    private volatile boolean mStopped;
+
+    // 重复调用是安全的：已有同ID的任务时保持原计划
+    public static void schedule(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) {
+            return;
+        }
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                return;
+            }
+        }
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, MaintenanceJobService.class))
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .setPeriodic(PERIOD_MS)
+                .setPersisted(false)
+                .build();
+        scheduler.schedule(job);
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        mStopped = false;
+        new Thread(() -> {
+            boolean finished = runMaintenance();
+            jobFinished(params, !finished);
+        }, "NoteMaintenance").start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // 设备退出空闲或拔掉电源：在下一个步骤边界停止，稍后重试
+        mStopped = true;
+        return true;
+    }
+
+    private boolean runMaintenance() {
+        ContentResolver resolver = getContentResolver();
+        File dbFile = getDatabasePath(NotePadProvider.DATABASE_NAME);
+        long sizeBefore = dbFile.length();
+        long start = SystemClock.elapsedRealtime();
+        Bundle extras = new Bundle();
+        extras.putLong(DatabaseMaintenance.EXTRA_BUDGET_MS, CHUNK_BUDGET_MS);
+        int chunks = 0;
+        int purged = 0;
+        try {
+            call(resolver, DatabaseMaintenance.STEP_ENABLE_AUTO_VACUUM, extras);
+            // 先清理回收站，删除释放的页随后一并回收
+            while (!mStopped) {
+                Bundle result = call(resolver, DatabaseMaintenance.STEP_PURGE_TRASH, extras);
+                int rows = result != null ? result.getInt(DatabaseMaintenance.RESULT_PURGED) : 0;
+                if (rows == 0) {
+                    break;
+                }
+                purged += rows;
+                SystemClock.sleep(PAUSE_BETWEEN_CHUNKS_MS);
+            }
+            while (!mStopped) {
+                Bundle result = call(resolver, DatabaseMaintenance.STEP_INCREMENTAL_VACUUM, extras);
+                chunks++;
+                if (result == null || result.getLong(DatabaseMaintenance.RESULT_FREE_PAGES) == 0) {
+                    break;
+                }
+                SystemClock.sleep(PAUSE_BETWEEN_CHUNKS_MS);
+            }
+            if (!mStopped) {
+                call(resolver, DatabaseMaintenance.STEP_OPTIMIZE, extras);
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Maintenance failed", e);
+            return false;
+        }
+
+        String report = "before=" + sizeBefore + "B after=" + dbFile.length() + "B purged=" + purged
+                + " vacuumChunks=" + chunks
+                + " duration=" + (SystemClock.elapsedRealtime() - start) + "ms" + (mStopped ? " (interrupted)" : "");
+        getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit().putString(PREF_LAST_REPORT, report).apply();
+        Log.i(TAG, "Maintenance run: " + report);
+        return !mStopped;
+    }
+
+    private static Bundle call(ContentResolver resolver, String step, Bundle extras) {
+        return resolver.call(NotePad.Notes.CONTENT_URI, NotePad.METHOD_MAINTENANCE, step, extras);
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.android.notepad;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * 置顶与手动排序：维护notes表的pinned/position两列。
+ *
+ * 移动、置顶都只更新被操作的一行（位置取法见 {@link FractionalPosition}）；同一处反复插入使间隔
+ * 过小时，由调用方在后台执行 {@link #rebalance}。位置只在本机有效，不计为修改，也不参与同步。
+ */
+final class ManualOrder {
+    private ManualOrder() {
+    }
+
+    /**
+     * 新笔记的位置：所在组的最前面。
+     */
+    static double topPosition(SQLiteDatabase db, boolean pinned) {
+        return FractionalPosition.between(Double.NaN, firstPosition(db, pinned, -1));
+    }
+
+    /**
+     * 把笔记移到同组中afterId之后，afterId为-1时移到组的最前面；afterId不存在或不在同组时不移动。
+     * 只更新这一行，返回是否需要重排。
+     */
+    static boolean move(SQLiteDatabase db, long id, long afterId) {
+        Cursor c = db.rawQuery(NotePadSchema.POSITION_OF_SQL, new String[]{String.valueOf(id)});
+        boolean pinned;
+        try {
+            if (!c.moveToFirst()) {
+                return false;
+            }
+            pinned = c.getInt(0) != 0;
+        } finally {
+            c.close();
+        }
+        double previous = Double.NaN;
+        if (afterId == id) {
+            return false;
+        }
+        if (afterId >= 0) {
+            c = db.rawQuery(NotePadSchema.POSITION_OF_SQL, new String[]{String.valueOf(afterId)});
+            try {
+                if (!c.moveToFirst() || (c.getInt(0) != 0) != pinned) {
+                    return false;
+                }
+                // 尚未分配位置（恢复后回填完成前）时按放到最前处理
+                if (!c.isNull(1)) {
+                    previous = c.getDouble(1);
+                }
+            } finally {
+                c.close();
+            }
+        }
+        double next = Double.isNaN(previous) ? firstPosition(db, pinned, id)
+                : queryPosition(db, NotePadSchema.NEXT_POSITION_SQL,
+                pinned ? "1" : "0", String.valueOf(previous), String.valueOf(id));
+        setPosition(db, id, pinned, FractionalPosition.between(previous, next));
+        return FractionalPosition.needsRebalance(previous, next);
+    }
+
+    /**
+     * 置顶或取消置顶：移到目标组的最前面。只更新这一行。
+     */
+    static void setPinned(SQLiteDatabase db, long id, boolean pinned) {
+        setPosition(db, id, pinned, FractionalPosition.between(Double.NaN, firstPosition(db, pinned, id)));
+    }
+
+    /**
+     * 按当前顺序给全部笔记重新分配等间隔的位置，在一个事务中完成，期间的移动等待其结束。
+     * 返回重排的笔记数。
+     */
+    static int rebalance(SQLiteDatabase db) {
+        db.beginTransactionNonExclusive();
+        try {
+            // 先读出全部id再写，不在遍历索引的同时修改它
+            Cursor c = db.rawQuery(NotePadSchema.ORDERED_IDS_SQL, null);
+            long[] ids;
+            try {
+                ids = new long[c.getCount()];
+                for (int i = 0; c.moveToNext(); i++) {
+                    ids[i] = c.getLong(0);
+                }
+            } finally {
+                c.close();
+            }
+            SQLiteStatement update = db.compileStatement(NotePadSchema.UPDATE_POSITION_SQL);
+            try {
+                for (int i = 0; i < ids.length; i++) {
+                    update.bindDouble(1, FractionalPosition.rebalanced(i));
+                    update.bindLong(2, ids[i]);
+                    update.executeUpdateDelete();
+                }
+            } finally {
+                update.close();
+            }
+            db.setTransactionSuccessful();
+            return ids.length;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // 在当前线程补齐全部缺失的位置，每批一个事务
+    static int backfillAll(SQLiteDatabase db) {
+        Backfill backfill = new Backfill();
+        int total = 0;
+        while (true) {
+            int rows;
+            db.beginTransactionNonExclusive();
+            try {
+                rows = backfill.runBatch(db, SchemaMigrator.BACKFILL_BATCH_SIZE);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            if (rows == 0) {
+                return total;
+            }
+            total += rows;
+        }
+    }
+
+    /**
+     * 为尚无位置的笔记分配位置：按id升序逐个放到所在组的最前面，较新的笔记排在前面，
+     * 与默认的创建时间倒序一致。用作迁移第10步的回填，以及备份恢复出的新笔记。
+     */
+    static final class Backfill implements SchemaMigrator.Backfill {
+        private long mLastId;
+
+        @Override
+        public int runBatch(SQLiteDatabase db, int batchSize) {
+            Cursor c = db.rawQuery(NotePadSchema.missingPositionsSql(batchSize),
+                    new String[]{String.valueOf(mLastId)});
+            try {
+                int rows = c.getCount();
+                if (rows == 0) {
+                    return 0;
+                }
+                // 本批内各组的最前位置在内存中推进，每组只查一次
+                double[] tops = {firstPosition(db, false, -1), firstPosition(db, true, -1)};
+                SQLiteStatement update = db.compileStatement(NotePadSchema.UPDATE_POSITION_SQL);
+                try {
+                    while (c.moveToNext()) {
+                        mLastId = c.getLong(0);
+                        int group = c.getInt(1) != 0 ? 1 : 0;
+                        tops[group] = FractionalPosition.between(Double.NaN, tops[group]);
+                        update.bindDouble(1, tops[group]);
+                        update.bindLong(2, mLastId);
+                        update.executeUpdateDelete();
+                    }
+                } finally {
+                    update.close();
+                }
+                return rows;
+            } finally {
+                c.close();
+            }
+        }
+    }
+
+    private static double firstPosition(SQLiteDatabase db, boolean pinned, long excludeId) {
+        return queryPosition(db, NotePadSchema.FIRST_POSITION_SQL, pinned ? "1" : "0", String.valueOf(excludeId));
+    }
+
+    // 没有结果时返回NaN
+    private static double queryPosition(SQLiteDatabase db, String sql, String... args) {
+        Cursor c = db.rawQuery(sql, args);
+        try {
+            return c.moveToFirst() ? c.getDouble(0) : Double.NaN;
+        } finally {
+            c.close();
+        }
+    }
+
+    private static void setPosition(SQLiteDatabase db, long id, boolean pinned, double position) {
+        SQLiteStatement update = db.compileStatement(NotePadSchema.SET_POSITION_SQL);
+        try {
+            update.bindLong(1, pinned ? 1 : 0);
+            update.bindDouble(2, position);
+            update.bindLong(3, id);
+            update.executeUpdateDelete();
+        } finally {
+            update.close();
+        }
+    }
+}
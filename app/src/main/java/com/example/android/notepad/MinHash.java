@@ -0,0 +1,256 @@
+package com.example.android.notepad;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 近似重复笔记检测用的MinHash签名与LSH分桶。
+ *
+ * 签名：标题和正文去掉空白、ASCII字母转小写后，取每连续 {@link #SHINGLE_LENGTH} 个字符为一个片段，
+ * 用单次哈希的一次排列MinHash（one permutation hashing）：哈希值的高6位选出 {@link #NUM_HASHES} 个槽之一，
+ * 每个槽保留最小的低位值，空槽按轮转取右侧第一个非空槽的值再混合。计算量与文本长度成正比，
+ * 与签名长度无关；只看前 {@link #MAX_CHARS} 个字符。两个签名相同位置相等的比例是Jaccard相似度的估计。
+ *
+ * 分桶：签名分成 {@link #BANDS} 段，每段 {@link #ROWS} 个值哈希成一个桶号。相似度为s的两篇笔记
+ * 至少落入一个相同桶的概率为 1-(1-s^4)^16：s=0.6时约89%，s=0.7时约99%，s=0.3时约12%。同桶的笔记再用签名核对，
+ * 达到 {@link #THRESHOLD} 才算近似重复。
+ *
+ * 纯Java实现，不依赖Android，可在JVM单元测试和benchmark中直接使用。
+ */
+final class MinHash {
+    static final int NUM_HASHES = 64;
+    static final int BANDS = 16;
+    static final int ROWS = NUM_HASHES / BANDS;
+    static final int SHINGLE_LENGTH = 5;
+    static final int MAX_CHARS = 1 << 16;
+    // 十行左右的笔记改动一两行，相似度约0.6~0.8
+    static final double THRESHOLD = 0.6;
+
+    // 同一个桶内每篇笔记最多与几篇代表核对，桶再大也保持线性
+    static final int MAX_BUCKET_ANCHORS = 4;
+
+    private static final int EMPTY = -1;
+
+    private MinHash() {
+    }
+
+    /**
+     * 计算签名；有效字符不足一个片段（如空笔记）时返回null。
+     */
+    static int[] signature(CharSequence title, CharSequence body) {
+        int[] bins = new int[NUM_HASHES];
+        Arrays.fill(bins, EMPTY);
+        char[] window = new char[SHINGLE_LENGTH];
+        int[] state = new int[2]; // [已读入的有效字符数, 剩余可读字符数]
+        state[1] = MAX_CHARS;
+        shingle(title, window, state, bins);
+        shingle(body, window, state, bins);
+        if (state[0] < SHINGLE_LENGTH) {
+            return null;
+        }
+        // 轮转补齐空槽：取右侧（循环）第一个非空槽，按距离混合，距离不同的空槽得到不同的值
+        int[] signature = bins.clone();
+        for (int i = 0; i < NUM_HASHES; i++) {
+            if (bins[i] != EMPTY) {
+                continue;
+            }
+            for (int distance = 1; distance < NUM_HASHES; distance++) {
+                int j = (i + distance) % NUM_HASHES;
+                if (bins[j] != EMPTY) {
+                    signature[i] = (int) (mix(bins[j] + distance * 0x9E3779B97F4A7C15L) & 0x7fffffff);
+                    break;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private static void shingle(CharSequence text, char[] window, int[] state, int[] bins) {
+        if (text == null) {
+            return;
+        }
+        int count = state[0];
+        int length = Math.min(text.length(), state[1]);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            window[count % SHINGLE_LENGTH] = c;
+            count++;
+            if (count < SHINGLE_LENGTH) {
+                continue;
+            }
+            long h = 0;
+            for (int j = 0; j < SHINGLE_LENGTH; j++) {
+                h = h * 65599 + window[(count + j) % SHINGLE_LENGTH];
+            }
+            h = mix(h);
+            int bin = (int) (h >>> 58);
+            int value = (int) (h & 0x7fffffff);
+            if (bins[bin] == EMPTY || value < bins[bin]) {
+                bins[bin] = value;
+            }
+        }
+        state[0] = count;
+        state[1] -= length;
+    }
+
+    // SplitMix64的收尾混合
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    static long bandKey(int[] signature, int band) {
+        long h = band;
+        for (int r = 0; r < ROWS; r++) {
+            h = mix(h * 31 + signature[band * ROWS + r]);
+        }
+        return h;
+    }
+
+    static double similarity(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / NUM_HASHES;
+    }
+
+    static byte[] toBlob(int[] signature) {
+        if (signature == null) {
+            return new byte[0];
+        }
+        byte[] blob = new byte[NUM_HASHES * 4];
+        for (int i = 0; i < NUM_HASHES; i++) {
+            int v = signature[i];
+            blob[i * 4] = (byte) (v >>> 24);
+            blob[i * 4 + 1] = (byte) (v >>> 16);
+            blob[i * 4 + 2] = (byte) (v >>> 8);
+            blob[i * 4 + 3] = (byte) v;
+        }
+        return blob;
+    }
+
+    // 空笔记保存为空blob（表示已处理、无签名），返回null
+    static int[] fromBlob(byte[] blob) {
+        if (blob == null || blob.length != NUM_HASHES * 4) {
+            return null;
+        }
+        int[] signature = new int[NUM_HASHES];
+        for (int i = 0; i < NUM_HASHES; i++) {
+            signature[i] = (blob[i * 4] & 0xff) << 24 | (blob[i * 4 + 1] & 0xff) << 16
+                    | (blob[i * 4 + 2] & 0xff) << 8 | (blob[i * 4 + 3] & 0xff);
+        }
+        return signature;
+    }
+
+    /**
+     * 把同桶的笔记归并成近似重复组（并查集）。按桶依次调用 {@link #addBucket}，
+     * 每篇笔记只与桶内至多 {@link #MAX_BUCKET_ANCHORS} 篇代表核对，总代价与LSH行数成正比。
+     */
+    static final class Grouper {
+        private final Map<Long, int[]> mSignatures;
+        private final Map<Long, Integer> mIndex = new HashMap<>();
+        private final List<Long> mIds = new ArrayList<>();
+        private int[] mParent = new int[16];
+        private final long[] mAnchors = new long[MAX_BUCKET_ANCHORS];
+
+        Grouper(Map<Long, int[]> signatures) {
+            mSignatures = signatures;
+        }
+
+        void addBucket(long[] members, int count) {
+            int anchors = 0;
+            for (int m = 0; m < count; m++) {
+                int[] signature = mSignatures.get(members[m]);
+                if (signature == null) {
+                    continue;
+                }
+                boolean matched = false;
+                for (int a = 0; a < anchors && !matched; a++) {
+                    if (similarity(signature, mSignatures.get(mAnchors[a])) >= THRESHOLD) {
+                        union(node(mAnchors[a]), node(members[m]));
+                        matched = true;
+                    }
+                }
+                if (!matched && anchors < MAX_BUCKET_ANCHORS) {
+                    mAnchors[anchors++] = members[m];
+                }
+            }
+        }
+
+        /**
+         * 至少两篇笔记的组，组内按id升序（最早的在前），组按大小降序。
+         */
+        List<long[]> groups() {
+            Map<Integer, List<Long>> byRoot = new HashMap<>();
+            for (int i = 0; i < mIds.size(); i++) {
+                int root = find(i);
+                List<Long> group = byRoot.get(root);
+                if (group == null) {
+                    group = new ArrayList<>();
+                    byRoot.put(root, group);
+                }
+                group.add(mIds.get(i));
+            }
+            List<long[]> groups = new ArrayList<>();
+            for (List<Long> group : byRoot.values()) {
+                if (group.size() < 2) {
+                    continue;
+                }
+                long[] ids = new long[group.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = group.get(i);
+                }
+                Arrays.sort(ids);
+                groups.add(ids);
+            }
+            Collections.sort(groups, (a, b) -> a.length != b.length
+                    ? b.length - a.length : Long.compare(a[0], b[0]));
+            return groups;
+        }
+
+        private int node(long id) {
+            Integer index = mIndex.get(id);
+            if (index != null) {
+                return index;
+            }
+            int i = mIds.size();
+            mIds.add(id);
+            mIndex.put(id, i);
+            if (i == mParent.length) {
+                mParent = Arrays.copyOf(mParent, i * 2);
+            }
+            mParent[i] = i;
+            return i;
+        }
+
+        private int find(int i) {
+            while (mParent[i] != i) {
+                mParent[i] = mParent[mParent[i]];
+                i = mParent[i];
+            }
+            return i;
+        }
+
+        private void union(int a, int b) {
+            int ra = find(a);
+            int rb = find(b);
+            if (ra != rb) {
+                mParent[Math.max(ra, rb)] = Math.min(ra, rb);
+            }
+        }
+    }
+}
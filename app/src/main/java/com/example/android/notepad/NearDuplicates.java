@@ -0,0 +1,291 @@
+package com.example.android.notepad;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 近似重复笔记：维护note_signatures/note_lsh两张表，并基于它们查找相似笔记和重复组。
+ *
+ * 签名随笔记写入由NotePadProvider更新；标题或内容被其他途径改动（备份恢复等）时，
+ * notes表上的触发器会删掉旧签名，缺失的签名由 {@link Backfill} 补上。
+ * 查询只核对同桶的笔记，不做两两比较：查找重复组的代价与笔记数成线性关系。
+ */
+final class NearDuplicates {
+    private NearDuplicates() {
+    }
+
+    /**
+     * 从数据库读取这些笔记的标题和内容，重新计算签名和分桶。调用方负责事务。
+     */
+    static void refresh(SQLiteDatabase db, long[] ids) {
+        if (ids.length == 0) {
+            return;
+        }
+        Cursor c = NoteBodies.wrap(db.rawQuery(NotePadSchema.signatureSourceSql(idList(ids)), null));
+        try {
+            write(db, c);
+        } finally {
+            c.close();
+        }
+    }
+
+    // 在当前线程补齐全部缺失的签名，每批一个事务
+    static int backfillAll(SQLiteDatabase db) {
+        Backfill backfill = new Backfill();
+        int total = 0;
+        while (true) {
+            int rows;
+            db.beginTransactionNonExclusive();
+            try {
+                rows = backfill.runBatch(db, SchemaMigrator.BACKFILL_BATCH_SIZE);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            if (rows == 0) {
+                return total;
+            }
+            total += rows;
+        }
+    }
+
+    /**
+     * 为尚无签名的笔记计算签名：按id顺序推进，每批从上一批的最后一个id之后开始。
+     * 用作迁移第7步的回填，以及备份恢复后的补算。
+     */
+    static final class Backfill implements SchemaMigrator.Backfill {
+        private long mLastId;
+
+        @Override
+        public int runBatch(SQLiteDatabase db, int batchSize) {
+            Cursor c = NoteBodies.wrap(db.rawQuery(NotePadSchema.missingSignaturesSql(batchSize),
+                    new String[]{String.valueOf(mLastId)}));
+            try {
+                int rows = c.getCount();
+                if (rows > 0) {
+                    mLastId = write(db, c);
+                }
+                return rows;
+            } finally {
+                c.close();
+            }
+        }
+    }
+
+    // 游标列为signatureSourceSql的(_id, title, 正文前缀)，返回最后一行的id
+    private static long write(SQLiteDatabase db, Cursor c) {
+        long lastId = -1;
+        SQLiteStatement insertSignature = db.compileStatement(NotePadSchema.INSERT_SIGNATURE_SQL);
+        SQLiteStatement deleteBuckets = db.compileStatement(NotePadSchema.DELETE_BUCKETS_SQL);
+        SQLiteStatement insertBucket = db.compileStatement(NotePadSchema.INSERT_BUCKET_SQL);
+        try {
+            while (c.moveToNext()) {
+                lastId = c.getLong(0);
+                int[] signature = MinHash.signature(c.getString(1), c.getString(2));
+                insertSignature.bindLong(1, lastId);
+                insertSignature.bindBlob(2, MinHash.toBlob(signature));
+                insertSignature.executeInsert();
+                deleteBuckets.bindLong(1, lastId);
+                deleteBuckets.executeUpdateDelete();
+                if (signature == null) {
+                    continue;
+                }
+                for (int band = 0; band < MinHash.BANDS; band++) {
+                    insertBucket.bindLong(1, band);
+                    insertBucket.bindLong(2, MinHash.bandKey(signature, band));
+                    insertBucket.bindLong(3, lastId);
+                    insertBucket.executeInsert();
+                }
+            }
+        } finally {
+            insertSignature.close();
+            deleteBuckets.close();
+            insertBucket.close();
+        }
+        return lastId;
+    }
+
+    /**
+     * 与某篇笔记相似度不低于 {@link MinHash#THRESHOLD} 的其他笔记，按相似度降序。
+     * 返回的ids与similarities一一对应。
+     */
+    static Result similar(SQLiteDatabase db, long id) {
+        int[] target = loadSignature(db, id);
+        if (target == null) {
+            // 签名缺失（刚被其他途径改动）时当场补上
+            refresh(db, new long[]{id});
+            target = loadSignature(db, id);
+        }
+        if (target == null) {
+            return new Result(new long[0], new double[0]);
+        }
+        List<Long> candidates = new ArrayList<>();
+        Cursor c = db.rawQuery(NotePadSchema.SIMILAR_CANDIDATES_SQL, new String[]{String.valueOf(id)});
+        try {
+            while (c.moveToNext()) {
+                candidates.add(c.getLong(0));
+            }
+        } finally {
+            c.close();
+        }
+        Map<Long, int[]> signatures = loadSignatures(db, candidates);
+        long[] ids = new long[signatures.size()];
+        double[] similarities = new double[signatures.size()];
+        Integer[] order = new Integer[signatures.size()];
+        int n = 0;
+        for (Map.Entry<Long, int[]> entry : signatures.entrySet()) {
+            double similarity = MinHash.similarity(target, entry.getValue());
+            if (similarity >= MinHash.THRESHOLD) {
+                ids[n] = entry.getKey();
+                similarities[n] = similarity;
+                order[n] = n;
+                n++;
+            }
+        }
+        Arrays.sort(order, 0, n, (a, b) -> similarities[a] != similarities[b]
+                ? Double.compare(similarities[b], similarities[a]) : Long.compare(ids[a], ids[b]));
+        Result result = new Result(new long[n], new double[n]);
+        for (int i = 0; i < n; i++) {
+            result.ids[i] = ids[order[i]];
+            result.similarities[i] = similarities[order[i]];
+        }
+        return result;
+    }
+
+    /**
+     * 全部近似重复组。先补齐缺失的签名，再按桶扫描共用桶的行，只加载这些笔记的签名。
+     * 返回的groups[i]为一组笔记id（最早的在前），similarities[i]为组内其他笔记与第一篇的最低相似度。
+     */
+    static Groups groups(SQLiteDatabase db) {
+        backfillAll(db);
+        List<Long> members = new ArrayList<>();
+        List<long[]> buckets = new ArrayList<>();
+        Cursor c = db.rawQuery(NotePadSchema.SHARED_BUCKETS_SQL, null);
+        try {
+            long band = -1;
+            long bucket = 0;
+            long[] current = new long[8];
+            int count = 0;
+            while (c.moveToNext()) {
+                if (c.getLong(0) != band || c.getLong(1) != bucket) {
+                    if (count > 1) {
+                        buckets.add(Arrays.copyOf(current, count));
+                    }
+                    band = c.getLong(0);
+                    bucket = c.getLong(1);
+                    count = 0;
+                }
+                if (count == current.length) {
+                    current = Arrays.copyOf(current, count * 2);
+                }
+                current[count++] = c.getLong(2);
+                members.add(c.getLong(2));
+            }
+            if (count > 1) {
+                buckets.add(Arrays.copyOf(current, count));
+            }
+        } finally {
+            c.close();
+        }
+
+        Map<Long, int[]> signatures = loadSignatures(db, members);
+        MinHash.Grouper grouper = new MinHash.Grouper(signatures);
+        for (long[] bucketMembers : buckets) {
+            grouper.addBucket(bucketMembers, bucketMembers.length);
+        }
+        List<long[]> groups = grouper.groups();
+        double[] similarities = new double[groups.size()];
+        for (int g = 0; g < groups.size(); g++) {
+            long[] group = groups.get(g);
+            int[] first = signatures.get(group[0]);
+            double min = 1;
+            for (int i = 1; i < group.length; i++) {
+                min = Math.min(min, MinHash.similarity(first, signatures.get(group[i])));
+            }
+            similarities[g] = min;
+        }
+        return new Groups(groups, similarities);
+    }
+
+    private static int[] loadSignature(SQLiteDatabase db, long id) {
+        Cursor c = db.query(NotePadSchema.SIGNATURES, new String[]{NotePadSchema.SIGNATURE},
+                NotePadSchema.NOTE_ID + " = ?", new String[]{String.valueOf(id)}, null, null, null);
+        try {
+            return c.moveToFirst() ? MinHash.fromBlob(c.getBlob(0)) : null;
+        } finally {
+            c.close();
+        }
+    }
+
+    // 按id分批读取签名，id直接写进IN列表，每批不超过BACKFILL_BATCH_SIZE个
+    private static Map<Long, int[]> loadSignatures(SQLiteDatabase db, List<Long> ids) {
+        long[] unique = new long[ids.size()];
+        for (int i = 0; i < unique.length; i++) {
+            unique[i] = ids.get(i);
+        }
+        Arrays.sort(unique);
+        int n = 0;
+        for (int i = 0; i < unique.length; i++) {
+            if (i == 0 || unique[i] != unique[i - 1]) {
+                unique[n++] = unique[i];
+            }
+        }
+        Map<Long, int[]> signatures = new HashMap<>(n * 2);
+        for (int from = 0; from < n; from += SchemaMigrator.BACKFILL_BATCH_SIZE) {
+            long[] batch = Arrays.copyOfRange(unique, from, Math.min(n, from + SchemaMigrator.BACKFILL_BATCH_SIZE));
+            Cursor c = db.query(NotePadSchema.SIGNATURES,
+                    new String[]{NotePadSchema.NOTE_ID, NotePadSchema.SIGNATURE},
+                    idList(NotePadSchema.NOTE_ID, batch), null, null, null, null);
+            try {
+                while (c.moveToNext()) {
+                    int[] signature = MinHash.fromBlob(c.getBlob(1));
+                    if (signature != null) {
+                        signatures.put(c.getLong(0), signature);
+                    }
+                }
+            } finally {
+                c.close();
+            }
+        }
+        return signatures;
+    }
+
+    private static String idList(long[] ids) {
+        return idList(NotePadSchema.ID, ids);
+    }
+
+    private static String idList(String column, long[] ids) {
+        StringBuilder in = new StringBuilder(column).append(" IN (");
+        for (int i = 0; i < ids.length; i++) {
+            in.append(i > 0 ? "," : "").append(ids[i]);
+        }
+        return in.append(')').toString();
+    }
+
+    static final class Result {
+        final long[] ids;
+        final double[] similarities;
+
+        Result(long[] ids, double[] similarities) {
+            this.ids = ids;
+            this.similarities = similarities;
+        }
+    }
+
+    static final class Groups {
+        final List<long[]> groups;
+        final double[] similarities;
+
+        Groups(List<long[]> groups, double[] similarities) {
+            this.groups = groups;
+            this.similarities = similarities;
+        }
+    }
+}
@@ -0,0 +1,544 @@
+package com.example.android.notepad;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Bundle;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 笔记二进制快照（.npbk）。
+ *
+ * 文件结构：
+ * <pre>
+ *   header : "NPBK" | version(u8) | flags(u8) | createdAt(varint) | since(varint) | highWater(varint)
+ *   block* : rawLen(varint) | storedLen(varint) | bytes      —— rawLen为0表示结束
+ *   record : len(varint) | type(u8) | 字段...                —— 位于块内
+ * </pre>
+ * 字符串为varint长度前缀的UTF-8，时间为varint。flags的 {@link #FLAG_DEFLATE} 位表示块经Deflate压缩，
+ * {@link #FLAG_INCREMENTAL} 位表示只含since之后变化的笔记和删除墓碑。since与highWater是本地的变更序号
+ * （note_changes表，版本2起；版本1为修改时间），与修改时间无关：同步拉取的旧修改时间的笔记、移入回收站、
+ * 墓碑已被清理的删除都不会漏掉。
+ *
+ * 备份按页分别读取，不占用写锁（见 {@link #backup}）；恢复通过FileChannel内存映射读取文件，按批次在事务中写入。
+ */
+public final class NoteBackup {
+    private NoteBackup() {}
+
+    public static final String FILE_EXTENSION = ".npbk";
+
+    private static final byte[] MAGIC = {'N', 'P', 'B', 'K'};
+    static final int VERSION = 2;
+    static final int FLAG_DEFLATE = 1;
+    static final int FLAG_INCREMENTAL = 1 << 1;
+
+    static final int TYPE_NOTE = 1;
+    static final int TYPE_TOMBSTONE = 2;
+
+    // 块的原始大小上限，压缩以块为单位，恢复时也按块解压
+    private static final int BLOCK_SIZE = 256 * 1024;
+    // 恢复时每个事务写入的记录数
+    private static final int RESTORE_BATCH = 1000;
+    private static final int PAGE_SIZE = 500;
+
+    // call()返回的统计键
+    public static final String RESULT_RECORDS = "records";
+    public static final String RESULT_HIGH_WATER = "high_water";
+    public static final String RESULT_BYTES = "bytes";
+
+    private static final String PREFS_NAME = "backup";
+    // 上次备份覆盖到的变更序号；版本1记录的修改时间存在high_water中，不再读取，升级后先做一次全量
+    private static final String PREF_CHANGE_SEQ = "change_seq";
+
+    /**
+     * 在应用外部文件目录下生成一份快照：已有全量快照时只做增量，否则做全量。
+     * 阻塞调用，需在后台线程执行。
+     */
+    public static Bundle createBackup(Context context) throws IOException {
+        File dir = getBackupDir(context);
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        long since = findLatestFull(dir) != null ? prefs.getLong(PREF_CHANGE_SEQ, 0) : 0;
+        String name = "notes-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date())
+                + (since > 0 ? "-inc" : "") + FILE_EXTENSION;
+
+        Bundle extras = new Bundle();
+        extras.putLong(NotePad.EXTRA_SINCE, since);
+        extras.putBoolean(NotePad.EXTRA_COMPRESS, true);
+        Bundle result = context.getContentResolver().call(NotePad.Notes.CONTENT_URI,
+                NotePad.METHOD_BACKUP, new File(dir, name).getAbsolutePath(), extras);
+        if (result != null) {
+            prefs.edit().putLong(PREF_CHANGE_SEQ, result.getLong(RESULT_HIGH_WATER)).apply();
+        }
+        return result;
+    }
+
+    /**
+     * 恢复最近一份全量快照及其后的全部增量快照，返回恢复的记录总数。
+     */
+    public static int restoreLatest(Context context) throws IOException {
+        File dir = getBackupDir(context);
+        File full = findLatestFull(dir);
+        if (full == null) {
+            throw new IOException("没有可用的全量备份");
+        }
+        int records = 0;
+        // 恢复属于批量写入，期间使用bulk-import参数
+        Bundle previous = context.getContentResolver().call(NotePad.Notes.CONTENT_URI,
+                NotePad.METHOD_SET_PROFILE, PerformanceProfile.BULK_IMPORT, null);
+        try {
+            for (File file : listSnapshots(dir)) {
+                if (file.getName().compareTo(full.getName()) < 0) {
+                    continue;
+                }
+                Bundle result = context.getContentResolver().call(NotePad.Notes.CONTENT_URI,
+                        NotePad.METHOD_RESTORE, file.getAbsolutePath(), null);
+                if (result != null) {
+                    records += result.getInt(RESULT_RECORDS);
+                }
+            }
+        } finally {
+            if (previous != null) {
+                context.getContentResolver().call(NotePad.Notes.CONTENT_URI, NotePad.METHOD_SET_PROFILE,
+                        previous.getString(NotePad.RESULT_PROFILE), null);
+            }
+        }
+        return records;
+    }
+
+    private static File getBackupDir(Context context) throws IOException {
+        File dir = context.getExternalFilesDir("backups");
+        if (dir == null || (!dir.isDirectory() && !dir.mkdirs())) {
+            throw new IOException("备份目录不可用");
+        }
+        return dir;
+    }
+
+    // 文件名以时间戳开头，按名称排序即按时间排序
+    private static List<File> listSnapshots(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(FILE_EXTENSION));
+        List<File> list = new ArrayList<>(files == null ? new ArrayList<File>() : Arrays.asList(files));
+        Collections.sort(list, (a, b) -> a.getName().compareTo(b.getName()));
+        return list;
+    }
+
+    private static File findLatestFull(File dir) throws IOException {
+        File latest = null;
+        for (File file : listSnapshots(dir)) {
+            if (!isIncremental(file)) {
+                latest = file;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * 写出快照。since大于0时为增量快照，只包含变更序号大于since的笔记，以及之后移入回收站或彻底删除的
+     * 笔记的删除记录；否则为全量快照。返回记录数、快照覆盖到的变更序号和文件大小。
+     *
+     * 不开事务：先读出当前最大的变更序号，再按页读取，每页是一次短的读操作，不阻塞写入。读取期间发生的
+     * 变更序号都大于它，下一次增量会再次包含，快照中的笔记可能比这个序号更新，恢复时按修改时间合并不受影响。
+     */
+    public static Bundle backup(SQLiteDatabase db, File target, long since, boolean compress) throws IOException {
+        int flags = (compress ? FLAG_DEFLATE : 0) | (since > 0 ? FLAG_INCREMENTAL : 0);
+        File tmp = new File(target.getPath() + ".tmp");
+        int records = 0;
+        long highWater = since;
+
+        try {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024);
+            BlockWriter blocks = new BlockWriter(out, compress);
+            try {
+                long now = System.currentTimeMillis();
+                Cursor hw = db.rawQuery(NotePadSchema.MAX_CHANGE_SEQ_SQL, null);
+                try {
+                    if (hw.moveToFirst() && !hw.isNull(0)) {
+                        highWater = Math.max(highWater, hw.getLong(0));
+                    }
+                } finally {
+                    hw.close();
+                }
+
+                ByteArrayOutputStream header = new ByteArrayOutputStream();
+                header.write(MAGIC);
+                header.write(VERSION);
+                header.write(flags);
+                writeVarint(header, now);
+                writeVarint(header, since);
+                writeVarint(header, highWater);
+                header.writeTo(out);
+
+                ByteArrayOutputStream record = new ByteArrayOutputStream(1024);
+                // 全量按id分页，增量按变更序号分页；两种查询的前七列相同（见NotePadSchema）
+                String sql = since > 0 ? NotePadSchema.backupChangesSql(PAGE_SIZE)
+                        : NotePadSchema.backupNotesSql(PAGE_SIZE);
+                long last = since > 0 ? since : -1;
+                while (true) {
+                    String[] args = since > 0 ? new String[]{String.valueOf(last), String.valueOf(highWater)}
+                            : new String[]{String.valueOf(last)};
+                    Cursor c = NoteBodies.wrap(db.rawQuery(sql, args));
+                    int rows = 0;
+                    try {
+                        int deleted = c.getColumnIndex(NotePadSchema.DELETED_TIME);
+                        while (c.moveToNext()) {
+                            last = c.getLong(0);
+                            rows++;
+                            record.reset();
+                            if (deleted >= 0 && !c.isNull(deleted)) {
+                                record.write(TYPE_TOMBSTONE);
+                                writeString(record, c.getString(1));
+                                writeVarint(record, c.getLong(deleted));
+                            } else {
+                                record.write(TYPE_NOTE);
+                                writeString(record, c.getString(1));
+                                writeString(record, c.getString(2));
+                                writeString(record, c.isNull(3) ? "" : c.getString(3));
+                                writeString(record, c.getString(4));
+                                writeVarint(record, Math.max(0, c.getLong(5)));
+                                writeVarint(record, Math.max(0, c.getLong(6)));
+                            }
+                            blocks.append(record);
+                        }
+                    } finally {
+                        c.close();
+                    }
+                    records += rows;
+                    if (rows < PAGE_SIZE) {
+                        break;
+                    }
+                }
+            } finally {
+                try {
+                    blocks.finish();
+                } finally {
+                    out.close();
+                }
+            }
+            if (!tmp.renameTo(target)) {
+                throw new IOException("Cannot write backup " + target);
+            }
+        } finally {
+            // 成功时tmp已改名为target；失败时删掉写了一半的文件
+            tmp.delete();
+        }
+        if (since == 0) {
+            db.execSQL(NotePadSchema.PRUNE_CHANGES_SQL, new Object[]{highWater});
+        }
+
+        Bundle result = new Bundle();
+        result.putInt(RESULT_RECORDS, records);
+        result.putLong(RESULT_HIGH_WATER, highWater);
+        result.putLong(RESULT_BYTES, target.length());
+        return result;
+    }
+
+    /**
+     * 恢复快照：按uuid合并，已有笔记仅在快照中的版本更新时覆盖；墓碑删除对应笔记并写入同步墓碑。
+     */
+    public static Bundle restore(SQLiteDatabase db, File source) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(source, "r");
+        int records = 0;
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] magic = new byte[MAGIC.length];
+            map.get(magic);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (magic[i] != MAGIC[i]) {
+                    throw new IOException("Not a note backup: " + source);
+                }
+            }
+            int version = map.get() & 0xff;
+            if (version > VERSION) {
+                throw new IOException("Unsupported backup version " + version);
+            }
+            int flags = map.get() & 0xff;
+            readVarint(map); // createdAt
+            readVarint(map); // since
+            long highWater = readVarint(map);
+            boolean deflate = (flags & FLAG_DEFLATE) != 0;
+
+            SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO " + NotePad.Notes.TABLE_NAME + " ("
+                    + NotePad.Notes.COLUMN_NAME_UUID + ", " + NotePad.Notes.COLUMN_NAME_TITLE + ", "
+                    + NotePad.Notes.COLUMN_NAME_NOTE + ", " + NotePad.Notes.COLUMN_NAME_CATEGORY + ", "
+                    + NotePad.Notes.COLUMN_NAME_CREATED_TIME + ", " + NotePad.Notes.COLUMN_NAME_MODIFIED_TIME + ", "
+                    + NotePad.Notes.COLUMN_NAME_DIRTY + ", " + NotePadSchema.NOTE_DATA
+                    + ") VALUES (?, ?, ?, ?, ?, ?, 1, ?)");
+            SQLiteStatement update = db.compileStatement("UPDATE " + NotePad.Notes.TABLE_NAME + " SET "
+                    + NotePad.Notes.COLUMN_NAME_TITLE + " = ?, " + NotePad.Notes.COLUMN_NAME_NOTE + " = ?, "
+                    + NotePad.Notes.COLUMN_NAME_CATEGORY + " = ?, " + NotePad.Notes.COLUMN_NAME_CREATED_TIME + " = ?, "
+                    + NotePad.Notes.COLUMN_NAME_MODIFIED_TIME + " = ?, " + NotePad.Notes.COLUMN_NAME_DIRTY + " = 1, "
+                    + NotePadSchema.NOTE_DATA + " = ? WHERE "
+                    + NotePad.Notes.COLUMN_NAME_UUID + " = ? AND " + NotePad.Notes.COLUMN_NAME_MODIFIED_TIME + " < ?");
+            String deleteSelection = NotePad.Notes.COLUMN_NAME_UUID + " = ? AND "
+                    + NotePad.Notes.COLUMN_NAME_MODIFIED_TIME + " <= ?";
+
+            String overwrittenSql = NotePadSchema.revisionSourceSql(NotePadSchema.UUID + " = ? AND "
+                    + NotePadSchema.MODIFIED_TIME + " < ?");
+            long now = System.currentTimeMillis();
+
+            Inflater inflater = deflate ? new Inflater() : null;
+            byte[] stored = new byte[0];
+            byte[] raw = new byte[0];
+            int inBatch = 0;
+            db.beginTransaction();
+            try {
+                while (true) {
+                    int rawLen = (int) readVarint(map);
+                    if (rawLen == 0) {
+                        break;
+                    }
+                    int storedLen = (int) readVarint(map);
+                    ByteBuffer block;
+                    if (deflate) {
+                        if (stored.length < storedLen) {
+                            stored = new byte[storedLen];
+                        }
+                        if (raw.length < rawLen) {
+                            raw = new byte[rawLen];
+                        }
+                        map.get(stored, 0, storedLen);
+                        inflater.reset();
+                        inflater.setInput(stored, 0, storedLen);
+                        try {
+                            if (inflater.inflate(raw, 0, rawLen) != rawLen) {
+                                throw new IOException("Truncated backup block");
+                            }
+                        } catch (DataFormatException e) {
+                            throw new IOException("Corrupt backup block", e);
+                        }
+                        block = ByteBuffer.wrap(raw, 0, rawLen);
+                    } else {
+                        // 未压缩的块直接在映射内存上解析，不做拷贝
+                        block = map.slice();
+                        block.limit(rawLen);
+                        map.position(map.position() + rawLen);
+                    }
+
+                    while (block.hasRemaining()) {
+                        int len = (int) readVarint(block);
+                        int end = block.position() + len;
+                        int type = block.get() & 0xff;
+                        if (type == TYPE_NOTE) {
+                            String uuid = readString(block);
+                            String title = readString(block);
+                            String note = readString(block);
+                            String category = readString(block);
+                            long created = readVarint(block);
+                            long modified = readVarint(block);
+                            // 长正文只压缩一次，插入与覆盖共用
+                            byte[] data = BodyCodec.encode(note);
+                            insert.bindString(1, uuid);
+                            insert.bindString(2, title);
+                            NoteBodies.bind(insert, 3, 7, note, data);
+                            insert.bindString(4, category);
+                            insert.bindLong(5, created);
+                            insert.bindLong(6, modified);
+                            long id = insert.executeInsert();
+                            if (id != -1) {
+                                // 新插入的行没有旧的检索词，只有压缩存储时需要写入
+                                if (data != null) {
+                                    NoteBodies.index(db, id, note, data);
+                                }
+                            } else {
+                                // 被覆盖的旧正文在覆盖前读出，覆盖后记入版本历史
+                                Cursor old = NoteBodies.wrap(db.rawQuery(overwrittenSql,
+                                        new String[]{uuid, String.valueOf(modified)}));
+                                try {
+                                    boolean overwrites = old.moveToFirst();
+                                    update.bindString(1, title);
+                                    NoteBodies.bind(update, 2, 6, note, data);
+                                    update.bindString(3, category);
+                                    update.bindLong(4, created);
+                                    update.bindLong(5, modified);
+                                    update.bindString(7, uuid);
+                                    update.bindLong(8, modified);
+                                    update.executeUpdateDelete();
+                                    if (overwrites) {
+                                        NoteHistory.record(db, old.getLong(0), old.getString(1), old.getString(2),
+                                                old.getLong(3), note, now);
+                                        NoteBodies.index(db, old.getLong(0), note, data);
+                                    }
+                                } finally {
+                                    old.close();
+                                }
+                            }
+                        } else if (type == TYPE_TOMBSTONE) {
+                            // 与维护任务彻底删除一样先写同步墓碑，其他设备上的这篇笔记随下次同步删除
+                            String[] args = {readString(block), String.valueOf(readVarint(block))};
+                            NotePadProvider.writeTombstones(db, deleteSelection, args);
+                            db.delete(NotePad.Notes.TABLE_NAME, deleteSelection, args);
+                        }
+                        // 跳过未知类型或新版本追加的字段
+                        block.position(end);
+                        records++;
+                        if (++inBatch >= RESTORE_BATCH) {
+                            db.setTransactionSuccessful();
+                            db.endTransaction();
+                            db.beginTransaction();
+                            inBatch = 0;
+                        }
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                insert.close();
+                update.close();
+                if (inflater != null) {
+                    inflater.end();
+                }
+            }
+
+            Bundle result = new Bundle();
+            result.putInt(RESULT_RECORDS, records);
+            result.putLong(RESULT_HIGH_WATER, highWater);
+            result.putLong(RESULT_BYTES, channel.size());
+            return result;
+        } finally {
+            raf.close();
+        }
+    }
+
+    // 是否为增量快照；恢复时需先恢复全量快照，再按时间顺序应用增量快照
+    public static boolean isIncremental(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            byte[] header = new byte[MAGIC.length + 2];
+            if (in.read(header) != header.length) {
+                throw new IOException("Not a note backup: " + file);
+            }
+            return (header[MAGIC.length + 1] & FLAG_INCREMENTAL) != 0;
+        } finally {
+            in.close();
+        }
+    }
+
+    // 把记录攒成块，满块时（按需压缩后）写出
+    private static class BlockWriter {
+        private final OutputStream mOut;
+        private final Deflater mDeflater;
+        private final ByteArrayOutputStream mBlock = new ByteArrayOutputStream(BLOCK_SIZE + 1024);
+        private final ByteArrayOutputStream mHeader = new ByteArrayOutputStream(16);
+        private byte[] mCompressed = new byte[0];
+
+        BlockWriter(OutputStream out, boolean compress) {
+            mOut = out;
+            mDeflater = compress ? new Deflater(Deflater.DEFAULT_COMPRESSION) : null;
+        }
+
+        void append(ByteArrayOutputStream record) throws IOException {
+            writeVarint(mBlock, record.size());
+            record.writeTo(mBlock);
+            if (mBlock.size() >= BLOCK_SIZE) {
+                flushBlock();
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            if (mBlock.size() == 0) {
+                return;
+            }
+            byte[] raw = mBlock.toByteArray();
+            mHeader.reset();
+            writeVarint(mHeader, raw.length);
+            if (mDeflater == null) {
+                writeVarint(mHeader, raw.length);
+                mHeader.writeTo(mOut);
+                mOut.write(raw);
+            } else {
+                mDeflater.reset();
+                mDeflater.setInput(raw);
+                mDeflater.finish();
+                if (mCompressed.length < raw.length + 64) {
+                    mCompressed = new byte[raw.length + raw.length / 8 + 64];
+                }
+                int n = 0;
+                while (!mDeflater.finished()) {
+                    if (n == mCompressed.length) {
+                        byte[] grown = new byte[mCompressed.length * 2];
+                        System.arraycopy(mCompressed, 0, grown, 0, n);
+                        mCompressed = grown;
+                    }
+                    n += mDeflater.deflate(mCompressed, n, mCompressed.length - n);
+                }
+                writeVarint(mHeader, n);
+                mHeader.writeTo(mOut);
+                mOut.write(mCompressed, 0, n);
+            }
+            mBlock.reset();
+        }
+
+        void finish() throws IOException {
+            try {
+                flushBlock();
+                mOut.write(0);
+            } finally {
+                if (mDeflater != null) {
+                    mDeflater.end();
+                }
+            }
+        }
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarint(ByteBuffer in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String s) {
+        byte[] bytes = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int len = (int) readVarint(in);
+        if (in.hasArray()) {
+            String s = new String(in.array(), in.arrayOffset() + in.position(), len, StandardCharsets.UTF_8);
+            in.position(in.position() + len);
+            return s;
+        }
+        byte[] bytes = new byte[len];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.android.notepad;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * notes表中正文的读写，存储格式见 {@link BodyCodec}。
+ *
+ * 写入正文的路径（Provider的插入与修改、链接改名的改写、备份恢复）都经过 {@link #encode} 或 {@link #bind}，
+ * 把正文拆成note与note_data两列，写入后由 {@link #index} 更新压缩行的检索词，关键字搜索不必解压。
+ * 读取完整正文的查询在投影末尾带上note_data列，游标用 {@link #wrap} 包装：note_data列对调用方不可见，
+ * 取note列时才解压，只读其他列的行不解压；搜索结果中压缩行的摘要也在读取时按完整正文算出。
+ */
+final class NoteBodies {
+    // 回填每批至多读入这么多篇长正文，不受SchemaMigrator批大小的影响
+    private static final int BACKFILL_BATCH_SIZE = 32;
+
+    private NoteBodies() {
+    }
+
+    /**
+     * 写入前改写正文列：有正文列时返回改写后的副本，调用方的ContentValues不变；没有正文列时原样返回。
+     */
+    static ContentValues encode(ContentValues values) {
+        if (!values.containsKey(NotePadSchema.NOTE)) {
+            return values;
+        }
+        String body = values.getAsString(NotePadSchema.NOTE);
+        byte[] data = body != null ? BodyCodec.encode(body) : null;
+        ContentValues encoded = new ContentValues(values);
+        if (data == null) {
+            // 改为明文时清掉之前的压缩数据
+            encoded.putNull(NotePadSchema.NOTE_DATA);
+        } else {
+            encoded.put(NotePadSchema.NOTE, BodyCodec.head(body));
+            encoded.put(NotePadSchema.NOTE_DATA, data);
+        }
+        return encoded;
+    }
+
+    // 把正文绑定到语句中note与note_data两列的参数；data为BodyCodec.encode(body)的结果
+    static void bind(SQLiteStatement statement, int noteIndex, int dataIndex, String body, byte[] data) {
+        statement.bindString(noteIndex, data != null ? BodyCodec.head(body) : body);
+        if (data != null) {
+            statement.bindBlob(dataIndex, data);
+        } else {
+            statement.bindNull(dataIndex);
+        }
+    }
+
+    /**
+     * 经 {@link #encode} 写入ids后更新检索表：values为调用方的列，encoded为encode的结果；没有正文列时不变。
+     */
+    static void index(SQLiteDatabase db, long[] ids, ContentValues values, ContentValues encoded) {
+        if (!values.containsKey(NotePadSchema.NOTE)) {
+            return;
+        }
+        String body = values.getAsString(NotePadSchema.NOTE);
+        // 多篇笔记写入同一正文时检索词只算一次
+        String terms = encoded.getAsByteArray(NotePadSchema.NOTE_DATA) != null ? BodyMatches.terms(body) : null;
+        for (long id : ids) {
+            writeTerms(db, id, body, terms);
+        }
+    }
+
+    /**
+     * 写入一篇正文后更新检索表：压缩存储时记下完整长度与检索词（见 {@link BodyMatches#terms}），
+     * 明文存储时删掉之前的记录。data为BodyCodec.encode(body)的结果。
+     */
+    static void index(SQLiteDatabase db, long id, String body, byte[] data) {
+        writeTerms(db, id, body, data != null ? BodyMatches.terms(body) : null);
+    }
+
+    private static void writeTerms(SQLiteDatabase db, long id, String body, String terms) {
+        if (terms == null) {
+            db.execSQL(NotePadSchema.DELETE_SEARCH_TERMS_SQL, new Object[]{id});
+        } else {
+            db.execSQL(NotePadSchema.INSERT_SEARCH_TERMS_SQL, new Object[]{id, body.length(), terms});
+        }
+    }
+
+    /**
+     * 包装带note_data列（须为最后一列）的游标；没有该列时原样返回。
+     */
+    static Cursor wrap(Cursor cursor) {
+        return wrap(cursor, null);
+    }
+
+    /**
+     * 同 {@link #wrap(Cursor)}；keyword不为null时，压缩行的摘要与命中位置列按完整正文中的第一处命中给出。
+     */
+    static Cursor wrap(Cursor cursor, String keyword) {
+        if (cursor == null) {
+            return null;
+        }
+        int data = cursor.getColumnIndex(NotePadSchema.NOTE_DATA);
+        if (data < 0 || data != cursor.getColumnCount() - 1) {
+            return cursor;
+        }
+        return new BodyCursor(cursor, cursor.getColumnIndex(NotePadSchema.NOTE), data, keyword);
+    }
+
+    /**
+     * 压缩升级前已有的长正文，用作迁移第13步的回填：按id顺序推进，每批从上一批的最后一个id之后开始。
+     * 先读完一批再改写，改写不影响正在读的游标；改写note列会由触发器清掉签名，同一批中重新计算。
+     */
+    static final class Backfill implements SchemaMigrator.Backfill {
+        private long mLastId;
+
+        @Override
+        public int runBatch(SQLiteDatabase db, int batchSize) {
+            List<Long> ids = new ArrayList<>();
+            List<String> bodies = new ArrayList<>();
+            Cursor c = db.rawQuery(NotePadSchema.compressBackfillSql(Math.min(batchSize, BACKFILL_BATCH_SIZE)),
+                    new String[]{String.valueOf(mLastId)});
+            try {
+                while (c.moveToNext()) {
+                    ids.add(c.getLong(0));
+                    bodies.add(c.getString(1));
+                }
+            } finally {
+                c.close();
+            }
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            mLastId = ids.get(ids.size() - 1);
+            long[] compressed = new long[ids.size()];
+            int count = 0;
+            SQLiteStatement update = db.compileStatement(NotePadSchema.COMPRESS_BODY_SQL);
+            try {
+                for (int i = 0; i < ids.size(); i++) {
+                    byte[] data = BodyCodec.encode(bodies.get(i));
+                    if (data == null) {
+                        continue;
+                    }
+                    update.bindString(1, BodyCodec.head(bodies.get(i)));
+                    update.bindBlob(2, data);
+                    update.bindLong(3, ids.get(i));
+                    update.executeUpdateDelete();
+                    index(db, ids.get(i), bodies.get(i), data);
+                    compressed[count++] = ids.get(i);
+                }
+            } finally {
+                update.close();
+            }
+            NearDuplicates.refresh(db, Arrays.copyOf(compressed, count));
+            return ids.size();
+        }
+    }
+
+    /**
+     * 为压缩升级前就已压缩的正文补上检索词，用作迁移第15步的回填：按id顺序推进，每批从上一批的最后一个id之后开始。
+     */
+    static final class SearchTermsBackfill implements SchemaMigrator.Backfill {
+        private long mLastId;
+
+        @Override
+        public int runBatch(SQLiteDatabase db, int batchSize) {
+            List<Long> ids = new ArrayList<>();
+            List<byte[]> data = new ArrayList<>();
+            Cursor c = db.rawQuery(NotePadSchema.searchTermsBackfillSql(Math.min(batchSize, BACKFILL_BATCH_SIZE)),
+                    new String[]{String.valueOf(mLastId)});
+            try {
+                while (c.moveToNext()) {
+                    ids.add(c.getLong(0));
+                    data.add(c.getBlob(1));
+                }
+            } finally {
+                c.close();
+            }
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            mLastId = ids.get(ids.size() - 1);
+            for (int i = 0; i < ids.size(); i++) {
+                index(db, ids.get(i), BodyCodec.decode(data.get(i)), data.get(i));
+            }
+            return ids.size();
+        }
+    }
+
+    private static final class BodyCursor extends CursorWrapper {
+        private final int mNote;
+        private final int mData;
+        // 有关键字时的摘要与命中位置列，不在投影中时为-1
+        private final int mSnippet;
+        private final int mSnippetMatch;
+        private final BodyMatches mMatches;
+        // 当前行解压出的正文，同一行重复读取时不再解压
+        private int mDecodedPosition = -1;
+        private String mDecoded;
+        // 当前行的摘要是否改取自完整正文（结果在mMatches中），同一行重复读取时不再查找
+        private int mMatchedPosition = -1;
+        private boolean mMatchedInBody;
+
+        BodyCursor(Cursor cursor, int note, int data, String keyword) {
+            super(cursor);
+            mNote = note;
+            mData = data;
+            mSnippet = keyword != null ? cursor.getColumnIndex(NotePadSchema.SNIPPET) : -1;
+            mSnippetMatch = keyword != null ? cursor.getColumnIndex(NotePadSchema.SNIPPET_MATCH) : -1;
+            mMatches = keyword != null ? new BodyMatches(keyword) : null;
+        }
+
+        private String body() {
+            int position = getPosition();
+            if (position != mDecodedPosition) {
+                mDecoded = BodyCodec.decode(super.getBlob(mData));
+                mDecodedPosition = position;
+            }
+            return mDecoded;
+        }
+
+        // 该列是否为压缩行的摘要列，且须按完整正文给出：SQL在开头中截出的摘要完整时仍用SQL的结果，
+        // 否则（开头中没有命中，或摘要截到了开头的末尾）解压后查找
+        private boolean fromBody(int columnIndex) {
+            if (columnIndex < 0 || columnIndex != mSnippet && columnIndex != mSnippetMatch || super.isNull(mData)) {
+                return false;
+            }
+            int position = getPosition();
+            if (position != mMatchedPosition) {
+                mMatchedInBody = mSnippet < 0 || super.isNull(mSnippet)
+                        || !BodyMatches.isComplete(super.getString(mSnippet));
+                if (mMatchedInBody) {
+                    mMatches.find(body());
+                }
+                mMatchedPosition = position;
+            }
+            return mMatchedInBody;
+        }
+
+        @Override
+        public String getString(int columnIndex) {
+            if (columnIndex == mNote && !super.isNull(mData)) {
+                return body();
+            }
+            if (fromBody(columnIndex)) {
+                return columnIndex == mSnippet ? mMatches.snippet() : String.valueOf(mMatches.snippetMatch());
+            }
+            return super.getString(columnIndex);
+        }
+
+        @Override
+        public int getInt(int columnIndex) {
+            return fromBody(columnIndex) && columnIndex == mSnippetMatch ? mMatches.snippetMatch()
+                    : super.getInt(columnIndex);
+        }
+
+        @Override
+        public long getLong(int columnIndex) {
+            return fromBody(columnIndex) && columnIndex == mSnippetMatch ? mMatches.snippetMatch()
+                    : super.getLong(columnIndex);
+        }
+
+        @Override
+        public boolean isNull(int columnIndex) {
+            return fromBody(columnIndex) ? columnIndex == mSnippet && mMatches.snippet() == null
+                    : super.isNull(columnIndex);
+        }
+
+        @Override
+        public int getType(int columnIndex) {
+            if (!fromBody(columnIndex)) {
+                return super.getType(columnIndex);
+            }
+            if (columnIndex == mSnippetMatch) {
+                return FIELD_TYPE_INTEGER;
+            }
+            return mMatches.snippet() != null ? FIELD_TYPE_STRING : FIELD_TYPE_NULL;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return mData;
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return Arrays.copyOf(super.getColumnNames(), mData);
+        }
+
+        @Override
+        public int getColumnIndex(String columnName) {
+            int index = super.getColumnIndex(columnName);
+            return index == mData ? -1 : index;
+        }
+
+        @Override
+        public int getColumnIndexOrThrow(String columnName) {
+            int index = getColumnIndex(columnName);
+            if (index < 0) {
+                throw new IllegalArgumentException("column '" + columnName + "' does not exist");
+            }
+            return index;
+        }
+    }
+}
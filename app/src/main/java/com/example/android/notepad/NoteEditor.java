@@ -2,14 +2,17 @@ package com.example.android.notepad;
 
 import android.app.Activity;
 import android.app.AlertDialog;
+import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.ViewTreeObserver;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.EditText;
@@ -17,6 +20,9 @@ import android.widget.Spinner;
 import android.widget.Toast;
 
 public class NoteEditor extends Activity {
+    // 列表点击时刻（elapsedRealtime），作为编辑页打开时间线的起点
+    public static final String EXTRA_TAP_TIME = "tap_time";
+
     private Spinner spinnerCategory;
     private String[] categories = {"默认分类", "工作", "生活", "学习", "其他"};
     private Button btnSave;
@@ -25,6 +31,9 @@ public class NoteEditor extends Activity {
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        long tapTime = getIntent().getLongExtra(EXTRA_TAP_TIME, SystemClock.elapsedRealtime());
+        final StartupTimeline timeline = new StartupTimeline(StartupTimeline.KIND_EDITOR_OPEN, tapTime);
+        timeline.begin(StartupTimeline.EDITOR_CREATE);
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_note_editor);
 
@@ -39,11 +48,28 @@ public class NoteEditor extends Activity {
         spinnerCategory.setAdapter(categoryAdapter);
 
         currentUri = getIntent().getData();
+        timeline.end(StartupTimeline.EDITOR_CREATE);
         if (currentUri != null) {
-            loadNoteData();
+            timeline.begin(StartupTimeline.EDITOR_LOAD);
+            try {
+                loadNoteData();
+            } finally {
+                timeline.end(StartupTimeline.EDITOR_LOAD);
+            }
         }
 
         btnSave.setOnClickListener(v -> saveNote());
+
+        // 正文首次绘制即视为可编辑
+        etContent.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                etContent.getViewTreeObserver().removeOnPreDrawListener(this);
+                timeline.mark(StartupTimeline.EDITOR_FIRST_FRAME);
+                timeline.finish(getApplicationContext());
+                return true;
+            }
+        });
     }
 
     private void loadNoteData() {
@@ -95,8 +121,7 @@ public class NoteEditor extends Activity {
             getContentResolver().update(currentUri, values, null, null);
         }
 
-        getContentResolver().notifyChange(NotePad.Notes.CONTENT_URI, null);
-
+        // Provider已对这篇笔记发出单条通知，列表与搜索索引据此增量更新，不再通知整个notes
         if (currentUri != null) {
             Toast.makeText(this, "保存成功", Toast.LENGTH_SHORT).show();
             finish();
@@ -109,14 +134,13 @@ public class NoteEditor extends Activity {
     private void deleteNote() {
         new AlertDialog.Builder(this)
                 .setTitle("删除笔记")
-                .setMessage("确定要删除这条笔记吗？")
+                .setMessage("笔记将移入回收站，" + NotePad.Trash.RETENTION_DAYS + "天内可以恢复。")
                 .setPositiveButton("删除", (dialog, which) -> {
                     if (currentUri != null) {
-                        // 执行删除（使用当前笔记的Uri）
+                        // 移入回收站（使用当前笔记的Uri）；Provider通知这一篇，列表与搜索索引只更新该行
                         int rowsDeleted = getContentResolver().delete(currentUri, null, null);
                         if (rowsDeleted > 0) {
-                            getContentResolver().notifyChange(NotePad.Notes.CONTENT_URI, null);
-                            Toast.makeText(NoteEditor.this, "删除成功", Toast.LENGTH_SHORT).show();
+                            Toast.makeText(NoteEditor.this, "已移入回收站", Toast.LENGTH_SHORT).show();
                             finish(); // 关闭编辑页，返回列表
                         } else {
                             Toast.makeText(NoteEditor.this, "删除失败", Toast.LENGTH_SHORT).show();
@@ -127,6 +151,54 @@ public class NoteEditor extends Activity {
                 .show();
     }
 
+    // 列出此前保存过、已被覆盖的版本，选中后把该版本的正文载入编辑框，保存后才生效
+    private void showHistory() {
+        Uri revisionsUri = Uri.withAppendedPath(currentUri, NotePad.Revisions.PATH);
+        Cursor cursor = getContentResolver().query(revisionsUri, new String[]{NotePad.Revisions._ID,
+                NotePad.Revisions.COLUMN_NAME_CREATED_TIME, NotePad.Revisions.COLUMN_NAME_LENGTH}, null, null, null);
+        if (cursor == null) {
+            return;
+        }
+        final long[] ids;
+        String[] items;
+        try {
+            ids = new long[cursor.getCount()];
+            items = new String[ids.length];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+                items[i] = ListSnapshotCache.formatTime(cursor.getLong(1)) + "（" + cursor.getInt(2) + "字）";
+            }
+        } finally {
+            cursor.close();
+        }
+        if (ids.length == 0) {
+            Toast.makeText(this, "还没有历史版本", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("历史版本")
+                .setItems(items, (dialog, which) ->
+                        loadRevision(ContentUris.withAppendedId(revisionsUri, ids[which])))
+                .setNegativeButton("取消", null)
+                .show();
+    }
+
+    private void loadRevision(Uri revisionUri) {
+        Cursor cursor = getContentResolver().query(revisionUri,
+                new String[]{NotePad.Revisions.COLUMN_NAME_NOTE}, null, null, null);
+        if (cursor == null) {
+            return;
+        }
+        try {
+            if (cursor.moveToFirst()) {
+                etContent.setText(cursor.getString(0));
+                Toast.makeText(this, "已载入该版本，保存后生效", Toast.LENGTH_SHORT).show();
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.note_editor_menu, menu);
@@ -147,6 +219,13 @@ public class NoteEditor extends Activity {
                 Toast.makeText(this, "新增笔记无需删除", Toast.LENGTH_SHORT).show();
             }
             return true;
+        } else if (id == R.id.menu_history) {
+            if (currentUri != null) {
+                showHistory();
+            } else {
+                Toast.makeText(this, "新增笔记还没有历史版本", Toast.LENGTH_SHORT).show();
+            }
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
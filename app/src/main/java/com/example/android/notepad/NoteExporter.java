@@ -0,0 +1,224 @@
+package com.example.android.notepad;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 流式导出笔记为JSON Lines或CSV。
+ *
+ * 按_id分页（每页 {@link #CHUNK_SIZE} 行）读取并立即写出，任何时刻内存中只保留一页数据，
+ * 导出10万条笔记时内存占用与导出1千条相同。
+ */
+public class NoteExporter {
+    public static final String FORMAT_JSONL = "jsonl";
+    public static final String FORMAT_CSV = "csv";
+
+    public static final String MIME_JSONL = "application/x-ndjson";
+    public static final String MIME_CSV = "text/csv";
+
+    static final int CHUNK_SIZE = 500;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String[] PROJECTION = new String[]{
+            NotePad.Notes._ID,
+            NotePad.Notes.COLUMN_NAME_UUID,
+            NotePad.Notes.COLUMN_NAME_TITLE,
+            NotePad.Notes.COLUMN_NAME_NOTE,
+            NotePad.Notes.COLUMN_NAME_CATEGORY,
+            NotePad.Notes.COLUMN_NAME_CREATED_TIME,
+            NotePad.Notes.COLUMN_NAME_MODIFIED_TIME
+    };
+
+    // 导出进度回调，在导出线程上调用
+    public interface ProgressListener {
+        void onProgress(int exported, int total);
+    }
+
+    private final ContentResolver mResolver;
+
+    public NoteExporter(ContentResolver resolver) {
+        mResolver = resolver;
+    }
+
+    public static String getMimeType(String format) {
+        if (FORMAT_JSONL.equals(format)) {
+            return MIME_JSONL;
+        } else if (FORMAT_CSV.equals(format)) {
+            return MIME_CSV;
+        }
+        return null;
+    }
+
+    // 符合筛选条件的笔记总数，用于显示进度。筛选条件放在URI上，由Provider连同压缩存储的长正文一起筛选
+    public int count(NoteFilter filter) {
+        Cursor c = mResolver.query(filter.appendTo(NotePad.Notes.CONTENT_URI), new String[]{"COUNT(*)"},
+                null, null, null);
+        if (c == null) {
+            return 0;
+        }
+        try {
+            return c.moveToFirst() ? c.getInt(0) : 0;
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * 将符合条件的笔记写入out（不关闭out），返回导出的行数。
+     */
+    public int export(String format, NoteFilter filter, OutputStream out, ProgressListener listener)
+            throws IOException {
+        if (getMimeType(format) == null) {
+            throw new IllegalArgumentException("Unknown export format: " + format);
+        }
+        boolean csv = FORMAT_CSV.equals(format);
+        int total = listener != null ? count(filter) : 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        if (csv) {
+            // BOM让表格软件正确识别UTF-8中文
+            writer.write('\uFEFF');
+            writer.write("id,uuid,title,note,category,created_time,modified_time\r\n");
+        }
+
+        Uri uri = filter.appendTo(NotePad.Notes.CONTENT_URI);
+        String selection = NotePad.Notes._ID + " > ?";
+        String[] args = new String[1];
+
+        long lastId = -1;
+        int exported = 0;
+        while (true) {
+            args[0] = String.valueOf(lastId);
+            Cursor c = mResolver.query(uri, PROJECTION, selection, args,
+                    NotePad.Notes._ID + " ASC LIMIT " + CHUNK_SIZE);
+            if (c == null) {
+                break;
+            }
+            int rows = 0;
+            try {
+                while (c.moveToNext()) {
+                    if (csv) {
+                        writeCsvRow(writer, c);
+                    } else {
+                        writeJsonRow(writer, c);
+                    }
+                    lastId = c.getLong(0);
+                    rows++;
+                }
+            } finally {
+                c.close();
+            }
+            exported += rows;
+            if (listener != null) {
+                listener.onProgress(exported, Math.max(total, exported));
+            }
+            if (rows < CHUNK_SIZE) {
+                break;
+            }
+        }
+        writer.flush();
+        return exported;
+    }
+
+    private static void writeJsonRow(Writer w, Cursor c) throws IOException {
+        w.write("{\"id\":");
+        w.write(Long.toString(c.getLong(0)));
+        w.write(",\"uuid\":");
+        writeJsonString(w, c.getString(1));
+        w.write(",\"title\":");
+        writeJsonString(w, c.getString(2));
+        w.write(",\"note\":");
+        writeJsonString(w, c.getString(3));
+        w.write(",\"category\":");
+        writeJsonString(w, c.getString(4));
+        w.write(",\"created_time\":");
+        w.write(Long.toString(c.getLong(5)));
+        w.write(",\"modified_time\":");
+        w.write(Long.toString(c.getLong(6)));
+        w.write("}\n");
+    }
+
+    private static void writeJsonString(Writer w, String s) throws IOException {
+        if (s == null) {
+            w.write("null");
+            return;
+        }
+        w.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+                case '"':
+                    w.write("\\\"");
+                    break;
+                case '\\':
+                    w.write("\\\\");
+                    break;
+                case '\n':
+                    w.write("\\n");
+                    break;
+                case '\r':
+                    w.write("\\r");
+                    break;
+                case '\t':
+                    w.write("\\t");
+                    break;
+                default:
+                    if (ch < 0x20) {
+                        w.write(String.format("\\u%04x", (int) ch));
+                    } else {
+                        w.write(ch);
+                    }
+            }
+        }
+        w.write('"');
+    }
+
+    private static void writeCsvRow(Writer w, Cursor c) throws IOException {
+        w.write(Long.toString(c.getLong(0)));
+        w.write(',');
+        writeCsvField(w, c.getString(1));
+        w.write(',');
+        writeCsvField(w, c.getString(2));
+        w.write(',');
+        writeCsvField(w, c.getString(3));
+        w.write(',');
+        writeCsvField(w, c.getString(4));
+        w.write(',');
+        w.write(Long.toString(c.getLong(5)));
+        w.write(',');
+        w.write(Long.toString(c.getLong(6)));
+        w.write("\r\n");
+    }
+
+    // RFC 4180：含逗号、引号或换行的字段加引号，引号双写
+    private static void writeCsvField(Writer w, String s) throws IOException {
+        if (s == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char ch = s.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) {
+            w.write(s);
+            return;
+        }
+        w.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == '"') {
+                w.write('"');
+            }
+            w.write(ch);
+        }
+        w.write('"');
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.android.notepad;
+
+import android.net.Uri;
+import android.text.TextUtils;
+
+/**
+ * 列表当前的筛选条件（关键字 + 分类），统一生成查询用的selection与参数，
+ * 列表查询与导出共用同一份逻辑。
+ */
+public final class NoteFilter {
+    // 导出URI中携带筛选条件的参数名
+    public static final String PARAM_KEYWORD = "keyword";
+    public static final String PARAM_CATEGORY = "category";
+
+    public final String keyword;
+    public final String category;
+
+    public NoteFilter(String keyword, String category) {
+        this.keyword = TextUtils.isEmpty(keyword) ? null : keyword;
+        this.category = TextUtils.isEmpty(category) ? null : category;
+    }
+
+    // 没有任何筛选条件（完整列表）
+    public boolean isEmpty() {
+        return keyword == null && category == null;
+    }
+
+    public static NoteFilter fromUri(Uri uri) {
+        return new NoteFilter(uri.getQueryParameter(PARAM_KEYWORD), uri.getQueryParameter(PARAM_CATEGORY));
+    }
+
+    // 把筛选条件附加到URI上
+    public Uri appendTo(Uri uri) {
+        Uri.Builder builder = uri.buildUpon();
+        if (keyword != null) {
+            builder.appendQueryParameter(PARAM_KEYWORD, keyword);
+        }
+        if (category != null) {
+            builder.appendQueryParameter(PARAM_CATEGORY, category);
+        }
+        return builder.build();
+    }
+
+    // 关键字匹配标题或内容，分类精确匹配；无条件时返回null
+    public String getSelection() {
+        return NotePadSchema.filterSelection(keyword, category);
+    }
+
+    public String[] getSelectionArgs() {
+        return NotePadSchema.filterArgs(keyword, category);
+    }
+}
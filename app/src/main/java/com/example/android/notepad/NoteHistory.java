@@ -0,0 +1,118 @@
+package com.example.android.notepad;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 笔记的版本历史：维护note_revisions表，存储策略见 {@link RevisionChain}。
+ *
+ * 正文被覆盖时由写入方记下旧版本：NotePadProvider的修改、链接改名时对引用笔记的改写、备份恢复覆盖已有笔记，
+ * 都在同一事务中、覆盖之后调用 {@link #record}。最新的一行以当前正文为起点，因此任何改写正文的路径都必须记录，
+ * 否则较新的几个版本无法还原。每次记录后清理该笔记超出数量或时间的旧版本；彻底删除笔记时触发器清掉它的全部版本。
+ */
+final class NoteHistory {
+    private NoteHistory() {
+    }
+
+    /**
+     * 笔记noteId的正文已由oldText改为newText：把旧版本（标题oldTitle，修改时间oldTime）记入历史，
+     * 正文未变时不记。调用方负责事务。
+     */
+    static void record(SQLiteDatabase db, long noteId, String oldTitle, String oldText, long oldTime,
+                       String newText, long now) {
+        oldText = oldText != null ? oldText : "";
+        newText = newText != null ? newText : "";
+        if (oldText.equals(newText)) {
+            return;
+        }
+        // 已有的行，最新的在前；revisionIds与times的下标0留给新的一行
+        long[] revisionIds;
+        boolean[] snapshots;
+        long[] times;
+        Cursor c = db.rawQuery(NotePadSchema.REVISION_AGES_SQL, new String[]{String.valueOf(noteId)});
+        try {
+            snapshots = new boolean[c.getCount()];
+            revisionIds = new long[snapshots.length + 1];
+            times = new long[revisionIds.length];
+            for (int i = 0; c.moveToNext(); i++) {
+                revisionIds[i + 1] = c.getLong(0);
+                snapshots[i] = c.getInt(1) != 0;
+                times[i + 1] = c.getLong(2);
+            }
+        } finally {
+            c.close();
+        }
+
+        byte[] delta = TextDelta.diff(newText, oldText);
+        boolean full = RevisionChain.needsSnapshot(snapshots, delta.length, oldText.length());
+        SQLiteStatement insert = db.compileStatement(NotePadSchema.INSERT_REVISION_SQL);
+        try {
+            insert.bindLong(1, noteId);
+            insert.bindLong(2, oldTime);
+            if (oldTitle != null) {
+                insert.bindString(3, oldTitle);
+            } else {
+                insert.bindNull(3);
+            }
+            insert.bindLong(4, oldText.length());
+            insert.bindLong(5, full ? 1 : 0);
+            insert.bindBlob(6, full ? RevisionChain.encodeSnapshot(oldText) : delta);
+            revisionIds[0] = insert.executeInsert();
+            times[0] = oldTime;
+        } finally {
+            insert.close();
+        }
+
+        long cutoff = now - TimeUnit.DAYS.toMillis(NotePad.Revisions.MAX_AGE_DAYS);
+        int keep = RevisionChain.keptCount(times, NotePad.Revisions.MAX_COUNT, cutoff);
+        if (keep < revisionIds.length) {
+            db.execSQL(NotePadSchema.DELETE_OLD_REVISIONS_SQL, new Object[]{noteId, revisionIds[keep - 1]});
+        }
+    }
+
+    /**
+     * 还原笔记的某个版本；该版本不存在或不属于这篇笔记时返回null。
+     */
+    static String reconstruct(SQLiteDatabase db, long noteId, long revisionId) {
+        List<byte[]> deltas = new ArrayList<>();
+        String anchor = null;
+        Cursor c = db.rawQuery(NotePadSchema.REVISION_CHAIN_SQL,
+                new String[]{String.valueOf(noteId), String.valueOf(revisionId)});
+        try {
+            if (!c.moveToFirst() || c.getLong(0) != revisionId) {
+                return null;
+            }
+            do {
+                if (c.getInt(1) != 0) {
+                    anchor = RevisionChain.decodeSnapshot(c.getBlob(2));
+                    break;
+                }
+                deltas.add(0, c.getBlob(2));
+            } while (c.moveToNext());
+            if (anchor == null && c.getCount() > RevisionChain.MAX_DEPTH) {
+                throw new IllegalStateException("Revision " + revisionId + " of note " + noteId + " has no anchor");
+            }
+        } finally {
+            c.close();
+        }
+        if (anchor == null) {
+            // 与最新的一行之间没有快照：从当前正文出发
+            c = NoteBodies.wrap(db.rawQuery(NotePadSchema.revisionSourceSql(NotePadSchema.ID + " = ?"),
+                    new String[]{String.valueOf(noteId)}));
+            try {
+                if (!c.moveToFirst()) {
+                    return null;
+                }
+                anchor = c.isNull(2) ? "" : c.getString(2);
+            } finally {
+                c.close();
+            }
+        }
+        return RevisionChain.rebuild(anchor, deltas);
+    }
+}
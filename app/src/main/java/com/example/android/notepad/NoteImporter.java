@@ -0,0 +1,403 @@
+package com.example.android.notepad;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量导入.txt/.md文件。
+ *
+ * 解析（读取、规范化、提取标题与分类、计算内容摘要）在线程池中并行执行，
+ * 结果经有界队列交给唯一的写入线程，写入线程去重后按 {@link #BATCH_SIZE} 条一批
+ * 调用bulkInsert，每批一个事务。吞吐随核数增长，直到写入线程成为瓶颈。
+ */
+public class NoteImporter {
+    private static final String TAG = "NoteImporter";
+
+    static final int BATCH_SIZE = 500;
+    private static final int MAX_TITLE_LENGTH = 100;
+    private static final String DEFAULT_CATEGORY = "默认分类";
+    private static final List<String> KNOWN_CATEGORIES = Arrays.asList(
+            DEFAULT_CATEGORY, NotePad.Notes.CATEGORY_WORK, NotePad.Notes.CATEGORY_LIFE,
+            NotePad.Notes.CATEGORY_STUDY, NotePad.Notes.CATEGORY_OTHER);
+
+    // 解析线程放入队列的结束标记
+    private static final ParsedNote END = new ParsedNote();
+
+    /**
+     * 导入进度；所有计数都是快照，在写入线程上回调。
+     */
+    public static class Progress {
+        public int filesFound;
+        public int filesParsed;
+        public int imported;
+        public int duplicates;
+        public int failed;
+        public boolean cancelled;
+    }
+
+    public interface Listener {
+        void onProgress(Progress progress);
+    }
+
+    private final ContentResolver mResolver;
+    private final int mParallelism;
+    private final AtomicBoolean mCancelled = new AtomicBoolean();
+    private volatile ExecutorService mExecutor;
+
+    public NoteImporter(ContentResolver resolver) {
+        this(resolver, Runtime.getRuntime().availableProcessors());
+    }
+
+    public NoteImporter(ContentResolver resolver, int parallelism) {
+        mResolver = resolver;
+        mParallelism = Math.max(1, parallelism);
+    }
+
+    // 可在任意线程调用；已写入的批次保留，未写入的丢弃
+    public void cancel() {
+        mCancelled.set(true);
+        ExecutorService executor = mExecutor;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 导入存储访问框架目录树（含子目录）中的全部.txt/.md文件。阻塞调用，需在后台线程执行。
+     */
+    public Progress importTree(Uri treeUri, Listener listener) throws IOException {
+        List<Source> sources = new ArrayList<>();
+        collect(treeUri, DocumentsContract.getTreeDocumentId(treeUri), null, sources);
+        return importSources(sources, listener);
+    }
+
+    Progress importSources(List<Source> sources, Listener listener) throws IOException {
+        final Progress progress = new Progress();
+        progress.filesFound = sources.size();
+        final AtomicInteger parsed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final BlockingQueue<ParsedNote> queue = new ArrayBlockingQueue<>(BATCH_SIZE * 2);
+        final AtomicInteger remaining = new AtomicInteger(sources.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(mParallelism);
+        mExecutor = executor;
+        for (final Source source : sources) {
+            executor.execute(() -> {
+                try {
+                    ParsedNote note = parse(source);
+                    parsed.incrementAndGet();
+                    queue.put(note);
+                } catch (IOException | RuntimeException e) {
+                    // 编码错误等解析异常同样只算这一个文件失败
+                    Log.w(TAG, "Failed to import " + source.uri, e);
+                    failed.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    // 最后一个完成的解析任务负责放入结束标记；任务失败时也要放入，否则写入线程一直等待
+                    if (remaining.decrementAndGet() == 0) {
+                        try {
+                            queue.put(END);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+
+        // 写入期间切换到bulk-import参数，结束后恢复原参数
+        String previousProfile = setProfile(PerformanceProfile.BULK_IMPORT);
+        try {
+            if (!sources.isEmpty()) {
+                write(queue, progress, parsed, failed, listener);
+            }
+        } finally {
+            executor.shutdownNow();
+            mExecutor = null;
+            if (previousProfile != null) {
+                setProfile(previousProfile);
+            }
+        }
+        progress.filesParsed = parsed.get();
+        progress.failed = failed.get();
+        progress.cancelled = mCancelled.get();
+        if (listener != null) {
+            listener.onProgress(progress);
+        }
+        return progress;
+    }
+
+    // 唯一的写入线程：按内容摘要去重，攒满一批后在一个事务中写入
+    private void write(BlockingQueue<ParsedNote> queue, Progress progress, AtomicInteger parsed,
+                       AtomicInteger failed, Listener listener) {
+        Set<Long> seen = loadExistingHashes();
+        List<ContentValues> batch = new ArrayList<>(BATCH_SIZE);
+        while (!mCancelled.get()) {
+            ParsedNote note;
+            try {
+                note = queue.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (note == null) {
+                continue;
+            }
+            if (note == END) {
+                break;
+            }
+            if (!seen.add(note.hash)) {
+                progress.duplicates++;
+                continue;
+            }
+            batch.add(note.values);
+            if (batch.size() >= BATCH_SIZE) {
+                progress.imported += flush(batch);
+                progress.filesParsed = parsed.get();
+                progress.failed = failed.get();
+                if (listener != null) {
+                    listener.onProgress(progress);
+                }
+            }
+        }
+        if (!mCancelled.get()) {
+            progress.imported += flush(batch);
+        }
+    }
+
+    private String setProfile(String name) {
+        Bundle result = mResolver.call(NotePad.Notes.CONTENT_URI, NotePad.METHOD_SET_PROFILE, name, null);
+        return result != null ? result.getString(NotePad.RESULT_PROFILE) : null;
+    }
+
+    private int flush(List<ContentValues> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int count = mResolver.bulkInsert(NotePad.Notes.CONTENT_URI, batch.toArray(new ContentValues[0]));
+        batch.clear();
+        return count;
+    }
+
+    // 读取已有笔记的内容摘要，按_id分页避免一次性载入全部正文
+    private Set<Long> loadExistingHashes() {
+        Set<Long> hashes = new HashSet<>();
+        long lastId = -1;
+        while (true) {
+            Cursor c = mResolver.query(NotePad.Notes.CONTENT_URI,
+                    new String[]{NotePad.Notes._ID, NotePad.Notes.COLUMN_NAME_TITLE, NotePad.Notes.COLUMN_NAME_NOTE},
+                    NotePad.Notes._ID + " > ?", new String[]{String.valueOf(lastId)},
+                    NotePad.Notes._ID + " ASC LIMIT " + BATCH_SIZE);
+            if (c == null) {
+                break;
+            }
+            int rows = 0;
+            try {
+                while (c.moveToNext()) {
+                    lastId = c.getLong(0);
+                    hashes.add(contentHash(c.getString(1), c.isNull(2) ? "" : c.getString(2)));
+                    rows++;
+                }
+            } finally {
+                c.close();
+            }
+            if (rows < BATCH_SIZE) {
+                break;
+            }
+        }
+        return hashes;
+    }
+
+    private void collect(Uri treeUri, String documentId, String dirName, List<Source> out) {
+        Uri children = DocumentsContract.buildChildDocumentsUriUsingTree(treeUri, documentId);
+        Cursor c = mResolver.query(children, new String[]{
+                DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+                DocumentsContract.Document.COLUMN_DISPLAY_NAME,
+                DocumentsContract.Document.COLUMN_MIME_TYPE}, null, null, null);
+        if (c == null) {
+            return;
+        }
+        try {
+            while (c.moveToNext() && !mCancelled.get()) {
+                String childId = c.getString(0);
+                String name = c.getString(1);
+                if (DocumentsContract.Document.MIME_TYPE_DIR.equals(c.getString(2))) {
+                    collect(treeUri, childId, name, out);
+                } else if (isSupported(name)) {
+                    out.add(new Source(DocumentsContract.buildDocumentUriUsingTree(treeUri, childId), name, dirName));
+                }
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    static boolean isSupported(String name) {
+        if (name == null) {
+            return false;
+        }
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".txt") || lower.endsWith(".md") || lower.endsWith(".markdown");
+    }
+
+    ParsedNote parse(Source source) throws IOException {
+        InputStream in = mResolver.openInputStream(source.uri);
+        if (in == null) {
+            throw new IOException("Cannot open " + source.uri);
+        }
+        String text;
+        try {
+            text = readUtf8(in);
+        } finally {
+            in.close();
+        }
+        return parse(text, source.name, source.dirName);
+    }
+
+    /**
+     * 规范化文本并提取标题和分类：
+     * 标题取首个Markdown标题或首个非空行，均无时用文件名；
+     * 分类取front matter中的category，否则取所在目录名（须为已知分类）。
+     */
+    static ParsedNote parse(String text, String fileName, String dirName) {
+        String body = normalize(text);
+        String category = null;
+
+        if (body.startsWith("---\n")) {
+            int end = body.indexOf("\n---", 4);
+            if (end > 0) {
+                for (String line : body.substring(4, end).split("\n")) {
+                    int colon = line.indexOf(':');
+                    if (colon > 0 && "category".equalsIgnoreCase(line.substring(0, colon).trim())) {
+                        category = line.substring(colon + 1).trim();
+                    }
+                }
+                int next = body.indexOf('\n', end + 4);
+                body = next < 0 ? "" : body.substring(next + 1);
+            }
+        }
+
+        String title = null;
+        for (String line : body.split("\n", 20)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            while (trimmed.startsWith("#")) {
+                trimmed = trimmed.substring(1);
+            }
+            trimmed = trimmed.trim();
+            if (!trimmed.isEmpty()) {
+                title = trimmed;
+                break;
+            }
+        }
+        if (title == null) {
+            int dot = fileName.lastIndexOf('.');
+            title = dot > 0 ? fileName.substring(0, dot) : fileName;
+        }
+        if (title.length() > MAX_TITLE_LENGTH) {
+            title = title.substring(0, MAX_TITLE_LENGTH);
+        }
+        if (category == null || category.isEmpty()) {
+            category = dirName != null && KNOWN_CATEGORIES.contains(dirName) ? dirName : DEFAULT_CATEGORY;
+        }
+
+        ParsedNote note = new ParsedNote();
+        note.values = new ContentValues();
+        note.values.put(NotePad.Notes.COLUMN_NAME_TITLE, title);
+        note.values.put(NotePad.Notes.COLUMN_NAME_NOTE, body);
+        note.values.put(NotePad.Notes.COLUMN_NAME_CATEGORY, category);
+        note.hash = contentHash(title, body);
+        return note;
+    }
+
+    // 去掉BOM、统一换行、去掉行尾空白和首尾空行
+    static String normalize(String text) {
+        if (text.startsWith("\uFEFF")) {
+            text = text.substring(1);
+        }
+        text = text.replace("\r\n", "\n").replace('\r', '\n');
+        StringBuilder sb = new StringBuilder(text.length());
+        for (String line : text.split("\n", -1)) {
+            int end = line.length();
+            while (end > 0 && Character.isWhitespace(line.charAt(end - 1))) {
+                end--;
+            }
+            sb.append(line, 0, end).append('\n');
+        }
+        return sb.toString().trim();
+    }
+
+    // 标题+正文的SHA-256取前8字节，按long存放以降低去重集合的内存占用
+    static long contentHash(String title, String body) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(String.valueOf(title).getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(String.valueOf(body).getBytes(StandardCharsets.UTF_8));
+            byte[] d = md.digest();
+            long h = 0;
+            for (int i = 0; i < 8; i++) {
+                h = (h << 8) | (d[i] & 0xff);
+            }
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String readUtf8(InputStream in) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[16 * 1024];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            bos.write(buf, 0, n);
+        }
+        return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    static class Source {
+        final Uri uri;
+        final String name;
+        final String dirName;
+
+        Source(Uri uri, String name, String dirName) {
+            this.uri = uri;
+            this.name = name;
+            this.dirName = dirName;
+        }
+    }
+
+    static class ParsedNote {
+        ContentValues values;
+        long hash;
+    }
+}
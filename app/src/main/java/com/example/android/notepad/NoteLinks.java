@@ -0,0 +1,205 @@
+package com.example.android.notepad;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 笔记之间的维基式链接：维护note_links表，并在被链接的笔记改名时改写引用它的正文。
+ *
+ * 出链随笔记写入由NotePadProvider更新，只增删有变化的行；删除笔记时触发器清掉它的出链。
+ * 备份恢复等绕过Provider的写入之后，由 {@link Backfill} 按正文逐篇核对一遍。
+ */
+final class NoteLinks {
+    // 改名时每批读取并改写的引用笔记数
+    static final int RENAME_BATCH_SIZE = 200;
+
+    private NoteLinks() {
+    }
+
+    /**
+     * 从数据库读取这些笔记的正文，把出链更新为正文中的链接。调用方负责事务。
+     */
+    static void refresh(SQLiteDatabase db, long[] ids) {
+        if (ids.length == 0) {
+            return;
+        }
+        Cursor c = NoteBodies.wrap(db.rawQuery(NotePadSchema.linkSourceSql(NotePadSchema.idSelection(ids, false)),
+                null));
+        try {
+            write(db, c);
+        } finally {
+            c.close();
+        }
+    }
+
+    // 在当前线程核对全部笔记的出链，每批一个事务
+    static int backfillAll(SQLiteDatabase db) {
+        Backfill backfill = new Backfill();
+        int total = 0;
+        while (true) {
+            int rows;
+            db.beginTransactionNonExclusive();
+            try {
+                rows = backfill.runBatch(db, SchemaMigrator.BACKFILL_BATCH_SIZE);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            if (rows == 0) {
+                return total;
+            }
+            total += rows;
+        }
+    }
+
+    /**
+     * 按id顺序逐批核对出链，每批从上一批的最后一个id之后开始。
+     * 用作迁移第9步的回填，以及备份恢复后的重建；已经一致的笔记不产生写入。
+     */
+    static final class Backfill implements SchemaMigrator.Backfill {
+        private long mLastId;
+
+        @Override
+        public int runBatch(SQLiteDatabase db, int batchSize) {
+            Cursor c = NoteBodies.wrap(db.rawQuery(NotePadSchema.linkBackfillSql(batchSize),
+                    new String[]{String.valueOf(mLastId)}));
+            try {
+                int rows = c.getCount();
+                if (rows > 0) {
+                    mLastId = write(db, c);
+                }
+                return rows;
+            } finally {
+                c.close();
+            }
+        }
+    }
+
+    // 游标列为linkSourceSql的(_id, 正文)，返回最后一行的id
+    private static long write(SQLiteDatabase db, Cursor c) {
+        long lastId = -1;
+        SQLiteStatement insert = db.compileStatement(NotePadSchema.INSERT_LINK_SQL);
+        SQLiteStatement delete = db.compileStatement(NotePadSchema.DELETE_LINK_SQL);
+        try {
+            while (c.moveToNext()) {
+                lastId = c.getLong(0);
+                write(db, insert, delete, lastId, c.getString(1));
+            }
+        } finally {
+            insert.close();
+            delete.close();
+        }
+        return lastId;
+    }
+
+    // 与表中现有的出链比较，删除正文中已没有的，插入新出现的
+    private static void write(SQLiteDatabase db, SQLiteStatement insert, SQLiteStatement delete,
+                              long id, String text) {
+        Map<String, String> wanted = new HashMap<>();
+        for (String title : WikiLinks.parse(text)) {
+            wanted.put(TagIndex.key(title), title);
+        }
+        Cursor c = db.rawQuery(NotePadSchema.LINKS_OF_SQL, new String[]{String.valueOf(id)});
+        try {
+            while (c.moveToNext()) {
+                String title = c.getString(0);
+                if (wanted.remove(TagIndex.key(title)) == null) {
+                    delete.bindLong(1, id);
+                    delete.bindString(2, title);
+                    delete.executeUpdateDelete();
+                }
+            }
+        } finally {
+            c.close();
+        }
+        for (String title : wanted.values()) {
+            insert.bindLong(1, id);
+            insert.bindString(2, title);
+            insert.executeInsert();
+        }
+    }
+
+    /**
+     * 笔记标题从oldTitle改为newTitle后，把其他笔记中指向旧标题的链接改为新标题，返回被改写的笔记id。
+     * 仍有笔记使用旧标题、或新标题不能作为链接目标时不改写。须在改名所在的事务中、改名之后调用。
+     */
+    static long[] rename(SQLiteDatabase db, String oldTitle, String newTitle) {
+        if (oldTitle == null || !WikiLinks.isLinkable(newTitle)
+                || TagIndex.key(oldTitle.trim()).equals(TagIndex.key(newTitle.trim()))) {
+            return new long[0];
+        }
+        if (titleInUse(db, oldTitle)) {
+            return new long[0];
+        }
+        long[] sources = linkingNotes(db, oldTitle.trim());
+        long[] rewritten = new long[sources.length];
+        int count = 0;
+        long now = System.currentTimeMillis();
+        SQLiteStatement update = db.compileStatement(NotePadSchema.REWRITE_LINKS_SQL);
+        SQLiteStatement insert = db.compileStatement(NotePadSchema.INSERT_LINK_SQL);
+        SQLiteStatement delete = db.compileStatement(NotePadSchema.DELETE_LINK_SQL);
+        try {
+            // 引用很多时分批读取正文，避免一次把所有正文载入内存
+            for (int from = 0; from < sources.length; from += RENAME_BATCH_SIZE) {
+                long[] batch = Arrays.copyOfRange(sources, from,
+                        Math.min(sources.length, from + RENAME_BATCH_SIZE));
+                // 连同标题与修改时间读出，改写前的正文记入版本历史
+                Cursor c = NoteBodies.wrap(db.rawQuery(
+                        NotePadSchema.revisionSourceSql(NotePadSchema.idSelection(batch, false)), null));
+                try {
+                    while (c.moveToNext()) {
+                        long id = c.getLong(0);
+                        String text = c.getString(2);
+                        String renamed = WikiLinks.rename(text, oldTitle, newTitle);
+                        if (renamed == null || renamed.equals(text)) {
+                            continue;
+                        }
+                        byte[] data = BodyCodec.encode(renamed);
+                        NoteBodies.bind(update, 1, 2, renamed, data);
+                        update.bindLong(3, now);
+                        update.bindLong(4, id);
+                        update.executeUpdateDelete();
+                        NoteBodies.index(db, id, renamed, data);
+                        NoteHistory.record(db, id, c.getString(1), text, c.getLong(3), renamed, now);
+                        write(db, insert, delete, id, renamed);
+                        rewritten[count++] = id;
+                    }
+                } finally {
+                    c.close();
+                }
+            }
+        } finally {
+            update.close();
+            insert.close();
+            delete.close();
+        }
+        return Arrays.copyOf(rewritten, count);
+    }
+
+    private static long[] linkingNotes(SQLiteDatabase db, String title) {
+        Cursor c = db.rawQuery(NotePadSchema.LINKING_NOTES_SQL, new String[]{title});
+        try {
+            long[] ids = new long[c.getCount()];
+            for (int i = 0; c.moveToNext(); i++) {
+                ids[i] = c.getLong(0);
+            }
+            return ids;
+        } finally {
+            c.close();
+        }
+    }
+
+    private static boolean titleInUse(SQLiteDatabase db, String title) {
+        Cursor c = db.rawQuery(NotePadSchema.TITLE_IN_USE_SQL, new String[]{title});
+        try {
+            return c.moveToFirst();
+        } finally {
+            c.close();
+        }
+    }
+}
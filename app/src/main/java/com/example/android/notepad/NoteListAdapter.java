@@ -0,0 +1,181 @@
+package com.example.android.notepad;
+
+import android.text.Spannable;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.BackgroundColorSpan;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+/**
+ * 从 {@link NoteListModel} 的数组直接绑定列表项，滚动时不访问数据库。
+ *
+ * 搜索结果的标题和摘要高亮命中处：每个列表项持有自己的SpannableStringBuilder和高亮span，
+ * 绑定时清空后重新填入字符，TextView通过不复制的Spannable.Factory直接使用它，重复绑定不分配对象。
+ */
+final class NoteListAdapter extends BaseAdapter {
+
+    interface Callbacks {
+        // 首次绑定列表项（冷启动时间线用）
+        void onBind();
+
+        void onDeleteClicked(long noteId);
+    }
+
+    private static final class ViewHolder {
+        TextView title;
+        TextView snippet;
+        TextView time;
+        ImageView delete;
+        long noteId;
+        final SpannableStringBuilder titleText = new SpannableStringBuilder();
+        final SpannableStringBuilder snippetText = new SpannableStringBuilder();
+        BackgroundColorSpan titleHighlight;
+        BackgroundColorSpan snippetHighlight;
+    }
+
+    // TextView默认会把设置的Spannable复制一份，这里直接使用列表项自己的实例
+    private static final Spannable.Factory NO_COPY_FACTORY = new Spannable.Factory() {
+        @Override
+        public Spannable newSpannable(CharSequence source) {
+            return source instanceof Spannable ? (Spannable) source : super.newSpannable(source);
+        }
+    };
+
+    /**
+     * 以CharSequence的形式读取字符池中的一段，填入SpannableStringBuilder时不生成String。
+     */
+    private static final class PoolSlice implements CharSequence {
+        private char[] mPool;
+        private int mStart;
+        private int mLength;
+
+        PoolSlice set(char[] pool, int start, int length) {
+            mPool = pool;
+            mStart = start;
+            mLength = length;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return mLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return mPool[mStart + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(mPool, mStart + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(mPool, mStart, mLength);
+        }
+    }
+
+    private final LayoutInflater mInflater;
+    private final Callbacks mCallbacks;
+    private NoteListModel mModel;
+    // 只在主线程绑定，所有列表项共用
+    private final PoolSlice mSlice = new PoolSlice();
+
+    NoteListAdapter(LayoutInflater inflater, NoteListModel model, Callbacks callbacks) {
+        mInflater = inflater;
+        mModel = model;
+        mCallbacks = callbacks;
+    }
+
+    NoteListModel getModel() {
+        return mModel;
+    }
+
+    void setModel(NoteListModel model) {
+        mModel = model;
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public int getCount() {
+        return mModel == null ? 0 : mModel.size();
+    }
+
+    @Override
+    public Object getItem(int position) {
+        return mModel.getId(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mModel.getId(position);
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        View view = convertView;
+        final ViewHolder holder;
+        if (view == null) {
+            view = mInflater.inflate(R.layout.note_list_item, parent, false);
+            holder = new ViewHolder();
+            holder.title = view.findViewById(android.R.id.text1);
+            holder.snippet = view.findViewById(R.id.tv_note_snippet);
+            holder.time = view.findViewById(R.id.tv_note_timestamp);
+            holder.title.setSpannableFactory(NO_COPY_FACTORY);
+            holder.snippet.setSpannableFactory(NO_COPY_FACTORY);
+            int highlight = view.getResources().getColor(R.color.search_highlight, null);
+            holder.titleHighlight = new BackgroundColorSpan(highlight);
+            holder.snippetHighlight = new BackgroundColorSpan(highlight);
+            holder.delete = view.findViewById(R.id.iv_delete);
+            // 删除图标的监听只设置一次，点击时读取当前绑定的id
+            holder.delete.setOnClickListener(v -> mCallbacks.onDeleteClicked(holder.noteId));
+            view.setTag(holder);
+        } else {
+            holder = (ViewHolder) view.getTag();
+        }
+        mCallbacks.onBind();
+
+        NoteListModel model = mModel;
+        holder.noteId = model.getId(position);
+        char[] pool = model.getTitlePool();
+        bindHighlighted(holder.title, holder.titleText, holder.titleHighlight, pool, model.getTitleStart(position),
+                model.getTitleLength(position), model.getTitleMatch(position), model.highlightLength);
+        int snippetLength = model.getSnippetLength(position);
+        if (snippetLength > 0) {
+            holder.snippet.setVisibility(View.VISIBLE);
+            bindHighlighted(holder.snippet, holder.snippetText, holder.snippetHighlight, pool,
+                    model.getSnippetStart(position), snippetLength, model.getSnippetMatch(position),
+                    model.highlightLength);
+        } else {
+            holder.snippet.setVisibility(View.GONE);
+        }
+        holder.time.setText(ListSnapshotCache.formatTime(model.getCreatedTime(position)));
+        return view;
+    }
+
+    // 没有命中时直接按字符数组设置；有命中时重新填充该视图的SpannableStringBuilder并移动高亮span
+    private void bindHighlighted(TextView view, SpannableStringBuilder text, BackgroundColorSpan highlight,
+                                 char[] pool, int start, int length, int match, int matchLength) {
+        if (match < 0 || match >= length || matchLength == 0) {
+            view.setText(pool, start, length);
+            return;
+        }
+        text.removeSpan(highlight);
+        text.clear();
+        text.append(mSlice.set(pool, start, length));
+        text.setSpan(highlight, match, Math.min(length, match + matchLength), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        view.setText(text, TextView.BufferType.SPANNABLE);
+    }
+}
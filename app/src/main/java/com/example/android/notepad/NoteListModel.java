@@ -0,0 +1,357 @@
+package com.example.android.notepad;
+
+import android.database.Cursor;
+import android.provider.BaseColumns;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 列表页的内存模型，按列存放：id和创建时间用long[]，分类用int[]编号（分类名去重后单独保存），
+ * 标题统一放进一个char[]池，每行只记起点和长度。每行固定32字节加上标题字符，
+ * 滚动绑定直接读数组，不经过CursorWindow，也不为每行创建String。
+ *
+ * 行按创建时间倒序排列（与 {@link NotePadSchema#DEFAULT_SORT_ORDER} 一致）。
+ * 单条笔记的变化用 {@link #upsert}/{@link #remove} 原地修改。只能在一个线程中修改，
+ * 列表页在主线程修改、在后台线程构建。
+ *
+ * 搜索结果另有每行的标题命中位置和正文摘要（摘要与标题放在同一个字符池中），绑定时按
+ * {@link #highlightLength} 标出命中；没有关键字或该行没有对应命中时位置为-1。
+ */
+final class NoteListModel {
+    static final int MAX_TITLE_LENGTH = NotePadSchema.LIST_TITLE_LENGTH;
+
+    // 构建该模型时使用的筛选条件；快照模型为null，不接受增量
+    final NoteFilter filter;
+    // 关键字长度，即高亮的字符数；无关键字时为0
+    final int highlightLength;
+
+    private int mSize;
+    private long[] mIds;
+    private long[] mCreatedTimes;
+    private int[] mCategoryIds;
+    private int[] mTitleStarts;
+    private int[] mTitleLengths;
+    private int[] mTitleMatches;
+    private int[] mSnippetStarts;
+    private int[] mSnippetLengths;
+    private int[] mSnippetMatches;
+
+    private char[] mTitlePool;
+    private int mPoolUsed;
+    // 被替换或删除的标题和摘要仍占着池空间，超过一半时整理
+    private int mPoolGarbage;
+
+    private final List<String> mCategories = new ArrayList<>();
+    private final Map<String, Integer> mCategoryIndex = new HashMap<>();
+
+    NoteListModel(NoteFilter filter, int capacity) {
+        this.filter = filter;
+        highlightLength = filter != null && filter.keyword != null ? filter.keyword.length() : 0;
+        int rows = Math.max(16, capacity);
+        mIds = new long[rows];
+        mCreatedTimes = new long[rows];
+        mCategoryIds = new int[rows];
+        mTitleStarts = new int[rows];
+        mTitleLengths = new int[rows];
+        mTitleMatches = new int[rows];
+        mSnippetStarts = new int[rows];
+        mSnippetLengths = new int[rows];
+        mSnippetMatches = new int[rows];
+        mTitlePool = new char[rows * 16];
+    }
+
+    /**
+     * 从列表游标构建模型，游标需包含 _id、标题、创建时间和分类列，并已按创建时间倒序排列。
+     * 游标中有搜索的计算列（{@link NotePadSchema#SEARCH_PROJECTION}）时一并读入。
+     */
+    static NoteListModel fromCursor(NoteFilter filter, Cursor cursor) {
+        NoteListModel model = new NoteListModel(filter, cursor.getCount());
+        int idColumn = cursor.getColumnIndexOrThrow(BaseColumns._ID);
+        int titleColumn = cursor.getColumnIndexOrThrow(NotePad.Notes.COLUMN_NAME_TITLE);
+        int timeColumn = cursor.getColumnIndexOrThrow(NotePad.Notes.COLUMN_NAME_CREATED_TIME);
+        int categoryColumn = cursor.getColumnIndex(NotePad.Notes.COLUMN_NAME_CATEGORY);
+        int titleMatchColumn = cursor.getColumnIndex(NotePad.Notes.COLUMN_NAME_TITLE_MATCH);
+        int snippetColumn = cursor.getColumnIndex(NotePad.Notes.COLUMN_NAME_SNIPPET);
+        int snippetMatchColumn = cursor.getColumnIndex(NotePad.Notes.COLUMN_NAME_SNIPPET_MATCH);
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            model.add(cursor.getLong(idColumn), cursor.getString(titleColumn), cursor.getLong(timeColumn),
+                    categoryColumn < 0 ? null : cursor.getString(categoryColumn));
+            if (titleMatchColumn >= 0 && snippetColumn >= 0 && snippetMatchColumn >= 0) {
+                model.setMatch(model.mSize - 1, cursor.getInt(titleMatchColumn), cursor.getString(snippetColumn),
+                        cursor.getInt(snippetMatchColumn));
+            }
+        }
+        return model;
+    }
+
+    // 按搜索结果的顺序构建（不再按创建时间排序，不接受增量）
+    static NoteListModel fromHits(NoteFilter filter, NoteSearchIndex.Hits hits) {
+        NoteListModel model = new NoteListModel(filter, hits.size);
+        for (int i = 0; i < hits.size; i++) {
+            model.add(hits.ids[i], hits.titles[i], hits.createdTimes[i], hits.categories[i]);
+        }
+        return model;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    // 复制前几行，供其他线程读取
+    NoteListModel head(int rows) {
+        int count = Math.min(rows, mSize);
+        NoteListModel copy = new NoteListModel(filter, count);
+        for (int i = 0; i < count; i++) {
+            copy.add(mIds[i], getTitle(i), mCreatedTimes[i], getCategory(i));
+        }
+        return copy;
+    }
+
+    long getId(int position) {
+        return mIds[position];
+    }
+
+    long getCreatedTime(int position) {
+        return mCreatedTimes[position];
+    }
+
+    String getCategory(int position) {
+        return mCategories.get(mCategoryIds[position]);
+    }
+
+    // 标题以 (池, 起点, 长度) 的形式提供，配合TextView.setText(char[], int, int)使用。
+    // 池中已写入的区间不会再被改写，整理和扩容都换用新数组，因此已绑定的视图不受影响
+    char[] getTitlePool() {
+        return mTitlePool;
+    }
+
+    int getTitleStart(int position) {
+        return mTitleStarts[position];
+    }
+
+    int getTitleLength(int position) {
+        return mTitleLengths[position];
+    }
+
+    String getTitle(int position) {
+        return new String(mTitlePool, mTitleStarts[position], mTitleLengths[position]);
+    }
+
+    int getTitleMatch(int position) {
+        return mTitleMatches[position];
+    }
+
+    // 摘要同样以 (池, 起点, 长度) 提供，长度为0表示没有摘要
+    int getSnippetStart(int position) {
+        return mSnippetStarts[position];
+    }
+
+    int getSnippetLength(int position) {
+        return mSnippetLengths[position];
+    }
+
+    int getSnippetMatch(int position) {
+        return mSnippetMatches[position];
+    }
+
+    int indexOf(long id) {
+        long[] ids = mIds;
+        for (int i = 0; i < mSize; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // 追加到末尾，调用方保证顺序（构建时使用）
+    void add(long id, String title, long createdTime, String category) {
+        ensureCapacity(mSize + 1);
+        setRow(mSize, id, title, createdTime, category);
+        mSize++;
+    }
+
+    /**
+     * 插入或更新一行，创建时间变化时移动到新的排序位置。返回该行的新位置。
+     */
+    int upsert(long id, String title, long createdTime, String category) {
+        int position = indexOf(id);
+        if (position >= 0) {
+            if (mCreatedTimes[position] == createdTime) {
+                releaseRow(position);
+                setRow(position, id, title, createdTime, category);
+                compactIfNeeded();
+                return position;
+            }
+            removeAt(position);
+        }
+        ensureCapacity(mSize + 1);
+        int insertAt = insertionPoint(createdTime);
+        int tail = mSize - insertAt;
+        System.arraycopy(mIds, insertAt, mIds, insertAt + 1, tail);
+        System.arraycopy(mCreatedTimes, insertAt, mCreatedTimes, insertAt + 1, tail);
+        System.arraycopy(mCategoryIds, insertAt, mCategoryIds, insertAt + 1, tail);
+        System.arraycopy(mTitleStarts, insertAt, mTitleStarts, insertAt + 1, tail);
+        System.arraycopy(mTitleLengths, insertAt, mTitleLengths, insertAt + 1, tail);
+        System.arraycopy(mTitleMatches, insertAt, mTitleMatches, insertAt + 1, tail);
+        System.arraycopy(mSnippetStarts, insertAt, mSnippetStarts, insertAt + 1, tail);
+        System.arraycopy(mSnippetLengths, insertAt, mSnippetLengths, insertAt + 1, tail);
+        System.arraycopy(mSnippetMatches, insertAt, mSnippetMatches, insertAt + 1, tail);
+        setRow(insertAt, id, title, createdTime, category);
+        mSize++;
+        compactIfNeeded();
+        return insertAt;
+    }
+
+    /**
+     * 设置一行的搜索命中：标题命中位置、正文摘要（null为无）及摘要内的命中位置。
+     */
+    void setMatch(int position, int titleMatch, String snippet, int snippetMatch) {
+        mPoolGarbage += mSnippetLengths[position];
+        int length = snippet == null ? 0 : Math.min(snippet.length(), NotePadSchema.SNIPPET_LENGTH + 1);
+        int start = reservePool(length);
+        if (length > 0) {
+            snippet.getChars(0, length, mTitlePool, start);
+        }
+        setMatchAt(position, titleMatch, start, length, snippetMatch);
+    }
+
+    // 从另一个模型复制某行的搜索命中，不经过String
+    void copyMatch(int position, NoteListModel from, int fromPosition) {
+        mPoolGarbage += mSnippetLengths[position];
+        int length = from.mSnippetLengths[fromPosition];
+        int start = reservePool(length);
+        System.arraycopy(from.mTitlePool, from.mSnippetStarts[fromPosition], mTitlePool, start, length);
+        setMatchAt(position, from.mTitleMatches[fromPosition], start, length, from.mSnippetMatches[fromPosition]);
+    }
+
+    private void setMatchAt(int position, int titleMatch, int snippetStart, int snippetLength, int snippetMatch) {
+        mTitleMatches[position] = titleMatch;
+        mSnippetStarts[position] = snippetStart;
+        mSnippetLengths[position] = snippetLength;
+        mSnippetMatches[position] = snippetLength > 0 ? snippetMatch : -1;
+        compactIfNeeded();
+    }
+
+    boolean remove(long id) {
+        int position = indexOf(id);
+        if (position < 0) {
+            return false;
+        }
+        removeAt(position);
+        compactIfNeeded();
+        return true;
+    }
+
+    private void removeAt(int position) {
+        releaseRow(position);
+        int tail = mSize - position - 1;
+        System.arraycopy(mIds, position + 1, mIds, position, tail);
+        System.arraycopy(mCreatedTimes, position + 1, mCreatedTimes, position, tail);
+        System.arraycopy(mCategoryIds, position + 1, mCategoryIds, position, tail);
+        System.arraycopy(mTitleStarts, position + 1, mTitleStarts, position, tail);
+        System.arraycopy(mTitleLengths, position + 1, mTitleLengths, position, tail);
+        System.arraycopy(mTitleMatches, position + 1, mTitleMatches, position, tail);
+        System.arraycopy(mSnippetStarts, position + 1, mSnippetStarts, position, tail);
+        System.arraycopy(mSnippetLengths, position + 1, mSnippetLengths, position, tail);
+        System.arraycopy(mSnippetMatches, position + 1, mSnippetMatches, position, tail);
+        mSize--;
+    }
+
+    // 倒序数组中第一个创建时间小于给定值的位置；时间相同的新行排在已有行之后
+    private int insertionPoint(long createdTime) {
+        int low = 0;
+        int high = mSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mCreatedTimes[mid] >= createdTime) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void setRow(int position, long id, String title, long createdTime, String category) {
+        mIds[position] = id;
+        mCreatedTimes[position] = createdTime;
+        mCategoryIds[position] = categoryId(category);
+        String text = title == null ? "" : title;
+        int length = Math.min(text.length(), MAX_TITLE_LENGTH);
+        int start = reservePool(length);
+        text.getChars(0, length, mTitlePool, start);
+        mTitleStarts[position] = start;
+        mTitleLengths[position] = length;
+        mTitleMatches[position] = -1;
+        mSnippetLengths[position] = 0;
+        mSnippetMatches[position] = -1;
+    }
+
+    // 在池末尾预留length个字符，返回起点
+    private int reservePool(int length) {
+        if (mPoolUsed + length > mTitlePool.length) {
+            mTitlePool = Arrays.copyOf(mTitlePool, Math.max(mTitlePool.length * 2, mPoolUsed + length));
+        }
+        int start = mPoolUsed;
+        mPoolUsed += length;
+        return start;
+    }
+
+    private void releaseRow(int position) {
+        mPoolGarbage += mTitleLengths[position] + mSnippetLengths[position];
+    }
+
+    private void compactIfNeeded() {
+        if (mPoolGarbage < 4096 || mPoolGarbage * 2 < mPoolUsed) {
+            return;
+        }
+        char[] pool = new char[Math.max(16, (mPoolUsed - mPoolGarbage) * 3 / 2)];
+        int used = 0;
+        for (int i = 0; i < mSize; i++) {
+            int length = mTitleLengths[i];
+            System.arraycopy(mTitlePool, mTitleStarts[i], pool, used, length);
+            mTitleStarts[i] = used;
+            used += length;
+            length = mSnippetLengths[i];
+            System.arraycopy(mTitlePool, mSnippetStarts[i], pool, used, length);
+            mSnippetStarts[i] = used;
+            used += length;
+        }
+        mTitlePool = pool;
+        mPoolUsed = used;
+        mPoolGarbage = 0;
+    }
+
+    private int categoryId(String category) {
+        String name = category == null ? "" : category;
+        Integer id = mCategoryIndex.get(name);
+        if (id == null) {
+            id = mCategories.size();
+            mCategories.add(name);
+            mCategoryIndex.put(name, id);
+        }
+        return id;
+    }
+
+    private void ensureCapacity(int rows) {
+        if (rows <= mIds.length) {
+            return;
+        }
+        int capacity = Math.max(rows, mIds.length * 2);
+        mIds = Arrays.copyOf(mIds, capacity);
+        mCreatedTimes = Arrays.copyOf(mCreatedTimes, capacity);
+        mCategoryIds = Arrays.copyOf(mCategoryIds, capacity);
+        mTitleStarts = Arrays.copyOf(mTitleStarts, capacity);
+        mTitleLengths = Arrays.copyOf(mTitleLengths, capacity);
+        mTitleMatches = Arrays.copyOf(mTitleMatches, capacity);
+        mSnippetStarts = Arrays.copyOf(mSnippetStarts, capacity);
+        mSnippetLengths = Arrays.copyOf(mSnippetLengths, capacity);
+        mSnippetMatches = Arrays.copyOf(mSnippetMatches, capacity);
+    }
+}
@@ -9,6 +9,35 @@ public final class NotePad {
     // 1. ContentProvider的AUTHORITY（与Manifest注册一致，实验必需）
     public static final String AUTHORITY = "com.example.android.notepad.NotePadProvider";
 
+    // 同步引擎写入时附带的URI参数：带此参数的写操作不会被标记为脏数据，也不会生成删除墓碑
+    public static final String CALLER_IS_SYNC_ADAPTER = "caller_is_sync_adapter";
+
+    // ContentProvider.call()支持的方法及参数；arg为快照文件的绝对路径
+    public static final String METHOD_BACKUP = "backup";
+    public static final String METHOD_RESTORE = "restore";
+    // 数据库维护：arg为DatabaseMaintenance中的步骤名
+    public static final String METHOD_MAINTENANCE = "maintenance";
+    // 性能参数：arg为PerformanceProfile的预设名，返回切换前的预设名
+    public static final String METHOD_SET_PROFILE = "set_profile";
+    public static final String METHOD_GET_PROFILE = "get_profile";
+    public static final String RESULT_PROFILE = "profile";
+    // 运行统计：返回“操作/URI”到统计数组的快照，arg为ARG_RESET时同时清零
+    public static final String METHOD_METRICS = "metrics";
+    public static final String ARG_RESET = "reset";
+    // 慢查询记录：返回环形缓冲区内容（从旧到新）；阈值以毫秒为单位，arg为阈值字符串
+    public static final String METHOD_SLOW_QUERIES = "slow_queries";
+    public static final String METHOD_SET_SLOW_QUERY_THRESHOLD = "set_slow_query_threshold";
+    public static final String RESULT_SLOW_QUERIES = "entries";
+    public static final String EXTRA_THRESHOLD_MS = "threshold_ms";
+    public static final String EXTRA_SINCE = "since";
+    public static final String EXTRA_COMPRESS = "compress";
+    // 手动排序：arg为笔记id。move把它移到同组（同为置顶或未置顶）中EXTRA_AFTER_ID之后（缺省或-1为最前），
+    // pin按EXTRA_PINNED置顶或取消置顶（移到目标组最前）；都只更新这一行，不计为修改
+    public static final String METHOD_MOVE = "move";
+    public static final String METHOD_PIN = "pin";
+    public static final String EXTRA_AFTER_ID = "after_id";
+    public static final String EXTRA_PINNED = "pinned";
+
     // 2. 笔记表常量定义（含实验核心常量与动态文件夹兼容常量）
     public static final class Notes implements BaseColumns {
         private Notes() {}
@@ -21,6 +50,37 @@ public final class NotePad {
         public static final String COLUMN_NAME_CREATED_TIME = "created_time";
         public static final String DEFAULT_SORT_ORDER = COLUMN_NAME_CREATED_TIME + " DESC";
 
+        // 查询notes时的URI参数：可附带NoteFilter的keyword/category筛选；order为ranked且有关键字时
+        // 按相关度与新近度混合排序（见NoteRanker），否则按sortOrder（默认创建时间倒序）；limit限制返回行数
+        public static final String PARAM_ORDER = "order";
+        public static final String ORDER_RANKED = "ranked";
+        public static final String ORDER_CHRONOLOGICAL = "chronological";
+        public static final String PARAM_LIMIT = "limit";
+        // 搜索结果的计算列（须与NotePadSchema一致），URI带keyword时可放进投影：
+        // 正文第一处命中附近的摘要（无正文命中为null），命中在摘要/标题中的位置（从0起，-1为无）
+        public static final String COLUMN_NAME_SNIPPET = "snippet";
+        public static final String COLUMN_NAME_SNIPPET_MATCH = "snippet_match";
+        public static final String COLUMN_NAME_TITLE_MATCH = "title_match";
+
+        // notes/#/similar：与该笔记近似重复的其他笔记，按相似度降序，投影可包含相似度列（0~1）
+        public static final String PATH_SIMILAR = "similar";
+        public static final String COLUMN_NAME_SIMILARITY = "similarity";
+
+        // 标签（计算列，须与NotePadSchema一致）：查询时为逗号分隔的标签名；insert/update的ContentValues中
+        // 带此列时把笔记的标签整体替换为给出的列表（空字符串清除全部标签），名称忽略ASCII大小写
+        public static final String COLUMN_NAME_TAGS = "tags";
+        // 查询notes时按标签筛选的URI参数，值为逗号分隔的标签名，可同时使用：
+        // tags_all包含其中每一个，tags_any至少包含其中一个，tags_none不包含其中任何一个
+        public static final String PARAM_TAGS_ALL = "tags_all";
+        public static final String PARAM_TAGS_ANY = "tags_any";
+        public static final String PARAM_TAGS_NONE = "tags_none";
+
+        // 维基式链接：正文中的 [[标题]] 链接到该标题的笔记（忽略ASCII大小写）。
+        // notes/#/links为该笔记链接到的笔记，notes/#/backlinks为链接到该笔记的笔记；
+        // 笔记改名时，其他笔记中指向旧标题的链接随之改为新标题
+        public static final String PATH_LINKS = "links";
+        public static final String PATH_BACKLINKS = "backlinks";
+
         // 此前补充的动态文件夹兼容常量（保留）
         public static final Uri LIVE_FOLDER_URI = Uri.parse("content://" + AUTHORITY + "/live_folders/notes");
 
@@ -34,5 +94,91 @@ public final class NotePad {
         public static final String COLUMN_NAME_CATEGORY = "category";
         // 新增分类排序
         public static final String SORT_ORDER_BY_CATEGORY = COLUMN_NAME_CATEGORY + " ASC, " + DEFAULT_SORT_ORDER;
+
+        // 同步相关字段：最后修改时间、全局唯一标识、待上传标记
+        public static final String COLUMN_NAME_MODIFIED_TIME = "modified_time";
+        public static final String COLUMN_NAME_UUID = "uuid";
+        public static final String COLUMN_NAME_DIRTY = "dirty";
+
+        // 置顶标记（0/1）与手动排序的位置（实数，升序）；新笔记排在所在组的最前面
+        public static final String COLUMN_NAME_PINNED = "pinned";
+        public static final String COLUMN_NAME_POSITION = "position";
+        // 手动排序：置顶的在前，再按位置
+        public static final String SORT_ORDER_MANUAL = COLUMN_NAME_PINNED + " DESC, " + COLUMN_NAME_POSITION + ", "
+                + DEFAULT_SORT_ORDER;
+
+        // 移入回收站的时间，正常笔记为null。删除notes/notes/#只设置此列（同步引擎的删除仍直接删除），
+        // 回收站中的笔记不出现在notes的任何查询中（同步引擎的查询除外），见Trash
+        public static final String COLUMN_NAME_DELETED_TIME = "deleted_time";
+    }
+
+    // 3. 同步删除墓碑表：记录本地已删除、尚未推送到服务器的笔记uuid
+    public static final class SyncTombstones {
+        private SyncTombstones() {}
+
+        public static final String TABLE_NAME = "sync_tombstones";
+        public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + TABLE_NAME);
+        public static final String COLUMN_NAME_UUID = "uuid";
+        public static final String COLUMN_NAME_DELETED_TIME = "deleted_time";
+    }
+
+    // 4. 导出URI：content://AUTHORITY/export/{jsonl|csv}，可附带NoteFilter的筛选参数
+    public static final class Export {
+        private Export() {}
+
+        public static final String PATH = "export";
+        public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + PATH);
+    }
+
+    // 5. 近似重复组（只读）：每行一篇笔记，同组的行相邻，组按大小降序、组内最早的笔记在前。
+    // 投影可包含notes表的列以及组号和相似度（组内笔记与第一篇的最低相似度）
+    public static final class Duplicates {
+        private Duplicates() {}
+
+        public static final String PATH = "duplicates";
+        public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + PATH);
+        public static final String COLUMN_NAME_GROUP = "group_id";
+        public static final String COLUMN_NAME_SIMILARITY = Notes.COLUMN_NAME_SIMILARITY;
+    }
+
+    // 6. 标签列表（只读，另可删除tags/#）：每个标签及其笔记数，按名称排列；
+    // URI可带Notes.PARAM_TAGS_*参数，此时只计满足这些条件的笔记
+    public static final class Tags implements BaseColumns {
+        private Tags() {}
+
+        public static final String TABLE_NAME = "tags";
+        public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + TABLE_NAME);
+        public static final String COLUMN_NAME_NAME = "name";
+        public static final String COLUMN_NAME_NOTE_COUNT = "note_count";
+    }
+
+    // 7. 回收站：trash列出回收站中的笔记（投影同Notes），trash/#为其中一篇；删除二者即彻底删除，
+    // 对trash/#/restore执行update（ContentValues可为空）把笔记恢复到列表。
+    // 移入超过RETENTION_DAYS天的笔记由维护任务分批彻底删除，彻底删除时才生成同步墓碑
+    public static final class Trash {
+        private Trash() {}
+
+        public static final String PATH = "trash";
+        public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + PATH);
+        public static final String PATH_RESTORE = "restore";
+        public static final String DEFAULT_SORT_ORDER = Notes.COLUMN_NAME_DELETED_TIME + " DESC";
+        public static final int RETENTION_DAYS = 30;
+    }
+
+    // 8. 版本历史（只读）：notes/#/revisions列出该笔记被覆盖掉的各个旧正文，最新的在前，当前正文不在其中
+    // （不含正文列；created_time为该版本当时的修改时间）；notes/#/revisions/#为其中一个版本，可取正文列。
+    // 每篇笔记保留最近MAX_COUNT个、MAX_AGE_DAYS天内的版本（至少保留最新的一个），彻底删除笔记时一并删除
+    public static final class Revisions implements BaseColumns {
+        private Revisions() {}
+
+        public static final String PATH = "revisions";
+        public static final String COLUMN_NAME_NOTE_ID = "note_id";
+        public static final String COLUMN_NAME_CREATED_TIME = Notes.COLUMN_NAME_CREATED_TIME;
+        public static final String COLUMN_NAME_TITLE = Notes.COLUMN_NAME_TITLE;
+        public static final String COLUMN_NAME_NOTE = Notes.COLUMN_NAME_NOTE;
+        // 正文的字符数
+        public static final String COLUMN_NAME_LENGTH = "length";
+        public static final int MAX_COUNT = 50;
+        public static final int MAX_AGE_DAYS = 90;
     }
 }
\ No newline at end of file
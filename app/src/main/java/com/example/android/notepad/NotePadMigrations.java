@@ -0,0 +1,230 @@
+package com.example.android.notepad;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * NotePad.db的迁移步骤。新建数据库从版本0开始执行全部步骤，
+ * 第1步直接建出最新结构，之后的步骤依靠缓存的结构信息自动跳过。
+ *
+ * 新增版本时在 {@link #steps()} 末尾追加一步，并同步修改NotePadProvider.DATABASE_VERSION。
+ */
+final class NotePadMigrations {
+
+    private NotePadMigrations() {
+    }
+
+    private static void createNotesIndexes(SQLiteDatabase db, SchemaMigrator.SchemaInfo schema) {
+        schema.createIndex(db, NotePadSchema.INDEX_UUID, NotePad.Notes.TABLE_NAME, NotePadSchema.INDEX_UUID_SQL);
+        schema.createIndex(db, NotePadSchema.INDEX_DIRTY, NotePad.Notes.TABLE_NAME, NotePadSchema.INDEX_DIRTY_SQL);
+    }
+
+    static List<SchemaMigrator.Step> steps() {
+        List<SchemaMigrator.Step> steps = new ArrayList<>();
+
+        steps.add(new SchemaMigrator.Step(1, "create notes") {
+            @Override
+            void apply(SQLiteDatabase db, SchemaMigrator.SchemaInfo schema) {
+                schema.createTable(db, NotePad.Notes.TABLE_NAME, NotePadSchema.notesTableSql(NotePad.Notes.TABLE_NAME));
+            }
+        });
+
+        steps.add(new SchemaMigrator.Step(2, "add created_time") {
+            @Override
+            void apply(SQLiteDatabase db, SchemaMigrator.SchemaInfo schema) {
+                // ADD COLUMN只允许常量默认值，正确的默认值由第6步重建表时补上
+                schema.addColumn(db, NotePad.Notes.TABLE_NAME, NotePad.Notes.COLUMN_NAME_CREATED_TIME, "INTEGER DEFAULT 0");
+            }
+        });
+
+        steps.add(new SchemaMigrator.Step(3, "add category") {
+            @Override
+            void apply(SQLiteDatabase db, SchemaMigrator.SchemaInfo schema) {
+                schema.addColumn(db, NotePad.Notes.TABLE_NAME, NotePad.Notes.COLUMN_NAME_CATEGORY, "TEXT DEFAULT '默认分类'");
+            }
+        });
+
+        steps.add(new SchemaMigrator.Step(5, "sync columns and tombstones") {
+            @Override
+            void apply(SQLiteDatabase db, SchemaMigrator.SchemaInfo schema) {
+                // 已有笔记的dirty取默认值1，全部视为待上传；uuid和修改时间由后台回填
+                schema.addColumn(db, NotePad.Notes.TABLE_NAME, NotePad.Notes.COLUMN_NAME_MODIFIED_TIME, "INTEGER DEFAULT 0");
+                schema.addColumn(db, NotePad.Notes.TABLE_NAME, NotePad.Notes.COLUMN_NAME_UUID, "TEXT");
+                schema.addColumn(db, NotePad.Notes.TABLE_NAME, NotePad.Notes.COLUMN_NAME_DIRTY, "INTEGER DEFAULT 1");
+                createNotesIndexes(db, schema);
+                schema.createTable(db, NotePad.SyncTombstones.TABLE_NAME, NotePadSchema.TOMBSTONES_TABLE_SQL);
+            }
+
+            @Override
+            SchemaMigrator.Backfill backfill() {
+                return new SchemaMigrator.Backfill() {
+                    @Override
+                    public int runBatch(SQLiteDatabase db, int batchSize) {
+                        SQLiteStatement update = db.compileStatement(NotePadSchema.syncBackfillSql(batchSize));
+                        try {
+                            return update.executeUpdateDelete();
+                        } finally {
+                            update.close();
+                        }
+                    }
+                };
+            }
+        });
+
+        steps.add(new SchemaMigrator.Step(6, "rebuild notes with created_time default") {
+            @Override
+            void apply(SQLiteDatabase db, SchemaMigrator.SchemaInfo schema) {
+                String sql = schema.getTableSql(NotePad.Notes.TABLE_NAME);
+                if (sql != null && sql.contains(NotePadSchema.CREATED_TIME_DEFAULT)) {
+                    return;
+                }
+                // 列默认值只能通过重建表修改
+                String rebuilt = NotePad.Notes.TABLE_NAME + "_rebuild";
+                long sequence = schema.hasTable("sqlite_sequence") ? readSequence(db, NotePad.Notes.TABLE_NAME) : 0;
+                schema.createTable(db, rebuilt, NotePadSchema.notesTableSql(rebuilt));
+                db.execSQL(NotePadSchema.copyNotesSql(NotePad.Notes.TABLE_NAME, rebuilt));
+                schema.dropTable(db, NotePad.Notes.TABLE_NAME);
+                schema.renameTable(db, rebuilt, NotePad.Notes.TABLE_NAME);
+                createNotesIndexes(db, schema);
+                // 保留自增序列，已删除笔记的_id不会被重新分配
+                db.execSQL("UPDATE sqlite_sequence SET seq = MAX(seq, ?) WHERE name = ?",
+                        new Object[]{sequence, NotePad.Notes.TABLE_NAME});
+            }
+        });
+
+        steps.add(new SchemaMigrator.Step(7, "near-duplicate signatures") {
+            @Override
+            void apply(SQLiteDatabase db, SchemaMigrator.SchemaInfo schema) {
+                schema.createTable(db, NotePadSchema.SIGNATURES, NotePadSchema.SIGNATURES_TABLE_SQL);
+                schema.createTable(db, NotePadSchema.LSH_BUCKETS, NotePadSchema.LSH_TABLE_SQL);
+                schema.createIndex(db, NotePadSchema.INDEX_LSH_NOTE, NotePadSchema.LSH_BUCKETS,
+                        NotePadSchema.INDEX_LSH_NOTE_SQL);
+                // 之后若再重建notes表，需在重建的步骤中重新创建这两个触发器
+                db.execSQL(NotePadSchema.TRIGGER_SIMILARITY_DELETE_SQL);
+                db.execSQL(NotePadSchema.TRIGGER_SIMILARITY_UPDATE_SQL);
+            }
+
+            @Override
+            SchemaMigrator.Backfill backfill() {
+                return new NearDuplicates.Backfill();
+            }
+        });
+
+        steps.add(new SchemaMigrator.Step(8, "tags") {
+            @Override
+            void apply(SQLiteDatabase db, SchemaMigrator.SchemaInfo schema) {
+                schema.createTable(db, NotePadSchema.TAGS, NotePadSchema.TAGS_TABLE_SQL);
+                schema.createTable(db, NotePadSchema.NOTE_TAGS, NotePadSchema.NOTE_TAGS_TABLE_SQL);
+                schema.createIndex(db, NotePadSchema.INDEX_NOTE_TAGS_TAG, NotePadSchema.NOTE_TAGS,
+                        NotePadSchema.INDEX_NOTE_TAGS_TAG_SQL);
+                db.execSQL(NotePadSchema.TRIGGER_NOTE_TAGS_DELETE_SQL);
+                db.execSQL(NotePadSchema.TRIGGER_TAG_DELETE_SQL);
+            }
+        });
+
+        steps.add(new SchemaMigrator.Step(9, "wiki links") {
+            @Override
+            void apply(SQLiteDatabase db, SchemaMigrator.SchemaInfo schema) {
+                schema.createTable(db, NotePadSchema.LINKS, NotePadSchema.LINKS_TABLE_SQL);
+                schema.createIndex(db, NotePadSchema.INDEX_LINKS_TARGET, NotePadSchema.LINKS,
+                        NotePadSchema.INDEX_LINKS_TARGET_SQL);
+                schema.createIndex(db, NotePadSchema.INDEX_TITLE, NotePad.Notes.TABLE_NAME,
+                        NotePadSchema.INDEX_TITLE_SQL);
+                db.execSQL(NotePadSchema.TRIGGER_LINKS_DELETE_SQL);
+            }
+
+            @Override
+            SchemaMigrator.Backfill backfill() {
+                return new NoteLinks.Backfill();
+            }
+        });
+
+        steps.add(new SchemaMigrator.Step(10, "pinned notes and manual order") {
+            @Override
+            void apply(SQLiteDatabase db, SchemaMigrator.SchemaInfo schema) {
+                schema.addColumn(db, NotePad.Notes.TABLE_NAME, NotePad.Notes.COLUMN_NAME_PINNED, "INTEGER NOT NULL DEFAULT 0");
+                schema.addColumn(db, NotePad.Notes.TABLE_NAME, NotePad.Notes.COLUMN_NAME_POSITION, "REAL");
+                schema.createIndex(db, NotePadSchema.INDEX_POSITION, NotePad.Notes.TABLE_NAME,
+                        NotePadSchema.INDEX_POSITION_SQL);
+            }
+
+            @Override
+            SchemaMigrator.Backfill backfill() {
+                return new ManualOrder.Backfill();
+            }
+        });
+
+        steps.add(new SchemaMigrator.Step(11, "trash") {
+            @Override
+            void apply(SQLiteDatabase db, SchemaMigrator.SchemaInfo schema) {
+                schema.addColumn(db, NotePad.Notes.TABLE_NAME, NotePad.Notes.COLUMN_NAME_DELETED_TIME, "INTEGER");
+                schema.createIndex(db, NotePadSchema.INDEX_TRASH, NotePad.Notes.TABLE_NAME,
+                        NotePadSchema.INDEX_TRASH_SQL);
+            }
+        });
+
+        steps.add(new SchemaMigrator.Step(12, "revision history") {
+            @Override
+            void apply(SQLiteDatabase db, SchemaMigrator.SchemaInfo schema) {
+                // 当前正文就是最新版本，升级时无需补记；此后每次覆盖正文时记下旧版本（见NoteHistory）
+                schema.createTable(db, NotePadSchema.REVISIONS, NotePadSchema.REVISIONS_TABLE_SQL);
+                schema.createIndex(db, NotePadSchema.INDEX_REVISIONS_NOTE, NotePadSchema.REVISIONS,
+                        NotePadSchema.INDEX_REVISIONS_NOTE_SQL);
+                db.execSQL(NotePadSchema.TRIGGER_REVISIONS_DELETE_SQL);
+            }
+        });
+
+        steps.add(new SchemaMigrator.Step(13, "compressed note bodies") {
+            @Override
+            void apply(SQLiteDatabase db, SchemaMigrator.SchemaInfo schema) {
+                // 已有的长正文由回填压缩；此后写入时压缩（见NoteBodies）
+                schema.addColumn(db, NotePad.Notes.TABLE_NAME, NotePadSchema.NOTE_DATA, "BLOB");
+            }
+
+            @Override
+            SchemaMigrator.Backfill backfill() {
+                return new NoteBodies.Backfill();
+            }
+        });
+
+        steps.add(new SchemaMigrator.Step(14, "backup change sequence") {
+            @Override
+            void apply(SQLiteDatabase db, SchemaMigrator.SchemaInfo schema) {
+                // 已有笔记没有变更记录，升级后的第一次备份为全量（见NoteBackup.createBackup）
+                schema.createTable(db, NotePadSchema.CHANGES, NotePadSchema.CHANGES_TABLE_SQL);
+                db.execSQL(NotePadSchema.TRIGGER_CHANGES_INSERT_SQL);
+                db.execSQL(NotePadSchema.TRIGGER_CHANGES_UPDATE_SQL);
+                db.execSQL(NotePadSchema.TRIGGER_CHANGES_DELETE_SQL);
+            }
+        });
+
+        steps.add(new SchemaMigrator.Step(15, "search terms for compressed bodies") {
+            @Override
+            void apply(SQLiteDatabase db, SchemaMigrator.SchemaInfo schema) {
+                // 已压缩的正文由回填补上检索词；此后写入正文时一并更新（见NoteBodies.index）
+                schema.createTable(db, NotePadSchema.SEARCH_TERMS, NotePadSchema.SEARCH_TERMS_TABLE_SQL);
+                db.execSQL(NotePadSchema.TRIGGER_SEARCH_DELETE_SQL);
+            }
+
+            @Override
+            SchemaMigrator.Backfill backfill() {
+                return new NoteBodies.SearchTermsBackfill();
+            }
+        });
+
+        return steps;
+    }
+
+    private static long readSequence(SQLiteDatabase db, String table) {
+        Cursor c = db.rawQuery("SELECT seq FROM sqlite_sequence WHERE name = ?", new String[]{table});
+        try {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        } finally {
+            c.close();
+        }
+    }
+}
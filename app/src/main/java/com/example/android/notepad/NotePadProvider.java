@@ -1,22 +1,49 @@
 package com.example.android.notepad;
 
-import android.annotation.SuppressLint;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 import android.provider.BaseColumns;
 import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class NotePadProvider extends ContentProvider {
+    private static final String TAG = "NotePadProvider";
+
     // 数据库基础配置
-    private static final String DATABASE_NAME = "NotePad.db";
-    private static final int DATABASE_VERSION = 4; //
+    static final String DATABASE_NAME = "NotePad.db";
+    private static final int DATABASE_VERSION = 15; // v15：压缩正文的检索词
+    private static final SchemaMigrator sMigrator = new SchemaMigrator(NotePadMigrations.steps());
     private static final String TABLE_NOTES = "notes";
 
     // 新增：时间戳字段常量（对应文档要求的时间戳显示，与NotePad.Notes保持一致）
@@ -29,66 +56,117 @@ public class NotePadProvider extends ContentProvider {
     // UriMatcher匹配码
     private static final int NOTES = 1;
     private static final int NOTE_ID = 2;
+    private static final int TOMBSTONES = 3;
+    private static final int EXPORT = 4;
+    private static final int SIMILAR = 5;
+    private static final int DUPLICATES = 6;
+    private static final int TAGS = 7;
+    private static final int TAG_ID = 8;
+    private static final int LINKS = 9;
+    private static final int BACKLINKS = 10;
+    private static final int TRASH = 11;
+    private static final int TRASH_ID = 12;
+    private static final int TRASH_RESTORE = 13;
+    private static final int REVISIONS = 14;
+    private static final int REVISION_ID = 15;
     private static final UriMatcher sUriMatcher;
+    // 匹配码对应的名称，用于统计输出（下标为匹配码）
+    private static final String[] MATCH_NAMES = {
+            "unmatched", "notes", "notes/#", "sync_tombstones", "export", "notes/#/similar", "duplicates",
+            "tags", "tags/#", "notes/#/links", "notes/#/backlinks", "trash", "trash/#", "trash/#/restore",
+            "notes/#/revisions", "notes/#/revisions/#"
+    };
 
     static {
         sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
         // 修复：仅保留与NotePad.Notes.CONTENT_URI匹配的规则，避免重复匹配
         sUriMatcher.addURI(AUTHORITY, NotePad.Notes.TABLE_NAME, NOTES);
         sUriMatcher.addURI(AUTHORITY, NotePad.Notes.TABLE_NAME + "/#", NOTE_ID);
+        sUriMatcher.addURI(AUTHORITY, NotePad.SyncTombstones.TABLE_NAME, TOMBSTONES);
+        sUriMatcher.addURI(AUTHORITY, NotePad.Export.PATH + "/*", EXPORT);
+        sUriMatcher.addURI(AUTHORITY, NotePad.Notes.TABLE_NAME + "/#/" + NotePad.Notes.PATH_SIMILAR, SIMILAR);
+        sUriMatcher.addURI(AUTHORITY, NotePad.Duplicates.PATH, DUPLICATES);
+        sUriMatcher.addURI(AUTHORITY, NotePad.Tags.TABLE_NAME, TAGS);
+        sUriMatcher.addURI(AUTHORITY, NotePad.Tags.TABLE_NAME + "/#", TAG_ID);
+        sUriMatcher.addURI(AUTHORITY, NotePad.Notes.TABLE_NAME + "/#/" + NotePad.Notes.PATH_LINKS, LINKS);
+        sUriMatcher.addURI(AUTHORITY, NotePad.Notes.TABLE_NAME + "/#/" + NotePad.Notes.PATH_BACKLINKS, BACKLINKS);
+        sUriMatcher.addURI(AUTHORITY, NotePad.Trash.PATH, TRASH);
+        sUriMatcher.addURI(AUTHORITY, NotePad.Trash.PATH + "/#", TRASH_ID);
+        sUriMatcher.addURI(AUTHORITY, NotePad.Trash.PATH + "/#/" + NotePad.Trash.PATH_RESTORE, TRASH_RESTORE);
+        sUriMatcher.addURI(AUTHORITY, NotePad.Notes.TABLE_NAME + "/#/" + NotePad.Revisions.PATH, REVISIONS);
+        sUriMatcher.addURI(AUTHORITY, NotePad.Notes.TABLE_NAME + "/#/" + NotePad.Revisions.PATH + "/#", REVISION_ID);
     }
 
     // 数据库帮助类（核心修改：修复表名/字段名引用，避免与NotePad.Notes冲突）
     private static class DatabaseHelper extends SQLiteOpenHelper {
+        // 当前性能参数，每个连接打开时应用
+        private volatile PerformanceProfile mProfile;
+
         public DatabaseHelper(android.content.Context context) {
             super(context, DATABASE_NAME, null, DATABASE_VERSION);
+            mProfile = PerformanceProfile.getDefault(context);
         }
 
         @Override
-        public void onCreate(SQLiteDatabase db) {
+        public void onConfigure(SQLiteDatabase db) {
+            mProfile.apply(db);
+        }
+
+        PerformanceProfile getProfile() {
+            return mProfile;
+        }
+
+        // 切换参数并立即应用到已打开的连接上
+        void setProfile(PerformanceProfile profile) {
+            mProfile = profile;
+            profile.apply(getWritableDatabase());
+        }
 
-            // 确保创建表的SQL语句正确包含所有字段
-            String CREATE_NOTES_TABLE = "CREATE TABLE " + NotePad.Notes.TABLE_NAME + " ("
-                    + BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
-                    + NotePad.Notes.COLUMN_NAME_TITLE + " TEXT NOT NULL, "
-                    + NotePad.Notes.COLUMN_NAME_NOTE + " TEXT, "
-                    + NotePad.Notes.COLUMN_NAME_CREATED_TIME + " INTEGER DEFAULT " + System.currentTimeMillis() + ", "
-                    + NotePad.Notes.COLUMN_NAME_CATEGORY + " TEXT DEFAULT '默认分类'" // 必须包含
-                    + ");";
-            db.execSQL(CREATE_NOTES_TABLE);
+        // 首次打开（含建表/升级）计入启动时间线，之后直接返回已打开的连接
+        private volatile boolean mOpened;
+
+        @Override
+        public SQLiteDatabase getWritableDatabase() {
+            if (mOpened) {
+                return super.getWritableDatabase();
+            }
+            StartupTimeline.coldStart().begin(StartupTimeline.DB_OPEN);
+            try {
+                SQLiteDatabase db = super.getWritableDatabase();
+                mOpened = true;
+                return db;
+            } finally {
+                StartupTimeline.coldStart().end(StartupTimeline.DB_OPEN);
+            }
+        }
+
+        @Override
+        public SQLiteDatabase getReadableDatabase() {
+            // 本库不会以只读方式打开，统一走可写连接以共享计时逻辑
+            return getWritableDatabase();
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            // 新库同样走迁移步骤，第1步直接建出最新结构
+            sMigrator.migrate(db, 0, DATABASE_VERSION);
         }
 
-        @SuppressLint("Range")
         @Override
         public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-            // 升级逻辑：仅在旧版本<2时添加字段，且先检查列是否存在（避免重复）
-            if (oldVersion < 2) {
-                Cursor cursor = db.rawQuery("PRAGMA table_info(" + NotePad.Notes.TABLE_NAME + ")", null);
-                boolean hasTimeColumn = false;
-                while (cursor.moveToNext()) {
-                    if (COLUMN_CREATED_TIME.equals(cursor.getString(cursor.getColumnIndex("name")))) {
-                        hasTimeColumn = true;
-                        break;
-                    }
-                }
-                if (!hasTimeColumn) {
-                    db.execSQL("ALTER TABLE " + NotePad.Notes.TABLE_NAME + " ADD COLUMN " + COLUMN_CREATED_TIME + " INTEGER DEFAULT " + System.currentTimeMillis());
-                }
-                cursor.close();
-            }
-            if (oldVersion < 3) {
-                Cursor cursor = db.rawQuery("PRAGMA table_info(" + NotePad.Notes.TABLE_NAME + ")", null);
-                boolean hasCategoryColumn = false;
-                while (cursor.moveToNext()) {
-                    if (NotePad.Notes.COLUMN_NAME_CATEGORY.equals(cursor.getString(cursor.getColumnIndex("name")))) {
-                        hasCategoryColumn = true;
-                        break;
-                    }
-                }
-                if (!hasCategoryColumn) {
-                    db.execSQL("ALTER TABLE " + NotePad.Notes.TABLE_NAME + " ADD COLUMN " + NotePad.Notes.COLUMN_NAME_CATEGORY + " TEXT DEFAULT '默认分类'");
-                }
-                cursor.close();
+            StartupTimeline.coldStart().begin(StartupTimeline.DB_UPGRADE);
+            try {
+                sMigrator.migrate(db, oldVersion, newVersion);
+            } finally {
+                StartupTimeline.coldStart().end(StartupTimeline.DB_UPGRADE);
+            }
+        }
+
+        @Override
+        public void onOpen(SQLiteDatabase db) {
+            // 结构切换后登记的回填在后台分批执行，数据库此时已可正常查询
+            if (!db.isReadOnly() && sMigrator.hasPendingBackfills(db)) {
+                new Thread(() -> sMigrator.runPendingBackfills(getWritableDatabase()), "SchemaBackfill").start();
             }
         }
     }
@@ -96,16 +174,153 @@ public class NotePadProvider extends ContentProvider {
     // 修复：删除重复的mDbHelper定义，统一使用DatabaseHelper
     private DatabaseHelper mDbHelper;
 
+    // applyBatch与bulkInsert期间推迟的变更通知，提交后合并发出，避免逐行刷新列表；为null时不在批量事务中
+    private final ThreadLocal<Set<Uri>> mBatchChanges = new ThreadLocal<>();
+
+    private final ProviderMetrics mMetrics = new ProviderMetrics(MATCH_NAMES);
+    // 标签的内存位图索引，首次按标签查询时构建
+    private final NoteTags mTags = new NoteTags();
+    // 手动排序的重排正在后台进行
+    private final AtomicBoolean mRebalancing = new AtomicBoolean();
+    private final SlowQueryLog mSlowQueries = new SlowQueryLog();
+
     @Override
     public boolean onCreate() {
-        mDbHelper = new DatabaseHelper(getContext());
+        StartupTimeline.coldStart().begin(StartupTimeline.PROVIDER_CREATE);
+        try {
+            mDbHelper = new DatabaseHelper(getContext());
+        } finally {
+            StartupTimeline.coldStart().end(StartupTimeline.PROVIDER_CREATE);
+        }
         return true;
     }
 
-    // 查询方法（修复：表名引用，确保与DatabaseHelper创建的表一致）
+    // 各入口统一计时：记录延迟、行数与字节数后委托给对应的*Internal方法
     @Override
     public Cursor query(Uri uri, String[] projection, String selection,
                         String[] selectionArgs, String sortOrder) {
+        int match = sUriMatcher.match(uri);
+        long start = SystemClock.elapsedRealtimeNanos();
+        ExecutedQuery executed = new ExecutedQuery();
+        Cursor cursor = queryInternal(uri, projection, selection, selectionArgs, sortOrder, executed);
+        long prepared = SystemClock.elapsedRealtimeNanos();
+        // getCount()触发实际执行与首个CursorWindow的填充，单独计时
+        int rows = cursor != null ? cursor.getCount() : 0;
+        long filled = SystemClock.elapsedRealtimeNanos();
+        long bytes = cursor != null && mMetrics.shouldSampleBytes(match) ? ProviderMetrics.estimateBytes(cursor) : -1;
+        mMetrics.recordQuery(match, filled - start, filled - prepared, rows, bytes);
+        // 记录的是实际执行的语句，EXPLAIN用同一语句和参数；标签计数、版本还原等在Java层组装结果，没有对应语句
+        if (mSlowQueries.isSlow(filled - start) && executed.sql != null) {
+            mSlowQueries.record(mDbHelper.getReadableDatabase(), "query", uri.getPath(), executed.sql, executed.args,
+                    rows, filled - start);
+        }
+        return cursor;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        long bytes = ProviderMetrics.estimateBytes(values);
+        Uri result = insertInternal(uri, values);
+        long nanos = SystemClock.elapsedRealtimeNanos() - start;
+        mMetrics.recordWrite(ProviderMetrics.OP_INSERT, sUriMatcher.match(uri), nanos, result != null ? 1 : 0, bytes);
+        if (mSlowQueries.isSlow(nanos)) {
+            mSlowQueries.record(null, "insert", uri.getPath(), "INSERT INTO " + NotePad.Notes.TABLE_NAME
+                    + " (" + TextUtils.join(", ", values.keySet()) + ")", null, result != null ? 1 : 0, nanos);
+        }
+        return result;
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        long bytes = ProviderMetrics.estimateBytes(values);
+        int rows = updateInternal(uri, values, selection, selectionArgs);
+        long nanos = SystemClock.elapsedRealtimeNanos() - start;
+        int match = sUriMatcher.match(uri);
+        mMetrics.recordWrite(ProviderMetrics.OP_UPDATE, match, nanos, rows, bytes * rows);
+        if (mSlowQueries.isSlow(nanos)) {
+            recordSlow("update", uri, match, selection, selectionArgs, rows, nanos);
+        }
+        return rows;
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        int rows = deleteInternal(uri, selection, selectionArgs);
+        long nanos = SystemClock.elapsedRealtimeNanos() - start;
+        int match = sUriMatcher.match(uri);
+        mMetrics.recordWrite(ProviderMetrics.OP_DELETE, match, nanos, rows, -1);
+        if (mSlowQueries.isSlow(nanos)) {
+            recordSlow("delete", uri, match, selection, selectionArgs, rows, nanos);
+        }
+        return rows;
+    }
+
+    // 写操作按匹配码还原为同一WHERE的SELECT交给慢查询记录；查询直接记录queryInternal执行的语句
+    private void recordSlow(String op, Uri uri, int match, String selection, String[] selectionArgs,
+                            long rows, long nanos) {
+        String table;
+        switch (match) {
+            case NOTES:
+                table = NotePad.Notes.TABLE_NAME;
+                break;
+            case NOTE_ID:
+                table = NotePad.Notes.TABLE_NAME;
+                selection = TextUtils.isEmpty(selection) ?
+                        NotePad.Notes._ID + " = ?" :
+                        selection + " AND " + NotePad.Notes._ID + " = ?";
+                selectionArgs = appendArray(selectionArgs, uri.getLastPathSegment());
+                break;
+            case TOMBSTONES:
+                table = NotePad.SyncTombstones.TABLE_NAME;
+                break;
+            default:
+                return;
+        }
+        String sql = SQLiteQueryBuilder.buildQueryString(false, table, new String[]{"rowid"},
+                selection, null, null, null, null);
+        mSlowQueries.record(mDbHelper.getReadableDatabase(), op, uri.getPath(), sql, selectionArgs, rows, nanos);
+    }
+
+    // dumpsys activity provider com.example.android.notepad/.NotePadProvider
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println("Performance profile: " + mDbHelper.getProfile());
+        mMetrics.dump(writer);
+        mSlowQueries.dump(writer);
+        SearchIndexManager.get(getContext()).dump(writer);
+        mTags.dump(writer);
+    }
+
+    /**
+     * queryInternal实际执行的主查询：展开计算列后的投影，合并了URI筛选参数、标签、回收站与关键字条件的
+     * selection及其参数，排序和条数限制。慢查询记录与EXPLAIN QUERY PLAN都用这条语句，
+     * 而不是调用方传入的原始投影与条件（其中的摘要、标签等计算列在表中并不存在）。
+     * 相关度排序记录候选查询，按id取回名次行的查询不记录。
+     */
+    static final class ExecutedQuery {
+        String sql;
+        String[] args;
+
+        Cursor query(SQLiteDatabase db, String table, String[] columns, String selection, String[] selectionArgs,
+                     String orderBy, String limit) {
+            sql = SQLiteQueryBuilder.buildQueryString(false, table, columns, selection, null, null, orderBy, limit);
+            args = selectionArgs;
+            return db.query(table, columns, selection, selectionArgs, null, null, orderBy, limit);
+        }
+
+        Cursor rawQuery(SQLiteDatabase db, String rawSql, String[] selectionArgs) {
+            sql = rawSql;
+            args = selectionArgs;
+            return db.rawQuery(rawSql, selectionArgs);
+        }
+    }
+
+    // 查询方法（修复：表名引用，确保与DatabaseHelper创建的表一致）；executed记下实际执行的语句
+    private Cursor queryInternal(Uri uri, String[] projection, String selection,
+                                 String[] selectionArgs, String sortOrder, ExecutedQuery executed) {
         SQLiteDatabase db = mDbHelper.getReadableDatabase();
         Cursor cursor;
 
@@ -114,19 +329,49 @@ public class NotePadProvider extends ContentProvider {
         // 处理URI匹配（修复：表名使用NotePad.Notes.TABLE_NAME，避免硬编码错误）
         switch (matchCode) {
             case NOTES:
+                // URI上的筛选参数与调用方的selection同时生效；有关键字时投影可包含摘要等计算列
+                NoteFilter filter = NoteFilter.fromUri(uri);
+                if (filter.category != null) {
+                    String categorySelection = NotePadSchema.filterSelection(null, filter.category);
+                    selection = TextUtils.isEmpty(selection) ? categorySelection
+                            : "(" + categorySelection + ") AND (" + selection + ")";
+                    selectionArgs = concatArrays(NotePadSchema.filterArgs(null, filter.category), selectionArgs);
+                }
+                // 标签条件由位图索引算出笔记id，不带绑定参数
+                String tagSelection = mTags.selection(db, tagParam(uri, NotePad.Notes.PARAM_TAGS_ALL),
+                        tagParam(uri, NotePad.Notes.PARAM_TAGS_ANY), tagParam(uri, NotePad.Notes.PARAM_TAGS_NONE));
+                if (tagSelection != null) {
+                    selection = TextUtils.isEmpty(selection) ? tagSelection
+                            : tagSelection + " AND (" + selection + ")";
+                }
+                selection = liveSelection(uri, selection);
+                // 关键字条件最后加上：压缩存储的正文在note列中只有开头，其余部分在检索表中查找，不解压
+                if (filter.keyword != null) {
+                    selection = TextUtils.isEmpty(selection) ? NotePadSchema.KEYWORD_SELECTION
+                            : NotePadSchema.KEYWORD_SELECTION + " AND (" + selection + ")";
+                    selectionArgs = concatArrays(NotePadSchema.filterArgs(filter.keyword, null), selectionArgs);
+                }
+                int limit = parseLimit(uri);
+                if (filter.keyword != null
+                        && NotePad.Notes.ORDER_RANKED.equals(uri.getQueryParameter(NotePad.Notes.PARAM_ORDER))) {
+                    cursor = queryRanked(db, projection, filter.keyword, selection, selectionArgs,
+                            limit > 0 ? limit : NoteRanker.DEFAULT_LIMIT, executed);
+                    break;
+                }
                 // 按实验要求：默认按创建时间倒序（使用NotePad.Notes的排序常量）
                 if (sortOrder == null || sortOrder.trim().isEmpty()) {
                     sortOrder = NotePad.Notes.DEFAULT_SORT_ORDER;
                 }
-                cursor = db.query(
+                // 压缩行的摘要在读取返回的行时才按完整正文算出
+                cursor = NoteBodies.wrap(executed.query(
+                        db,
                         NotePad.Notes.TABLE_NAME,
-                        projection,
+                        NotePadSchema.expandSearchColumns(projection, filter.keyword),
                         selection,
                         selectionArgs,
-                        null,
-                        null,
-                        sortOrder
-                );
+                        sortOrder,
+                        limit > 0 ? String.valueOf(limit) : null
+                ), filter.keyword);
                 break;
             case NOTE_ID:
                 // 补充单条笔记查询逻辑，避免匹配失败
@@ -137,27 +382,341 @@ public class NotePadProvider extends ContentProvider {
                 selectionArgs = (selectionArgs == null || selectionArgs.length == 0) ?
                         new String[]{noteId} :
                         appendArray(selectionArgs, noteId);
-                cursor = db.query(
+                cursor = executed.query(
+                        db,
                         NotePad.Notes.TABLE_NAME,
+                        NotePadSchema.expandSearchColumns(projection, null),
+                        liveSelection(uri, selection),
+                        selectionArgs,
+                        sortOrder,
+                        null
+                );
+                break;
+            case TOMBSTONES:
+                cursor = executed.query(
+                        db,
+                        NotePad.SyncTombstones.TABLE_NAME,
                         projection,
                         selection,
                         selectionArgs,
-                        null,
-                        null,
-                        sortOrder
+                        sortOrder,
+                        null
                 );
                 break;
+            case SIMILAR:
+                long similarTo = Long.parseLong(uri.getPathSegments().get(1));
+                NearDuplicates.Result similar = NearDuplicates.similar(db, similarTo);
+                Object[] similarities = new Object[similar.ids.length];
+                for (int i = 0; i < similarities.length; i++) {
+                    similarities[i] = similar.similarities[i];
+                }
+                cursor = rowsInOrder(db, projection, null, null, liveSelection(uri, selection), selectionArgs,
+                        similar.ids, Collections.singletonMap(NotePad.Notes.COLUMN_NAME_SIMILARITY, similarities),
+                        executed);
+                break;
+            case DUPLICATES:
+                cursor = queryDuplicates(db, projection, liveSelection(uri, selection), selectionArgs, executed);
+                break;
+            case TAGS:
+                cursor = queryTags(db, uri, projection);
+                break;
+            case LINKS:
+            case BACKLINKS:
+                // 两个方向都是索引查找：出链按来源查note_links主键再按标题索引找笔记，反向链接按目标标题索引
+                String linkSelection = matchCode == LINKS
+                        ? NotePadSchema.OUTGOING_LINKS_SELECTION : NotePadSchema.BACKLINKS_SELECTION;
+                selection = liveSelection(uri, selection);
+                cursor = executed.query(
+                        db,
+                        NotePad.Notes.TABLE_NAME,
+                        NotePadSchema.expandSearchColumns(projection, null),
+                        TextUtils.isEmpty(selection) ? linkSelection : linkSelection + " AND (" + selection + ")",
+                        concatArrays(new String[]{uri.getPathSegments().get(1)}, selectionArgs),
+                        TextUtils.isEmpty(sortOrder) ? NotePad.Notes.DEFAULT_SORT_ORDER : sortOrder,
+                        null
+                );
+                break;
+            case TRASH:
+            case TRASH_ID:
+                // 走notes_trash部分索引，只读回收站中的行
+                cursor = executed.query(
+                        db,
+                        NotePad.Notes.TABLE_NAME,
+                        NotePadSchema.expandSearchColumns(projection, null),
+                        trashSelection(matchCode, selection),
+                        trashSelectionArgs(uri, matchCode, selectionArgs),
+                        TextUtils.isEmpty(sortOrder) ? NotePad.Trash.DEFAULT_SORT_ORDER : sortOrder,
+                        null
+                );
+                break;
+            case REVISIONS:
+                // 列表只读各版本的元数据，不读也不还原正文
+                selection = TextUtils.isEmpty(selection) ? NotePadSchema.REVISIONS_OF_SELECTION
+                        : NotePadSchema.REVISIONS_OF_SELECTION + " AND (" + selection + ")";
+                cursor = executed.query(
+                        db,
+                        NotePadSchema.REVISIONS,
+                        projection != null ? projection : NotePadSchema.REVISION_LIST_PROJECTION,
+                        selection,
+                        concatArrays(new String[]{uri.getPathSegments().get(1)}, selectionArgs),
+                        TextUtils.isEmpty(sortOrder) ? NotePadSchema.REVISION_SORT_ORDER : sortOrder,
+                        null
+                );
+                break;
+            case REVISION_ID:
+                cursor = queryRevision(db, uri, projection);
+                break;
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri + ", matchCode: " + matchCode);
         }
+        // 投影含正文列时带出的note_data列在此隐去，读取正文时才解压
+        cursor = NoteBodies.wrap(cursor);
 
-        // 设置通知URI（确保列表数据实时更新）
+        // 设置通知URI（确保列表数据实时更新）；相似笔记、重复组、标签计数与链接随任何一篇笔记的变化而变化；
+        // 回收站的变化（移入、恢复、彻底删除）都通知到trash；版本历史随该笔记的保存而变化
         if (getContext() != null && cursor != null) {
-            cursor.setNotificationUri(getContext().getContentResolver(), uri);
+            Uri notificationUri = uri;
+            if (matchCode == SIMILAR || matchCode == DUPLICATES || matchCode == TAGS
+                    || matchCode == LINKS || matchCode == BACKLINKS) {
+                notificationUri = NotePad.Notes.CONTENT_URI;
+            } else if (matchCode == TRASH || matchCode == TRASH_ID) {
+                notificationUri = NotePad.Trash.CONTENT_URI;
+            } else if (matchCode == REVISIONS || matchCode == REVISION_ID) {
+                notificationUri = ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI,
+                        Long.parseLong(uri.getPathSegments().get(1)));
+            }
+            cursor.setNotificationUri(getContext().getContentResolver(), notificationUri);
         }
         return cursor;
     }
 
+    // 回收站中的笔记不出现在notes的查询中；同步引擎按uuid与远端对账，它的查询包含全部笔记
+    private static String liveSelection(Uri uri, String selection) {
+        return isSyncAdapter(uri) ? selection : NotePadSchema.liveSelection(selection);
+    }
+
+    // trash与trash/#的条件：回收站中的笔记，trash/#再限定id（参数排在调用方的参数之前）
+    private static String trashSelection(int match, String selection) {
+        String trash = match == TRASH_ID
+                ? NotePadSchema.TRASH_SELECTION + " AND " + NotePad.Notes._ID + " = ?" : NotePadSchema.TRASH_SELECTION;
+        return TextUtils.isEmpty(selection) ? trash : trash + " AND (" + selection + ")";
+    }
+
+    private static String[] trashSelectionArgs(Uri uri, int match, String[] selectionArgs) {
+        return match == TRASH_ID ? concatArrays(new String[]{uri.getPathSegments().get(1)}, selectionArgs)
+                : selectionArgs;
+    }
+
+    // notes/#/revisions/#：还原出的一个版本，投影可含列表的各列和正文列；版本不属于该笔记时返回空游标
+    private static Cursor queryRevision(SQLiteDatabase db, Uri uri, String[] projection) {
+        long noteId = Long.parseLong(uri.getPathSegments().get(1));
+        long revisionId = Long.parseLong(uri.getLastPathSegment());
+        String[] columns = projection != null ? projection
+                : concatArrays(NotePadSchema.REVISION_LIST_PROJECTION,
+                new String[]{NotePad.Revisions.COLUMN_NAME_NOTE});
+        MatrixCursor cursor = new MatrixCursor(columns, 1);
+        String text = NoteHistory.reconstruct(db, noteId, revisionId);
+        if (text == null) {
+            return cursor;
+        }
+        Cursor meta = db.query(NotePadSchema.REVISIONS, NotePadSchema.REVISION_LIST_PROJECTION,
+                NotePadSchema.ID + " = ?", new String[]{String.valueOf(revisionId)}, null, null, null);
+        try {
+            if (!meta.moveToFirst()) {
+                return cursor;
+            }
+            Object[] row = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                if (NotePad.Revisions.COLUMN_NAME_NOTE.equals(columns[i])) {
+                    row[i] = text;
+                } else {
+                    row[i] = columnValue(meta, meta.getColumnIndexOrThrow(columns[i]));
+                }
+            }
+            cursor.addRow(row);
+        } finally {
+            meta.close();
+        }
+        return cursor;
+    }
+
+    private static List<String> tagParam(Uri uri, String name) {
+        return TagIndex.parseNames(uri.getQueryParameter(name));
+    }
+
+    // 标签及其笔记数，URI带标签条件时只计满足条件的笔记
+    private Cursor queryTags(SQLiteDatabase db, Uri uri, String[] projection) {
+        List<TagIndex.TagCount> counts = mTags.counts(db, tagParam(uri, NotePad.Notes.PARAM_TAGS_ALL),
+                tagParam(uri, NotePad.Notes.PARAM_TAGS_ANY), tagParam(uri, NotePad.Notes.PARAM_TAGS_NONE));
+        String[] columns = projection != null ? projection : new String[]{
+                NotePad.Tags._ID, NotePad.Tags.COLUMN_NAME_NAME, NotePad.Tags.COLUMN_NAME_NOTE_COUNT};
+        MatrixCursor cursor = new MatrixCursor(columns, counts.size());
+        for (TagIndex.TagCount count : counts) {
+            Object[] row = new Object[columns.length];
+            for (int c = 0; c < columns.length; c++) {
+                if (NotePad.Tags._ID.equals(columns[c])) {
+                    row[c] = count.tagId;
+                } else if (NotePad.Tags.COLUMN_NAME_NAME.equals(columns[c])) {
+                    row[c] = count.name;
+                } else if (NotePad.Tags.COLUMN_NAME_NOTE_COUNT.equals(columns[c])) {
+                    row[c] = count.count;
+                } else {
+                    throw new IllegalArgumentException("Unknown column: " + columns[c]);
+                }
+            }
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    private static int parseLimit(Uri uri) {
+        String limit = uri.getQueryParameter(NotePad.Notes.PARAM_LIMIT);
+        if (limit == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(limit);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid limit: " + uri);
+        }
+    }
+
+    /**
+     * 相关度排序的搜索：候选查询只取长度和命中次数，在Java层打分并选出前limit名，
+     * 再按id取回这些行的完整投影，按名次组装成游标。executed记下候选查询。
+     */
+    private Cursor queryRanked(SQLiteDatabase db, String[] projection, String keyword,
+                               String selection, String[] selectionArgs, int limit, ExecutedQuery executed) {
+        NoteRanker ranker;
+        Cursor candidates = executed.rawQuery(db, NoteRanker.candidateSql(selection),
+                NoteRanker.candidateArgs(keyword, selectionArgs));
+        try {
+            ranker = new NoteRanker(System.currentTimeMillis(), candidates.getCount());
+            while (candidates.moveToNext()) {
+                ranker.add(candidates.getLong(NoteRanker.COLUMN_ID),
+                        candidates.getLong(NoteRanker.COLUMN_CREATED_TIME),
+                        candidates.getInt(NoteRanker.COLUMN_TITLE_LENGTH),
+                        candidates.getInt(NoteRanker.COLUMN_BODY_LENGTH),
+                        candidates.getInt(NoteRanker.COLUMN_TITLE_HITS),
+                        candidates.getInt(NoteRanker.COLUMN_BODY_HITS));
+            }
+        } finally {
+            candidates.close();
+        }
+        return rowsInOrder(db, projection, keyword, null, null, ranker.top(limit),
+                Collections.<String, Object[]>emptyMap(), null);
+    }
+
+    // 近似重复组展开为每篇笔记一行，组号从1开始
+    private static Cursor queryDuplicates(SQLiteDatabase db, String[] projection,
+                                          String selection, String[] selectionArgs, ExecutedQuery executed) {
+        NearDuplicates.Groups groups = NearDuplicates.groups(db);
+        int total = 0;
+        for (long[] group : groups.groups) {
+            total += group.length;
+        }
+        long[] ids = new long[total];
+        Object[] groupIds = new Object[total];
+        Object[] similarities = new Object[total];
+        int n = 0;
+        for (int g = 0; g < groups.groups.size(); g++) {
+            for (long id : groups.groups.get(g)) {
+                ids[n] = id;
+                groupIds[n] = (long) g + 1;
+                similarities[n] = groups.similarities[g];
+                n++;
+            }
+        }
+        Map<String, Object[]> virtualColumns = new HashMap<>();
+        virtualColumns.put(NotePad.Duplicates.COLUMN_NAME_GROUP, groupIds);
+        virtualColumns.put(NotePad.Duplicates.COLUMN_NAME_SIMILARITY, similarities);
+        return rowsInOrder(db, projection, null, selection, selectionArgs, ids, virtualColumns, executed);
+    }
+
+    /**
+     * 按给定的id顺序取回笔记，组装成游标。virtualColumns为不在表中的列，值按ids的下标给出；
+     * selection可进一步筛掉部分行，取回前已被删除的行同样跳过。keyword用于展开摘要等计算列。
+     * executed不为null时记下取回这些行的查询。
+     */
+    private static Cursor rowsInOrder(SQLiteDatabase db, String[] projection, String keyword,
+                                      String selection, String[] selectionArgs, long[] ids,
+                                      Map<String, Object[]> virtualColumns, ExecutedQuery executed) {
+        // 投影中的虚拟列不进查询；没有_id时追加在末尾用于定位名次，结果游标不包含它
+        String[] queryProjection = null;
+        if (projection != null) {
+            List<String> stored = new ArrayList<>(projection.length + 1);
+            for (String column : projection) {
+                if (!virtualColumns.containsKey(column)) {
+                    stored.add(column);
+                }
+            }
+            if (!stored.contains(NotePad.Notes._ID)) {
+                stored.add(NotePad.Notes._ID);
+            }
+            queryProjection = stored.toArray(new String[stored.size()]);
+        }
+        queryProjection = NotePadSchema.expandSearchColumns(queryProjection, keyword);
+        // id直接写进IN列表，不受绑定参数个数上限的限制
+        StringBuilder in = new StringBuilder(NotePad.Notes._ID).append(" IN (");
+        for (int i = 0; i < ids.length; i++) {
+            in.append(i > 0 ? "," : "").append(ids[i]);
+        }
+        in.append(')');
+        if (!TextUtils.isEmpty(selection)) {
+            in.append(" AND (").append(selection).append(')');
+        }
+        if (executed == null) {
+            executed = new ExecutedQuery();
+        }
+        Cursor rows = NoteBodies.wrap(executed.query(db, NotePad.Notes.TABLE_NAME, queryProjection, in.toString(),
+                selectionArgs, null, null), keyword);
+        try {
+            String[] columns = projection != null ? projection : rows.getColumnNames();
+            int[] sources = new int[columns.length];
+            for (int c = 0; c < columns.length; c++) {
+                sources[c] = virtualColumns.containsKey(columns[c]) ? -1 : rows.getColumnIndexOrThrow(columns[c]);
+            }
+            int idColumn = rows.getColumnIndexOrThrow(NotePad.Notes._ID);
+            Map<Long, Integer> ranks = new HashMap<>(ids.length * 2);
+            for (int i = 0; i < ids.length; i++) {
+                ranks.put(ids[i], i);
+            }
+            Object[][] ordered = new Object[ids.length][];
+            while (rows.moveToNext()) {
+                int rank = ranks.get(rows.getLong(idColumn));
+                Object[] row = new Object[columns.length];
+                for (int c = 0; c < columns.length; c++) {
+                    row[c] = sources[c] >= 0 ? columnValue(rows, sources[c]) : virtualColumns.get(columns[c])[rank];
+                }
+                ordered[rank] = row;
+            }
+            MatrixCursor result = new MatrixCursor(columns, ids.length);
+            for (Object[] row : ordered) {
+                if (row != null) {
+                    result.addRow(row);
+                }
+            }
+            return result;
+        } finally {
+            rows.close();
+        }
+    }
+
+    private static Object columnValue(Cursor cursor, int column) {
+        switch (cursor.getType(column)) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(column);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return cursor.getDouble(column);
+            case Cursor.FIELD_TYPE_STRING:
+                return cursor.getString(column);
+            case Cursor.FIELD_TYPE_BLOB:
+                return cursor.getBlob(column);
+            default:
+                return null;
+        }
+    }
+
     @Override
     public String getType(Uri uri) {
         switch (sUriMatcher.match(uri)) {
@@ -165,14 +724,37 @@ public class NotePadProvider extends ContentProvider {
                 return "vnd.android.cursor.dir/vnd.com.example.android.notepad.note";
             case NOTE_ID:
                 return "vnd.android.cursor.item/vnd.com.example.android.notepad.note";
+            case TOMBSTONES:
+                return "vnd.android.cursor.dir/vnd.com.example.android.notepad.tombstone";
+            case SIMILAR:
+            case DUPLICATES:
+            case LINKS:
+            case BACKLINKS:
+            case TRASH:
+                return "vnd.android.cursor.dir/vnd.com.example.android.notepad.note";
+            case TRASH_ID:
+                return "vnd.android.cursor.item/vnd.com.example.android.notepad.note";
+            case REVISIONS:
+                return "vnd.android.cursor.dir/vnd.com.example.android.notepad.revision";
+            case REVISION_ID:
+                return "vnd.android.cursor.item/vnd.com.example.android.notepad.revision";
+            case TAGS:
+                return "vnd.android.cursor.dir/vnd.com.example.android.notepad.tag";
+            case TAG_ID:
+                return "vnd.android.cursor.item/vnd.com.example.android.notepad.tag";
+            case EXPORT:
+                String mimeType = NoteExporter.getMimeType(uri.getLastPathSegment());
+                if (mimeType == null) {
+                    throw new IllegalArgumentException("Unknown export format: " + uri);
+                }
+                return mimeType;
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
     }
 
     // 插入方法（修复：表名引用，自动添加时间戳）
-    @Override
-    public Uri insert(Uri uri, ContentValues values) {
+    private Uri insertInternal(Uri uri, ContentValues values) {
         if (sUriMatcher.match(uri) != NOTES) {
             throw new IllegalArgumentException("Unknown URI: " + uri);
         }
@@ -181,26 +763,68 @@ public class NotePadProvider extends ContentProvider {
         if (!values.containsKey(NotePad.Notes.COLUMN_NAME_CREATED_TIME)) {
             values.put(NotePad.Notes.COLUMN_NAME_CREATED_TIME, System.currentTimeMillis());
         }
+        if (!values.containsKey(NotePad.Notes.COLUMN_NAME_UUID)) {
+            values.put(NotePad.Notes.COLUMN_NAME_UUID, UUID.randomUUID().toString().replace("-", ""));
+        }
+        markLocalChange(uri, values);
+        List<String> tags = takeTags(values);
 
         SQLiteDatabase db = mDbHelper.getWritableDatabase();
-        long rowId = db.insert(NotePad.Notes.TABLE_NAME, null, values);
+        long rowId;
+        boolean success = false;
+        // 签名、链接、标签与笔记在同一事务中写入
+        db.beginTransaction();
+        try {
+            // 新笔记排在所在组的最前面
+            if (!values.containsKey(NotePad.Notes.COLUMN_NAME_POSITION)) {
+                Integer pinned = values.getAsInteger(NotePad.Notes.COLUMN_NAME_PINNED);
+                values.put(NotePad.Notes.COLUMN_NAME_POSITION,
+                        ManualOrder.topPosition(db, pinned != null && pinned != 0));
+            }
+            ContentValues encoded = NoteBodies.encode(values);
+            rowId = db.insert(NotePad.Notes.TABLE_NAME, null, encoded);
+            if (rowId > 0) {
+                // 新笔记没有旧的检索词，只有压缩存储时需要写入
+                if (encoded.get(NotePadSchema.NOTE_DATA) != null) {
+                    NoteBodies.index(db, new long[]{rowId}, values, encoded);
+                }
+                NearDuplicates.refresh(db, new long[]{rowId});
+                NoteLinks.refresh(db, new long[]{rowId});
+                if (tags != null) {
+                    mTags.write(db, new long[]{rowId}, tags);
+                }
+            }
+            db.setTransactionSuccessful();
+            success = true;
+        } finally {
+            db.endTransaction();
+            if (!success) {
+                mTags.invalidate();
+            }
+        }
         if (rowId > 0) {
             Uri noteUri = ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, rowId);
-            getContext().getContentResolver().notifyChange(noteUri, null);
+            notifyChange(noteUri);
+            // 同步拉取的笔记在远端已移入回收站
+            if (values.getAsLong(NotePad.Notes.COLUMN_NAME_DELETED_TIME) != null) {
+                notifyChange(NotePad.Trash.CONTENT_URI);
+            }
             return noteUri;
         }
 
         return null;
     }
 
-    @Override
-    public int delete(Uri uri, String selection, String[] selectionArgs) {
+    private int deleteInternal(Uri uri, String selection, String[] selectionArgs) {
         SQLiteDatabase db = mDbHelper.getWritableDatabase();
         int rowsDeleted;
+        int match = sUriMatcher.match(uri);
 
-        switch (sUriMatcher.match(uri)) {
+        // 本地删除笔记只是移入回收站；同步引擎的删除来自远端，直接删除
+        switch (match) {
             case NOTES:
-                rowsDeleted = db.delete(NotePad.Notes.TABLE_NAME, selection, selectionArgs);
+                rowsDeleted = isSyncAdapter(uri) ? deleteNotes(db, uri, selection, selectionArgs)
+                        : trashNotes(db, uri, selection, selectionArgs);
                 break;
             case NOTE_ID:
                 String id = uri.getLastPathSegment();
@@ -208,24 +832,38 @@ public class NotePadProvider extends ContentProvider {
                         NotePad.Notes._ID + " = ?" :
                         selection + " AND " + NotePad.Notes._ID + " = ?";
                 selectionArgs = appendArray(selectionArgs, id);
-                rowsDeleted = db.delete(NotePad.Notes.TABLE_NAME, selection, selectionArgs);
+                rowsDeleted = isSyncAdapter(uri) ? deleteNotes(db, uri, selection, selectionArgs)
+                        : trashNotes(db, uri, selection, selectionArgs);
+                break;
+            case TRASH:
+            case TRASH_ID:
+                rowsDeleted = deleteNotes(db, uri, trashSelection(match, selection),
+                        trashSelectionArgs(uri, match, selectionArgs));
+                break;
+            case TOMBSTONES:
+                rowsDeleted = db.delete(NotePad.SyncTombstones.TABLE_NAME, selection, selectionArgs);
+                break;
+            case TAG_ID:
+                rowsDeleted = mTags.deleteTag(db, Long.parseLong(uri.getLastPathSegment()));
+                // 按标签筛选的列表与标签计数都注册在notes上
+                notifyChange(NotePad.Notes.CONTENT_URI);
                 break;
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
 
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
         return rowsDeleted;
     }
 
-    @Override
-    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+    private int updateInternal(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
         SQLiteDatabase db = mDbHelper.getWritableDatabase();
         int rowsUpdated;
+        markLocalChange(uri, values);
 
         switch (sUriMatcher.match(uri)) {
             case NOTES:
-                rowsUpdated = db.update(NotePad.Notes.TABLE_NAME, values, selection, selectionArgs);
+                rowsUpdated = updateNotes(db, uri, values, selection, selectionArgs);
                 break;
             case NOTE_ID:
                 String id = uri.getLastPathSegment();
@@ -233,16 +871,455 @@ public class NotePadProvider extends ContentProvider {
                         NotePad.Notes._ID + " = ?" :
                         selection + " AND " + NotePad.Notes._ID + " = ?";
                 selectionArgs = appendArray(selectionArgs, id);
-                rowsUpdated = db.update(NotePad.Notes.TABLE_NAME, values, selection, selectionArgs);
+                rowsUpdated = updateNotes(db, uri, values, selection, selectionArgs);
+                break;
+            case TRASH_RESTORE:
+                rowsUpdated = restoreNote(db, Long.parseLong(uri.getPathSegments().get(1)));
                 break;
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
 
-        getContext().getContentResolver().notifyChange(uri, null);
+        // 同步引擎拉取的回收站状态：移入或恢复都改变标签索引覆盖的笔记，索引重建，回收站列表一并刷新
+        if (rowsUpdated > 0 && values.containsKey(NotePad.Notes.COLUMN_NAME_DELETED_TIME)) {
+            mTags.invalidate();
+            notifyChange(NotePad.Trash.CONTENT_URI);
+        }
+        notifyChange(uri);
         return rowsUpdated;
     }
 
+    // 标题或内容变化时在同一事务中重算签名，内容变化时更新出链并把旧正文记入版本历史，带标签列时替换标签；
+    // 本地改名时一并改写其他笔记中指向旧标题的链接（同步引擎的改名不改写，被改写的笔记会随同步到来）。
+    // 受影响的id在更新前取出，更新后条件可能不再匹配
+    private int updateNotes(SQLiteDatabase db, Uri uri, ContentValues values, String selection,
+                            String[] selectionArgs) {
+        List<String> tags = takeTags(values);
+        String newTitle = values.getAsString(NotePad.Notes.COLUMN_NAME_TITLE);
+        boolean renamed = newTitle != null && !isSyncAdapter(uri);
+        boolean bodyChanged = values.containsKey(NotePad.Notes.COLUMN_NAME_NOTE);
+        boolean contentChanged = values.containsKey(NotePad.Notes.COLUMN_NAME_TITLE) || bodyChanged;
+        if (!contentChanged && tags == null) {
+            return db.update(NotePad.Notes.TABLE_NAME, values, selection, selectionArgs);
+        }
+        boolean success = false;
+        int count;
+        long[] rewritten = new long[0];
+        db.beginTransaction();
+        try {
+            // 正文变化时一并取出旧正文与修改时间，更新后记为历史版本
+            String[] columns = bodyChanged
+                    ? new String[]{NotePad.Notes._ID, NotePad.Notes.COLUMN_NAME_TITLE, NotePad.Notes.COLUMN_NAME_NOTE,
+                    NotePad.Notes.COLUMN_NAME_MODIFIED_TIME, NotePadSchema.NOTE_DATA}
+                    : new String[]{NotePad.Notes._ID, NotePad.Notes.COLUMN_NAME_TITLE};
+            Cursor c = NoteBodies.wrap(db.query(NotePad.Notes.TABLE_NAME, columns, selection, selectionArgs,
+                    null, null, null));
+            long[] ids;
+            String[] oldTitles;
+            String[] oldBodies = null;
+            long[] oldTimes = null;
+            try {
+                ids = new long[c.getCount()];
+                oldTitles = new String[ids.length];
+                if (bodyChanged) {
+                    oldBodies = new String[ids.length];
+                    oldTimes = new long[ids.length];
+                }
+                for (int i = 0; c.moveToNext(); i++) {
+                    ids[i] = c.getLong(0);
+                    oldTitles[i] = c.getString(1);
+                    if (bodyChanged) {
+                        oldBodies[i] = c.getString(2);
+                        oldTimes[i] = c.getLong(3);
+                    }
+                }
+            } finally {
+                c.close();
+            }
+            // 压缩前取出完整的新正文，记入历史时作为差量的起点
+            String newBody = values.getAsString(NotePad.Notes.COLUMN_NAME_NOTE);
+            // 同步引擎只改标签时没有其他列需要更新
+            ContentValues encoded = NoteBodies.encode(values);
+            count = values.size() > 0
+                    ? db.update(NotePad.Notes.TABLE_NAME, encoded, selection, selectionArgs)
+                    : ids.length;
+            if (bodyChanged) {
+                NoteBodies.index(db, ids, values, encoded);
+                long now = System.currentTimeMillis();
+                for (int i = 0; i < ids.length; i++) {
+                    NoteHistory.record(db, ids[i], oldTitles[i], oldBodies[i], oldTimes[i], newBody, now);
+                }
+                NoteLinks.refresh(db, ids);
+            }
+            if (renamed) {
+                for (String oldTitle : oldTitles) {
+                    rewritten = concat(rewritten, NoteLinks.rename(db, oldTitle, newTitle));
+                }
+            }
+            if (contentChanged) {
+                NearDuplicates.refresh(db, concat(ids, rewritten));
+            }
+            if (tags != null) {
+                mTags.write(db, ids, tags);
+            }
+            db.setTransactionSuccessful();
+            success = true;
+        } finally {
+            db.endTransaction();
+            if (!success) {
+                mTags.invalidate();
+            }
+        }
+        // 正文被改写的笔记逐条通知，搜索索引只重新索引这些行
+        for (long id : rewritten) {
+            notifyChange(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, id));
+        }
+        return count;
+    }
+
+    private static long[] concat(long[] first, long[] second) {
+        if (second.length == 0) {
+            return first;
+        }
+        long[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    // 取出ContentValues中的标签列表：标签列不在notes表中，不能随其余列写入；没有该列时返回null
+    private static List<String> takeTags(ContentValues values) {
+        if (!values.containsKey(NotePad.Notes.COLUMN_NAME_TAGS)) {
+            return null;
+        }
+        String tags = values.getAsString(NotePad.Notes.COLUMN_NAME_TAGS);
+        values.remove(NotePad.Notes.COLUMN_NAME_TAGS);
+        return TagIndex.parseNames(tags);
+    }
+
+    // 批量插入：整批在一个事务中写入，结束后只发一次变更通知
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        if (sUriMatcher.match(uri) != NOTES) {
+            throw new IllegalArgumentException("Unknown URI: " + uri);
+        }
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        int count = 0;
+        boolean success = false;
+        Set<Uri> changes = new HashSet<>();
+        mBatchChanges.set(changes);
+        db.beginTransaction();
+        try {
+            for (ContentValues v : values) {
+                if (insert(uri, v) != null) {
+                    count++;
+                }
+            }
+            db.setTransactionSuccessful();
+            success = true;
+        } finally {
+            db.endTransaction();
+            mBatchChanges.remove();
+            // 回滚后已同步修改的标签索引不再可信
+            if (!success) {
+                mTags.invalidate();
+            }
+        }
+        if (count > 0) {
+            notifyBatch(changes);
+        }
+        return count;
+    }
+
+    // 扩展方法：二进制快照备份与恢复、数据库维护、性能参数切换、运行统计
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        try {
+            if (NotePad.METHOD_BACKUP.equals(method)) {
+                long since = extras != null ? extras.getLong(NotePad.EXTRA_SINCE, 0) : 0;
+                boolean compress = extras == null || extras.getBoolean(NotePad.EXTRA_COMPRESS, true);
+                return NoteBackup.backup(mDbHelper.getWritableDatabase(), new File(arg), since, compress);
+            } else if (NotePad.METHOD_RESTORE.equals(method)) {
+                final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+                Bundle result = NoteBackup.restore(db, new File(arg));
+                mTags.invalidate();
+                notifyChange(NotePad.Notes.CONTENT_URI);
+                // 恢复直接写表，触发器已清掉被覆盖笔记的签名和出链，新签名与出链、新笔记的排序位置在后台补算
+                new Thread(() -> {
+                    NearDuplicates.backfillAll(db);
+                    NoteLinks.backfillAll(db);
+                    ManualOrder.backfillAll(db);
+                }, "RestoreBackfill").start();
+                return result;
+            } else if (NotePad.METHOD_MOVE.equals(method) || NotePad.METHOD_PIN.equals(method)) {
+                long id = Long.parseLong(arg);
+                SQLiteDatabase db = mDbHelper.getWritableDatabase();
+                if (NotePad.METHOD_PIN.equals(method)) {
+                    ManualOrder.setPinned(db, id, extras != null && extras.getBoolean(NotePad.EXTRA_PINNED));
+                } else if (ManualOrder.move(db, id, extras != null ? extras.getLong(NotePad.EXTRA_AFTER_ID, -1) : -1)) {
+                    rebalanceInBackground(db);
+                }
+                notifyChange(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, id));
+                return null;
+            } else if (NotePad.METHOD_MAINTENANCE.equals(method)) {
+                Bundle result = DatabaseMaintenance.run(mDbHelper.getWritableDatabase(), arg, extras);
+                if (result.getInt(DatabaseMaintenance.RESULT_PURGED) > 0) {
+                    notifyChange(NotePad.Trash.CONTENT_URI);
+                }
+                return result;
+            } else if (NotePad.METHOD_SET_PROFILE.equals(method)) {
+                PerformanceProfile profile = PerformanceProfile.forName(arg);
+                if (profile == null) {
+                    throw new IllegalArgumentException("Unknown performance profile: " + arg);
+                }
+                Bundle result = new Bundle();
+                result.putString(NotePad.RESULT_PROFILE, mDbHelper.getProfile().name);
+                mDbHelper.setProfile(profile);
+                Log.i(TAG, "Performance profile set to " + profile);
+                return result;
+            } else if (NotePad.METHOD_METRICS.equals(method)) {
+                if (NotePad.ARG_RESET.equals(arg)) {
+                    mMetrics.reset();
+                }
+                return mMetrics.snapshot();
+            } else if (NotePad.METHOD_SLOW_QUERIES.equals(method)) {
+                if (NotePad.ARG_RESET.equals(arg)) {
+                    mSlowQueries.clear();
+                }
+                Bundle result = new Bundle();
+                result.putStringArrayList(NotePad.RESULT_SLOW_QUERIES, mSlowQueries.snapshot());
+                result.putLong(NotePad.EXTRA_THRESHOLD_MS, mSlowQueries.getThresholdMs());
+                return result;
+            } else if (NotePad.METHOD_SET_SLOW_QUERY_THRESHOLD.equals(method)) {
+                mSlowQueries.setThresholdMs(Long.parseLong(arg));
+                return null;
+            } else if (NotePad.METHOD_GET_PROFILE.equals(method)) {
+                Bundle result = new Bundle();
+                result.putString(NotePad.RESULT_PROFILE, mDbHelper.getProfile().name);
+                return result;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(method + " failed: " + e.getMessage(), e);
+        }
+        return super.call(method, arg, extras);
+    }
+
+    // 导出：在管道写线程中按页读取笔记并直接写入管道，读取方边读边消费，内存占用恒定
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        if (sUriMatcher.match(uri) != EXPORT) {
+            throw new FileNotFoundException("Unsupported URI: " + uri);
+        }
+        if (!"r".equals(mode)) {
+            throw new FileNotFoundException("Export is read-only: " + uri);
+        }
+        final String format = uri.getLastPathSegment();
+        String mimeType = NoteExporter.getMimeType(format);
+        if (mimeType == null) {
+            throw new FileNotFoundException("Unknown export format: " + uri);
+        }
+        return openPipeHelper(uri, mimeType, null, NoteFilter.fromUri(uri),
+                (output, pipeUri, pipeMimeType, opts, filter) -> {
+                    FileOutputStream out = new FileOutputStream(output.getFileDescriptor());
+                    try {
+                        new NoteExporter(getContext().getContentResolver()).export(format, filter, out, null);
+                    } catch (IOException e) {
+                        // 读取方提前关闭管道时会走到这里
+                        Log.w(TAG, "Export to pipe aborted: " + pipeUri, e);
+                    } finally {
+                        try {
+                            out.close();
+                        } catch (IOException ignored) {
+                        }
+                    }
+                });
+    }
+
+    // 批量操作放在同一事务中执行：同步拉取的远端变更要么全部生效，要么全部回滚
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        boolean success = false;
+        Set<Uri> changes = new HashSet<>();
+        mBatchChanges.set(changes);
+        db.beginTransaction();
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+            success = true;
+            return results;
+        } finally {
+            db.endTransaction();
+            mBatchChanges.remove();
+            if (success) {
+                notifyBatch(changes);
+            } else {
+                mTags.invalidate();
+            }
+        }
+    }
+
+    // 本地修改：刷新修改时间并标记为待上传；同步引擎写入时保留远端给出的值
+    private void markLocalChange(Uri uri, ContentValues values) {
+        if (isSyncAdapter(uri)) {
+            return;
+        }
+        int match = sUriMatcher.match(uri);
+        if (match == NOTES || match == NOTE_ID) {
+            values.put(NotePad.Notes.COLUMN_NAME_MODIFIED_TIME, System.currentTimeMillis());
+            values.put(NotePad.Notes.COLUMN_NAME_DIRTY, 1);
+        }
+    }
+
+    // 删除笔记：非同步引擎发起的删除先写入墓碑，供下次同步推送；标签索引在同一事务中移除这些笔记
+    private int deleteNotes(SQLiteDatabase db, Uri uri, String selection, String[] selectionArgs) {
+        int count;
+        boolean success = false;
+        db.beginTransaction();
+        try {
+            mTags.beforeDeleteNotes(db, selection, selectionArgs);
+            if (!isSyncAdapter(uri)) {
+                writeTombstones(db, selection, selectionArgs);
+            }
+            count = db.delete(NotePad.Notes.TABLE_NAME, selection, selectionArgs);
+            db.setTransactionSuccessful();
+            success = true;
+        } finally {
+            db.endTransaction();
+            if (!success) {
+                mTags.invalidate();
+            }
+        }
+        // 远端删除的笔记可能在回收站中
+        if (count > 0 && isSyncAdapter(uri)) {
+            notifyChange(NotePad.Trash.CONTENT_URI);
+        }
+        return count;
+    }
+
+    /**
+     * 移入回收站：设置移入时间，计为一次修改并标记为待上传，同步时其他设备同样移入回收站；
+     * 标签索引在同一事务中移除这些笔记。签名、出链、标签关联等保留到彻底删除时由触发器清掉，恢复时不必重算。
+     */
+    private int trashNotes(SQLiteDatabase db, Uri uri, String selection, String[] selectionArgs) {
+        long now = System.currentTimeMillis();
+        ContentValues values = new ContentValues();
+        values.put(NotePad.Notes.COLUMN_NAME_DELETED_TIME, now);
+        values.put(NotePad.Notes.COLUMN_NAME_MODIFIED_TIME, now);
+        values.put(NotePad.Notes.COLUMN_NAME_DIRTY, 1);
+        selection = liveSelection(uri, selection);
+        int count;
+        boolean success = false;
+        db.beginTransaction();
+        try {
+            mTags.beforeDeleteNotes(db, selection, selectionArgs);
+            count = db.update(NotePad.Notes.TABLE_NAME, values, selection, selectionArgs);
+            db.setTransactionSuccessful();
+            success = true;
+        } finally {
+            db.endTransaction();
+            if (!success) {
+                mTags.invalidate();
+            }
+        }
+        if (count > 0) {
+            notifyChange(NotePad.Trash.CONTENT_URI);
+        }
+        return count;
+    }
+
+    // 从回收站恢复：清掉移入时间，与移入一样计为修改待上传；标签索引不含回收站中的笔记，恢复后重建
+    private int restoreNote(SQLiteDatabase db, long id) {
+        ContentValues values = new ContentValues();
+        values.putNull(NotePad.Notes.COLUMN_NAME_DELETED_TIME);
+        values.put(NotePad.Notes.COLUMN_NAME_MODIFIED_TIME, System.currentTimeMillis());
+        values.put(NotePad.Notes.COLUMN_NAME_DIRTY, 1);
+        int count = db.update(NotePad.Notes.TABLE_NAME, values, trashSelection(TRASH_ID, null),
+                new String[]{String.valueOf(id)});
+        if (count > 0) {
+            mTags.invalidate();
+            notifyChange(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, id));
+        }
+        return count;
+    }
+
+    // 也用于维护任务彻底删除回收站中过期的笔记
+    static void writeTombstones(SQLiteDatabase db, String selection, String[] selectionArgs) {
+        long now = System.currentTimeMillis();
+        Cursor c = db.query(NotePad.Notes.TABLE_NAME, new String[]{NotePad.Notes.COLUMN_NAME_UUID},
+                selection, selectionArgs, null, null, null);
+        try {
+            ContentValues tombstone = new ContentValues();
+            while (c.moveToNext()) {
+                if (c.isNull(0)) {
+                    continue;
+                }
+                tombstone.put(NotePad.SyncTombstones.COLUMN_NAME_UUID, c.getString(0));
+                tombstone.put(NotePad.SyncTombstones.COLUMN_NAME_DELETED_TIME, now);
+                db.insertWithOnConflict(NotePad.SyncTombstones.TABLE_NAME, null, tombstone,
+                        SQLiteDatabase.CONFLICT_REPLACE);
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    // 位置间隔过小时整体重排；顺序不变，不发通知
+    private void rebalanceInBackground(final SQLiteDatabase db) {
+        if (!mRebalancing.compareAndSet(false, true)) {
+            return;
+        }
+        new Thread(() -> {
+            try {
+                long start = SystemClock.elapsedRealtime();
+                int rows = ManualOrder.rebalance(db);
+                Log.i(TAG, "Rebalanced " + rows + " note positions in " + (SystemClock.elapsedRealtime() - start) + "ms");
+            } finally {
+                mRebalancing.set(false);
+            }
+        }, "OrderRebalance").start();
+    }
+
+    private static boolean isSyncAdapter(Uri uri) {
+        return uri.getBooleanQueryParameter(NotePad.CALLER_IS_SYNC_ADAPTER, false);
+    }
+
+    // 统一的变更通知：批量事务中的通知先记下，提交后由notifyBatch发出
+    private void notifyChange(Uri uri) {
+        Set<Uri> pending = mBatchChanges.get();
+        if (pending != null) {
+            pending.add(uri);
+            return;
+        }
+        if (getContext() == null) {
+            return;
+        }
+        getContext().getContentResolver().notifyChange(uri, null);
+    }
+
+    // 补发批量事务中推迟的通知：notes下各行的变化合并为一次notes通知，回收站等其他URI各发一次
+    private void notifyBatch(Set<Uri> changes) {
+        String notes = NotePad.Notes.CONTENT_URI.getPathSegments().get(0);
+        notifyChange(NotePad.Notes.CONTENT_URI);
+        for (Uri uri : changes) {
+            if (!notes.equals(uri.getPathSegments().get(0))) {
+                notifyChange(uri);
+            }
+        }
+    }
+
+    private static String[] concatArrays(String[] first, String[] second) {
+        if (first == null || first.length == 0) {
+            return second;
+        }
+        if (second == null || second.length == 0) {
+            return first;
+        }
+        String[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
     // 工具方法：追加数组元素（用于处理单条笔记的查询/删除/更新）
     private String[] appendArray(String[] original, String add) {
         if (original == null) {
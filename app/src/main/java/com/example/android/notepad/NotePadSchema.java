@@ -0,0 +1,599 @@
+package com.example.android.notepad;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * NotePad.db的建表语句与各读写路径使用的SQL文本。
+ *
+ * 这里只用纯Java，不引用任何Android类（包括NotePad.Notes），
+ * benchmark模块直接编译本文件，在普通JVM上通过sqlite-jdbc执行与应用完全相同的SQL。
+ * 列名与NotePad.Notes中的常量一一对应，修改时两边需同步。
+ */
+final class NotePadSchema {
+    static final String NOTES = "notes";
+    static final String TOMBSTONES = "sync_tombstones";
+
+    static final String ID = "_id";
+    static final String TITLE = "title";
+    static final String NOTE = "note";
+    static final String CREATED_TIME = "created_time";
+    static final String CATEGORY = "category";
+    static final String MODIFIED_TIME = "modified_time";
+    static final String UUID = "uuid";
+    static final String DIRTY = "dirty";
+    // 墓碑的删除时间；在notes表中为移入回收站的时间，NULL为正常笔记
+    static final String DELETED_TIME = "deleted_time";
+    // 手动排序：置顶标记与位置（见FractionalPosition）
+    static final String PINNED = "pinned";
+    static final String POSITION = "position";
+    // 压缩存储的完整正文（见BodyCodec），NULL时正文整篇在note列中；只在Provider内部读写
+    static final String NOTE_DATA = "note_data";
+
+    // 搜索结果的计算列（不在表中）：正文第一处命中附近的摘要、命中在摘要和标题中的位置（从0起，-1为无）
+    static final String SNIPPET = "snippet";
+    static final String SNIPPET_MATCH = "snippet_match";
+    static final String TITLE_MATCH = "title_match";
+
+    // 近似重复检测：每篇笔记的MinHash签名，以及签名分段后的LSH桶（见MinHash）
+    static final String SIGNATURES = "note_signatures";
+    static final String LSH_BUCKETS = "note_lsh";
+    static final String NOTE_ID = "note_id";
+    static final String SIGNATURE = "signature";
+    static final String BAND = "band";
+    static final String BUCKET = "bucket";
+    static final String INDEX_LSH_NOTE = "note_lsh_note";
+    static final String TRIGGER_SIMILARITY_DELETE = "notes_similarity_delete";
+    static final String TRIGGER_SIMILARITY_UPDATE = "notes_similarity_update";
+
+    // 标签：标签表与笔记-标签关联表（多对多）；tags为读写笔记时的虚拟列（逗号分隔的标签名）
+    static final String TAGS = "tags";
+    static final String NOTE_TAGS = "note_tags";
+    static final String TAG_ID = "tag_id";
+    static final String NAME = "name";
+    static final String NOTE_COUNT = "note_count";
+    static final String INDEX_NOTE_TAGS_TAG = "note_tags_tag";
+    static final String TRIGGER_NOTE_TAGS_DELETE = "notes_tags_delete";
+    static final String TRIGGER_TAG_DELETE = "tags_delete";
+
+    // 维基式链接：每篇笔记正文中 [[标题]] 指向的标题（见WikiLinks），按标题反查即反向链接
+    static final String LINKS = "note_links";
+    static final String SOURCE_ID = "source_id";
+    static final String TARGET_TITLE = "target_title";
+    static final String INDEX_LINKS_TARGET = "note_links_target";
+    static final String INDEX_TITLE = "notes_title";
+    static final String TRIGGER_LINKS_DELETE = "notes_links_delete";
+
+    // 版本历史：每次保存覆盖掉的旧正文，多数存为差量（见RevisionChain）
+    static final String REVISIONS = "note_revisions";
+    static final String LENGTH = "length";
+    static final String SNAPSHOT = "snapshot";
+    static final String DATA = "data";
+    static final String INDEX_REVISIONS_NOTE = "note_revisions_note";
+    static final String TRIGGER_REVISIONS_DELETE = "notes_revisions_delete";
+
+    // 备份的变更序号：每个uuid一行，笔记新增、备份所含的列变化（含移入移出回收站）、彻底删除时由触发器
+    // 换成新的序号；增量备份取上次备份之后的序号（见NoteBackup）
+    static final String CHANGES = "note_changes";
+    static final String SEQ = "seq";
+    static final String CHANGED_TIME = "changed_time";
+    static final String TRIGGER_CHANGES_INSERT = "notes_changes_insert";
+    static final String TRIGGER_CHANGES_UPDATE = "notes_changes_update";
+    static final String TRIGGER_CHANGES_DELETE = "notes_changes_delete";
+
+    // 压缩存储的正文的检索词（见BodyMatches.terms）与完整长度，每篇压缩行一行；关键字条件与相关度排序据此
+    // 覆盖note列中看不到的部分，不必解压
+    static final String SEARCH_TERMS = "note_search";
+    static final String TERMS = "terms";
+    static final String TRIGGER_SEARCH_DELETE = "notes_search_delete";
+
+    static final String INDEX_UUID = "notes_uuid";
+    static final String INDEX_DIRTY = "notes_dirty";
+    static final String INDEX_POSITION = "notes_position";
+    static final String INDEX_TRASH = "notes_trash";
+
+    static final String DEFAULT_SORT_ORDER = CREATED_TIME + " DESC";
+    // 手动排序：置顶的在前，各自按位置升序；前两项顺着notes_position索引，位置相同（尚未分配）时按创建时间
+    static final String MANUAL_SORT_ORDER = PINNED + " DESC, " + POSITION + ", " + CREATED_TIME + " DESC";
+
+    // 列表页的投影：首屏快照需要分类列
+    static final String[] LIST_PROJECTION = new String[]{ID, TITLE, CREATED_TIME, CATEGORY};
+    // 列表只显示一行标题，内存中的列表模型和搜索索引按此截断
+    static final int LIST_TITLE_LENGTH = 100;
+    // 搜索时的列表投影，计算列由Provider按URI中的关键字展开
+    static final String[] SEARCH_PROJECTION = new String[]{ID, TITLE, CREATED_TIME, CATEGORY,
+            TITLE_MATCH, SNIPPET, SNIPPET_MATCH};
+    // 摘要取命中前SNIPPET_CONTEXT个字符起的SNIPPET_LENGTH个字符，前面被截掉时加省略号
+    static final int SNIPPET_CONTEXT = 20;
+    static final int SNIPPET_LENGTH = 80;
+
+    // 创建时间默认取插入时刻（毫秒）。旧版本把建库时的System.currentTimeMillis()固化进了表结构
+    static final String CREATED_TIME_DEFAULT = "(CAST(strftime('%s', 'now') AS INTEGER) * 1000)";
+
+    // 第6步重建notes表时复制的列；之后新增的列（置顶、位置、回收站时间、压缩正文）在重建出的表中取默认值
+    static final String NOTES_COLUMNS = ID + ", " + TITLE + ", " + NOTE + ", " + CREATED_TIME + ", "
+            + CATEGORY + ", " + MODIFIED_TIME + ", " + UUID + ", " + DIRTY;
+
+    private NotePadSchema() {
+    }
+
+    static String notesTableSql(String table) {
+        return "CREATE TABLE " + table + " ("
+                + ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + TITLE + " TEXT NOT NULL, "
+                + NOTE + " TEXT, "
+                + CREATED_TIME + " INTEGER DEFAULT " + CREATED_TIME_DEFAULT + ", "
+                + CATEGORY + " TEXT DEFAULT '默认分类', "
+                + MODIFIED_TIME + " INTEGER DEFAULT 0, "
+                + UUID + " TEXT, "
+                + DIRTY + " INTEGER DEFAULT 1, "
+                + PINNED + " INTEGER NOT NULL DEFAULT 0, "
+                + POSITION + " REAL, "
+                + DELETED_TIME + " INTEGER, "
+                + NOTE_DATA + " BLOB"
+                + ");";
+    }
+
+    static final String INDEX_UUID_SQL = "CREATE UNIQUE INDEX " + INDEX_UUID + " ON " + NOTES + " (" + UUID + ")";
+
+    // 部分索引：只索引待上传的行，推送时无需扫描全表
+    static final String INDEX_DIRTY_SQL = "CREATE INDEX " + INDEX_DIRTY + " ON " + NOTES
+            + " (" + ID + ") WHERE " + DIRTY + " = 1";
+
+    // 回收站：正常笔记的条件；回收站中的笔记只由trash查询、恢复和清理访问
+    static final String LIVE_SELECTION = DELETED_TIME + " IS NULL";
+    static final String TRASH_SELECTION = DELETED_TIME + " IS NOT NULL";
+
+    // 部分索引：只索引回收站中的行，按移入时间列出与清理过期笔记都不扫描全表；正常笔记的查询多一个列判断
+    static final String INDEX_TRASH_SQL = "CREATE INDEX " + INDEX_TRASH + " ON " + NOTES
+            + " (" + DELETED_TIME + ") WHERE " + TRASH_SELECTION;
+
+    static final String TRASHED_IDS_SQL = "SELECT " + ID + " FROM " + NOTES + " WHERE " + TRASH_SELECTION;
+
+    // notes查询的条件加上只取正常笔记
+    static String liveSelection(String selection) {
+        return selection == null || selection.isEmpty() ? LIVE_SELECTION : LIVE_SELECTION + " AND (" + selection + ")";
+    }
+
+    // 清理：移入回收站早于给定时刻的笔记，最早的在前，每批至多batchSize篇
+    static String expiredTrashSql(int batchSize) {
+        return TRASHED_IDS_SQL + " AND " + DELETED_TIME + " < ? ORDER BY " + DELETED_TIME + " LIMIT " + batchSize;
+    }
+
+    static final String TOMBSTONES_TABLE_SQL = "CREATE TABLE " + TOMBSTONES + " ("
+            + UUID + " TEXT PRIMARY KEY, "
+            + DELETED_TIME + " INTEGER NOT NULL"
+            + ");";
+
+    // 空笔记的签名为空blob，表示已处理
+    static final String SIGNATURES_TABLE_SQL = "CREATE TABLE " + SIGNATURES + " ("
+            + NOTE_ID + " INTEGER PRIMARY KEY, "
+            + SIGNATURE + " BLOB NOT NULL"
+            + ");";
+
+    // 主键即按桶查找的索引；按笔记删除走note_lsh_note
+    static final String LSH_TABLE_SQL = "CREATE TABLE " + LSH_BUCKETS + " ("
+            + BAND + " INTEGER NOT NULL, "
+            + BUCKET + " INTEGER NOT NULL, "
+            + NOTE_ID + " INTEGER NOT NULL, "
+            + "PRIMARY KEY (" + BAND + ", " + BUCKET + ", " + NOTE_ID + ")"
+            + ") WITHOUT ROWID;";
+
+    static final String INDEX_LSH_NOTE_SQL = "CREATE INDEX " + INDEX_LSH_NOTE + " ON " + LSH_BUCKETS
+            + " (" + NOTE_ID + ")";
+
+    // 笔记删除或标题/内容变化时清掉签名：签名存在即为最新，缺失的由Provider写入时或后台回填重新计算。
+    // 重建notes表会连同触发器一起删除，重建后需再次创建
+    static final String TRIGGER_SIMILARITY_DELETE_SQL = "CREATE TRIGGER IF NOT EXISTS " + TRIGGER_SIMILARITY_DELETE
+            + " AFTER DELETE ON " + NOTES + " BEGIN "
+            + clearSignatureSql() + " END";
+    static final String TRIGGER_SIMILARITY_UPDATE_SQL = "CREATE TRIGGER IF NOT EXISTS " + TRIGGER_SIMILARITY_UPDATE
+            + " AFTER UPDATE OF " + TITLE + ", " + NOTE + " ON " + NOTES + " BEGIN "
+            + clearSignatureSql() + " END";
+
+    private static String clearSignatureSql() {
+        return "DELETE FROM " + SIGNATURES + " WHERE " + NOTE_ID + " = old." + ID + "; "
+                + "DELETE FROM " + LSH_BUCKETS + " WHERE " + NOTE_ID + " = old." + ID + ";";
+    }
+
+    static final String INSERT_SIGNATURE_SQL = "INSERT OR REPLACE INTO " + SIGNATURES
+            + " (" + NOTE_ID + ", " + SIGNATURE + ") VALUES (?, ?)";
+    static final String INSERT_BUCKET_SQL = "INSERT OR IGNORE INTO " + LSH_BUCKETS
+            + " (" + BAND + ", " + BUCKET + ", " + NOTE_ID + ") VALUES (?, ?, ?)";
+    static final String DELETE_BUCKETS_SQL = "DELETE FROM " + LSH_BUCKETS + " WHERE " + NOTE_ID + " = ?";
+
+    // 计算签名只需前MinHash.MAX_CHARS个字符；压缩存储的正文整篇读出，由NoteBodies.wrap解压
+    static String signatureSourceSql(String selection) {
+        return "SELECT " + ID + ", " + TITLE + ", substr(" + NOTE + ", 1, " + MinHash.MAX_CHARS + ") AS " + NOTE
+                + ", " + NOTE_DATA + " FROM " + NOTES + (selection != null ? " WHERE " + selection : "");
+    }
+
+    // 回填：id大于上一批、尚无签名的笔记，按id顺序
+    static String missingSignaturesSql(int batchSize) {
+        return signatureSourceSql(ID + " > ? AND " + ID + " NOT IN (SELECT " + NOTE_ID + " FROM " + SIGNATURES + ")")
+                + " ORDER BY " + ID + " LIMIT " + batchSize;
+    }
+
+    // 与某篇笔记至少共用一个桶的其他笔记；回收站中的笔记保留签名（恢复后不必重算），在这里排除
+    static final String SIMILAR_CANDIDATES_SQL = "SELECT DISTINCT b." + NOTE_ID + " FROM " + LSH_BUCKETS + " a JOIN "
+            + LSH_BUCKETS + " b ON a." + BAND + " = b." + BAND + " AND a." + BUCKET + " = b." + BUCKET
+            + " WHERE a." + NOTE_ID + " = ? AND b." + NOTE_ID + " != a." + NOTE_ID
+            + " AND b." + NOTE_ID + " NOT IN (" + TRASHED_IDS_SQL + ")";
+
+    // 成员不少于两篇的桶中的全部行，按桶排列；GROUP BY与外层都顺着主键扫描。
+    // 回收站中的笔记不计入，子查询走notes_trash索引，只执行一次
+    static final String SHARED_BUCKETS_SQL = "SELECT l." + BAND + ", l." + BUCKET + ", l." + NOTE_ID + " FROM "
+            + LSH_BUCKETS + " l JOIN (SELECT " + BAND + ", " + BUCKET + " FROM " + LSH_BUCKETS
+            + " WHERE " + NOTE_ID + " NOT IN (" + TRASHED_IDS_SQL + ")"
+            + " GROUP BY " + BAND + ", " + BUCKET + " HAVING count(*) > 1) d ON l." + BAND + " = d." + BAND
+            + " AND l." + BUCKET + " = d." + BUCKET + " WHERE l." + NOTE_ID + " NOT IN (" + TRASHED_IDS_SQL + ")"
+            + " ORDER BY l." + BAND + ", l." + BUCKET + ", l." + NOTE_ID;
+
+    // 标签名忽略ASCII大小写唯一（与TagIndex.key一致）
+    static final String TAGS_TABLE_SQL = "CREATE TABLE " + TAGS + " ("
+            + ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + NAME + " TEXT NOT NULL UNIQUE COLLATE NOCASE"
+            + ");";
+
+    static final String NOTE_TAGS_TABLE_SQL = "CREATE TABLE " + NOTE_TAGS + " ("
+            + NOTE_ID + " INTEGER NOT NULL, "
+            + TAG_ID + " INTEGER NOT NULL, "
+            + "PRIMARY KEY (" + NOTE_ID + ", " + TAG_ID + ")"
+            + ") WITHOUT ROWID;";
+
+    // 构建TagIndex时按标签、笔记id顺序扫描，也用于删除标签
+    static final String INDEX_NOTE_TAGS_TAG_SQL = "CREATE INDEX " + INDEX_NOTE_TAGS_TAG + " ON " + NOTE_TAGS
+            + " (" + TAG_ID + ", " + NOTE_ID + ")";
+
+    // 删除笔记或标签时清掉关联；与相似度触发器一样，重建notes表后需重新创建
+    static final String TRIGGER_NOTE_TAGS_DELETE_SQL = "CREATE TRIGGER IF NOT EXISTS " + TRIGGER_NOTE_TAGS_DELETE
+            + " AFTER DELETE ON " + NOTES + " BEGIN "
+            + "DELETE FROM " + NOTE_TAGS + " WHERE " + NOTE_ID + " = old." + ID + "; END";
+    static final String TRIGGER_TAG_DELETE_SQL = "CREATE TRIGGER IF NOT EXISTS " + TRIGGER_TAG_DELETE
+            + " AFTER DELETE ON " + TAGS + " BEGIN "
+            + "DELETE FROM " + NOTE_TAGS + " WHERE " + TAG_ID + " = old." + ID + "; END";
+
+    static final String TAG_INDEX_TAGS_SQL = "SELECT " + ID + ", " + NAME + " FROM " + TAGS;
+    // 回收站中的笔记不进索引，恢复时索引整体失效重建
+    static final String TAG_INDEX_ROWS_SQL = "SELECT " + TAG_ID + ", " + NOTE_ID + " FROM " + NOTE_TAGS
+            + " WHERE " + NOTE_ID + " NOT IN (" + TRASHED_IDS_SQL + ") ORDER BY " + TAG_ID + ", " + NOTE_ID;
+    static final String FIND_TAG_SQL = "SELECT " + ID + " FROM " + TAGS + " WHERE " + NAME + " = ?";
+    static final String INSERT_TAG_SQL = "INSERT INTO " + TAGS + " (" + NAME + ") VALUES (?)";
+    static final String DELETE_NOTE_TAGS_SQL = "DELETE FROM " + NOTE_TAGS + " WHERE " + NOTE_ID + " = ?";
+    static final String INSERT_NOTE_TAG_SQL = "INSERT OR IGNORE INTO " + NOTE_TAGS
+            + " (" + NOTE_ID + ", " + TAG_ID + ") VALUES (?, ?)";
+
+    // 投影中tags列的取值：按标签创建顺序，逗号分隔，没有标签为null
+    static final String TAGS_COLUMN_SQL = "(SELECT group_concat(t." + NAME + ", '" + TagIndex.SEPARATOR + "') FROM "
+            + NOTE_TAGS + " nt JOIN " + TAGS + " t ON t." + ID + " = nt." + TAG_ID
+            + " WHERE nt." + NOTE_ID + " = " + NOTES + "." + ID + ")";
+
+    // 链接按标题保存，目标笔记尚不存在时链接照样保留，之后新建或改名为该标题的笔记自动成为目标
+    static final String LINKS_TABLE_SQL = "CREATE TABLE " + LINKS + " ("
+            + SOURCE_ID + " INTEGER NOT NULL, "
+            + TARGET_TITLE + " TEXT NOT NULL COLLATE NOCASE, "
+            + "PRIMARY KEY (" + SOURCE_ID + ", " + TARGET_TITLE + ")"
+            + ") WITHOUT ROWID;";
+
+    // 主键按来源查出链，此索引按目标标题查反向链接
+    static final String INDEX_LINKS_TARGET_SQL = "CREATE INDEX " + INDEX_LINKS_TARGET + " ON " + LINKS
+            + " (" + TARGET_TITLE + ", " + SOURCE_ID + ")";
+
+    // 出链按标题找到目标笔记；标题比较忽略大小写，与note_links一致
+    static final String INDEX_TITLE_SQL = "CREATE INDEX " + INDEX_TITLE + " ON " + NOTES
+            + " (" + TITLE + " COLLATE NOCASE)";
+
+    // 删除笔记时清掉它的出链；指向它的链接保留。重建notes表后需重新创建
+    static final String TRIGGER_LINKS_DELETE_SQL = "CREATE TRIGGER IF NOT EXISTS " + TRIGGER_LINKS_DELETE
+            + " AFTER DELETE ON " + NOTES + " BEGIN "
+            + "DELETE FROM " + LINKS + " WHERE " + SOURCE_ID + " = old." + ID + "; END";
+
+    static final String LINKS_OF_SQL = "SELECT " + TARGET_TITLE + " FROM " + LINKS + " WHERE " + SOURCE_ID + " = ?";
+    static final String INSERT_LINK_SQL = "INSERT OR IGNORE INTO " + LINKS
+            + " (" + SOURCE_ID + ", " + TARGET_TITLE + ") VALUES (?, ?)";
+    static final String DELETE_LINK_SQL = "DELETE FROM " + LINKS + " WHERE " + SOURCE_ID + " = ? AND "
+            + TARGET_TITLE + " = ?";
+    static final String LINKING_NOTES_SQL = "SELECT " + SOURCE_ID + " FROM " + LINKS + " WHERE "
+            + TARGET_TITLE + " = ? ORDER BY " + SOURCE_ID;
+    static final String TITLE_IN_USE_SQL = "SELECT 1 FROM " + NOTES + " WHERE " + TITLE + " = ? COLLATE NOCASE LIMIT 1";
+    // 改名后改写引用它的笔记：正文变了，按本地修改上传
+    static final String REWRITE_LINKS_SQL = "UPDATE " + NOTES + " SET " + NOTE + " = ?, " + NOTE_DATA + " = ?, "
+            + MODIFIED_TIME + " = ?, " + DIRTY + " = 1 WHERE " + ID + " = ?";
+
+    // notes/#/links与notes/#/backlinks的条件，参数为该笔记的id；都走索引查找
+    static final String OUTGOING_LINKS_SELECTION = TITLE + " COLLATE NOCASE IN (SELECT " + TARGET_TITLE + " FROM "
+            + LINKS + " WHERE " + SOURCE_ID + " = ?)";
+    static final String BACKLINKS_SELECTION = ID + " IN (SELECT " + SOURCE_ID + " FROM " + LINKS + " WHERE "
+            + TARGET_TITLE + " = (SELECT " + TITLE + " FROM " + NOTES + " WHERE " + ID + " = ?))";
+
+    static String linkSourceSql(String selection) {
+        return "SELECT " + ID + ", " + NOTE + ", " + NOTE_DATA + " FROM " + NOTES
+                + (selection != null ? " WHERE " + selection : "");
+    }
+
+    // 回填：id大于上一批的笔记，按id顺序
+    static String linkBackfillSql(int batchSize) {
+        return linkSourceSql(ID + " > ?") + " ORDER BY " + ID + " LIMIT " + batchSize;
+    }
+
+    // 列序与MANUAL_SORT_ORDER的前两项一致，按手动顺序读取列表时不需要排序
+    static final String INDEX_POSITION_SQL = "CREATE INDEX " + INDEX_POSITION + " ON " + NOTES
+            + " (" + PINNED + " DESC, " + POSITION + ")";
+
+    static final String POSITION_OF_SQL = "SELECT " + PINNED + ", " + POSITION + " FROM " + NOTES
+            + " WHERE " + ID + " = ?";
+    // 某组（置顶或未置顶）中除指定笔记外最靠前的位置，以及某个位置之后的下一个位置；都只读索引中的一项
+    static final String FIRST_POSITION_SQL = "SELECT " + POSITION + " FROM " + NOTES + " WHERE " + PINNED + " = ? AND "
+            + POSITION + " IS NOT NULL AND " + ID + " != ? ORDER BY " + POSITION + " LIMIT 1";
+    static final String NEXT_POSITION_SQL = "SELECT " + POSITION + " FROM " + NOTES + " WHERE " + PINNED + " = ? AND "
+            + POSITION + " > ? AND " + ID + " != ? ORDER BY " + POSITION + " LIMIT 1";
+    static final String SET_POSITION_SQL = "UPDATE " + NOTES + " SET " + PINNED + " = ?, " + POSITION + " = ? WHERE "
+            + ID + " = ?";
+    static final String ORDERED_IDS_SQL = "SELECT " + ID + " FROM " + NOTES + " ORDER BY " + MANUAL_SORT_ORDER;
+    static final String UPDATE_POSITION_SQL = "UPDATE " + NOTES + " SET " + POSITION + " = ? WHERE " + ID + " = ?";
+
+    // 回填：id大于上一批、尚无位置的笔记，按id顺序；"+"使其走主键而不是位置索引（升级时全部行都没有位置）
+    static String missingPositionsSql(int batchSize) {
+        return "SELECT " + ID + ", " + PINNED + " FROM " + NOTES + " WHERE " + ID + " > ? AND +" + POSITION
+                + " IS NULL ORDER BY " + ID + " LIMIT " + batchSize;
+    }
+
+    // 每行是一个被覆盖的旧版本：created_time为该版本的修改时间，length为正文的字符数（列表显示用）；
+    // snapshot为1时data是deflate压缩的正文，为0时是相对下一个更新版本（最新一行相对当前正文）的差量
+    static final String REVISIONS_TABLE_SQL = "CREATE TABLE " + REVISIONS + " ("
+            + ID + " INTEGER PRIMARY KEY, "
+            + NOTE_ID + " INTEGER NOT NULL, "
+            + CREATED_TIME + " INTEGER NOT NULL, "
+            + TITLE + " TEXT, "
+            + LENGTH + " INTEGER NOT NULL, "
+            + SNAPSHOT + " INTEGER NOT NULL, "
+            + DATA + " BLOB NOT NULL"
+            + ");";
+
+    // 按笔记列出版本、读取还原所需的行都是这个索引上的一段范围
+    static final String INDEX_REVISIONS_NOTE_SQL = "CREATE INDEX " + INDEX_REVISIONS_NOTE + " ON " + REVISIONS
+            + " (" + NOTE_ID + ", " + ID + ")";
+
+    // 彻底删除笔记时清掉它的版本；移入回收站时保留。重建notes表后需重新创建
+    static final String TRIGGER_REVISIONS_DELETE_SQL = "CREATE TRIGGER IF NOT EXISTS " + TRIGGER_REVISIONS_DELETE
+            + " AFTER DELETE ON " + NOTES + " BEGIN "
+            + "DELETE FROM " + REVISIONS + " WHERE " + NOTE_ID + " = old." + ID + "; END";
+
+    // AUTOINCREMENT：序号只增不减，删掉的行的序号也不会被再次分配
+    static final String CHANGES_TABLE_SQL = "CREATE TABLE " + CHANGES + " ("
+            + SEQ + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + UUID + " TEXT NOT NULL UNIQUE, "
+            + CHANGED_TIME + " INTEGER NOT NULL"
+            + ");";
+
+    // 同一uuid的旧行被REPLACE删掉，新行取得新的序号。只有备份写出的列参与更新触发器，dirty、置顶与位置的
+    // 变化不算；同步拉取与移入回收站都改写这些列，不依赖modified_time是否变化。重建notes表后需重新创建
+    static final String TRIGGER_CHANGES_INSERT_SQL = "CREATE TRIGGER IF NOT EXISTS " + TRIGGER_CHANGES_INSERT
+            + " AFTER INSERT ON " + NOTES + " WHEN new." + UUID + " IS NOT NULL BEGIN "
+            + logChangeSql("new") + " END";
+    static final String TRIGGER_CHANGES_UPDATE_SQL = "CREATE TRIGGER IF NOT EXISTS " + TRIGGER_CHANGES_UPDATE
+            + " AFTER UPDATE OF " + TITLE + ", " + NOTE + ", " + NOTE_DATA + ", " + CATEGORY + ", " + CREATED_TIME
+            + ", " + MODIFIED_TIME + ", " + UUID + ", " + DELETED_TIME + " ON " + NOTES
+            + " WHEN new." + UUID + " IS NOT NULL BEGIN " + logChangeSql("new") + " END";
+    static final String TRIGGER_CHANGES_DELETE_SQL = "CREATE TRIGGER IF NOT EXISTS " + TRIGGER_CHANGES_DELETE
+            + " AFTER DELETE ON " + NOTES + " WHEN old." + UUID + " IS NOT NULL BEGIN "
+            + logChangeSql("old") + " END";
+
+    // changed_time取当前时刻（毫秒），不早于该行的修改时间，用作删除记录的时间
+    private static String logChangeSql(String row) {
+        return "INSERT OR REPLACE INTO " + CHANGES + " (" + UUID + ", " + CHANGED_TIME + ") VALUES (" + row + "."
+                + UUID + ", max(CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER), coalesce(" + row + "."
+                + MODIFIED_TIME + ", 0)));";
+    }
+
+    static final String MAX_CHANGE_SEQ_SQL = "SELECT MAX(" + SEQ + ") FROM " + CHANGES;
+
+    // 全量备份：id大于上一页的正常笔记，按id分页；note_data在末尾，结果游标须经NoteBodies.wrap包装
+    static String backupNotesSql(int pageSize) {
+        return "SELECT " + ID + ", " + UUID + ", " + TITLE + ", " + NOTE + ", " + CATEGORY + ", " + CREATED_TIME + ", "
+                + MODIFIED_TIME + ", " + NOTE_DATA + " FROM " + NOTES + " WHERE " + ID + " > ? AND " + LIVE_SELECTION
+                + " ORDER BY " + ID + " LIMIT " + pageSize;
+    }
+
+    // 增量备份：序号在(since, highWater]内的变更，按序号分页，列序与backupNotesSql相同，另在note_data前
+    // 加上删除时间。笔记已彻底删除时notes各列为NULL，在回收站中时同样按删除写出（两种快照都不含回收站）；
+    // 删除时间取移入回收站或彻底删除的时刻，不早于修改时间
+    static String backupChangesSql(int pageSize) {
+        return "SELECT c." + SEQ + ", c." + UUID + ", n." + TITLE + ", n." + NOTE + ", n." + CATEGORY + ", n."
+                + CREATED_TIME + ", n." + MODIFIED_TIME + ", CASE WHEN n." + ID + " IS NULL OR n." + DELETED_TIME
+                + " IS NOT NULL THEN max(coalesce(n." + DELETED_TIME + ", c." + CHANGED_TIME + "), coalesce(n."
+                + MODIFIED_TIME + ", 0)) END AS " + DELETED_TIME + ", n." + NOTE_DATA + " FROM " + CHANGES
+                + " c LEFT JOIN " + NOTES + " n ON n." + UUID + " = c." + UUID + " WHERE c." + SEQ + " > ? AND c."
+                + SEQ + " <= ? ORDER BY c." + SEQ + " LIMIT " + pageSize;
+    }
+
+    // 全量备份之后，已彻底删除的笔记的变更记录不再需要
+    static final String PRUNE_CHANGES_SQL = "DELETE FROM " + CHANGES + " WHERE " + SEQ + " <= ? AND " + UUID
+            + " NOT IN (SELECT " + UUID + " FROM " + NOTES + " WHERE " + UUID + " IS NOT NULL)";
+
+    static final String[] REVISION_LIST_PROJECTION = new String[]{ID, NOTE_ID, CREATED_TIME, TITLE, LENGTH};
+    static final String REVISIONS_OF_SELECTION = NOTE_ID + " = ?";
+    static final String REVISION_SORT_ORDER = ID + " DESC";
+
+    // 还原一个版本所需的行：该版本及更新的行，由旧到新，至多到起点快照为止（参数：笔记id、版本id）
+    static final String REVISION_CHAIN_SQL = "SELECT " + ID + ", " + SNAPSHOT + ", " + DATA + " FROM " + REVISIONS
+            + " WHERE " + NOTE_ID + " = ? AND " + ID + " >= ? ORDER BY " + ID + " LIMIT "
+            + (RevisionChain.MAX_DEPTH + 1);
+    // 记录与清理时读取一篇笔记各行的id、是否快照与时间，最新的在前；行数不超过MAX_COUNT + 1
+    static final String REVISION_AGES_SQL = "SELECT " + ID + ", " + SNAPSHOT + ", " + CREATED_TIME + " FROM "
+            + REVISIONS + " WHERE " + NOTE_ID + " = ? ORDER BY " + ID + " DESC";
+    static final String INSERT_REVISION_SQL = "INSERT INTO " + REVISIONS + " (" + NOTE_ID + ", " + CREATED_TIME
+            + ", " + TITLE + ", " + LENGTH + ", " + SNAPSHOT + ", " + DATA + ") VALUES (?, ?, ?, ?, ?, ?)";
+    static final String DELETE_OLD_REVISIONS_SQL = "DELETE FROM " + REVISIONS + " WHERE " + NOTE_ID + " = ? AND "
+            + ID + " < ?";
+
+    // 覆盖前读取旧版本：id、标题、正文与修改时间（以及供NoteBodies.wrap解压的note_data）
+    static String revisionSourceSql(String selection) {
+        return "SELECT " + ID + ", " + TITLE + ", " + NOTE + ", " + MODIFIED_TIME + ", " + NOTE_DATA + " FROM " + NOTES
+                + " WHERE " + selection;
+    }
+
+    // v13回填：id大于上一批、尚未压缩且达到压缩长度的正文，按id顺序；压缩不划算的行下一批不再读到
+    static String compressBackfillSql(int batchSize) {
+        return "SELECT " + ID + ", " + NOTE + " FROM " + NOTES + " WHERE " + ID + " > ? AND " + NOTE_DATA
+                + " IS NULL AND length(" + NOTE + ") >= " + BodyCodec.MIN_CHARS + " ORDER BY " + ID
+                + " LIMIT " + batchSize;
+    }
+
+    static final String COMPRESS_BODY_SQL = "UPDATE " + NOTES + " SET " + NOTE + " = ?, " + NOTE_DATA + " = ? WHERE "
+            + ID + " = ?";
+
+    static final String SEARCH_TERMS_TABLE_SQL = "CREATE TABLE " + SEARCH_TERMS + " ("
+            + NOTE_ID + " INTEGER PRIMARY KEY, "
+            + LENGTH + " INTEGER NOT NULL, "
+            + TERMS + " TEXT NOT NULL"
+            + ");";
+
+    static final String TRIGGER_SEARCH_DELETE_SQL = "CREATE TRIGGER IF NOT EXISTS " + TRIGGER_SEARCH_DELETE
+            + " AFTER DELETE ON " + NOTES + " BEGIN "
+            + "DELETE FROM " + SEARCH_TERMS + " WHERE " + NOTE_ID + " = old." + ID + "; END";
+
+    static final String INSERT_SEARCH_TERMS_SQL = "INSERT OR REPLACE INTO " + SEARCH_TERMS + " (" + NOTE_ID + ", "
+            + LENGTH + ", " + TERMS + ") VALUES (?, ?, ?)";
+    static final String DELETE_SEARCH_TERMS_SQL = "DELETE FROM " + SEARCH_TERMS + " WHERE " + NOTE_ID + " = ?";
+
+    // v15回填：id大于上一批、还没有检索词的压缩行，按id顺序
+    static String searchTermsBackfillSql(int batchSize) {
+        return "SELECT " + ID + ", " + NOTE_DATA + " FROM " + NOTES + " WHERE " + ID + " > ? AND " + NOTE_DATA
+                + " IS NOT NULL AND " + ID + " NOT IN (SELECT " + NOTE_ID + " FROM " + SEARCH_TERMS + ") ORDER BY "
+                + ID + " LIMIT " + batchSize;
+    }
+
+    // 内存中算出的笔记id集合（标签筛选、链接改写）转为条件，id直接写进列表，不受绑定参数个数上限的限制
+    static String idSelection(long[] ids, boolean complement) {
+        StringBuilder sql = new StringBuilder(ID).append(complement ? " NOT IN (" : " IN (");
+        for (int i = 0; i < ids.length; i++) {
+            sql.append(i > 0 ? "," : "").append(ids[i]);
+        }
+        return sql.append(')').toString();
+    }
+
+    // v5回填：为升级前的笔记生成uuid、补上修改时间；uuid IS NULL走notes_uuid索引，每批只触及待处理的行
+    static String syncBackfillSql(int batchSize) {
+        return "UPDATE " + NOTES + " SET "
+                + UUID + " = lower(hex(randomblob(16))), "
+                + MODIFIED_TIME + " = CASE WHEN " + MODIFIED_TIME + " = 0 THEN " + CREATED_TIME
+                + " ELSE " + MODIFIED_TIME + " END"
+                + " WHERE " + ID + " IN (SELECT " + ID + " FROM " + NOTES
+                + " WHERE " + UUID + " IS NULL LIMIT " + batchSize + ")";
+    }
+
+    // v6重建：整表INSERT ... SELECT在库内顺序复制，不经过Java层
+    static String copyNotesSql(String from, String to) {
+        return "INSERT INTO " + to + " (" + NOTES_COLUMNS + ") SELECT " + NOTES_COLUMNS + " FROM " + from;
+    }
+
+    /**
+     * 列表筛选条件：关键字匹配标题或内容，分类精确匹配；参数为null表示不限。无条件时返回null。
+     */
+    static String filterSelection(String keyword, String category) {
+        StringBuilder selection = new StringBuilder();
+        if (keyword != null) {
+            selection.append(KEYWORD_SELECTION);
+        }
+        if (category != null) {
+            if (selection.length() > 0) {
+                selection.append(" AND ");
+            }
+            selection.append(CATEGORY).append(" = ?");
+        }
+        return selection.length() > 0 ? selection.toString() : null;
+    }
+
+    /**
+     * 关键字条件，参数为 {@link #filterArgs} 中的三个关键字参数。压缩存储的正文在note列中只有开头，
+     * 其余部分在检索词中查找（见 {@link BodyMatches#terms}）；语句不随命中的行变化，可以复用。
+     */
+    static final String KEYWORD_SELECTION = "(" + TITLE + " LIKE ? OR " + NOTE + " LIKE ? OR " + ID + " IN (SELECT "
+            + NOTE_ID + " FROM " + SEARCH_TERMS + " WHERE " + TERMS + " LIKE ?))";
+
+    /**
+     * 把投影中的计算列（搜索摘要与命中位置、标签列表）展开为SQL表达式，其余列原样保留；
+     * keyword为null时搜索计算列为NULL/-1。
+     * 关键字以字面量写入表达式，不占用绑定参数，调用方的selectionArgs顺序不受影响。
+     * 摘要只截取命中附近的一段，正文不会整段读出；lower()与LIKE一样只对ASCII字母忽略大小写。
+     * 压缩行的note列中只有正文开头，摘要与命中位置由NoteBodies.wrap在读取时按完整正文补上。
+     * 投影含正文列、或有关键字时含摘要列，在末尾追加note_data列，结果游标须经NoteBodies.wrap包装。
+     */
+    static String[] expandSearchColumns(String[] projection, String keyword) {
+        if (projection == null) {
+            return null;
+        }
+        String[] expanded = null;
+        for (int i = 0; i < projection.length; i++) {
+            String expression = searchColumnSql(projection[i], keyword);
+            if (expression != null) {
+                if (expanded == null) {
+                    expanded = projection.clone();
+                }
+                expanded[i] = expression + " AS " + projection[i];
+            }
+        }
+        expanded = expanded != null ? expanded : projection;
+        List<String> columns = Arrays.asList(projection);
+        if (columns.contains(NOTE)
+                || keyword != null && (columns.contains(SNIPPET) || columns.contains(SNIPPET_MATCH))) {
+            expanded = Arrays.copyOf(expanded, expanded.length + 1);
+            expanded[expanded.length - 1] = NOTE_DATA;
+        }
+        return expanded;
+    }
+
+    private static String searchColumnSql(String column, String keyword) {
+        if (TAGS.equals(column)) {
+            return TAGS_COLUMN_SQL;
+        }
+        boolean snippet = SNIPPET.equals(column);
+        if (!snippet && !SNIPPET_MATCH.equals(column) && !TITLE_MATCH.equals(column)) {
+            return null;
+        }
+        if (keyword == null) {
+            return snippet ? "NULL" : "-1";
+        }
+        String pattern = "lower(" + sqlLiteral(keyword) + ")";
+        if (TITLE_MATCH.equals(column)) {
+            return "instr(lower(" + TITLE + "), " + pattern + ") - 1";
+        }
+        String hit = "instr(lower(coalesce(" + NOTE + ", '')), " + pattern + ")";
+        if (!snippet) {
+            return "CASE WHEN " + hit + " > " + (SNIPPET_CONTEXT + 1) + " THEN " + (SNIPPET_CONTEXT + 1)
+                    + " ELSE " + hit + " - 1 END";
+        }
+        return "CASE WHEN " + hit + " > " + (SNIPPET_CONTEXT + 1) + " THEN '…' || "
+                + singleLine("substr(" + NOTE + ", " + hit + " - " + SNIPPET_CONTEXT + ", " + SNIPPET_LENGTH + ")")
+                + " WHEN " + hit + " > 0 THEN " + singleLine("substr(" + NOTE + ", 1, " + SNIPPET_LENGTH + ")")
+                + " END";
+    }
+
+    // 换行替换为空格，长度不变，命中位置仍然有效
+    private static String singleLine(String expression) {
+        return "replace(replace(" + expression + ", char(10), ' '), char(13), ' ')";
+    }
+
+    static String sqlLiteral(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    static String[] filterArgs(String keyword, String category) {
+        int count = (keyword != null ? 3 : 0) + (category != null ? 1 : 0);
+        if (count == 0) {
+            return null;
+        }
+        String[] args = new String[count];
+        int i = 0;
+        if (keyword != null) {
+            args[i++] = "%" + keyword + "%";
+            args[i++] = "%" + keyword + "%";
+            args[i++] = "%" + keyword + "%";
+        }
+        if (category != null) {
+            args[i] = category;
+        }
+        return args;
+    }
+}
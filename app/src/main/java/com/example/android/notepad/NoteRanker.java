@@ -0,0 +1,239 @@
+package com.example.android.notepad;
+
+import java.util.Arrays;
+
+/**
+ * 关键字搜索的相关度排序：BM25式的词频得分（标题加权）与创建时间的衰减按比例混合。
+ *
+ * 候选行由 {@link #candidateSql} 在库内算好标题/正文的长度与关键字出现次数，Java层只接收几个整数，
+ * 不读取正文。得分：
+ * <pre>
+ *   tf'   = TITLE_WEIGHT * 标题次数 / 标题长度归一 + 正文次数 / 正文长度归一
+ *   相关度 = tf' / (K1 + tf')                       （BM25的饱和函数，取值[0, 1)）
+ *   新近度 = 0.5 ^ (距今时间 / HALF_LIFE_MS)           （取值(0, 1]）
+ *   得分   = (1 - RECENCY_WEIGHT) * 相关度 + RECENCY_WEIGHT * 新近度
+ * </pre>
+ * 关键字作为整体短语匹配（与LIKE筛选一致），所有候选都包含它，BM25的idf对每行相同，
+ * 归一后不影响顺序，因此省略。平均长度取自本次的候选行。
+ *
+ * 只取前limit名：用容量为limit的小顶堆，n个候选的代价为O(n log limit)，不对全部候选排序。
+ * 纯Java实现，benchmark模块直接编译本文件。非线程安全，每次查询新建一个。
+ */
+final class NoteRanker {
+    static final double K1 = 1.2;
+    static final double B = 0.75;
+    // 一次标题命中约相当于五次正文命中：单次标题命中的旧笔记仍排在单次正文命中的新笔记之前
+    static final double TITLE_WEIGHT = 5.0;
+    static final double RECENCY_WEIGHT = 0.25;
+    static final long HALF_LIFE_MS = 30L * 24 * 60 * 60 * 1000;
+    private static final double DECAY_PER_MS = Math.log(2) / HALF_LIFE_MS;
+    // 新近度 e^(-DECAY_PER_MS·t)：把t按12位拆成三段分别查表再相乘，与直接计算只差舍入误差。
+    // 每行一次exp是打分的主要开销，10万候选时查表可省下大半时间
+    private static final int DECAY_BITS = 12;
+    private static final int DECAY_MASK = (1 << DECAY_BITS) - 1;
+    // 超过约795天（26个半衰期以上）新近度按0计，得分相同的行仍按创建时间排列
+    private static final long MAX_DECAY_AGE = 1L << (3 * DECAY_BITS);
+    private static final double[][] DECAY = new double[3][1 << DECAY_BITS];
+
+    static {
+        for (int part = 0; part < 3; part++) {
+            for (int i = 0; i <= DECAY_MASK; i++) {
+                DECAY[part][i] = Math.exp(-DECAY_PER_MS * ((double) i * (1L << (part * DECAY_BITS))));
+            }
+        }
+    }
+
+    static final int DEFAULT_LIMIT = 500;
+
+    // candidateSql的列顺序
+    static final int COLUMN_ID = 0;
+    static final int COLUMN_CREATED_TIME = 1;
+    static final int COLUMN_TITLE_LENGTH = 2;
+    static final int COLUMN_BODY_LENGTH = 3;
+    static final int COLUMN_TITLE_HITS = 4;
+    static final int COLUMN_BODY_HITS = 5;
+
+    private final long mNow;
+    private int mSize;
+    private long[] mIds;
+    private long[] mCreatedTimes;
+    private int[] mTitleLengths;
+    private int[] mBodyLengths;
+    private int[] mTitleHits;
+    private int[] mBodyHits;
+    private long mTotalTitleLength;
+    private long mTotalBodyLength;
+
+    NoteRanker(long now, int capacity) {
+        mNow = now;
+        int rows = Math.max(16, capacity);
+        mIds = new long[rows];
+        mCreatedTimes = new long[rows];
+        mTitleLengths = new int[rows];
+        mBodyLengths = new int[rows];
+        mTitleHits = new int[rows];
+        mBodyHits = new int[rows];
+    }
+
+    /**
+     * 候选查询：按列表筛选条件取出每行的id、创建时间、标题/正文长度和关键字出现次数。
+     * 参数为 {@link #candidateArgs} 的结果；selection为null表示不限。
+     * 出现次数用replace前后的长度差计算，lower()与LIKE一样只对ASCII字母忽略大小写。
+     * 压缩行的note列中只有正文开头：正文长度取检索表中的完整长度，正文次数取开头与检索词中的较大者
+     * （检索词不重复，次数可能偏少），不解压。
+     */
+    static String candidateSql(String selection) {
+        String body = "coalesce(" + NotePadSchema.NOTE + ", '')";
+        String terms = NotePadSchema.SEARCH_TERMS + "." + NotePadSchema.TERMS;
+        return "SELECT " + NotePadSchema.ID + ", " + NotePadSchema.CREATED_TIME + ", "
+                + "length(" + NotePadSchema.TITLE + "), "
+                + "coalesce(" + NotePadSchema.SEARCH_TERMS + "." + NotePadSchema.LENGTH + ", length(" + body + ")), "
+                + hitsSql(NotePadSchema.TITLE) + ", "
+                + "max(" + hitsSql(body) + ", coalesce(" + hitsSql(terms) + ", 0))"
+                + " FROM " + NotePadSchema.NOTES + " LEFT JOIN " + NotePadSchema.SEARCH_TERMS + " ON "
+                + NotePadSchema.NOTE_ID + " = " + NotePadSchema.ID
+                + (selection != null ? " WHERE " + selection : "");
+    }
+
+    private static String hitsSql(String column) {
+        return "(length(" + column + ") - length(replace(lower(" + column + "), lower(?), ''))) / length(?)";
+    }
+
+    // 选择列中的6个关键字参数在前，筛选参数在后
+    static String[] candidateArgs(String keyword, String[] selectionArgs) {
+        int extra = selectionArgs != null ? selectionArgs.length : 0;
+        String[] args = new String[6 + extra];
+        Arrays.fill(args, 0, 6, keyword);
+        if (extra > 0) {
+            System.arraycopy(selectionArgs, 0, args, 6, extra);
+        }
+        return args;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    void add(long id, long createdTime, int titleLength, int bodyLength, int titleHits, int bodyHits) {
+        if (mSize == mIds.length) {
+            int capacity = mSize * 2;
+            mIds = Arrays.copyOf(mIds, capacity);
+            mCreatedTimes = Arrays.copyOf(mCreatedTimes, capacity);
+            mTitleLengths = Arrays.copyOf(mTitleLengths, capacity);
+            mBodyLengths = Arrays.copyOf(mBodyLengths, capacity);
+            mTitleHits = Arrays.copyOf(mTitleHits, capacity);
+            mBodyHits = Arrays.copyOf(mBodyHits, capacity);
+        }
+        mIds[mSize] = id;
+        mCreatedTimes[mSize] = createdTime;
+        mTitleLengths[mSize] = titleLength;
+        mBodyLengths[mSize] = bodyLength;
+        mTitleHits[mSize] = titleHits;
+        mBodyHits[mSize] = bodyHits;
+        mTotalTitleLength += titleLength;
+        mTotalBodyLength += bodyLength;
+        mSize++;
+    }
+
+    /**
+     * 得分最高的至多limit行的id，按得分降序；得分相同时较新的在前。
+     */
+    long[] top(int limit) {
+        int k = Math.min(limit, mSize);
+        if (k <= 0) {
+            return new long[0];
+        }
+        double[] scores = new double[mSize];
+        double avgTitle = Math.max(1.0, (double) mTotalTitleLength / mSize);
+        double avgBody = Math.max(1.0, (double) mTotalBodyLength / mSize);
+        for (int i = 0; i < mSize; i++) {
+            scores[i] = score(i, avgTitle, avgBody);
+        }
+
+        // 小顶堆，堆顶是已选中的最差一行；新行比堆顶好时替换并下沉
+        int[] heap = new int[k];
+        int heapSize = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (heapSize < k) {
+                heap[heapSize] = i;
+                siftUp(heap, heapSize++, scores);
+            } else if (better(i, heap[0], scores)) {
+                heap[0] = i;
+                siftDown(heap, heapSize, scores);
+            }
+        }
+        // 依次弹出堆顶，从后往前填即为降序
+        long[] ids = new long[k];
+        for (int n = k - 1; n >= 0; n--) {
+            ids[n] = mIds[heap[0]];
+            heap[0] = heap[n];
+            siftDown(heap, n, scores);
+        }
+        return ids;
+    }
+
+    double score(int row, double avgTitle, double avgBody) {
+        double tf = TITLE_WEIGHT * mTitleHits[row] / (1 - B + B * mTitleLengths[row] / avgTitle)
+                + mBodyHits[row] / (1 - B + B * mBodyLengths[row] / avgBody);
+        double relevance = tf / (K1 + tf);
+        return (1 - RECENCY_WEIGHT) * relevance + RECENCY_WEIGHT * recency(mNow - mCreatedTimes[row]);
+    }
+
+    static double recency(long age) {
+        if (age <= 0) {
+            return 1;
+        }
+        if (age >= MAX_DECAY_AGE) {
+            return 0;
+        }
+        return DECAY[0][(int) (age & DECAY_MASK)]
+                * DECAY[1][(int) ((age >>> DECAY_BITS) & DECAY_MASK)]
+                * DECAY[2][(int) (age >>> (2 * DECAY_BITS))];
+    }
+
+    private boolean better(int a, int b, double[] scores) {
+        if (scores[a] != scores[b]) {
+            return scores[a] > scores[b];
+        }
+        if (mCreatedTimes[a] != mCreatedTimes[b]) {
+            return mCreatedTimes[a] > mCreatedTimes[b];
+        }
+        return mIds[a] > mIds[b];
+    }
+
+    private void siftUp(int[] heap, int i, double[] scores) {
+        int row = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(heap[parent], row, scores)) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = row;
+    }
+
+    private void siftDown(int[] heap, int size, double[] scores) {
+        if (size == 0) {
+            return;
+        }
+        int row = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && better(heap[child], heap[child + 1], scores)) {
+                child++;
+            }
+            if (!better(row, heap[child], scores)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = row;
+    }
+}
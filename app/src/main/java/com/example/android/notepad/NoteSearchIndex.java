@@ -0,0 +1,710 @@
+package com.example.android.notepad;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 标题和正文的内存倒排索引，供列表页边输入边搜索，不经过ContentResolver和游标。
+ *
+ * 每篇笔记（每次重新索引）分配一个递增的内部序号，倒排表是按序号升序的int数组，
+ * 元素为 (序号 << 1 | 是否出现在标题)。修改笔记时旧序号标记为失效、新序号追加到表尾，
+ * 因此倒排表始终有序；失效序号过多时整体压缩重排。
+ *
+ * 查询语义（与SQL的LIKE近似）：中文按二元组求交（不校验相邻），拉丁词精确匹配，
+ * 最后一个词按前缀匹配。单个汉字的查询无法用二元组回答，返回null由调用方改走SQL；
+ * 拉丁词不在词典中、或前缀展开不到任何词时，SQL仍可能在词中间命中（如ook命中book），同样返回null。
+ * 排序：命中标题的词数多者在前，其次按创建时间倒序。
+ *
+ * 内存上界：正文只索引前 {@link #MAX_INDEXED_CHARS} 个字符；总占用超出预算后只索引标题。
+ * 这两类笔记记为“部分索引”，调用方需用SQL补查 {@link #getPartialIds()}。
+ * 所有公开方法都加锁，可在主线程查询、后台线程更新。
+ */
+final class NoteSearchIndex {
+    static final int MAX_INDEXED_CHARS = 2048;
+    // 前缀最多展开的词数，过短的前缀（如单个字母）交给SQL
+    static final int MAX_PREFIX_TERMS = 64;
+
+    private static final int TITLE_FLAG = 1;
+    // 估算用的对象开销
+    private static final int ARRAY_OVERHEAD = 16;
+    private static final int STRING_OVERHEAD = 40;
+
+    /**
+     * 一次查询的结果，按排序后的顺序存放。
+     */
+    static final class Hits {
+        final int size;
+        final long[] ids;
+        final String[] titles;
+        final long[] createdTimes;
+        final String[] categories;
+
+        Hits(int size) {
+            this.size = size;
+            ids = new long[size];
+            titles = new String[size];
+            createdTimes = new long[size];
+            categories = new String[size];
+        }
+    }
+
+    // 倒排表的有效部分（数组按容量分配，只有前size个有效）
+    private static final class Postings {
+        final int[] data;
+        final int size;
+
+        Postings(int[] data, int size) {
+            this.data = data;
+            this.size = size;
+        }
+    }
+
+    private final long mBudgetBytes;
+
+    // 按内部序号存放的笔记属性
+    private int mDocCount;
+    private int mLiveCount;
+    private long[] mNoteIds = new long[256];
+    private long[] mCreatedTimes = new long[256];
+    private int[] mCategoryIds = new int[256];
+    private String[] mTitles = new String[256];
+    private final BitSet mDead = new BitSet();
+    private final BitSet mPartial = new BitSet();
+    private LongIntMap mOrdinals = new LongIntMap();
+
+    // 词典：中文词编码和拉丁词分别映射到词号
+    private final LongIntMap mCjkTerms = new LongIntMap();
+    private final Map<String, Integer> mWordTerms = new HashMap<>();
+    // 按字典序排好的拉丁词，前缀查询时二分定位。新词先放入mPendingWords，攒够后在更新线程上归并，
+    // 查询时只顺序扫描这几个新词，不在主线程上排序整个词典
+    private String[] mSortedWords = new String[0];
+    private final List<String> mPendingWords = new ArrayList<>();
+
+    private int mTermCount;
+    private int[][] mPostings = new int[1024][];
+    private int[] mPostingSizes = new int[1024];
+    // 每个词最近追加的序号，同一篇笔记中重复出现的词只记一条
+    private int[] mLastOrdinals = new int[1024];
+    private long mPostingCount;
+
+    private final List<String> mCategories = new ArrayList<>();
+    private final Map<String, Integer> mCategoryIndex = new HashMap<>();
+
+    // 增量维护的内存估算
+    private long mPostingBytes;
+    private long mTitleBytes;
+    private long mWordBytes;
+
+    // 正在添加的笔记序号
+    private int mCurrentOrdinal;
+
+    // 查询用的缓冲，跨查询复用以免每次按键分配数十万字节
+    private int[] mCandidates = new int[0];
+    private int[] mTitleHits = new int[0];
+    private long[] mKeys = new long[0];
+    // 前缀展开时按序号编址的标记：bit0出现、bit1出现在标题
+    private byte[] mUnionMarks = new byte[0];
+    private int[] mUnion = new int[0];
+    private final int[] mPrefixTerms = new int[MAX_PREFIX_TERMS];
+
+    NoteSearchIndex(long budgetBytes) {
+        mBudgetBytes = budgetBytes;
+    }
+
+    /**
+     * 添加或重新索引一篇笔记。body可以只是正文的开头，bodyTruncated表示后面还有内容。
+     */
+    synchronized void put(long noteId, String title, String body, boolean bodyTruncated,
+                          long createdTime, String category) {
+        removeInternal(noteId);
+        int ordinal = mDocCount++;
+        ensureDocCapacity(mDocCount);
+        String shortTitle = title == null ? "" : title;
+        if (shortTitle.length() > NotePadSchema.LIST_TITLE_LENGTH) {
+            shortTitle = shortTitle.substring(0, NotePadSchema.LIST_TITLE_LENGTH);
+        }
+        mNoteIds[ordinal] = noteId;
+        mCreatedTimes[ordinal] = createdTime;
+        mCategoryIds[ordinal] = categoryId(category);
+        mTitles[ordinal] = shortTitle;
+        mTitleBytes += STRING_OVERHEAD + 2L * shortTitle.length();
+        mOrdinals.put(noteId, ordinal);
+        mLiveCount++;
+
+        // 先索引标题，正文中再次出现的词不会覆盖标题标记
+        mCurrentOrdinal = ordinal;
+        collect(title, TITLE_FLAG);
+        boolean overBudget = memoryBytes() > mBudgetBytes;
+        if (body != null && !overBudget) {
+            collect(body, indexedEnd(body), 0);
+        }
+        if (overBudget || bodyTruncated || (body != null && body.length() > MAX_INDEXED_CHARS)) {
+            mPartial.set(ordinal);
+        }
+    }
+
+    synchronized boolean remove(long noteId) {
+        boolean removed = removeInternal(noteId);
+        compactIfNeeded();
+        return removed;
+    }
+
+    private boolean removeInternal(long noteId) {
+        int ordinal = mOrdinals.get(noteId, -1);
+        if (ordinal < 0) {
+            return false;
+        }
+        mOrdinals.put(noteId, -1);
+        mDead.set(ordinal);
+        mPartial.clear(ordinal);
+        mTitleBytes -= STRING_OVERHEAD + 2L * mTitles[ordinal].length();
+        mTitles[ordinal] = null;
+        mLiveCount--;
+        return true;
+    }
+
+    synchronized int size() {
+        return mLiveCount;
+    }
+
+    // 需要用SQL补查的笔记（正文超出索引长度或超出预算）
+    synchronized long[] getPartialIds() {
+        long[] ids = new long[mPartial.cardinality()];
+        int n = 0;
+        for (int ordinal = mPartial.nextSetBit(0); ordinal >= 0; ordinal = mPartial.nextSetBit(ordinal + 1)) {
+            ids[n++] = mNoteIds[ordinal];
+        }
+        return ids;
+    }
+
+    /**
+     * 查询关键字，可选按分类精确过滤，返回排序后的前limit条。无法回答时返回null。
+     */
+    synchronized Hits search(String keyword, String category, int limit) {
+        final List<Postings> required = new ArrayList<>();
+        final boolean[] unanswerable = new boolean[1];
+        final String[] lastWord = new String[1];
+        // 缺少中文二元组时一定没有命中（部分索引的笔记由调用方另行补查）
+        final boolean[] missing = new boolean[1];
+        final String query = keyword == null ? "" : keyword.trim();
+        NoteTokenizer.tokenize(query, 0, query.length(), new NoteTokenizer.Sink() {
+            @Override
+            public void cjk(int key, int start, int end) {
+                if (isUnigram(key)) {
+                    unanswerable[0] = true;
+                    return;
+                }
+                int term = mCjkTerms.get(key, -1);
+                if (term < 0) {
+                    missing[0] = true;
+                } else {
+                    required.add(postings(term));
+                }
+            }
+
+            @Override
+            public void word(String word, int start, int end) {
+                if (end == query.length()) {
+                    lastWord[0] = word;
+                    return;
+                }
+                Integer term = mWordTerms.get(word);
+                if (term == null) {
+                    unanswerable[0] = true;
+                } else {
+                    required.add(postings(term));
+                }
+            }
+        });
+        if (unanswerable[0]) {
+            return null;
+        }
+        if (lastWord[0] != null) {
+            Postings prefix = prefixPostings(lastWord[0]);
+            if (prefix == null) {
+                return null;
+            }
+            required.add(prefix);
+        }
+        if (required.isEmpty() && !missing[0]) {
+            return null;
+        }
+        int categoryId = -1;
+        if (category != null) {
+            Integer id = mCategoryIndex.get(category);
+            if (id == null) {
+                return new Hits(0);
+            }
+            categoryId = id;
+        }
+        if (missing[0]) {
+            return new Hits(0);
+        }
+
+        // 从最短的表开始求交，hits记录每个候选命中标题的词数
+        Postings[] lists = required.toArray(new Postings[0]);
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        int count = lists[0].size;
+        if (mCandidates.length < count) {
+            mCandidates = new int[count + (count >> 2)];
+            mTitleHits = new int[mCandidates.length];
+            mKeys = new long[mCandidates.length];
+        }
+        int[] candidates = mCandidates;
+        int[] titleHits = mTitleHits;
+        for (int i = 0; i < count; i++) {
+            candidates[i] = lists[0].data[i] >>> 1;
+            titleHits[i] = lists[0].data[i] & TITLE_FLAG;
+        }
+        for (int l = 1; l < lists.length && count > 0; l++) {
+            count = intersect(candidates, titleHits, count, lists[l]);
+        }
+
+        // 排序键：标题命中数(4位) | 创建时间的秒数(32位) | 序号(27位)，降序即结果顺序
+        long[] keys = mKeys;
+        int matched = 0;
+        for (int i = 0; i < count; i++) {
+            int ordinal = candidates[i];
+            if (mDead.get(ordinal) || (categoryId >= 0 && mCategoryIds[ordinal] != categoryId)) {
+                continue;
+            }
+            long seconds = Math.max(0, mCreatedTimes[ordinal] / 1000) & 0xFFFFFFFFL;
+            keys[matched++] = ((long) Math.min(titleHits[i], 15) << 59) | (seconds << 27) | ordinal;
+        }
+        int top = Math.min(matched, limit);
+        if (top < matched) {
+            selectLargest(keys, matched, top);
+        }
+        Arrays.sort(keys, 0, top);
+        Hits hits = new Hits(top);
+        for (int i = 0; i < top; i++) {
+            int ordinal = (int) (keys[top - 1 - i] & ((1 << 27) - 1));
+            hits.ids[i] = mNoteIds[ordinal];
+            hits.titles[i] = mTitles[ordinal];
+            hits.createdTimes[i] = mCreatedTimes[ordinal];
+            hits.categories[i] = mCategories.get(mCategoryIds[ordinal]);
+        }
+        return hits;
+    }
+
+    // 部分快速选择：把最大的k个键移到keys[0, k)，顺序不定。平均O(n)，避免对全部命中排序
+    private static void selectLargest(long[] keys, int n, int k) {
+        int left = 0;
+        int right = n - 1;
+        while (left < right) {
+            long pivot = keys[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (keys[i] > pivot) {
+                    i++;
+                }
+                while (keys[j] < pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    long t = keys[i];
+                    keys[i] = keys[j];
+                    keys[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            // [left, j] >= pivot >= [i, right]
+            if (k - 1 <= j) {
+                right = j;
+            } else if (k - 1 >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    // 与升序倒排表求交，结果原地写回candidates，返回剩余个数。两边长度悬殊时按指数步长跳跃
+    private static int intersect(int[] candidates, int[] titleHits, int count, Postings list) {
+        int[] postings = list.data;
+        int length = list.size;
+        int kept = 0;
+        int p = 0;
+        for (int i = 0; i < count && p < length; i++) {
+            int ordinal = candidates[i];
+            if ((postings[p] >>> 1) < ordinal) {
+                int step = 1;
+                int low = p;
+                while (p + step < length && (postings[p + step] >>> 1) < ordinal) {
+                    low = p + step;
+                    step <<= 1;
+                }
+                int high = Math.min(p + step, length - 1);
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if ((postings[mid] >>> 1) < ordinal) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+                p = low;
+            }
+            if ((postings[p] >>> 1) == ordinal) {
+                candidates[kept] = ordinal;
+                titleHits[kept] = titleHits[i] + (postings[p] & TITLE_FLAG);
+                kept++;
+                p++;
+            }
+        }
+        return kept;
+    }
+
+    // 展开前缀：合并所有以prefix开头的拉丁词的倒排表，展开过多或一个词都没有时返回null
+    private Postings prefixPostings(String prefix) {
+        int[] terms = mPrefixTerms;
+        int n = 0;
+        int from = Arrays.binarySearch(mSortedWords, prefix);
+        if (from < 0) {
+            from = -from - 1;
+        }
+        for (int i = from; i < mSortedWords.length && mSortedWords[i].startsWith(prefix); i++) {
+            if (n == MAX_PREFIX_TERMS) {
+                return null;
+            }
+            terms[n++] = mWordTerms.get(mSortedWords[i]);
+        }
+        for (String word : mPendingWords) {
+            if (word.startsWith(prefix)) {
+                if (n == MAX_PREFIX_TERMS) {
+                    return null;
+                }
+                terms[n++] = mWordTerms.get(word);
+            }
+        }
+        if (n == 0) {
+            return null;
+        }
+        if (n == 1) {
+            return postings(terms[0]);
+        }
+        // 各词的倒排表分别有序但彼此交错，用按序号编址的标记合并，代价与笔记数成正比而不需排序
+        if (mUnionMarks.length < mDocCount) {
+            mUnionMarks = new byte[mDocCount + (mDocCount >> 2)];
+        }
+        byte[] marks = mUnionMarks;
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            int term = terms[i];
+            int[] list = mPostings[term];
+            for (int j = 0, size = mPostingSizes[term]; j < size; j++) {
+                marks[list[j] >>> 1] |= (byte) (1 | ((list[j] & TITLE_FLAG) << 1));
+            }
+            total += mPostingSizes[term];
+        }
+        if (mUnion.length < Math.min(total, mDocCount)) {
+            mUnion = new int[mDocCount + (mDocCount >> 2)];
+        }
+        int[] merged = mUnion;
+        int kept = 0;
+        for (int ordinal = 0; ordinal < mDocCount; ordinal++) {
+            byte mark = marks[ordinal];
+            if (mark != 0) {
+                merged[kept++] = (ordinal << 1) | (mark >>> 1);
+                marks[ordinal] = 0;
+            }
+        }
+        return new Postings(merged, kept);
+    }
+
+    private Postings postings(int term) {
+        return new Postings(mPostings[term], mPostingSizes[term]);
+    }
+
+    private static boolean isUnigram(int key) {
+        return (key & 0xFFFF) == 0;
+    }
+
+    // 正文截断处如果落在拉丁词中间，退回到词首，避免把半个词当成独立的词
+    private static int indexedEnd(String body) {
+        int end = Math.min(body.length(), MAX_INDEXED_CHARS);
+        if (end < body.length() && NoteTokenizer.isWordChar(body.charAt(end))) {
+            while (end > 0 && NoteTokenizer.isWordChar(body.charAt(end - 1))) {
+                end--;
+            }
+        }
+        return end;
+    }
+
+    private void collect(String text, int flag) {
+        if (text != null) {
+            collect(text, text.length(), flag);
+        }
+    }
+
+    private void collect(String text, int end, final int flag) {
+        NoteTokenizer.tokenize(text, 0, end, new NoteTokenizer.Sink() {
+            @Override
+            public void cjk(int key, int start, int end) {
+                // 单字只在查询时用来判断能否回答，不建索引
+                if (!isUnigram(key)) {
+                    addPosting(cjkTerm(key), flag);
+                }
+            }
+
+            @Override
+            public void word(String word, int start, int end) {
+                addPosting(wordTerm(word), flag);
+            }
+        });
+    }
+
+    private int cjkTerm(int key) {
+        int term = mCjkTerms.get(key, -1);
+        if (term < 0) {
+            term = newTerm();
+            mCjkTerms.put(key, term);
+        }
+        return term;
+    }
+
+    private int wordTerm(String word) {
+        Integer term = mWordTerms.get(word);
+        if (term == null) {
+            term = newTerm();
+            mWordTerms.put(word, term);
+            mWordBytes += STRING_OVERHEAD + 2L * word.length() + 48;
+            mPendingWords.add(word);
+            if (mPendingWords.size() > 64 + mSortedWords.length / 16) {
+                mergePendingWords();
+            }
+        }
+        return term;
+    }
+
+    // 新词排序后与已排序的词典归并，代价与词典大小成正比；按词典的比例攒批，均摊到每个新词是常数
+    private void mergePendingWords() {
+        String[] pending = mPendingWords.toArray(new String[0]);
+        Arrays.sort(pending);
+        String[] sorted = mSortedWords;
+        String[] merged = new String[sorted.length + pending.length];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < merged.length; k++) {
+            if (j == pending.length || (i < sorted.length && sorted[i].compareTo(pending[j]) < 0)) {
+                merged[k] = sorted[i++];
+            } else {
+                merged[k] = pending[j++];
+            }
+        }
+        mSortedWords = merged;
+        mPendingWords.clear();
+    }
+
+    private int newTerm() {
+        if (mTermCount == mPostings.length) {
+            mPostings = Arrays.copyOf(mPostings, mTermCount * 2);
+            mPostingSizes = Arrays.copyOf(mPostingSizes, mTermCount * 2);
+            mLastOrdinals = Arrays.copyOf(mLastOrdinals, mTermCount * 2);
+        }
+        mPostings[mTermCount] = new int[2];
+        mLastOrdinals[mTermCount] = -1;
+        mPostingBytes += ARRAY_OVERHEAD + 8 + 4;
+        return mTermCount++;
+    }
+
+    // 倒排表按序号升序追加；同一篇笔记已记过该词时只合并标题标记
+    private void addPosting(int term, int flag) {
+        int ordinal = mCurrentOrdinal;
+        int[] list = mPostings[term];
+        int size = mPostingSizes[term];
+        if (mLastOrdinals[term] == ordinal) {
+            list[size - 1] |= flag;
+            return;
+        }
+        mLastOrdinals[term] = ordinal;
+        int posting = (ordinal << 1) | flag;
+        if (size == list.length) {
+            int capacity = size + (size >> 1) + 2;
+            mPostingBytes += 4L * (capacity - size);
+            list = Arrays.copyOf(list, capacity);
+            mPostings[term] = list;
+        }
+        list[size] = posting;
+        mPostingSizes[term] = size + 1;
+        mPostingCount++;
+    }
+
+    private int categoryId(String category) {
+        String name = category == null ? "" : category;
+        Integer id = mCategoryIndex.get(name);
+        if (id == null) {
+            id = mCategories.size();
+            mCategories.add(name);
+            mCategoryIndex.put(name, id);
+        }
+        return id;
+    }
+
+    private void ensureDocCapacity(int docs) {
+        if (docs <= mNoteIds.length) {
+            return;
+        }
+        int capacity = Math.max(docs, mNoteIds.length * 2);
+        mNoteIds = Arrays.copyOf(mNoteIds, capacity);
+        mCreatedTimes = Arrays.copyOf(mCreatedTimes, capacity);
+        mCategoryIds = Arrays.copyOf(mCategoryIds, capacity);
+        mTitles = Arrays.copyOf(mTitles, capacity);
+    }
+
+    // 失效序号超过有效序号的一半时，去掉倒排表中的失效项并把序号重新排成连续
+    private void compactIfNeeded() {
+        int dead = mDocCount - mLiveCount;
+        if (dead < 1024 || dead * 2 < mLiveCount) {
+            return;
+        }
+        compact();
+    }
+
+    synchronized void compact() {
+        int[] remap = new int[mDocCount];
+        int live = 0;
+        LongIntMap ordinals = new LongIntMap();
+        BitSet partial = new BitSet();
+        for (int ordinal = 0; ordinal < mDocCount; ordinal++) {
+            if (mDead.get(ordinal)) {
+                remap[ordinal] = -1;
+                continue;
+            }
+            remap[ordinal] = live;
+            mNoteIds[live] = mNoteIds[ordinal];
+            mCreatedTimes[live] = mCreatedTimes[ordinal];
+            mCategoryIds[live] = mCategoryIds[ordinal];
+            mTitles[live] = mTitles[ordinal];
+            ordinals.put(mNoteIds[live], live);
+            if (mPartial.get(ordinal)) {
+                partial.set(live);
+            }
+            live++;
+        }
+        Arrays.fill(mTitles, live, mDocCount, null);
+
+        long postingBytes = 0;
+        long postingCount = 0;
+        for (int term = 0; term < mTermCount; term++) {
+            int[] list = mPostings[term];
+            int kept = 0;
+            for (int i = 0; i < mPostingSizes[term]; i++) {
+                int ordinal = remap[list[i] >>> 1];
+                if (ordinal >= 0) {
+                    list[kept++] = (ordinal << 1) | (list[i] & TITLE_FLAG);
+                }
+            }
+            // 空表保留（词号仍在词典中），顺便收回多余容量
+            if (list.length > kept + 2) {
+                list = Arrays.copyOf(list, kept + 2);
+                mPostings[term] = list;
+            }
+            mPostingSizes[term] = kept;
+            mLastOrdinals[term] = kept > 0 ? list[kept - 1] >>> 1 : -1;
+            postingBytes += ARRAY_OVERHEAD + 4 + 4L * list.length;
+            postingCount += kept;
+        }
+        mPostingBytes = postingBytes;
+        mPostingCount = postingCount;
+        mDocCount = live;
+        mOrdinals = ordinals;
+        mDead.clear();
+        mPartial.clear();
+        mPartial.or(partial);
+    }
+
+    /**
+     * 估算的内存占用（字节）：倒排表、词典、笔记属性和标题。
+     */
+    synchronized long memoryBytes() {
+        long docs = (long) mNoteIds.length * (8 + 8 + 4 + 4);
+        long dictionary = mCjkTerms.memoryBytes() + mWordBytes + 8L * mPostings.length;
+        return mPostingBytes + dictionary + docs + mTitleBytes + mOrdinals.memoryBytes();
+    }
+
+    synchronized String describe() {
+        return String.format(Locale.US, "docs=%d partial=%d dead=%d terms=%d postings=%d memory=%dKB budget=%dKB",
+                mLiveCount, mPartial.cardinality(), mDocCount - mLiveCount, mTermCount, mPostingCount,
+                memoryBytes() / 1024, mBudgetBytes / 1024);
+    }
+
+    /**
+     * long到int的开放寻址哈希表，不装箱。只增不删，删除由调用方写入特殊值表示。
+     */
+    static final class LongIntMap {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private long[] mKeys = newKeys(64);
+        private int[] mValues = new int[64];
+        private int mSize;
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        int get(long key, int defaultValue) {
+            int mask = mKeys.length - 1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                long k = mKeys[i];
+                if (k == key) {
+                    return mValues[i];
+                }
+                if (k == EMPTY) {
+                    return defaultValue;
+                }
+            }
+        }
+
+        void put(long key, int value) {
+            if ((mSize + 1) * 4 > mKeys.length * 3) {
+                resize();
+            }
+            int mask = mKeys.length - 1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                long k = mKeys[i];
+                if (k == key) {
+                    mValues[i] = value;
+                    return;
+                }
+                if (k == EMPTY) {
+                    mKeys[i] = key;
+                    mValues[i] = value;
+                    mSize++;
+                    return;
+                }
+            }
+        }
+
+        long memoryBytes() {
+            return 2 * ARRAY_OVERHEAD + 12L * mKeys.length;
+        }
+
+        private void resize() {
+            long[] keys = mKeys;
+            int[] values = mValues;
+            mKeys = newKeys(keys.length * 2);
+            mValues = new int[keys.length * 2];
+            mSize = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    put(keys[i], values[i]);
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
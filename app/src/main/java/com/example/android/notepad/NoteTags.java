@@ -0,0 +1,200 @@
+package com.example.android.notepad;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * 标签的读写：tags/note_tags两张表，以及它们在内存中的 {@link TagIndex}。
+ *
+ * 索引在首次按标签查询时从表中构建，之后由写入方法同步修改；写入所在的事务回滚时调用
+ * {@link #invalidate}，下次查询重新构建。锁的顺序固定为先数据库连接（事务）后索引锁：
+ * 写入总在事务中修改索引，构建也先开启事务再加锁，两者不会互相等待。
+ */
+final class NoteTags {
+    private final Object mLock = new Object();
+    // 由mLock保护；null表示尚未构建或已失效
+    private TagIndex mIndex;
+    private long mLastBuildMs;
+
+    /**
+     * 把这些笔记的标签整体替换为names（不存在的标签新建），并同步修改已构建的索引。须在事务中调用。
+     */
+    void write(SQLiteDatabase db, long[] noteIds, List<String> names) {
+        int[] tagIds = new int[names.size()];
+        SQLiteStatement insertTag = db.compileStatement(NotePadSchema.INSERT_TAG_SQL);
+        try {
+            for (int i = 0; i < tagIds.length; i++) {
+                Cursor c = db.rawQuery(NotePadSchema.FIND_TAG_SQL, new String[]{names.get(i)});
+                try {
+                    if (c.moveToFirst()) {
+                        tagIds[i] = c.getInt(0);
+                        continue;
+                    }
+                } finally {
+                    c.close();
+                }
+                insertTag.bindString(1, names.get(i));
+                tagIds[i] = (int) insertTag.executeInsert();
+            }
+        } finally {
+            insertTag.close();
+        }
+
+        SQLiteStatement clear = db.compileStatement(NotePadSchema.DELETE_NOTE_TAGS_SQL);
+        SQLiteStatement link = db.compileStatement(NotePadSchema.INSERT_NOTE_TAG_SQL);
+        try {
+            for (long noteId : noteIds) {
+                clear.bindLong(1, noteId);
+                clear.executeUpdateDelete();
+                for (int tagId : tagIds) {
+                    link.bindLong(1, noteId);
+                    link.bindLong(2, tagId);
+                    link.executeInsert();
+                }
+            }
+        } finally {
+            clear.close();
+            link.close();
+        }
+
+        synchronized (mLock) {
+            if (mIndex != null) {
+                for (int i = 0; i < tagIds.length; i++) {
+                    mIndex.putTag(tagIds[i], names.get(i));
+                }
+                for (long noteId : noteIds) {
+                    mIndex.setNoteTags(noteId, tagIds);
+                }
+            }
+        }
+    }
+
+    /**
+     * 即将删除满足条件的笔记或把它们移入回收站：从已构建的索引中移除它们（删除时表中的关联由触发器删除，
+     * 移入回收站时保留）。须在删除所在的事务中、删除之前调用。
+     */
+    void beforeDeleteNotes(SQLiteDatabase db, String selection, String[] selectionArgs) {
+        synchronized (mLock) {
+            if (mIndex == null) {
+                return;
+            }
+        }
+        Cursor c = db.query(NotePadSchema.NOTES, new String[]{NotePadSchema.ID}, selection, selectionArgs,
+                null, null, null);
+        try {
+            synchronized (mLock) {
+                while (mIndex != null && c.moveToNext()) {
+                    mIndex.removeNote(c.getLong(0));
+                }
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    // 删除标签，返回删除的行数
+    int deleteTag(SQLiteDatabase db, long tagId) {
+        int count = db.delete(NotePadSchema.TAGS, NotePadSchema.ID + " = ?", new String[]{String.valueOf(tagId)});
+        synchronized (mLock) {
+            if (mIndex != null) {
+                mIndex.removeTag((int) tagId);
+            }
+        }
+        return count;
+    }
+
+    // 表被绕过Provider改写（备份恢复）或写入的事务回滚后调用
+    void invalidate() {
+        synchronized (mLock) {
+            mIndex = null;
+        }
+    }
+
+    /**
+     * 按标签筛选笔记的条件，all/any/none的含义见 {@link TagIndex#match}；三者都为空时返回null。
+     */
+    String selection(SQLiteDatabase db, List<String> all, List<String> any, List<String> none) {
+        if (all.isEmpty() && any.isEmpty() && none.isEmpty()) {
+            return null;
+        }
+        while (true) {
+            build(db);
+            synchronized (mLock) {
+                if (mIndex != null) {
+                    TagIndex.Match match = mIndex.match(all, any, none);
+                    return NotePadSchema.idSelection(match.ids.toArray(), match.complement);
+                }
+            }
+        }
+    }
+
+    // 各标签的笔记数；给出条件时只计满足条件的笔记
+    List<TagIndex.TagCount> counts(SQLiteDatabase db, List<String> all, List<String> any, List<String> none) {
+        while (true) {
+            build(db);
+            synchronized (mLock) {
+                if (mIndex != null) {
+                    return mIndex.counts(mIndex.match(all, any, none));
+                }
+            }
+        }
+    }
+
+    // 尚未构建时在事务中读取全部关联，与写入互斥，不会漏掉并发写入
+    private void build(SQLiteDatabase db) {
+        synchronized (mLock) {
+            if (mIndex != null) {
+                return;
+            }
+        }
+        db.beginTransactionNonExclusive();
+        try {
+            synchronized (mLock) {
+                if (mIndex == null) {
+                    long start = System.currentTimeMillis();
+                    mIndex = load(db);
+                    mLastBuildMs = System.currentTimeMillis() - start;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static TagIndex load(SQLiteDatabase db) {
+        TagIndex index = new TagIndex();
+        Cursor c = db.rawQuery(NotePadSchema.TAG_INDEX_TAGS_SQL, null);
+        try {
+            while (c.moveToNext()) {
+                index.putTag(c.getInt(0), c.getString(1));
+            }
+        } finally {
+            c.close();
+        }
+        c = db.rawQuery(NotePadSchema.TAG_INDEX_ROWS_SQL, null);
+        try {
+            while (c.moveToNext()) {
+                index.add(c.getInt(0), c.getLong(1));
+            }
+        } finally {
+            c.close();
+        }
+        return index;
+    }
+
+    void dump(PrintWriter writer) {
+        synchronized (mLock) {
+            if (mIndex == null) {
+                writer.println("Tag index: not built");
+            } else {
+                writer.println("Tag index: tags=" + mIndex.tagCount() + " bytes=" + mIndex.sizeInBytes()
+                        + " lastBuild=" + mLastBuildMs + "ms");
+            }
+        }
+    }
+}
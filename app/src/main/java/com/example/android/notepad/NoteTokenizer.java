@@ -0,0 +1,77 @@
+package com.example.android.notepad;
+
+import java.util.Locale;
+
+/**
+ * 内存搜索索引用的分词：
+ * <ul>
+ *   <li>中日韩文字按相邻两字切分（二元组），孤立的单字单独成词</li>
+ *   <li>拉丁字母和数字按连续串切分并转小写，过长的串截断</li>
+ *   <li>其余字符（空白、标点、符号）作为分隔</li>
+ * </ul>
+ * 二元组和单字编码为int（高16位、低16位各一个字符，单字低16位为0），拉丁词保留为字符串，
+ * 分别通过 {@link Sink} 的两个回调交给调用方，不为中文词创建对象。
+ */
+final class NoteTokenizer {
+    static final int MAX_WORD_LENGTH = 32;
+
+    interface Sink {
+        // 中文词：二元组或孤立单字的编码；start/end为在原文中的字符区间
+        void cjk(int key, int start, int end);
+
+        void word(String word, int start, int end);
+    }
+
+    private NoteTokenizer() {
+    }
+
+    static boolean isCjk(char c) {
+        return (c >= 0x4E00 && c <= 0x9FFF)   // 中日韩统一表意文字
+                || (c >= 0x3400 && c <= 0x4DBF) // 扩展A
+                || (c >= 0xF900 && c <= 0xFAFF) // 兼容表意文字
+                || (c >= 0x3040 && c <= 0x30FF) // 平假名、片假名
+                || (c >= 0xAC00 && c <= 0xD7AF); // 谚文音节
+    }
+
+    static boolean isWordChar(char c) {
+        return c < 0x80 ? (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                : Character.isLetterOrDigit(c) && !isCjk(c);
+    }
+
+    static int bigram(char first, char second) {
+        return (first << 16) | second;
+    }
+
+    static int unigram(char c) {
+        return c << 16;
+    }
+
+    static void tokenize(CharSequence text, int start, int end, Sink sink) {
+        int i = start;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (isCjk(c)) {
+                int runStart = i;
+                while (i < end && isCjk(text.charAt(i))) {
+                    i++;
+                }
+                if (i - runStart == 1) {
+                    sink.cjk(unigram(c), runStart, i);
+                } else {
+                    for (int j = runStart; j + 1 < i; j++) {
+                        sink.cjk(bigram(text.charAt(j), text.charAt(j + 1)), j, j + 2);
+                    }
+                }
+            } else if (isWordChar(c)) {
+                int runStart = i;
+                while (i < end && isWordChar(text.charAt(i))) {
+                    i++;
+                }
+                int wordEnd = Math.min(i, runStart + MAX_WORD_LENGTH);
+                sink.word(text.subSequence(runStart, wordEnd).toString().toLowerCase(Locale.ROOT), runStart, i);
+            } else {
+                i++;
+            }
+        }
+    }
+}
@@ -1,49 +1,96 @@
 package com.example.android.notepad;
 
-import android.annotation.SuppressLint;
 import android.app.AlertDialog;
 import android.app.ListActivity;
+import android.app.ProgressDialog;
 import android.content.ContentUris;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.database.ContentObserver;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
-import android.provider.BaseColumns;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.text.Editable;
 import android.text.TextUtils;
 import android.text.TextWatcher;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.view.inputmethod.EditorInfo;
+import android.webkit.URLUtil;
 import android.widget.AdapterView;
 import android.widget.Button;
 import android.widget.EditText;
-import android.widget.ImageView;
 import android.widget.ListView;
-import android.widget.SimpleCursorAdapter;
 import android.widget.Spinner;
-import android.widget.TextView;
 import android.widget.Toast;
 
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.Locale;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class NotesList extends ListActivity {
     private EditText etSearch;
     private Button btnSearch;
-    private SimpleCursorAdapter adapter;
-    private Cursor cursor;
-    private static final String[] PROJECTION = new String[]{
-            BaseColumns._ID,
-            NotePad.Notes.COLUMN_NAME_TITLE,
-            NotePad.Notes.COLUMN_NAME_CREATED_TIME
+    private NoteListAdapter adapter;
+    // 当前列表的筛选条件，导出“当前视图”时使用
+    private NoteFilter currentFilter = new NoteFilter(null, null);
+    private String pendingExportFormat;
+
+    // 列表查询在后台单线程执行，只采用最新一次请求的结果
+    private final ExecutorService loader = Executors.newSingleThreadExecutor();
+    private volatile int loadGeneration;
+    // 后台线程最近一次完整加载所用的筛选条件（仅在loader线程读写），单条增量按它查询
+    private NoteFilter lastLoadedFilter;
+    // 完整列表被增量修改过，离开页面时刷新首屏快照
+    private boolean snapshotDirty;
+    // 手动排序（置顶在前，再按拖动后的位置），否则按创建时间倒序；选择保存在偏好中
+    private static final String PREFS_NAME = "notes_list";
+    private static final String PREF_MANUAL_ORDER = "manual_order";
+    private boolean manualOrder;
+
+    // 单条笔记的变化原地修改列表模型，其余变化重新加载
+    private final ContentObserver notesObserver = new ContentObserver(new Handler(Looper.getMainLooper())) {
+        @Override
+        public void onChange(boolean selfChange) {
+            onChange(selfChange, null);
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            onNotesChanged(uri);
+        }
+    };
+
+    // 内存搜索索引：有关键字时优先使用，结果由索引排序
+    private SearchIndexManager searchIndex;
+    // 当前显示的索引结果对应的筛选条件，这类结果由索引的回调刷新
+    private NoteFilter indexedFilter;
+    private final Runnable indexListener = () -> {
+        NoteListModel model = adapter.getModel();
+        if (currentFilter.keyword != null && (indexedFilter == null || (model != null && model.filter == indexedFilter))) {
+            performSearch();
+        }
     };
 
+    private static final int REQUEST_EXPORT = 1;
+    private static final int REQUEST_IMPORT = 2;
+    private static final String[] PROJECTION = NotePadSchema.LIST_PROJECTION;
+    // 有关键字时另取标题命中位置和正文摘要
+    private static final String[] SEARCH_PROJECTION = NotePadSchema.SEARCH_PROJECTION;
+    // 边输入边搜索时显示的结果数上限
+    private static final int SEARCH_LIMIT = 500;
+    // 补查未完整索引的笔记时，id不多于此数才写进IN条件，否则直接按关键字全表补查
+    private static final int MAX_INLINE_IDS = 500;
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -54,9 +101,17 @@ public class NotesList extends ListActivity {
         btnSearch = findViewById(R.id.btn_search);
         Spinner spinnerCategory = findViewById(R.id.spinner_category);
 
+        manualOrder = getSharedPreferences(PREFS_NAME, MODE_PRIVATE).getBoolean(PREF_MANUAL_ORDER, false);
         // 初始化列表适配器（关键：绑定删除图标点击事件）
         initListAdapter();
 
+        // 登记空闲维护任务（已登记时不重复）
+        MaintenanceJobService.schedule(getApplicationContext());
+        getContentResolver().registerContentObserver(NotePad.Notes.CONTENT_URI, true, notesObserver);
+        searchIndex = SearchIndexManager.get(this);
+        searchIndex.addListener(indexListener);
+        searchIndex.start();
+
         // 搜索功能
         btnSearch.setOnClickListener(v -> performSearch());
         etSearch.setOnEditorActionListener((v, actionId, event) -> {
@@ -95,69 +150,122 @@ public class NotesList extends ListActivity {
             Uri noteUri = ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, id);
             Intent intent = new Intent(NotesList.this, NoteEditor.class);
             intent.setData(noteUri);
+            intent.putExtra(NoteEditor.EXTRA_TAP_TIME, SystemClock.elapsedRealtime());
             startActivity(intent);
         });
+        // 长按：置顶与手动调整顺序
+        listView.setOnItemLongClickListener((parent, view, position, id) -> {
+            showOrderDialog(position, id);
+            return true;
+        });
     }
 
-    // 初始化列表适配器，为删除图标绑定事件
+    // 置顶/取消置顶随时可用；上移、下移、移到最前只在手动排序且未按关键字搜索时提供
+    private void showOrderDialog(final int position, final long noteId) {
+        final NoteListModel model = adapter.getModel();
+        final boolean canMove = manualOrder && currentFilter.keyword == null;
+        final String[] items = canMove
+                ? new String[]{"置顶", "取消置顶", "移到最前", "上移", "下移"}
+                : new String[]{"置顶", "取消置顶"};
+        new AlertDialog.Builder(this)
+                .setItems(items, (dialog, which) -> {
+                    Bundle extras = new Bundle();
+                    String method = NotePad.METHOD_MOVE;
+                    if (which <= 1) {
+                        method = NotePad.METHOD_PIN;
+                        extras.putBoolean(NotePad.EXTRA_PINNED, which == 0);
+                    } else if (which == 2) {
+                        extras.putLong(NotePad.EXTRA_AFTER_ID, -1);
+                    } else if (which == 3) {
+                        if (position == 0) {
+                            return;
+                        }
+                        // 上移：放到上上一行之后；已是第二行时放到最前
+                        extras.putLong(NotePad.EXTRA_AFTER_ID, position >= 2 ? model.getId(position - 2) : -1);
+                    } else {
+                        if (position + 1 >= model.size()) {
+                            return;
+                        }
+                        extras.putLong(NotePad.EXTRA_AFTER_ID, model.getId(position + 1));
+                    }
+                    final String call = method;
+                    final Context appContext = getApplicationContext();
+                    loader.execute(() -> appContext.getContentResolver().call(NotePad.Notes.CONTENT_URI, call,
+                            String.valueOf(noteId), extras));
+                })
+                .show();
+    }
+
+    // 初始化列表适配器，为删除图标绑定事件。
+    // 首屏先用上次保存的快照，不打开数据库；实际数据由onResume触发的后台查询替换
     private void initListAdapter() {
-        cursor = getContentResolver().query(
-                NotePad.Notes.CONTENT_URI,
-                PROJECTION,
-                null,
-                null,
-                NotePad.Notes.DEFAULT_SORT_ORDER
-        );
-
-        // 适配器：将数据绑定到列表项
-        adapter = new SimpleCursorAdapter(
-                this,
-                R.layout.note_list_item, // 使用带删除图标的布局
-                cursor,
-                new String[]{NotePad.Notes.COLUMN_NAME_TITLE, NotePad.Notes.COLUMN_NAME_CREATED_TIME},
-                new int[]{android.R.id.text1, R.id.tv_note_timestamp},
-                0
-        ) {
+        final StartupTimeline timeline = StartupTimeline.coldStart();
+        NoteListModel snapshot;
+        timeline.begin(StartupTimeline.SNAPSHOT_LOAD);
+        try {
+            snapshot = ListSnapshotCache.read(this);
+        } finally {
+            timeline.end(StartupTimeline.SNAPSHOT_LOAD);
+        }
+
+        // 适配器：从列表模型的数组绑定到列表项
+        adapter = new NoteListAdapter(getLayoutInflater(), snapshot, new NoteListAdapter.Callbacks() {
             @Override
-            public void bindView(View view, Context context, Cursor cursor) {
-                super.bindView(view, context, cursor);
-                // 格式化时间戳
-                @SuppressLint("Range") long time = cursor.getLong(cursor.getColumnIndex(NotePad.Notes.COLUMN_NAME_CREATED_TIME));
-                String timeStr = time <= 0 ? "未知时间" :
-                        new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.CHINA).format(new Date(time));
-                ((TextView) view.findViewById(R.id.tv_note_timestamp)).setText(timeStr);
-
-                // 获取当前笔记的ID（关键：从Cursor中获取当前条目的ID）
-                @SuppressLint("Range") long noteId = cursor.getLong(cursor.getColumnIndex(BaseColumns._ID));
-
-                // 绑定删除图标点击事件
-                ImageView ivDelete = view.findViewById(R.id.iv_delete);
-                ivDelete.setOnClickListener(v -> {
-                    // 生成当前笔记的Uri
-                    Uri noteUri = ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, noteId);
-                    // 显示删除确认框
-                    showDeleteDialog(noteUri);
-                });
+            public void onBind() {
+                if (!timeline.isFinished()) {
+                    timeline.mark(StartupTimeline.FIRST_BIND);
+                }
+            }
+
+            @Override
+            public void onDeleteClicked(long noteId) {
+                // 显示删除确认框
+                showDeleteDialog(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, noteId));
             }
-        };
+        });
 
         // 设置适配器到列表
         ListView listView = findViewById(android.R.id.list);
         listView.setAdapter(adapter);
+        watchFirstFrame(listView, timeline);
+    }
+
+    // 首帧绘制后结束冷启动时间线（列表为空时以空列表的首帧为准）
+    private void watchFirstFrame(final View view, final StartupTimeline timeline) {
+        if (timeline.isFinished()) {
+            return;
+        }
+        final ViewTreeObserver observer = view.getViewTreeObserver();
+        observer.addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            @Override
+            public void onDraw() {
+                if (timeline.isFinished()) {
+                    return;
+                }
+                timeline.mark(StartupTimeline.FIRST_FRAME);
+                timeline.finish(getApplicationContext());
+                // 绘制回调中不能移除监听，推迟到下一轮消息
+                final ViewTreeObserver.OnDrawListener self = this;
+                view.post(() -> {
+                    if (view.getViewTreeObserver().isAlive()) {
+                        view.getViewTreeObserver().removeOnDrawListener(self);
+                    }
+                });
+            }
+        });
     }
 
     // 显示删除确认对话框
     private void showDeleteDialog(Uri noteUri) {
         new AlertDialog.Builder(this)
                 .setTitle("删除笔记")
-                .setMessage("确定要删除这条笔记吗？")
+                .setMessage("笔记将移入回收站，" + NotePad.Trash.RETENTION_DAYS + "天内可以恢复。")
                 .setPositiveButton("删除", (dialog, which) -> {
-                    // 执行删除
+                    // 移入回收站：更新这一行并标记待同步
                     int rowsDeleted = getContentResolver().delete(noteUri, null, null);
                     if (rowsDeleted > 0) {
-                        Toast.makeText(NotesList.this, "删除成功", Toast.LENGTH_SHORT).show();
-                        // 刷新列表
-                        performSearch();
+                        // 列表由变更通知原地更新
+                        Toast.makeText(NotesList.this, "已移入回收站", Toast.LENGTH_SHORT).show();
                     } else {
                         Toast.makeText(NotesList.this, "删除失败", Toast.LENGTH_SHORT).show();
                     }
@@ -175,59 +283,223 @@ public class NotesList extends ListActivity {
     }
 
     private void loadNotesWithFilter(String keyword, String category) {
-        if (cursor != null && !cursor.isClosed()) {
-            cursor.close();
+        currentFilter = new NoteFilter(keyword, category);
+        final NoteFilter filter = currentFilter;
+        if (filter.keyword != null && showIndexResults(filter)) {
+            return;
         }
+        final int generation = ++loadGeneration;
+        final Context appContext = getApplicationContext();
+        final StartupTimeline timeline = StartupTimeline.coldStart();
+        loader.execute(() -> {
+            // 排队期间已有更新的请求（如连续输入、批量导入的多次通知），直接跳过
+            if (generation != loadGeneration) {
+                return;
+            }
+            NoteListModel model = null;
+            timeline.begin(StartupTimeline.FIRST_QUERY);
+            try {
+                Cursor result = getContentResolver().query(
+                        filter.appendTo(NotePad.Notes.CONTENT_URI),
+                        projectionFor(filter),
+                        null,
+                        null,
+                        manualOrder ? NotePad.Notes.SORT_ORDER_MANUAL : NotePad.Notes.DEFAULT_SORT_ORDER
+                );
+                if (result != null) {
+                    try {
+                        model = NoteListModel.fromCursor(filter, result);
+                    } finally {
+                        result.close();
+                    }
+                }
+            } finally {
+                timeline.end(StartupTimeline.FIRST_QUERY);
+            }
+            if (model == null) {
+                return;
+            }
+            lastLoadedFilter = filter;
+            // 完整列表的首屏变化时刷新快照，供下次冷启动使用
+            if (filter.isEmpty()) {
+                ListSnapshotCache.write(appContext, model);
+            }
+            final NoteListModel loaded = model;
+            runOnUiThread(() -> {
+                if (generation != loadGeneration || isDestroyed()) {
+                    return;
+                }
+                snapshotDirty = false;
+                adapter.setModel(loaded);
+            });
+        });
+    }
 
-        StringBuilder selection = new StringBuilder();
-        ArrayList<String> selectionArgs = new ArrayList<>();
+    private static String[] projectionFor(NoteFilter filter) {
+        return filter.keyword != null ? SEARCH_PROJECTION : PROJECTION;
+    }
 
-        if (!TextUtils.isEmpty(keyword)) {
-            selection.append("(")
-                    .append(NotePad.Notes.COLUMN_NAME_TITLE).append(" LIKE ? OR ")
-                    .append(NotePad.Notes.COLUMN_NAME_NOTE).append(" LIKE ?)");
-            selectionArgs.add("%" + keyword + "%");
-            selectionArgs.add("%" + keyword + "%");
+    // 有关键字且索引能回答时，在主线程直接得到排序后的结果。随后在后台用SQL取这些结果的命中摘要，
+    // 同时补查正文未完整索引的笔记追加到末尾
+    private boolean showIndexResults(final NoteFilter filter) {
+        NoteSearchIndex index = searchIndex.getIndex();
+        NoteSearchIndex.Hits hits = index == null ? null : index.search(filter.keyword, filter.category, SEARCH_LIMIT);
+        if (hits == null) {
+            return false;
         }
+        final int generation = ++loadGeneration;
+        final NoteListModel model = NoteListModel.fromHits(filter, hits);
+        indexedFilter = filter;
+        adapter.setModel(model);
 
-        if (!TextUtils.isEmpty(category)) {
-            if (selection.length() > 0) {
-                selection.append(" AND ");
-            }
-            selection.append(NotePad.Notes.COLUMN_NAME_CATEGORY).append(" = ?");
-            selectionArgs.add(category);
+        final long[] partialIds = hits.size >= SEARCH_LIMIT ? new long[0] : index.getPartialIds();
+        if (hits.size == 0 && partialIds.length == 0) {
+            return true;
         }
+        final long[] hitIds = Arrays.copyOf(hits.ids, hits.size);
+        loader.execute(() -> {
+            if (generation != loadGeneration) {
+                return;
+            }
+            // 未完整索引的笔记过多时按关键字全表查询，结果同样包含已命中的行
+            String selection = null;
+            if (partialIds.length <= MAX_INLINE_IDS) {
+                StringBuilder ids = new StringBuilder();
+                for (long id : hitIds) {
+                    ids.append(ids.length() > 0 ? "," : "").append(id);
+                }
+                for (long id : partialIds) {
+                    ids.append(ids.length() > 0 ? "," : "").append(id);
+                }
+                selection = NotePad.Notes._ID + " IN (" + ids + ")";
+            }
+            Cursor result = getContentResolver().query(
+                    filter.appendTo(NotePad.Notes.CONTENT_URI),
+                    SEARCH_PROJECTION,
+                    selection,
+                    null,
+                    NotePad.Notes.DEFAULT_SORT_ORDER
+            );
+            if (result == null) {
+                return;
+            }
+            final NoteListModel extra;
+            try {
+                extra = NoteListModel.fromCursor(filter, result);
+            } finally {
+                result.close();
+            }
+            runOnUiThread(() -> {
+                if (generation != loadGeneration || adapter.getModel() != model || isDestroyed()) {
+                    return;
+                }
+                for (int i = 0; i < extra.size(); i++) {
+                    int position = model.indexOf(extra.getId(i));
+                    if (position < 0) {
+                        if (model.size() >= SEARCH_LIMIT) {
+                            continue;
+                        }
+                        model.add(extra.getId(i), extra.getTitle(i), extra.getCreatedTime(i), extra.getCategory(i));
+                        position = model.size() - 1;
+                    }
+                    model.copyMatch(position, extra, i);
+                }
+                adapter.notifyDataSetChanged();
+            });
+        });
+        return true;
+    }
 
-        cursor = getContentResolver().query(
-                NotePad.Notes.CONTENT_URI,
-                PROJECTION,
-                selection.length() > 0 ? selection.toString() : null,
-                selectionArgs.size() > 0 ? selectionArgs.toArray(new String[0]) : null,
-                NotePad.Notes.DEFAULT_SORT_ORDER
-        );
-
-        adapter.changeCursor(cursor);
+    private void onNotesChanged(Uri uri) {
+        // 索引结果由索引更新后的回调重新查询
+        NoteListModel shown = adapter.getModel();
+        if (indexedFilter != null && shown != null && shown.filter == indexedFilter) {
+            return;
+        }
+        List<String> segments = uri == null ? null : uri.getPathSegments();
+        // 增量更新按创建时间定位行，手动排序时整体重新查询
+        if (manualOrder || segments == null || segments.size() != 2 || !TextUtils.isDigitsOnly(segments.get(1))) {
+            performSearch();
+            return;
+        }
+        final long noteId = Long.parseLong(segments.get(1));
+        loader.execute(() -> {
+            final NoteFilter filter = lastLoadedFilter;
+            if (filter == null) {
+                return;
+            }
+            // 按列表的筛选条件只查这一行：查不到说明已删除或不再符合条件
+            Cursor row = getContentResolver().query(
+                    filter.appendTo(NotePad.Notes.CONTENT_URI),
+                    projectionFor(filter),
+                    NotePad.Notes._ID + " = ?",
+                    new String[]{String.valueOf(noteId)},
+                    null
+            );
+            if (row == null) {
+                return;
+            }
+            final NoteListModel delta;
+            try {
+                delta = NoteListModel.fromCursor(filter, row);
+            } finally {
+                row.close();
+            }
+            runOnUiThread(() -> {
+                NoteListModel model = adapter.getModel();
+                if (model == null || model.filter != filter || isDestroyed()) {
+                    return;
+                }
+                if (delta.size() > 0) {
+                    int position = model.upsert(noteId, delta.getTitle(0), delta.getCreatedTime(0),
+                            delta.getCategory(0));
+                    model.copyMatch(position, delta, 0);
+                } else if (!model.remove(noteId)) {
+                    return;
+                }
+                snapshotDirty |= filter.isEmpty();
+                adapter.notifyDataSetChanged();
+            });
+        });
     }
 
     // 生命周期方法（保持不变）
     @Override
     protected void onResume() {
         super.onResume();
-        performSearch();
+        // 已有实际数据时由变更通知保持最新，只在首屏仍是快照时加载
+        NoteListModel model = adapter.getModel();
+        if (model == null || model.filter == null) {
+            performSearch();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        NoteListModel model = adapter.getModel();
+        if (snapshotDirty && model != null) {
+            snapshotDirty = false;
+            // 模型只在主线程修改，先复制首屏几行再交给后台写文件
+            final NoteListModel head = model.head(ListSnapshotCache.MAX_ROWS);
+            final Context appContext = getApplicationContext();
+            loader.execute(() -> ListSnapshotCache.write(appContext, head));
+        }
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (cursor != null && !cursor.isClosed()) {
-            cursor.close();
-        }
+        getContentResolver().unregisterContentObserver(notesObserver);
+        searchIndex.removeListener(indexListener);
+        loader.shutdownNow();
     }
 
     // 添加笔记菜单（保持不变）
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.list_options_menu, menu);
+        menu.findItem(R.id.action_manual_order).setChecked(manualOrder);
         return true;
     }
 
@@ -236,7 +508,201 @@ public class NotesList extends ListActivity {
         if (item.getItemId() == R.id.action_add_note) {
             startActivity(new Intent(this, NoteEditor.class));
             return true;
+        } else if (item.getItemId() == R.id.action_sync) {
+            startSync();
+            return true;
+        } else if (item.getItemId() == R.id.action_sync_server) {
+            showServerDialog(false);
+            return true;
+        } else if (item.getItemId() == R.id.action_import) {
+            startActivityForResult(new Intent(Intent.ACTION_OPEN_DOCUMENT_TREE), REQUEST_IMPORT);
+            return true;
+        } else if (item.getItemId() == R.id.action_backup) {
+            runBackup(false);
+            return true;
+        } else if (item.getItemId() == R.id.action_restore) {
+            runBackup(true);
+            return true;
+        } else if (item.getItemId() == R.id.action_export_jsonl) {
+            chooseExportTarget(NoteExporter.FORMAT_JSONL);
+            return true;
+        } else if (item.getItemId() == R.id.action_export_csv) {
+            chooseExportTarget(NoteExporter.FORMAT_CSV);
+            return true;
+        } else if (item.getItemId() == R.id.action_find_duplicates) {
+            startActivity(new Intent(this, DuplicatesActivity.class));
+            return true;
+        } else if (item.getItemId() == R.id.action_trash) {
+            startActivity(new Intent(this, TrashActivity.class));
+            return true;
+        } else if (item.getItemId() == R.id.action_manual_order) {
+            manualOrder = !manualOrder;
+            item.setChecked(manualOrder);
+            getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit().putBoolean(PREF_MANUAL_ORDER, manualOrder).apply();
+            performSearch();
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
+
+    // 通过存储访问框架选择导出目标文件
+    private void chooseExportTarget(String format) {
+        pendingExportFormat = format;
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType(NoteExporter.getMimeType(format));
+        intent.putExtra(Intent.EXTRA_TITLE, "notes." + format);
+        startActivityForResult(intent, REQUEST_EXPORT);
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode == REQUEST_EXPORT && resultCode == RESULT_OK && data != null
+                && data.getData() != null && pendingExportFormat != null) {
+            exportTo(data.getData(), pendingExportFormat, currentFilter);
+        } else if (requestCode == REQUEST_IMPORT && resultCode == RESULT_OK && data != null
+                && data.getData() != null) {
+            importFrom(data.getData());
+        }
+    }
+
+    // 后台导入目录树，可随时取消；已写入的批次保留
+    private void importFrom(Uri treeUri) {
+        final NoteImporter importer = new NoteImporter(getApplicationContext().getContentResolver());
+        final ProgressDialog progress = new ProgressDialog(this);
+        progress.setTitle("导入笔记");
+        progress.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+        progress.setCancelable(false);
+        progress.setButton(DialogInterface.BUTTON_NEGATIVE, "取消", (dialog, which) -> importer.cancel());
+        progress.show();
+
+        final Context appContext = getApplicationContext();
+        new Thread(() -> {
+            String message;
+            try {
+                NoteImporter.Progress result = importer.importTree(treeUri, p -> runOnUiThread(() -> {
+                    progress.setMax(p.filesFound);
+                    progress.setProgress(p.imported + p.duplicates + p.failed);
+                }));
+                message = (result.cancelled ? "导入已取消：" : "导入完成：") + "新增" + result.imported
+                        + "条，重复" + result.duplicates + "条，失败" + result.failed + "条";
+            } catch (IOException e) {
+                message = "导入失败：" + e.getMessage();
+            }
+            final String text = message;
+            runOnUiThread(() -> {
+                progress.dismiss();
+                Toast.makeText(appContext, text, Toast.LENGTH_LONG).show();
+            });
+        }, "NoteImport").start();
+    }
+
+    // 后台流式导出当前筛选视图，进度条按已写出的行数推进
+    private void exportTo(Uri target, String format, NoteFilter filter) {
+        final ProgressDialog progress = new ProgressDialog(this);
+        progress.setTitle("导出笔记");
+        progress.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+        progress.setCancelable(false);
+        progress.show();
+
+        final Context appContext = getApplicationContext();
+        new Thread(() -> {
+            String message;
+            try {
+                OutputStream out = appContext.getContentResolver().openOutputStream(target);
+                if (out == null) {
+                    throw new IOException("无法打开目标文件");
+                }
+                try {
+                    int count = new NoteExporter(appContext.getContentResolver()).export(format, filter, out,
+                            (exported, total) -> runOnUiThread(() -> {
+                                progress.setMax(total);
+                                progress.setProgress(exported);
+                            }));
+                    message = "已导出" + count + "条笔记";
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                message = "导出失败：" + e.getMessage();
+            }
+            final String result = message;
+            runOnUiThread(() -> {
+                progress.dismiss();
+                Toast.makeText(appContext, result, Toast.LENGTH_LONG).show();
+            });
+        }, "NoteExport").start();
+    }
+
+    // 后台生成快照或从快照恢复
+    private void runBackup(boolean restore) {
+        final Context appContext = getApplicationContext();
+        new Thread(() -> {
+            String message;
+            try {
+                if (restore) {
+                    message = "已恢复" + NoteBackup.restoreLatest(appContext) + "条记录";
+                } else {
+                    Bundle result = NoteBackup.createBackup(appContext);
+                    message = "备份完成：" + result.getInt(NoteBackup.RESULT_RECORDS) + "条记录，"
+                            + result.getLong(NoteBackup.RESULT_BYTES) + "字节";
+                }
+            } catch (IOException | RuntimeException e) {
+                message = (restore ? "恢复失败：" : "备份失败：") + e.getMessage();
+            }
+            final String text = message;
+            runOnUiThread(() -> Toast.makeText(appContext, text, Toast.LENGTH_LONG).show());
+        }, "NoteBackup").start();
+    }
+
+    // 填写同步服务器地址（http或https），留空为不同步
+    private void showServerDialog(final boolean syncAfterSave) {
+        final EditText input = new EditText(this);
+        input.setInputType(EditorInfo.TYPE_CLASS_TEXT | EditorInfo.TYPE_TEXT_VARIATION_URI);
+        input.setSingleLine(true);
+        input.setHint("https://example.com/notepad");
+        input.setText(getSharedPreferences(SyncEngine.PREFS_NAME, MODE_PRIVATE)
+                .getString(SyncEngine.PREF_SERVER_URL, ""));
+        new AlertDialog.Builder(this)
+                .setTitle("同步服务器")
+                .setView(input)
+                .setPositiveButton("保存", (dialog, which) -> {
+                    String url = input.getText().toString().trim();
+                    if (!url.isEmpty() && !URLUtil.isHttpUrl(url) && !URLUtil.isHttpsUrl(url)) {
+                        Toast.makeText(this, "地址须以http://或https://开头", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    SyncEngine.setServerUrl(this, url);
+                    if (syncAfterSave && !url.isEmpty()) {
+                        startSync();
+                    }
+                })
+                .setNegativeButton("取消", null)
+                .show();
+    }
+
+    // 后台执行一次增量同步，完成后提示传输量与耗时
+    private void startSync() {
+        String serverUrl = getSharedPreferences(SyncEngine.PREFS_NAME, MODE_PRIVATE)
+                .getString(SyncEngine.PREF_SERVER_URL, null);
+        if (TextUtils.isEmpty(serverUrl)) {
+            // 尚未配置时先填写地址，保存后接着同步
+            showServerDialog(true);
+            return;
+        }
+        final Context appContext = getApplicationContext();
+        new Thread(() -> {
+            String message;
+            try {
+                SyncEngine.Stats stats = new SyncEngine(appContext, serverUrl).sync();
+                message = "同步完成：上传" + stats.bytesSent + "字节，下载" + stats.bytesReceived
+                        + "字节，耗时" + stats.durationMs + "ms";
+            } catch (IOException e) {
+                message = "同步失败：" + e.getMessage();
+            }
+            final String result = message;
+            runOnUiThread(() -> Toast.makeText(appContext, result, Toast.LENGTH_LONG).show());
+        }, "NoteSync").start();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package com.example.android.notepad;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * NotePad.db的SQLite性能参数组合，在DatabaseHelper.onConfigure中应用，
+ * 也可以通过 ContentProvider.call({@link NotePad#METHOD_SET_PROFILE}) 在运行时切换。
+ *
+ * 预设：
+ * <ul>
+ *   <li>interactive：默认，适中的页缓存与内存映射读，synchronous=FULL保证持久性</li>
+ *   <li>bulk-import：大缓存、synchronous=OFF，以持久性换取导入/恢复吞吐，仅在批量写入期间使用</li>
+ *   <li>low-memory：小缓存、关闭mmap、临时表落盘，用于低内存设备</li>
+ * </ul>
+ */
+public final class PerformanceProfile {
+    public static final String INTERACTIVE = "interactive";
+    public static final String BULK_IMPORT = "bulk-import";
+    public static final String LOW_MEMORY = "low-memory";
+
+    // synchronous取值
+    static final int SYNC_OFF = 0;
+    static final int SYNC_NORMAL = 1;
+    static final int SYNC_FULL = 2;
+    // temp_store取值
+    static final int TEMP_STORE_FILE = 1;
+    static final int TEMP_STORE_MEMORY = 2;
+
+    public final String name;
+    // 负数表示KiB，正数表示页数（SQLite约定）
+    public final int cacheSize;
+    public final long mmapSize;
+    public final int synchronous;
+    public final int tempStore;
+    public final long journalSizeLimit;
+
+    PerformanceProfile(String name, int cacheSize, long mmapSize, int synchronous, int tempStore,
+                       long journalSizeLimit) {
+        this.name = name;
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
+        this.synchronous = synchronous;
+        this.tempStore = tempStore;
+        this.journalSizeLimit = journalSizeLimit;
+    }
+
+    /**
+     * 按名称取预设，未知名称返回null。
+     */
+    public static PerformanceProfile forName(String name) {
+        if (INTERACTIVE.equals(name)) {
+            return new PerformanceProfile(INTERACTIVE, -8 * 1024, 64L << 20, SYNC_FULL, TEMP_STORE_MEMORY, 4L << 20);
+        } else if (BULK_IMPORT.equals(name)) {
+            return new PerformanceProfile(BULK_IMPORT, -32 * 1024, 128L << 20, SYNC_OFF, TEMP_STORE_MEMORY, 64L << 20);
+        } else if (LOW_MEMORY.equals(name)) {
+            return new PerformanceProfile(LOW_MEMORY, -512, 0, SYNC_FULL, TEMP_STORE_FILE, 1L << 20);
+        }
+        return null;
+    }
+
+    // 进程启动时的默认预设：低内存设备用low-memory，其余用interactive
+    public static PerformanceProfile getDefault(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        boolean lowRam = am != null && am.isLowRamDevice();
+        return forName(lowRam ? LOW_MEMORY : INTERACTIVE);
+    }
+
+    /**
+     * 把参数应用到连接上。PRAGMA在连接级别生效，需在每个连接打开时（onConfigure）调用。
+     */
+    public void apply(SQLiteDatabase db) {
+        pragma(db, "cache_size = " + cacheSize);
+        pragma(db, "mmap_size = " + mmapSize);
+        pragma(db, "synchronous = " + synchronous);
+        pragma(db, "temp_store = " + tempStore);
+        pragma(db, "journal_size_limit = " + journalSizeLimit);
+    }
+
+    // 部分PRAGMA赋值后会返回新值，统一用rawQuery执行并读完结果
+    private static void pragma(SQLiteDatabase db, String statement) {
+        Cursor c = db.rawQuery("PRAGMA " + statement, null);
+        try {
+            c.moveToFirst();
+        } finally {
+            c.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + "{cache_size=" + cacheSize + ", mmap_size=" + mmapSize + ", synchronous=" + synchronous
+                + ", temp_store=" + tempStore + ", journal_size_limit=" + journalSizeLimit + "}";
+    }
+}
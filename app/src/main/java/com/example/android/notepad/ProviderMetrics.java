@@ -0,0 +1,255 @@
+package com.example.android.notepad;
+
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.content.ContentValues;
+import android.os.Bundle;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * NotePadProvider入口的低开销统计：按 操作 × UriMatcher匹配码 记录调用次数、
+ * 延迟直方图（以微秒为单位的log2分桶）、行数与字节数，全部使用无锁原子计数。
+ *
+ * 查询的耗时拆为两段：prepare（编译并返回游标）与fill（首次getCount触发的执行与CursorWindow填充）。
+ * 查询返回的字节数需要遍历窗口，开销较大，因此每 {@link #BYTES_SAMPLE_INTERVAL} 次查询采样一次。
+ */
+final class ProviderMetrics {
+    static final int OP_QUERY = 0;
+    static final int OP_INSERT = 1;
+    static final int OP_UPDATE = 2;
+    static final int OP_DELETE = 3;
+    private static final String[] OP_NAMES = {"query", "insert", "update", "delete"};
+
+    // 匹配码上限，超出的匹配码归入最后一个槽位
+    private static final int MAX_MATCH_CODES = 64;
+    // 第i个桶统计 [2^(i-1), 2^i) 微秒，最后一个桶为溢出桶
+    private static final int BUCKETS = 25;
+    static final int BYTES_SAMPLE_INTERVAL = 16;
+
+    // snapshot()中每个条目long[]的下标
+    static final int SNAP_COUNT = 0;
+    static final int SNAP_TOTAL_US = 1;
+    static final int SNAP_MAX_US = 2;
+    static final int SNAP_P50_US = 3;
+    static final int SNAP_P90_US = 4;
+    static final int SNAP_P99_US = 5;
+    static final int SNAP_ROWS = 6;
+    static final int SNAP_BYTES = 7;
+    static final int SNAP_BYTES_SAMPLES = 8;
+    static final int SNAP_FILL_US = 9;
+
+    private final AtomicReferenceArray<Entry> mEntries = new AtomicReferenceArray<>(OP_NAMES.length * MAX_MATCH_CODES);
+    private final String[] mMatchNames;
+    private final long mStartNanos = System.nanoTime();
+
+    /**
+     * @param matchNames 匹配码到可读名称的映射（下标为匹配码），用于输出
+     */
+    ProviderMetrics(String[] matchNames) {
+        mMatchNames = matchNames;
+    }
+
+    private static final class Entry {
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLong fillNanos = new AtomicLong();
+        final AtomicLong rows = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong byteSamples = new AtomicLong();
+    }
+
+    private Entry entry(int op, int match) {
+        int slot = op * MAX_MATCH_CODES + Math.max(0, Math.min(match, MAX_MATCH_CODES - 1));
+        Entry e = mEntries.get(slot);
+        if (e == null) {
+            mEntries.compareAndSet(slot, null, new Entry());
+            e = mEntries.get(slot);
+        }
+        return e;
+    }
+
+    // 本次查询是否需要统计字节数
+    boolean shouldSampleBytes(int match) {
+        return entry(OP_QUERY, match).count.get() % BYTES_SAMPLE_INTERVAL == 0;
+    }
+
+    void recordQuery(int match, long nanos, long fillNanos, long rows, long bytes) {
+        Entry e = record(OP_QUERY, match, nanos, rows);
+        e.fillNanos.addAndGet(fillNanos);
+        if (bytes >= 0) {
+            e.bytes.addAndGet(bytes);
+            e.byteSamples.incrementAndGet();
+        }
+    }
+
+    void recordWrite(int op, int match, long nanos, long rows, long bytes) {
+        Entry e = record(op, match, nanos, rows);
+        if (bytes >= 0) {
+            e.bytes.addAndGet(bytes);
+            e.byteSamples.incrementAndGet();
+        }
+    }
+
+    private Entry record(int op, int match, long nanos, long rows) {
+        Entry e = entry(op, match);
+        e.count.incrementAndGet();
+        e.totalNanos.addAndGet(nanos);
+        e.rows.addAndGet(Math.max(0, rows));
+        e.buckets.incrementAndGet(bucketOf(nanos / 1000));
+        long max;
+        while (nanos > (max = e.maxNanos.get())) {
+            if (e.maxNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+        return e;
+    }
+
+    private static int bucketOf(long micros) {
+        int bucket = micros <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    // 百分位取所在桶的上界，误差不超过2倍
+    private static long percentileMicros(long[] buckets, long count, double p) {
+        long target = (long) Math.ceil(count * p);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= target && seen > 0) {
+                return 1L << i;
+            }
+        }
+        return 1L << (buckets.length - 1);
+    }
+
+    /**
+     * 以“操作/匹配名”为键返回各条目的统计数组，下标见SNAP_*常量。
+     */
+    Bundle snapshot() {
+        Bundle bundle = new Bundle();
+        for (int slot = 0; slot < mEntries.length(); slot++) {
+            Entry e = mEntries.get(slot);
+            if (e == null || e.count.get() == 0) {
+                continue;
+            }
+            bundle.putLongArray(keyOf(slot), toArray(e));
+        }
+        bundle.putLong("uptime_ms", (System.nanoTime() - mStartNanos) / 1000000);
+        return bundle;
+    }
+
+    void reset() {
+        for (int slot = 0; slot < mEntries.length(); slot++) {
+            mEntries.set(slot, null);
+        }
+    }
+
+    void dump(PrintWriter pw) {
+        pw.println("NotePadProvider metrics (latency in us, p* are log2 bucket upper bounds):");
+        pw.println(String.format(Locale.US, "  %-28s %8s %10s %8s %8s %8s %8s %10s %12s %10s",
+                "op/uri", "count", "avg", "p50", "p90", "p99", "max", "rows", "bytes/op", "fill avg"));
+        for (int slot = 0; slot < mEntries.length(); slot++) {
+            Entry e = mEntries.get(slot);
+            if (e == null || e.count.get() == 0) {
+                continue;
+            }
+            long[] s = toArray(e);
+            long count = s[SNAP_COUNT];
+            long bytesPerOp = s[SNAP_BYTES_SAMPLES] > 0 ? s[SNAP_BYTES] / s[SNAP_BYTES_SAMPLES] : -1;
+            pw.println(String.format(Locale.US, "  %-28s %8d %10d %8d %8d %8d %8d %10d %12d %10d",
+                    keyOf(slot), count, s[SNAP_TOTAL_US] / count, s[SNAP_P50_US], s[SNAP_P90_US],
+                    s[SNAP_P99_US], s[SNAP_MAX_US], s[SNAP_ROWS], bytesPerOp, s[SNAP_FILL_US] / count));
+        }
+    }
+
+    private String keyOf(int slot) {
+        int op = slot / MAX_MATCH_CODES;
+        int match = slot % MAX_MATCH_CODES;
+        String name = match < mMatchNames.length && mMatchNames[match] != null
+                ? mMatchNames[match] : String.valueOf(match);
+        return OP_NAMES[op] + "/" + name;
+    }
+
+    private static long[] toArray(Entry e) {
+        long[] buckets = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = e.buckets.get(i);
+            count += buckets[i];
+        }
+        long[] s = new long[SNAP_FILL_US + 1];
+        s[SNAP_COUNT] = e.count.get();
+        s[SNAP_TOTAL_US] = e.totalNanos.get() / 1000;
+        s[SNAP_MAX_US] = e.maxNanos.get() / 1000;
+        s[SNAP_P50_US] = percentileMicros(buckets, count, 0.50);
+        s[SNAP_P90_US] = percentileMicros(buckets, count, 0.90);
+        s[SNAP_P99_US] = percentileMicros(buckets, count, 0.99);
+        s[SNAP_ROWS] = e.rows.get();
+        s[SNAP_BYTES] = e.bytes.get();
+        s[SNAP_BYTES_SAMPLES] = e.byteSamples.get();
+        s[SNAP_FILL_US] = e.fillNanos.get() / 1000;
+        return s;
+    }
+
+    /**
+     * 估算游标当前窗口中的数据字节数（字符串按UTF-16计），无法估算时返回-1。
+     */
+    static long estimateBytes(Cursor cursor) {
+        if (!(cursor instanceof AbstractWindowedCursor)) {
+            return -1;
+        }
+        CursorWindow window = ((AbstractWindowedCursor) cursor).getWindow();
+        if (window == null) {
+            return -1;
+        }
+        long bytes = 0;
+        int start = window.getStartPosition();
+        int end = start + window.getNumRows();
+        int columns = cursor.getColumnCount();
+        for (int row = start; row < end; row++) {
+            for (int col = 0; col < columns; col++) {
+                switch (window.getType(row, col)) {
+                    case Cursor.FIELD_TYPE_STRING:
+                        bytes += 2L * window.getString(row, col).length();
+                        break;
+                    case Cursor.FIELD_TYPE_BLOB:
+                        bytes += window.getBlob(row, col).length;
+                        break;
+                    case Cursor.FIELD_TYPE_NULL:
+                        break;
+                    default:
+                        bytes += 8;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    // 写入的数据字节数估算
+    static long estimateBytes(ContentValues values) {
+        if (values == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (String key : values.keySet()) {
+            Object v = values.get(key);
+            if (v instanceof String) {
+                bytes += 2L * ((String) v).length();
+            } else if (v instanceof byte[]) {
+                bytes += ((byte[]) v).length;
+            } else if (v != null) {
+                bytes += 8;
+            }
+        }
+        return bytes;
+    }
+}
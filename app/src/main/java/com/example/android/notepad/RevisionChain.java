@@ -0,0 +1,74 @@
+package com.example.android.notepad;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * 版本历史的存储策略：笔记当前的正文就是最新版本，历史中的每一行是被覆盖的一个旧版本，
+ * 存为相对下一个（更新的）版本的差量（见 {@link TextDelta}），最新的一行相对当前正文。
+ * 只保存过几次的笔记因此只有几个很小的差量，不为任何版本存完整副本。
+ *
+ * 还原某个旧版本时从当前正文（或更新一侧最近的快照）出发，依次向旧执行差量。为使还原至多执行
+ * {@link #MAX_DEPTH} 个差量，从最新一行起已有这么多个连续差量时，新的一行存为快照（deflate压缩的正文），
+ * 更早的行改以它为起点；改动很大、差量不比快照小时也存快照。保留的版本数上限下每篇笔记至多一两个快照，
+ * 历史的大小主要是各次改动的文字本身。旧的行只依赖更新的行，清理时直接删掉最早的若干行，
+ * 不需要改写保留下来的行。纯Java实现，benchmark模块直接编译本文件。
+ */
+final class RevisionChain {
+    static final int MAX_DEPTH = 32;
+
+    private RevisionChain() {
+    }
+
+    /**
+     * 新的一行是否存为快照：snapshots为这篇笔记已有各行是否为快照，最新的在前（只需前MAX_DEPTH行）；
+     * 差量的字节数达到正文的字符数时也存快照，压缩后的快照通常不比它大，保存时不必先压缩一遍再比较。
+     */
+    static boolean needsSnapshot(boolean[] snapshots, int deltaBytes, int textLength) {
+        int run = 0;
+        while (run < snapshots.length && !snapshots[run]) {
+            run++;
+        }
+        return run >= MAX_DEPTH || deltaBytes >= textLength;
+    }
+
+    // 快照的格式与压缩存储的正文相同，只是没有编码标记
+    static byte[] encodeSnapshot(String text) {
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+        BodyCodec.deflate(raw, Deflater.DEFAULT_COMPRESSION, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 解开快照；数据损坏时抛出IllegalArgumentException。
+     */
+    static String decodeSnapshot(byte[] snapshot) {
+        return new String(BodyCodec.inflate(snapshot, 0), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 还原最旧的一个版本：anchor为起点（当前正文或快照），deltas为起点之后的差量，由新到旧。
+     */
+    static String rebuild(String anchor, List<byte[]> deltas) {
+        String text = anchor;
+        for (byte[] delta : deltas) {
+            text = TextDelta.apply(text, delta);
+        }
+        return text;
+    }
+
+    /**
+     * 清理后保留的行数。times为一篇笔记各行的时间，最新的在前；保留最近maxCount行中不早于cutoff的，
+     * 最新的一行总是保留。
+     */
+    static int keptCount(long[] times, int maxCount, long cutoff) {
+        int keep = Math.min(1, times.length);
+        while (keep < times.length && keep < maxCount && times[keep] >= cutoff) {
+            keep++;
+        }
+        return keep;
+    }
+}
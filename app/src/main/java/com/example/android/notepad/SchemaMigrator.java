@@ -0,0 +1,290 @@
+package com.example.android.notepad;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 版本化的结构迁移：按版本号顺序执行迁移步骤，所有步骤在同一个事务中完成，
+ * 失败时整体回滚，数据库停留在原版本。
+ *
+ * 结构信息（表、列、索引）在迁移开始时读取一次并缓存，步骤通过 {@link SchemaInfo} 修改结构时同步更新缓存，
+ * 不再每一步都扫描PRAGMA table_info。
+ *
+ * 需要逐行改写数据的重活可以声明为 {@link Backfill}：迁移事务里只登记，
+ * 结构切换完成后由后台线程分批执行，每批一个短事务，不阻塞启动时的首次查询。
+ * 未完成的回填记录在 {@link #BACKFILL_TABLE} 中，进程被杀后下次打开数据库时继续。
+ */
+final class SchemaMigrator {
+    private static final String TAG = "SchemaMigrator";
+
+    static final String BACKFILL_TABLE = "schema_backfills";
+    static final int BACKFILL_BATCH_SIZE = 500;
+    // 两批之间让出连接，前台查询可以插队
+    private static final long BACKFILL_PAUSE_MS = 10;
+
+    /**
+     * 分批回填。每次调用处理至多batchSize行并返回实际处理的行数，返回0表示已完成。
+     * 必须是幂等的：只挑选尚未处理的行，中断后重新执行不会出错。
+     */
+    interface Backfill {
+        int runBatch(SQLiteDatabase db, int batchSize);
+    }
+
+    /**
+     * 一个迁移步骤，把结构从 version-1 升到 version。
+     */
+    abstract static class Step {
+        final int version;
+        final String description;
+
+        Step(int version, String description) {
+            this.version = version;
+            this.description = description;
+        }
+
+        abstract void apply(SQLiteDatabase db, SchemaInfo schema);
+
+        // 结构切换后在后台执行的回填，没有时返回null
+        Backfill backfill() {
+            return null;
+        }
+    }
+
+    private final List<Step> mSteps;
+
+    SchemaMigrator(List<Step> steps) {
+        List<Step> sorted = new ArrayList<>(steps);
+        Collections.sort(sorted, new Comparator<Step>() {
+            @Override
+            public int compare(Step a, Step b) {
+                return a.version < b.version ? -1 : (a.version == b.version ? 0 : 1);
+            }
+        });
+        for (int i = 1; i < sorted.size(); i++) {
+            if (sorted.get(i).version == sorted.get(i - 1).version) {
+                throw new IllegalArgumentException("Duplicate migration version " + sorted.get(i).version);
+            }
+        }
+        mSteps = sorted;
+    }
+
+    /**
+     * 执行 (fromVersion, toVersion] 区间内的全部步骤。新建数据库时fromVersion传0。
+     */
+    void migrate(SQLiteDatabase db, int fromVersion, int toVersion) {
+        long start = SystemClock.elapsedRealtime();
+        db.beginTransaction();
+        try {
+            SchemaInfo schema = SchemaInfo.read(db);
+            schema.createTable(db, BACKFILL_TABLE, "CREATE TABLE " + BACKFILL_TABLE + " ("
+                    + "version INTEGER PRIMARY KEY, "
+                    + "description TEXT"
+                    + ");");
+            for (Step step : mSteps) {
+                if (step.version <= fromVersion || step.version > toVersion) {
+                    continue;
+                }
+                long stepStart = SystemClock.elapsedRealtime();
+                step.apply(db, schema);
+                if (step.backfill() != null) {
+                    db.execSQL("INSERT OR REPLACE INTO " + BACKFILL_TABLE + " (version, description) VALUES (?, ?)",
+                            new Object[]{step.version, step.description});
+                }
+                Log.i(TAG, "Migrated to v" + step.version + " (" + step.description + ") in "
+                        + (SystemClock.elapsedRealtime() - stepStart) + "ms");
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.i(TAG, "Migration v" + fromVersion + " -> v" + toVersion + " took "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+    }
+
+    boolean hasPendingBackfills(SQLiteDatabase db) {
+        return DatabaseUtils.queryNumEntries(db, BACKFILL_TABLE) > 0;
+    }
+
+    /**
+     * 依次执行登记的回填直到全部完成，在后台线程调用。
+     */
+    void runPendingBackfills(SQLiteDatabase db) {
+        List<Integer> pending = new ArrayList<>();
+        Cursor c = db.query(BACKFILL_TABLE, new String[]{"version"}, null, null, null, null, "version ASC");
+        try {
+            while (c.moveToNext()) {
+                pending.add(c.getInt(0));
+            }
+        } finally {
+            c.close();
+        }
+
+        for (int version : pending) {
+            Step step = findStep(version);
+            Backfill backfill = step != null ? step.backfill() : null;
+            long start = SystemClock.elapsedRealtime();
+            long total = 0;
+            while (backfill != null) {
+                int rows;
+                db.beginTransactionNonExclusive();
+                try {
+                    rows = backfill.runBatch(db, BACKFILL_BATCH_SIZE);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                total += rows;
+                if (rows == 0) {
+                    break;
+                }
+                SystemClock.sleep(BACKFILL_PAUSE_MS);
+            }
+            // 找不到对应步骤（已被移除）的登记直接清掉
+            db.delete(BACKFILL_TABLE, "version = ?", new String[]{String.valueOf(version)});
+            Log.i(TAG, "Backfill v" + version + " done: " + total + " rows in "
+                    + (SystemClock.elapsedRealtime() - start) + "ms");
+        }
+    }
+
+    private Step findStep(int version) {
+        for (Step step : mSteps) {
+            if (step.version == version) {
+                return step;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 缓存的结构信息。名称一律按小写比较（SQLite标识符不区分大小写）。
+     */
+    static final class SchemaInfo {
+        private final Map<String, String> mTableSql = new HashMap<>();
+        private final Map<String, Set<String>> mColumns = new HashMap<>();
+        // 索引名 -> 所属表名
+        private final Map<String, String> mIndexes = new HashMap<>();
+
+        static SchemaInfo read(SQLiteDatabase db) {
+            SchemaInfo schema = new SchemaInfo();
+            Cursor c = db.rawQuery("SELECT type, name, tbl_name, sql FROM sqlite_master WHERE type IN ('table', 'index')", null);
+            try {
+                while (c.moveToNext()) {
+                    String name = key(c.getString(1));
+                    if ("table".equals(c.getString(0))) {
+                        schema.mTableSql.put(name, c.isNull(3) ? "" : c.getString(3));
+                    } else {
+                        schema.mIndexes.put(name, key(c.getString(2)));
+                    }
+                }
+            } finally {
+                c.close();
+            }
+            for (String table : schema.mTableSql.keySet()) {
+                schema.mColumns.put(table, readColumns(db, table));
+            }
+            return schema;
+        }
+
+        private static Set<String> readColumns(SQLiteDatabase db, String table) {
+            Set<String> columns = new HashSet<>();
+            Cursor c = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+            try {
+                int nameColumn = c.getColumnIndexOrThrow("name");
+                while (c.moveToNext()) {
+                    columns.add(key(c.getString(nameColumn)));
+                }
+            } finally {
+                c.close();
+            }
+            return columns;
+        }
+
+        private static String key(String name) {
+            return name.toLowerCase(Locale.ROOT);
+        }
+
+        boolean hasTable(String table) {
+            return mTableSql.containsKey(key(table));
+        }
+
+        boolean hasColumn(String table, String column) {
+            Set<String> columns = mColumns.get(key(table));
+            return columns != null && columns.contains(key(column));
+        }
+
+        boolean hasIndex(String index) {
+            return mIndexes.containsKey(key(index));
+        }
+
+        // 建表语句原文，表不存在时返回null
+        String getTableSql(String table) {
+            return mTableSql.get(key(table));
+        }
+
+        // 以下方法在结构已满足时不做任何事，步骤因此可以重复执行
+
+        void createTable(SQLiteDatabase db, String table, String sql) {
+            if (hasTable(table)) {
+                return;
+            }
+            db.execSQL(sql);
+            mTableSql.put(key(table), sql);
+            mColumns.put(key(table), readColumns(db, table));
+        }
+
+        void addColumn(SQLiteDatabase db, String table, String column, String definition) {
+            if (hasColumn(table, column)) {
+                return;
+            }
+            db.execSQL("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+            mColumns.get(key(table)).add(key(column));
+        }
+
+        void createIndex(SQLiteDatabase db, String index, String table, String sql) {
+            if (hasIndex(index)) {
+                return;
+            }
+            db.execSQL(sql);
+            mIndexes.put(key(index), key(table));
+        }
+
+        // 删除表，表上的索引随之删除
+        void dropTable(SQLiteDatabase db, String table) {
+            db.execSQL("DROP TABLE IF EXISTS " + table);
+            mTableSql.remove(key(table));
+            mColumns.remove(key(table));
+            mIndexes.values().removeAll(Collections.singleton(key(table)));
+        }
+
+        void renameTable(SQLiteDatabase db, String from, String to) {
+            db.execSQL("ALTER TABLE " + from + " RENAME TO " + to);
+            // RENAME会改写sqlite_master中的建表语句，重新读取一次该表
+            Cursor c = db.rawQuery("SELECT sql FROM sqlite_master WHERE type = 'table' AND name = ?", new String[]{to});
+            try {
+                mTableSql.put(key(to), c.moveToFirst() ? c.getString(0) : "");
+            } finally {
+                c.close();
+            }
+            mTableSql.remove(key(from));
+            mColumns.put(key(to), mColumns.remove(key(from)));
+            for (Map.Entry<String, String> index : mIndexes.entrySet()) {
+                if (index.getValue().equals(key(from))) {
+                    index.setValue(key(to));
+                }
+            }
+        }
+    }
+}
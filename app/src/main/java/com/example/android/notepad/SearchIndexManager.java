@@ -0,0 +1,191 @@
+package com.example.android.notepad;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.provider.BaseColumns;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 进程内的 {@link NoteSearchIndex}：启动后在后台线程全量构建，之后跟随NotePadProvider的变更通知增量维护。
+ * 单条笔记的通知（notes/#）只重新索引该行，其余通知（批量导入、恢复、同步）延迟合并后全量重建。
+ *
+ * 低内存设备上不启用；其余设备的内存预算为应用堆上限的1/8。
+ * 索引状态（笔记数、词数、倒排项数、估算内存）在每次构建后写入日志，也可通过Provider的dump查看。
+ */
+final class SearchIndexManager {
+    private static final String TAG = "SearchIndex";
+
+    // 批量变更后等待通知停止再重建
+    private static final long REBUILD_DELAY_MS = 1000;
+
+    private static final String[] PROJECTION = new String[]{
+            BaseColumns._ID,
+            NotePad.Notes.COLUMN_NAME_TITLE,
+            // 多取一个字符用来判断正文是否被截断
+            "substr(" + NotePad.Notes.COLUMN_NAME_NOTE + ", 1, " + (NoteSearchIndex.MAX_INDEXED_CHARS + 1) + ") AS "
+                    + NotePad.Notes.COLUMN_NAME_NOTE,
+            NotePad.Notes.COLUMN_NAME_CREATED_TIME,
+            NotePad.Notes.COLUMN_NAME_CATEGORY
+    };
+
+    private static SearchIndexManager sInstance;
+
+    static synchronized SearchIndexManager get(Context context) {
+        if (sInstance == null) {
+            sInstance = new SearchIndexManager(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private final Context mContext;
+    private final long mBudgetBytes;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mWorker = Executors.newSingleThreadExecutor(r -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        r.run();
+    }, "SearchIndex"));
+    private final List<Runnable> mListeners = new CopyOnWriteArrayList<>();
+    private final Runnable mRebuild = () -> mWorker.execute(this::rebuild);
+    private volatile NoteSearchIndex mIndex;
+    private volatile long mLastBuildMs;
+    private boolean mStarted;
+
+    private final ContentObserver mObserver = new ContentObserver(mMainHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            onChange(selfChange, null);
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            onNotesChanged(uri);
+        }
+    };
+
+    private SearchIndexManager(Context context) {
+        mContext = context;
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        boolean lowRam = am == null || am.isLowRamDevice();
+        mBudgetBytes = lowRam ? 0 : am.getMemoryClass() * 1024L * 1024L / 8;
+    }
+
+    /**
+     * 开始构建并跟随变更维护，重复调用无效。在主线程调用。
+     */
+    void start() {
+        if (mStarted || mBudgetBytes == 0) {
+            return;
+        }
+        mStarted = true;
+        mContext.getContentResolver().registerContentObserver(NotePad.Notes.CONTENT_URI, true, mObserver);
+        mWorker.execute(this::rebuild);
+    }
+
+    // 尚未构建完成或未启用时返回null，调用方改走SQL
+    NoteSearchIndex getIndex() {
+        return mIndex;
+    }
+
+    // 索引内容变化后在主线程回调
+    void addListener(Runnable listener) {
+        mListeners.add(listener);
+    }
+
+    void removeListener(Runnable listener) {
+        mListeners.remove(listener);
+    }
+
+    private void onNotesChanged(Uri uri) {
+        List<String> segments = uri == null ? null : uri.getPathSegments();
+        if (segments == null || segments.size() != 2 || !TextUtils.isDigitsOnly(segments.get(1))) {
+            mMainHandler.removeCallbacks(mRebuild);
+            mMainHandler.postDelayed(mRebuild, REBUILD_DELAY_MS);
+            return;
+        }
+        final long noteId = Long.parseLong(segments.get(1));
+        mWorker.execute(() -> reindex(noteId));
+    }
+
+    private void rebuild() {
+        long start = SystemClock.elapsedRealtime();
+        NoteSearchIndex index = new NoteSearchIndex(mBudgetBytes);
+        Cursor cursor = mContext.getContentResolver().query(NotePad.Notes.CONTENT_URI, PROJECTION, null, null, null);
+        if (cursor == null) {
+            return;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                put(index, cursor);
+            }
+        } finally {
+            cursor.close();
+        }
+        mLastBuildMs = SystemClock.elapsedRealtime() - start;
+        mIndex = index;
+        Log.i(TAG, "Built in " + mLastBuildMs + "ms: " + index.describe());
+        notifyListeners();
+    }
+
+    private void reindex(long noteId) {
+        NoteSearchIndex index = mIndex;
+        if (index == null) {
+            return;
+        }
+        Cursor cursor = mContext.getContentResolver().query(NotePad.Notes.CONTENT_URI, PROJECTION,
+                BaseColumns._ID + " = ?", new String[]{String.valueOf(noteId)}, null);
+        if (cursor == null) {
+            return;
+        }
+        try {
+            if (cursor.moveToFirst()) {
+                put(index, cursor);
+            } else {
+                index.remove(noteId);
+            }
+        } finally {
+            cursor.close();
+        }
+        notifyListeners();
+    }
+
+    private static void put(NoteSearchIndex index, Cursor cursor) {
+        String body = cursor.getString(2);
+        boolean truncated = body != null && body.length() > NoteSearchIndex.MAX_INDEXED_CHARS;
+        index.put(cursor.getLong(0), cursor.getString(1),
+                truncated ? body.substring(0, NoteSearchIndex.MAX_INDEXED_CHARS) : body, truncated,
+                cursor.getLong(3), cursor.getString(4));
+    }
+
+    private void notifyListeners() {
+        mMainHandler.post(() -> {
+            for (Runnable listener : mListeners) {
+                listener.run();
+            }
+        });
+    }
+
+    void dump(PrintWriter writer) {
+        NoteSearchIndex index = mIndex;
+        if (mBudgetBytes == 0) {
+            writer.println("Search index: disabled (low-RAM device)");
+        } else if (index == null) {
+            writer.println("Search index: " + (mStarted ? "building" : "not started"));
+        } else {
+            writer.println("Search index: " + index.describe() + " lastBuild=" + mLastBuildMs + "ms");
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.android.notepad;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * 慢查询记录：耗时超过阈值的查询/写入连同规范化SQL、参数个数、行数和
+ * EXPLAIN QUERY PLAN结果一起写入定长环形缓冲区。参数值本身不记录，避免泄露笔记内容。
+ *
+ * 只有慢操作才会进入这里，所以用简单的同步即可，不影响正常路径。
+ */
+final class SlowQueryLog {
+    private static final String TAG = "SlowQueryLog";
+
+    static final long DEFAULT_THRESHOLD_MS = 100;
+    static final int CAPACITY = 64;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final Entry[] mRing = new Entry[CAPACITY];
+    private int mNext;
+    private long mTotal;
+    private volatile long mThresholdNanos = DEFAULT_THRESHOLD_MS * 1000000L;
+
+    static final class Entry {
+        long timestamp;
+        String op;
+        String uri;
+        String sql;
+        int argCount;
+        long rows;
+        long durationUs;
+        String plan;
+
+        @Override
+        public String toString() {
+            return new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US).format(new Date(timestamp))
+                    + " " + op + " " + uri + " " + durationUs / 1000 + "ms rows=" + rows + " args=" + argCount
+                    + "\n    sql:  " + sql + "\n    plan: " + plan;
+        }
+    }
+
+    boolean isSlow(long nanos) {
+        return nanos >= mThresholdNanos;
+    }
+
+    void setThresholdMs(long ms) {
+        mThresholdNanos = Math.max(0, ms) * 1000000L;
+    }
+
+    long getThresholdMs() {
+        return mThresholdNanos / 1000000L;
+    }
+
+    /**
+     * 记录一次慢操作。sql为实际执行语句的SELECT形式（写操作用对应WHERE的SELECT），
+     * 以便用原参数执行EXPLAIN QUERY PLAN。
+     */
+    void record(SQLiteDatabase db, String op, String uri, String sql, String[] args, long rows, long nanos) {
+        Entry e = new Entry();
+        e.timestamp = System.currentTimeMillis();
+        e.op = op;
+        e.uri = uri;
+        e.sql = normalize(sql);
+        e.argCount = args == null ? 0 : args.length;
+        e.rows = rows;
+        e.durationUs = nanos / 1000;
+        e.plan = explain(db, sql, args);
+        Log.w(TAG, "Slow " + e);
+        synchronized (this) {
+            mRing[mNext] = e;
+            mNext = (mNext + 1) % CAPACITY;
+            mTotal++;
+        }
+    }
+
+    // 从旧到新返回当前缓冲区内容
+    synchronized ArrayList<String> snapshot() {
+        ArrayList<String> list = new ArrayList<>(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++) {
+            Entry e = mRing[(mNext + i) % CAPACITY];
+            if (e != null) {
+                list.add(e.toString());
+            }
+        }
+        return list;
+    }
+
+    // 清空后dump的累计条数也从0开始
+    synchronized void clear() {
+        for (int i = 0; i < CAPACITY; i++) {
+            mRing[i] = null;
+        }
+        mNext = 0;
+        mTotal = 0;
+    }
+
+    void dump(PrintWriter pw) {
+        ArrayList<String> entries = snapshot();
+        synchronized (this) {
+            pw.println("Slow queries (threshold " + getThresholdMs() + "ms, " + mTotal + " recorded, last "
+                    + entries.size() + " kept):");
+        }
+        for (String entry : entries) {
+            pw.println("  " + entry);
+        }
+    }
+
+    // 字面量替换为?、压缩空白，使同一形状的语句归为一类
+    static String normalize(String sql) {
+        String s = STRING_LITERAL.matcher(sql).replaceAll("?");
+        s = NUMBER_LITERAL.matcher(s).replaceAll("?");
+        return WHITESPACE.matcher(s).replaceAll(" ").trim();
+    }
+
+    private static String explain(SQLiteDatabase db, String sql, String[] args) {
+        if (db == null || !sql.regionMatches(true, 0, "SELECT", 0, 6)) {
+            return "n/a";
+        }
+        StringBuilder plan = new StringBuilder();
+        Cursor c = null;
+        try {
+            c = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+            int detail = c.getColumnIndex("detail");
+            while (c.moveToNext()) {
+                if (plan.length() > 0) {
+                    plan.append(" | ");
+                }
+                plan.append(detail >= 0 ? c.getString(detail) : c.getString(c.getColumnCount() - 1));
+            }
+        } catch (RuntimeException e) {
+            return "explain failed: " + e.getMessage();
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+        return plan.toString();
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.android.notepad;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 启动时间线：记录冷启动（进程启动到列表首帧）和编辑页打开（点击到可编辑）各阶段的耗时，
+ * 同时输出同名的android.os.Trace区段，便于在systrace/Perfetto中对照。
+ *
+ * 每种时间线只保留最近 {@link #HISTORY_SIZE} 次记录，保存在SharedPreferences中，用于跨版本对比。
+ */
+public final class StartupTimeline {
+    private static final String TAG = "StartupTimeline";
+
+    // 冷启动阶段
+    public static final String PROVIDER_CREATE = "provider_create";
+    public static final String DB_OPEN = "db_open";
+    public static final String DB_UPGRADE = "db_upgrade";
+    public static final String SNAPSHOT_LOAD = "snapshot_load";
+    public static final String FIRST_QUERY = "first_query";
+    public static final String FIRST_BIND = "first_bind";
+    public static final String FIRST_FRAME = "first_frame";
+
+    // 编辑页阶段
+    public static final String EDITOR_CREATE = "editor_create";
+    public static final String EDITOR_LOAD = "editor_load";
+    public static final String EDITOR_FIRST_FRAME = "editor_first_frame";
+
+    public static final String KIND_COLD_START = "cold_start";
+    public static final String KIND_EDITOR_OPEN = "editor_open";
+
+    static final int HISTORY_SIZE = 10;
+    private static final String PREFS_NAME = "startup_timeline";
+
+    // 类加载时间：API 24以下拿不到进程启动时间，用它近似（Provider在进程启动后最先初始化）
+    private static final long CLASS_LOAD_TIME = SystemClock.elapsedRealtime();
+
+    private static final StartupTimeline sColdStart = new StartupTimeline(KIND_COLD_START, processStartTime());
+
+    /**
+     * 一个阶段：相对时间线起点的开始/结束毫秒数；瞬时标记的开始等于结束。
+     */
+    public static final class Phase {
+        public final String name;
+        public final long startMs;
+        public long endMs = -1;
+
+        Phase(String name, long startMs) {
+            this.name = name;
+            this.startMs = startMs;
+        }
+    }
+
+    private final String mKind;
+    private final long mOrigin;
+    private final List<Phase> mPhases = new ArrayList<>();
+    private boolean mFinished;
+
+    public StartupTimeline(String kind, long originElapsedMs) {
+        mKind = kind;
+        mOrigin = originElapsedMs;
+    }
+
+    public static StartupTimeline coldStart() {
+        return sColdStart;
+    }
+
+    private static long processStartTime() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return Process.getStartElapsedRealtime();
+        }
+        return CLASS_LOAD_TIME;
+    }
+
+    /**
+     * 开始一个阶段，同时开启同名Trace区段。必须在同一线程上调用对应的 {@link #end(String)}。
+     * 时间线完成后的调用只输出Trace区段，不再记录。
+     */
+    public void begin(String phase) {
+        Trace.beginSection(phase);
+        synchronized (this) {
+            if (!mFinished) {
+                mPhases.add(new Phase(phase, SystemClock.elapsedRealtime() - mOrigin));
+            }
+        }
+    }
+
+    public void end(String phase) {
+        synchronized (this) {
+            if (!mFinished) {
+                for (int i = mPhases.size() - 1; i >= 0; i--) {
+                    Phase p = mPhases.get(i);
+                    if (p.name.equals(phase) && p.endMs < 0) {
+                        p.endMs = SystemClock.elapsedRealtime() - mOrigin;
+                        break;
+                    }
+                }
+            }
+        }
+        Trace.endSection();
+    }
+
+    // 瞬时标记，同名阶段只记录第一次
+    public synchronized void mark(String phase) {
+        if (mFinished || has(phase)) {
+            return;
+        }
+        Phase p = new Phase(phase, SystemClock.elapsedRealtime() - mOrigin);
+        p.endMs = p.startMs;
+        mPhases.add(p);
+    }
+
+    public synchronized boolean has(String phase) {
+        for (Phase p : mPhases) {
+            if (p.name.equals(phase)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized boolean isFinished() {
+        return mFinished;
+    }
+
+    // 按记录顺序返回阶段的副本
+    public synchronized List<Phase> getPhases() {
+        return new ArrayList<>(mPhases);
+    }
+
+    /**
+     * 结束时间线并持久化本次记录，只生效一次。
+     */
+    public void finish(Context context) {
+        String record;
+        synchronized (this) {
+            if (mFinished) {
+                return;
+            }
+            mFinished = true;
+            record = toJson().toString();
+        }
+        Log.i(TAG, mKind + ": " + record);
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        synchronized (StartupTimeline.class) {
+            JSONArray history = readHistory(prefs, mKind);
+            JSONArray trimmed = new JSONArray();
+            for (int i = Math.max(0, history.length() - (HISTORY_SIZE - 1)); i < history.length(); i++) {
+                trimmed.put(history.opt(i));
+            }
+            trimmed.put(record);
+            prefs.edit().putString(mKind, trimmed.toString()).apply();
+        }
+    }
+
+    /**
+     * 最近的记录（从旧到新），每条为JSON：{"at":时间戳,"phases":[{"name","start","end"}...]}。
+     */
+    public static List<String> getHistory(Context context, String kind) {
+        JSONArray history = readHistory(context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE), kind);
+        List<String> list = new ArrayList<>(history.length());
+        for (int i = 0; i < history.length(); i++) {
+            list.add(history.optString(i));
+        }
+        return list;
+    }
+
+    private static JSONArray readHistory(SharedPreferences prefs, String kind) {
+        try {
+            return new JSONArray(prefs.getString(kind, "[]"));
+        } catch (JSONException e) {
+            return new JSONArray();
+        }
+    }
+
+    private JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        try {
+            json.put("at", System.currentTimeMillis());
+            JSONArray phases = new JSONArray();
+            for (Phase p : mPhases) {
+                JSONObject o = new JSONObject();
+                o.put("name", p.name);
+                o.put("start", p.startMs);
+                o.put("end", p.endMs);
+                phases.put(o);
+            }
+            json.put("phases", phases);
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+        return json;
+    }
+}
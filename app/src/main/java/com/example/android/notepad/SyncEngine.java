@@ -0,0 +1,485 @@
+package com.example.android.notepad;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 基于NotePadProvider的增量同步引擎。
+ *
+ * 推送：只上传dirty=1的笔记和删除墓碑，按批次打包为短键名JSON并gzip压缩；回收站中的笔记带上移入时间；
+ * 拉取：按服务器游标分页获取变更，每页在一个applyBatch事务中落库。
+ * 冲突：按modified_time取较新者，时间相同时比较内容摘要，两端结果一致。
+ *
+ * 网络与数据库操作都是阻塞的，必须在后台线程调用 {@link #sync()}。
+ */
+public class SyncEngine {
+    private static final String TAG = "SyncEngine";
+
+    public static final String PREFS_NAME = "sync";
+    public static final String PREF_SERVER_URL = "server_url";
+    private static final String PREF_CURSOR = "cursor";
+    private static final String PREF_LAST_STATS = "last_stats";
+
+    // 每批推送/拉取的最大行数，兼顾请求体大小与事务时长
+    static final int BATCH_SIZE = 200;
+    private static final int TIMEOUT_MS = 15000;
+
+    // 报文中的短键名，减小压缩前体积
+    static final String KEY_UUID = "u";
+    static final String KEY_TITLE = "t";
+    static final String KEY_NOTE = "n";
+    static final String KEY_CATEGORY = "c";
+    static final String KEY_CREATED = "ct";
+    static final String KEY_MODIFIED = "mt";
+    static final String KEY_DELETED = "d";
+    // 移入回收站的时间，不在回收站中时省略
+    static final String KEY_TRASHED = "tr";
+
+    private static final String[] DIRTY_PROJECTION = new String[]{
+            NotePad.Notes.COLUMN_NAME_UUID,
+            NotePad.Notes.COLUMN_NAME_TITLE,
+            NotePad.Notes.COLUMN_NAME_NOTE,
+            NotePad.Notes.COLUMN_NAME_CATEGORY,
+            NotePad.Notes.COLUMN_NAME_CREATED_TIME,
+            NotePad.Notes.COLUMN_NAME_MODIFIED_TIME,
+            NotePad.Notes._ID,
+            NotePad.Notes.COLUMN_NAME_DELETED_TIME
+    };
+
+    private static final String[] LOCAL_PROJECTION = new String[]{
+            NotePad.Notes._ID,
+            NotePad.Notes.COLUMN_NAME_UUID,
+            NotePad.Notes.COLUMN_NAME_TITLE,
+            NotePad.Notes.COLUMN_NAME_NOTE,
+            NotePad.Notes.COLUMN_NAME_CATEGORY,
+            NotePad.Notes.COLUMN_NAME_MODIFIED_TIME,
+            NotePad.Notes.COLUMN_NAME_DIRTY
+    };
+
+    private static final Uri SYNC_NOTES_URI = asSyncAdapter(NotePad.Notes.CONTENT_URI);
+    private static final Uri SYNC_TOMBSTONES_URI = asSyncAdapter(NotePad.SyncTombstones.CONTENT_URI);
+
+    private final ContentResolver mResolver;
+    private final SharedPreferences mPrefs;
+    private final String mBaseUrl;
+
+    /**
+     * 单次同步的统计：线上传输的字节数（压缩后）、行数与耗时。
+     */
+    public static class Stats {
+        public long bytesSent;
+        public long bytesReceived;
+        public int pushed;
+        public int pulled;
+        public int conflictsKeptLocal;
+        public long durationMs;
+
+        @Override
+        public String toString() {
+            return "sent=" + bytesSent + "B received=" + bytesReceived + "B pushed=" + pushed
+                    + " pulled=" + pulled + " keptLocal=" + conflictsKeptLocal
+                    + " duration=" + durationMs + "ms";
+        }
+    }
+
+    public SyncEngine(Context context, String baseUrl) {
+        mResolver = context.getContentResolver();
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mBaseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    /**
+     * 执行一次完整同步：先推送本地变更，再拉取远端变更。
+     */
+    public Stats sync() throws IOException {
+        Stats stats = new Stats();
+        long start = SystemClock.elapsedRealtime();
+        try {
+            push(stats);
+            pull(stats);
+        } catch (JSONException e) {
+            throw new IOException("Malformed sync payload", e);
+        } finally {
+            stats.durationMs = SystemClock.elapsedRealtime() - start;
+            mPrefs.edit().putString(PREF_LAST_STATS, stats.toString()).apply();
+            Log.i(TAG, "sync finished: " + stats);
+        }
+        return stats;
+    }
+
+    /**
+     * 保存同步服务器地址（NotesList的“同步服务器”菜单）；地址变化时清掉拉取游标，从新服务器的起点拉取。
+     * 空字符串表示不同步。
+     */
+    public static void setServerUrl(Context context, String url) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (url.equals(prefs.getString(PREF_SERVER_URL, ""))) {
+            return;
+        }
+        SharedPreferences.Editor editor = prefs.edit().remove(PREF_CURSOR);
+        if (url.isEmpty()) {
+            editor.remove(PREF_SERVER_URL);
+        } else {
+            editor.putString(PREF_SERVER_URL, url);
+        }
+        editor.apply();
+    }
+
+    /**
+     * 上一次同步的统计文本，未同步过时返回null。
+     */
+    public String getLastStats() {
+        return mPrefs.getString(PREF_LAST_STATS, null);
+    }
+
+    private void push(Stats stats) throws IOException, JSONException {
+        // 先推送删除墓碑，再分批推送脏数据
+        while (true) {
+            JSONArray batch = new JSONArray();
+            List<String> tombstones = new ArrayList<>();
+            Cursor c = mResolver.query(NotePad.SyncTombstones.CONTENT_URI,
+                    new String[]{NotePad.SyncTombstones.COLUMN_NAME_UUID,
+                            NotePad.SyncTombstones.COLUMN_NAME_DELETED_TIME},
+                    null, null, NotePad.SyncTombstones.COLUMN_NAME_DELETED_TIME + " LIMIT " + BATCH_SIZE);
+            if (c == null) {
+                break;
+            }
+            try {
+                while (c.moveToNext()) {
+                    JSONObject o = new JSONObject();
+                    o.put(KEY_UUID, c.getString(0));
+                    o.put(KEY_MODIFIED, c.getLong(1));
+                    o.put(KEY_DELETED, 1);
+                    batch.put(o);
+                    tombstones.add(c.getString(0));
+                }
+            } finally {
+                c.close();
+            }
+            if (tombstones.isEmpty()) {
+                break;
+            }
+            post("/notes/push", batch, stats);
+            stats.pushed += tombstones.size();
+            ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+            for (String uuid : tombstones) {
+                ops.add(ContentProviderOperation.newDelete(SYNC_TOMBSTONES_URI)
+                        .withSelection(NotePad.SyncTombstones.COLUMN_NAME_UUID + " = ?", new String[]{uuid})
+                        .build());
+            }
+            applyBatch(ops);
+        }
+
+        long lastId = -1;
+        while (true) {
+            JSONArray batch = new JSONArray();
+            Map<String, Long> pushedVersions = new HashMap<>();
+            // 按_id推进，避免重复读取上一批已推送但在推送期间又被修改的行
+            // 升级后uuid尚未回填的行留到回填完成后再推送
+            // 移入回收站与恢复都计为修改：推送时带上移入时间，其他设备同样移入回收站；彻底删除后才推送墓碑
+            Cursor c = mResolver.query(SYNC_NOTES_URI, DIRTY_PROJECTION,
+                    NotePad.Notes.COLUMN_NAME_DIRTY + " = 1 AND " + NotePad.Notes.COLUMN_NAME_UUID + " IS NOT NULL AND "
+                            + NotePad.Notes._ID + " > ?",
+                    new String[]{String.valueOf(lastId)},
+                    NotePad.Notes._ID + " ASC LIMIT " + BATCH_SIZE);
+            if (c == null) {
+                break;
+            }
+            try {
+                while (c.moveToNext()) {
+                    JSONObject o = new JSONObject();
+                    o.put(KEY_UUID, c.getString(0));
+                    o.put(KEY_TITLE, c.getString(1));
+                    o.put(KEY_NOTE, c.isNull(2) ? "" : c.getString(2));
+                    o.put(KEY_CATEGORY, c.getString(3));
+                    o.put(KEY_CREATED, c.getLong(4));
+                    o.put(KEY_MODIFIED, c.getLong(5));
+                    if (!c.isNull(7)) {
+                        o.put(KEY_TRASHED, c.getLong(7));
+                    }
+                    batch.put(o);
+                    pushedVersions.put(c.getString(0), c.getLong(5));
+                    lastId = c.getLong(6);
+                }
+            } finally {
+                c.close();
+            }
+            if (pushedVersions.isEmpty()) {
+                break;
+            }
+            post("/notes/push", batch, stats);
+            stats.pushed += pushedVersions.size();
+
+            // 仅当推送后行未再被修改时才清除脏标记，避免丢失推送期间的编辑
+            ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+            for (Map.Entry<String, Long> e : pushedVersions.entrySet()) {
+                ops.add(ContentProviderOperation.newUpdate(SYNC_NOTES_URI)
+                        .withValue(NotePad.Notes.COLUMN_NAME_DIRTY, 0)
+                        .withSelection(NotePad.Notes.COLUMN_NAME_UUID + " = ? AND "
+                                        + NotePad.Notes.COLUMN_NAME_MODIFIED_TIME + " = ?",
+                                new String[]{e.getKey(), String.valueOf(e.getValue())})
+                        .build());
+            }
+            applyBatch(ops);
+        }
+    }
+
+    private void pull(Stats stats) throws IOException, JSONException {
+        String cursor = mPrefs.getString(PREF_CURSOR, "");
+        while (true) {
+            String query = "/notes/changes?limit=" + BATCH_SIZE
+                    + "&since=" + URLEncoder.encode(cursor, "UTF-8");
+            JSONObject page = new JSONObject(request("GET", query, null, stats));
+            JSONArray changes = page.optJSONArray("changes");
+            if (changes != null && changes.length() > 0) {
+                applyRemoteChanges(changes, stats);
+            }
+            cursor = page.optString("cursor", cursor);
+            // 每页落库成功后再保存游标，中断后可从该页继续
+            mPrefs.edit().putString(PREF_CURSOR, cursor).apply();
+            if (!page.optBoolean("has_more", false)) {
+                break;
+            }
+        }
+    }
+
+    // 一页远端变更在一个事务中应用
+    private void applyRemoteChanges(JSONArray changes, Stats stats) throws IOException, JSONException {
+        Map<String, JSONObject> remoteByUuid = new HashMap<>();
+        StringBuilder in = new StringBuilder();
+        String[] args = new String[changes.length()];
+        for (int i = 0; i < changes.length(); i++) {
+            JSONObject o = changes.getJSONObject(i);
+            remoteByUuid.put(o.getString(KEY_UUID), o);
+            in.append(i == 0 ? "?" : ",?");
+            args[i] = o.getString(KEY_UUID);
+        }
+
+        Map<String, LocalNote> localByUuid = new HashMap<>();
+        // 以同步引擎身份查询，回收站中的笔记同样参与对账
+        Cursor c = mResolver.query(SYNC_NOTES_URI, LOCAL_PROJECTION,
+                NotePad.Notes.COLUMN_NAME_UUID + " IN (" + in + ")", args, null);
+        if (c != null) {
+            try {
+                while (c.moveToNext()) {
+                    LocalNote local = new LocalNote();
+                    local.id = c.getLong(0);
+                    local.title = c.getString(2);
+                    local.note = c.isNull(3) ? "" : c.getString(3);
+                    local.category = c.getString(4);
+                    local.modified = c.getLong(5);
+                    local.dirty = c.getInt(6) != 0;
+                    localByUuid.put(c.getString(1), local);
+                }
+            } finally {
+                c.close();
+            }
+        }
+
+        ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+        for (Map.Entry<String, JSONObject> e : remoteByUuid.entrySet()) {
+            String uuid = e.getKey();
+            JSONObject remote = e.getValue();
+            LocalNote local = localByUuid.get(uuid);
+            if (local != null && local.dirty && keepLocal(local, remote)) {
+                stats.conflictsKeptLocal++;
+                continue;
+            }
+            stats.pulled++;
+            if (remote.optInt(KEY_DELETED, 0) != 0) {
+                if (local != null) {
+                    ops.add(ContentProviderOperation.newDelete(SYNC_NOTES_URI)
+                            .withSelection(NotePad.Notes.COLUMN_NAME_UUID + " = ?", new String[]{uuid})
+                            .build());
+                }
+                continue;
+            }
+            ContentValues values = new ContentValues();
+            values.put(NotePad.Notes.COLUMN_NAME_TITLE, remote.getString(KEY_TITLE));
+            values.put(NotePad.Notes.COLUMN_NAME_NOTE, remote.optString(KEY_NOTE, ""));
+            values.put(NotePad.Notes.COLUMN_NAME_CATEGORY, remote.optString(KEY_CATEGORY, "默认分类"));
+            values.put(NotePad.Notes.COLUMN_NAME_MODIFIED_TIME, remote.getLong(KEY_MODIFIED));
+            values.put(NotePad.Notes.COLUMN_NAME_DIRTY, 0);
+            // 远端的回收站状态随版本一起生效：带移入时间的移入回收站，不带的从回收站恢复
+            if (remote.has(KEY_TRASHED)) {
+                values.put(NotePad.Notes.COLUMN_NAME_DELETED_TIME, remote.getLong(KEY_TRASHED));
+            } else {
+                values.putNull(NotePad.Notes.COLUMN_NAME_DELETED_TIME);
+            }
+            if (local == null) {
+                values.put(NotePad.Notes.COLUMN_NAME_UUID, uuid);
+                values.put(NotePad.Notes.COLUMN_NAME_CREATED_TIME, remote.optLong(KEY_CREATED, remote.getLong(KEY_MODIFIED)));
+                ops.add(ContentProviderOperation.newInsert(SYNC_NOTES_URI).withValues(values).build());
+            } else {
+                ops.add(ContentProviderOperation.newUpdate(SYNC_NOTES_URI)
+                        .withValues(values)
+                        .withSelection(NotePad.Notes.COLUMN_NAME_UUID + " = ?", new String[]{uuid})
+                        .build());
+            }
+        }
+        applyBatch(ops);
+    }
+
+    /**
+     * 冲突判定（两端使用相同规则，结果确定）：修改时间较新者胜；
+     * 时间相同时比较内容摘要，摘要较大者胜。
+     */
+    static boolean keepLocal(LocalNote local, JSONObject remote) {
+        long remoteModified = remote.optLong(KEY_MODIFIED, 0);
+        if (local.modified != remoteModified) {
+            return local.modified > remoteModified;
+        }
+        boolean remoteDeleted = remote.optInt(KEY_DELETED, 0) != 0;
+        if (remoteDeleted) {
+            // 同一时刻的删除优先于编辑
+            return false;
+        }
+        String localDigest = digest(local.title, local.note, local.category);
+        String remoteDigest = digest(remote.optString(KEY_TITLE), remote.optString(KEY_NOTE),
+                remote.optString(KEY_CATEGORY));
+        return localDigest.compareTo(remoteDigest) >= 0;
+    }
+
+    private static String digest(String title, String note, String category) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update(String.valueOf(title).getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(String.valueOf(note).getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(String.valueOf(category).getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void applyBatch(ArrayList<ContentProviderOperation> ops) throws IOException {
+        if (ops.isEmpty()) {
+            return;
+        }
+        try {
+            mResolver.applyBatch(NotePad.AUTHORITY, ops);
+        } catch (Exception e) {
+            throw new IOException("Failed to apply sync batch", e);
+        }
+    }
+
+    private void post(String path, JSONArray batch, Stats stats) throws IOException {
+        JSONObject body = new JSONObject();
+        try {
+            body.put("changes", batch);
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+        request("POST", path, body.toString(), stats);
+    }
+
+    // 发送请求：请求体gzip压缩，响应支持gzip；统计线上实际字节数
+    private String request(String method, String path, String body, Stats stats) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(mBaseUrl + path).openConnection();
+        try {
+            conn.setRequestMethod(method);
+            conn.setConnectTimeout(TIMEOUT_MS);
+            conn.setReadTimeout(TIMEOUT_MS);
+            conn.setRequestProperty("Accept-Encoding", "gzip");
+            if (body != null) {
+                byte[] payload = gzip(body.getBytes(StandardCharsets.UTF_8));
+                conn.setDoOutput(true);
+                conn.setRequestProperty("Content-Type", "application/json");
+                conn.setRequestProperty("Content-Encoding", "gzip");
+                conn.setFixedLengthStreamingMode(payload.length);
+                OutputStream out = conn.getOutputStream();
+                try {
+                    out.write(payload);
+                } finally {
+                    out.close();
+                }
+                stats.bytesSent += payload.length;
+            }
+            int code = conn.getResponseCode();
+            if (code < 200 || code >= 300) {
+                throw new IOException("Sync request " + path + " failed: HTTP " + code);
+            }
+            byte[] raw = readFully(conn.getInputStream());
+            stats.bytesReceived += raw.length;
+            if ("gzip".equalsIgnoreCase(conn.getContentEncoding())) {
+                raw = readFully(new GZIPInputStream(new ByteArrayInputStream(raw)));
+            }
+            return new String(raw, StandardCharsets.UTF_8);
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 4 + 64);
+        GZIPOutputStream gz = new GZIPOutputStream(bos);
+        try {
+            gz.write(data);
+        } finally {
+            gz.close();
+        }
+        return bos.toByteArray();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                bos.write(buf, 0, n);
+            }
+            return bos.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static Uri asSyncAdapter(Uri uri) {
+        return uri.buildUpon().appendQueryParameter(NotePad.CALLER_IS_SYNC_ADAPTER, "true").build();
+    }
+
+    static class LocalNote {
+        long id;
+        String title;
+        String note;
+        String category;
+        long modified;
+        boolean dirty;
+    }
+}
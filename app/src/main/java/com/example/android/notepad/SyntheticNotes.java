@@ -0,0 +1,286 @@
+package com.example.android.notepad;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 可复现的合成笔记数据集，用于压力测试和性能测量。同一个 {@link Config}（含种子）总是生成完全相同的笔记序列。
+ *
+ * 数据分布：
+ * <ul>
+ *   <li>正文以中文段落为主，夹杂英文段落；长度长尾分布，多数几百字节，少量达到 {@link Config#maxBodyBytes}</li>
+ *   <li>分类偏斜：默认分类约一半，其余依次递减</li>
+ *   <li>创建时间分布在锚点之前的若干年内，越近越密集；锚点固定，不取当前时间</li>
+ * </ul>
+ *
+ * {@link #insert} 在后台线程生成、调用线程按字节数分批bulkInsert，写入期间切换到bulk-import参数。
+ */
+public final class SyntheticNotes {
+
+    public static final class Config {
+        public int count = 1000;
+        public long seed = 42;
+        // 2025-01-01 00:00:00 UTC
+        public long anchorTime = 1735689600000L;
+        public int years = 5;
+        public int maxBodyBytes = 4 << 20;
+        // 每批bulkInsert的正文总字节数上限（另有条数上限 MAX_BATCH_ROWS）
+        public int batchBytes = 4 << 20;
+    }
+
+    public static final class Note {
+        public final String title;
+        public final String body;
+        public final String category;
+        public final long createdTime;
+
+        Note(String title, String body, String category, long createdTime) {
+            this.title = title;
+            this.body = body;
+            this.category = category;
+            this.createdTime = createdTime;
+        }
+
+        public ContentValues toValues() {
+            ContentValues values = new ContentValues();
+            values.put(NotePad.Notes.COLUMN_NAME_TITLE, title);
+            values.put(NotePad.Notes.COLUMN_NAME_NOTE, body);
+            values.put(NotePad.Notes.COLUMN_NAME_CATEGORY, category);
+            values.put(NotePad.Notes.COLUMN_NAME_CREATED_TIME, createdTime);
+            return values;
+        }
+    }
+
+    public interface Listener {
+        void onProgress(int inserted, int total);
+    }
+
+    static final int MAX_BATCH_ROWS = 500;
+    private static final long YEAR_MS = 365L * 24 * 3600 * 1000;
+
+    private static final String[] CATEGORIES = {
+            "默认分类", NotePad.Notes.CATEGORY_WORK, NotePad.Notes.CATEGORY_LIFE,
+            NotePad.Notes.CATEGORY_STUDY, NotePad.Notes.CATEGORY_OTHER
+    };
+    // 累计权重（百分比），与CATEGORIES对应
+    private static final int[] CATEGORY_WEIGHTS = {50, 75, 88, 96, 100};
+
+    // 常用汉字，按大致频率排列，靠前的字被选中的概率更高
+    private static final String HANZI = "的一是不了人我在有他这中大来上个国到说们为子和你地出道也时年得就那要下以生会自着去之过家学对可她里后小么心多天而能好都然没日于起还发成事只作当想看文无开手十用主行方又如前所本见经头面公同三已老从动两长知民样现分将外但身些与高意进把法此实回二理美点月明其种声全工己话儿者向情部正名定女问力机给等几很业最间新什打便位因重被走电四第门相次东政海口使教西再平真听世气信北少关并内加化由却代军产入先山五太水万市眼体别处总才场师书比住员九笑性通目华报立马命张活难神数件安表原车白应路期叫死常提感金何更反合放做系计或司利受光王果亲界及今京务制解各任至清物台象记边共风战干接它许八特觉望直服毛林题建南度统色字请交爱让认算论百吃义科怎元社术结六功指思非流每青管夫连远资队跟带花快条院变联言权往展该领传近留红治决周保达办运武半候七必城父强步完革深区即求品士转量空甚众技轻程告江语英基派满式李息写呢识极令黄德收脸钱党倒未持取设始版双历越史商千片容研像找友孩站广改议形委早房音火际则首单据导影失拿网香似斯专石若兵弟谁校读志飞观争究包组造落视济喜离虽坐集编宝谈府拉黑且随格尽剑讲布杀微怕母调局根曾准团段终乐切级克精哪官示冷域";
+    private static final String[] PUNCTUATION = {"，", "，", "，", "。", "。", "；", "？", "！"};
+    private static final String[] WORDS = {
+            "the", "meeting", "project", "review", "draft", "plan", "release", "design", "notes", "todo",
+            "android", "database", "query", "index", "budget", "travel", "reading", "summary", "idea", "weekly",
+            "and", "of", "to", "for", "with", "on", "next", "step", "fix", "update"
+    };
+
+    private final Config mConfig;
+    private final Random mRandom;
+    private int mGenerated;
+
+    public SyntheticNotes(Config config) {
+        mConfig = config;
+        mRandom = new Random(config.seed);
+    }
+
+    public boolean hasNext() {
+        return mGenerated < mConfig.count;
+    }
+
+    public Note next() {
+        mGenerated++;
+        String title = mRandom.nextInt(10) < 7 ? hanzi(4 + mRandom.nextInt(13)) : latin(2 + mRandom.nextInt(5));
+        String category = category();
+        long createdTime = createdTime();
+        String body = body(bodyBytes());
+        return new Note(title, body, category, createdTime);
+    }
+
+    private String category() {
+        int roll = mRandom.nextInt(100);
+        for (int i = 0; i < CATEGORY_WEIGHTS.length; i++) {
+            if (roll < CATEGORY_WEIGHTS[i]) {
+                return CATEGORIES[i];
+            }
+        }
+        return CATEGORIES[0];
+    }
+
+    // 平方使时间向锚点聚集：最近一年的笔记最多
+    private long createdTime() {
+        double u = mRandom.nextDouble();
+        return mConfig.anchorTime - (long) (u * u * mConfig.years * YEAR_MS);
+    }
+
+    // 长尾：70% 50B-500B，20% 到5KB，8% 到50KB，1.8% 到500KB，0.2% 到maxBodyBytes
+    private int bodyBytes() {
+        int roll = mRandom.nextInt(1000);
+        int min;
+        int max;
+        if (roll < 700) {
+            min = 50;
+            max = 500;
+        } else if (roll < 900) {
+            min = 500;
+            max = 5000;
+        } else if (roll < 980) {
+            min = 5000;
+            max = 50000;
+        } else if (roll < 998) {
+            min = 50000;
+            max = 500000;
+        } else {
+            min = 500000;
+            max = mConfig.maxBodyBytes;
+        }
+        max = Math.min(max, mConfig.maxBodyBytes);
+        min = Math.min(min, max);
+        return min + (max > min ? mRandom.nextInt(max - min + 1) : 0);
+    }
+
+    // 按UTF-8字节数估算长度（汉字3字节），以段落为单位交替生成中英文
+    private String body(int targetBytes) {
+        StringBuilder sb = new StringBuilder(targetBytes / 2);
+        int bytes = 0;
+        while (bytes < targetBytes) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+                bytes++;
+            }
+            int paragraphBytes = Math.min(targetBytes - bytes, 60 + mRandom.nextInt(600));
+            if (mRandom.nextInt(10) < 7) {
+                int chars = Math.max(1, paragraphBytes / 3);
+                appendHanzi(sb, chars);
+                bytes += chars * 3;
+            } else {
+                int start = sb.length();
+                appendLatin(sb, paragraphBytes);
+                bytes += sb.length() - start;
+            }
+        }
+        return sb.toString();
+    }
+
+    private String hanzi(int chars) {
+        StringBuilder sb = new StringBuilder(chars);
+        for (int i = 0; i < chars; i++) {
+            sb.append(commonHanzi());
+        }
+        return sb.toString();
+    }
+
+    private void appendHanzi(StringBuilder sb, int chars) {
+        int sentence = 0;
+        for (int i = 0; i < chars; i++) {
+            // 每句8-30个字，句末计入字数（标点同样按3字节计）
+            if (sentence > 8 && mRandom.nextInt(22) == 0) {
+                sb.append(PUNCTUATION[mRandom.nextInt(PUNCTUATION.length)]);
+                sentence = 0;
+            } else {
+                sb.append(commonHanzi());
+                sentence++;
+            }
+        }
+    }
+
+    // 取两次均匀随机数中较小的下标，常用字出现得更多
+    private char commonHanzi() {
+        int index = Math.min(mRandom.nextInt(HANZI.length()), mRandom.nextInt(HANZI.length()));
+        return HANZI.charAt(index);
+    }
+
+    private String latin(int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[mRandom.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    private void appendLatin(StringBuilder sb, int bytes) {
+        int start = sb.length();
+        while (sb.length() - start < bytes) {
+            if (sb.length() > start) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[mRandom.nextInt(WORDS.length)]);
+        }
+        sb.append('.');
+    }
+
+    /**
+     * 生成config.count条笔记并通过NotePadProvider写入，返回写入条数。在后台线程调用。
+     */
+    public static int insert(ContentResolver resolver, Config config, Listener listener) throws InterruptedException {
+        final SyntheticNotes generator = new SyntheticNotes(config);
+        final int batchBytes = config.batchBytes;
+        final List<ContentValues> end = new ArrayList<>();
+        final BlockingQueue<List<ContentValues>> queue = new ArrayBlockingQueue<>(2);
+        Thread producer = new Thread(() -> {
+            try {
+                List<ContentValues> batch = new ArrayList<>();
+                long bytes = 0;
+                while (generator.hasNext()) {
+                    Note note = generator.next();
+                    batch.add(note.toValues());
+                    bytes += note.body.length();
+                    if (batch.size() >= MAX_BATCH_ROWS || bytes >= batchBytes) {
+                        queue.put(batch);
+                        batch = new ArrayList<>();
+                        bytes = 0;
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    queue.put(batch);
+                }
+                queue.put(end);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "SyntheticNotes");
+        producer.start();
+
+        String previousProfile = setProfile(resolver, PerformanceProfile.BULK_IMPORT);
+        int inserted = 0;
+        try {
+            while (true) {
+                List<ContentValues> batch = queue.poll(1, TimeUnit.SECONDS);
+                if (batch == end) {
+                    break;
+                }
+                if (batch == null) {
+                    if (!producer.isAlive() && queue.isEmpty()) {
+                        break;
+                    }
+                    continue;
+                }
+                inserted += resolver.bulkInsert(NotePad.Notes.CONTENT_URI, batch.toArray(new ContentValues[0]));
+                if (listener != null) {
+                    listener.onProgress(inserted, config.count);
+                }
+            }
+        } finally {
+            producer.interrupt();
+            if (previousProfile != null) {
+                setProfile(resolver, previousProfile);
+            }
+        }
+        return inserted;
+    }
+
+    private static String setProfile(ContentResolver resolver, String name) {
+        Bundle result = resolver.call(NotePad.Notes.CONTENT_URI, NotePad.METHOD_SET_PROFILE, name, null);
+        return result != null ? result.getString(NotePad.RESULT_PROFILE) : null;
+    }
+}
@@ -0,0 +1,476 @@
+package com.example.android.notepad;
+
+import java.util.Arrays;
+
+/**
+ * 笔记id集合的压缩位图（Roaring式分块）：id按高16位分块，每块按密度选择存储方式——
+ * 不超过 {@link #ARRAY_MAX} 个时存有序的低16位数组（每个id 2字节），更多时存65536位的位图（固定8KB）。
+ * 标签通常只覆盖少量笔记，稀疏块占多数；少数常用标签的密集块用逐字的位运算求交/并/差。
+ *
+ * id按无符号32位处理，笔记的自增_id在此范围内。运算返回新的位图，不修改参数。
+ * 纯Java实现，benchmark模块直接编译本文件。非线程安全。
+ */
+final class TagBitmap {
+    // 数组块与位图块的分界：4096个char与1024个long同为8KB
+    static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    // 各块的高16位，升序；mArrays[i]与mBits[i]恰有一个非null
+    private char[] mKeys = new char[4];
+    private char[][] mArrays = new char[4][];
+    private long[][] mBits = new long[4][];
+    private int[] mCounts = new int[4];
+    private int mSize;
+
+    static TagBitmap of(long... ids) {
+        TagBitmap bitmap = new TagBitmap();
+        for (long id : ids) {
+            bitmap.add(id);
+        }
+        return bitmap;
+    }
+
+    void add(long id) {
+        int i = containerFor(id, true);
+        char low = (char) id;
+        if (mBits[i] != null) {
+            long[] bits = mBits[i];
+            long mask = 1L << low;
+            if ((bits[low >>> 6] & mask) == 0) {
+                bits[low >>> 6] |= mask;
+                mCounts[i]++;
+            }
+            return;
+        }
+        char[] array = mArrays[i];
+        int count = mCounts[i];
+        // 按id升序加入（全量构建）时直接追加
+        int pos = count > 0 && array[count - 1] < low ? -count - 1 : Arrays.binarySearch(array, 0, count, low);
+        if (pos >= 0) {
+            return;
+        }
+        pos = -pos - 1;
+        if (count == ARRAY_MAX) {
+            mBits[i] = toBits(array, count);
+            mArrays[i] = null;
+            mBits[i][low >>> 6] |= 1L << low;
+            mCounts[i]++;
+            return;
+        }
+        if (count == array.length) {
+            array = mArrays[i] = Arrays.copyOf(array, Math.min(ARRAY_MAX, count * 2));
+        }
+        System.arraycopy(array, pos, array, pos + 1, count - pos);
+        array[pos] = low;
+        mCounts[i]++;
+    }
+
+    void remove(long id) {
+        int i = containerFor(id, false);
+        if (i < 0) {
+            return;
+        }
+        char low = (char) id;
+        if (mBits[i] != null) {
+            long mask = 1L << low;
+            if ((mBits[i][low >>> 6] & mask) == 0) {
+                return;
+            }
+            mBits[i][low >>> 6] &= ~mask;
+            if (--mCounts[i] <= ARRAY_MAX) {
+                mArrays[i] = toArray(mBits[i], mCounts[i]);
+                mBits[i] = null;
+            }
+        } else {
+            int pos = Arrays.binarySearch(mArrays[i], 0, mCounts[i], low);
+            if (pos < 0) {
+                return;
+            }
+            System.arraycopy(mArrays[i], pos + 1, mArrays[i], pos, mCounts[i] - pos - 1);
+            mCounts[i]--;
+        }
+        if (mCounts[i] == 0) {
+            removeContainer(i);
+        }
+    }
+
+    boolean contains(long id) {
+        int i = containerFor(id, false);
+        if (i < 0) {
+            return false;
+        }
+        char low = (char) id;
+        if (mBits[i] != null) {
+            return (mBits[i][low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch(mArrays[i], 0, mCounts[i], low) >= 0;
+    }
+
+    boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    int cardinality() {
+        int total = 0;
+        for (int i = 0; i < mSize; i++) {
+            total += mCounts[i];
+        }
+        return total;
+    }
+
+    // 升序的全部id
+    long[] toArray() {
+        long[] ids = new long[cardinality()];
+        int n = 0;
+        for (int i = 0; i < mSize; i++) {
+            long high = (long) mKeys[i] << 16;
+            if (mArrays[i] != null) {
+                for (int j = 0; j < mCounts[i]; j++) {
+                    ids[n++] = high | mArrays[i][j];
+                }
+            } else {
+                long[] bits = mBits[i];
+                for (int w = 0; w < WORDS; w++) {
+                    long word = bits[w];
+                    while (word != 0) {
+                        ids[n++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    // 约占内存的字节数，用于dump
+    long sizeInBytes() {
+        long bytes = mKeys.length * 14L;
+        for (int i = 0; i < mSize; i++) {
+            bytes += mArrays[i] != null ? mArrays[i].length * 2L : WORDS * 8L;
+        }
+        return bytes;
+    }
+
+    static TagBitmap and(TagBitmap a, TagBitmap b) {
+        TagBitmap result = new TagBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.mSize && j < b.mSize) {
+            if (a.mKeys[i] < b.mKeys[j]) {
+                i++;
+            } else if (a.mKeys[i] > b.mKeys[j]) {
+                j++;
+            } else {
+                result.appendAnd(a.mKeys[i], a, i, b, j);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    static int andCardinality(TagBitmap a, TagBitmap b) {
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.mSize && j < b.mSize) {
+            if (a.mKeys[i] < b.mKeys[j]) {
+                i++;
+            } else if (a.mKeys[i] > b.mKeys[j]) {
+                j++;
+            } else {
+                if (a.mBits[i] != null && b.mBits[j] != null) {
+                    for (int w = 0; w < WORDS; w++) {
+                        total += Long.bitCount(a.mBits[i][w] & b.mBits[j][w]);
+                    }
+                } else if (a.mBits[i] != null) {
+                    total += countIn(b.mArrays[j], b.mCounts[j], a.mBits[i]);
+                } else if (b.mBits[j] != null) {
+                    total += countIn(a.mArrays[i], a.mCounts[i], b.mBits[j]);
+                } else {
+                    total += intersect(a.mArrays[i], a.mCounts[i], b.mArrays[j], b.mCounts[j], null);
+                }
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    static TagBitmap or(TagBitmap a, TagBitmap b) {
+        TagBitmap result = new TagBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.mSize || j < b.mSize) {
+            if (j == b.mSize || i < a.mSize && a.mKeys[i] < b.mKeys[j]) {
+                result.appendCopy(a, i++);
+            } else if (i == a.mSize || a.mKeys[i] > b.mKeys[j]) {
+                result.appendCopy(b, j++);
+            } else {
+                result.appendOr(a.mKeys[i], a, i, b, j);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // a中不在b中的id
+    static TagBitmap andNot(TagBitmap a, TagBitmap b) {
+        TagBitmap result = new TagBitmap();
+        int j = 0;
+        for (int i = 0; i < a.mSize; i++) {
+            while (j < b.mSize && b.mKeys[j] < a.mKeys[i]) {
+                j++;
+            }
+            if (j < b.mSize && b.mKeys[j] == a.mKeys[i]) {
+                result.appendAndNot(a.mKeys[i], a, i, b, j);
+            } else {
+                result.appendCopy(a, i);
+            }
+        }
+        return result;
+    }
+
+    private void appendAnd(char key, TagBitmap a, int i, TagBitmap b, int j) {
+        if (a.mBits[i] != null && b.mBits[j] != null) {
+            long[] bits = new long[WORDS];
+            int count = 0;
+            for (int w = 0; w < WORDS; w++) {
+                bits[w] = a.mBits[i][w] & b.mBits[j][w];
+                count += Long.bitCount(bits[w]);
+            }
+            appendBits(key, bits, count);
+        } else if (a.mBits[i] != null || b.mBits[j] != null) {
+            char[] array = a.mBits[i] != null ? b.mArrays[j] : a.mArrays[i];
+            int count = a.mBits[i] != null ? b.mCounts[j] : a.mCounts[i];
+            long[] bits = a.mBits[i] != null ? a.mBits[i] : b.mBits[j];
+            char[] out = new char[count];
+            int n = 0;
+            for (int k = 0; k < count; k++) {
+                if ((bits[array[k] >>> 6] & (1L << array[k])) != 0) {
+                    out[n++] = array[k];
+                }
+            }
+            appendArray(key, out, n);
+        } else {
+            char[] out = new char[Math.min(a.mCounts[i], b.mCounts[j])];
+            int n = intersect(a.mArrays[i], a.mCounts[i], b.mArrays[j], b.mCounts[j], out);
+            appendArray(key, out, n);
+        }
+    }
+
+    private void appendOr(char key, TagBitmap a, int i, TagBitmap b, int j) {
+        if (a.mBits[i] == null && b.mBits[j] == null && a.mCounts[i] + b.mCounts[j] <= ARRAY_MAX) {
+            char[] x = a.mArrays[i];
+            char[] y = b.mArrays[j];
+            int nx = a.mCounts[i];
+            int ny = b.mCounts[j];
+            char[] out = new char[nx + ny];
+            int p = 0;
+            int q = 0;
+            int n = 0;
+            while (p < nx || q < ny) {
+                if (q == ny || p < nx && x[p] < y[q]) {
+                    out[n++] = x[p++];
+                } else if (p == nx || x[p] > y[q]) {
+                    out[n++] = y[q++];
+                } else {
+                    out[n++] = x[p++];
+                    q++;
+                }
+            }
+            appendArray(key, out, n);
+            return;
+        }
+        long[] bits = a.mBits[i] != null ? a.mBits[i].clone() : toBits(a.mArrays[i], a.mCounts[i]);
+        if (b.mBits[j] != null) {
+            for (int w = 0; w < WORDS; w++) {
+                bits[w] |= b.mBits[j][w];
+            }
+        } else {
+            for (int k = 0; k < b.mCounts[j]; k++) {
+                bits[b.mArrays[j][k] >>> 6] |= 1L << b.mArrays[j][k];
+            }
+        }
+        appendBits(key, bits, bitCount(bits));
+    }
+
+    private void appendAndNot(char key, TagBitmap a, int i, TagBitmap b, int j) {
+        if (a.mBits[i] != null) {
+            long[] bits = a.mBits[i].clone();
+            if (b.mBits[j] != null) {
+                for (int w = 0; w < WORDS; w++) {
+                    bits[w] &= ~b.mBits[j][w];
+                }
+            } else {
+                for (int k = 0; k < b.mCounts[j]; k++) {
+                    bits[b.mArrays[j][k] >>> 6] &= ~(1L << b.mArrays[j][k]);
+                }
+            }
+            appendBits(key, bits, bitCount(bits));
+            return;
+        }
+        char[] array = a.mArrays[i];
+        char[] out = new char[a.mCounts[i]];
+        int n = 0;
+        if (b.mBits[j] != null) {
+            for (int k = 0; k < a.mCounts[i]; k++) {
+                if ((b.mBits[j][array[k] >>> 6] & (1L << array[k])) == 0) {
+                    out[n++] = array[k];
+                }
+            }
+        } else {
+            char[] other = b.mArrays[j];
+            int q = 0;
+            for (int k = 0; k < a.mCounts[i]; k++) {
+                while (q < b.mCounts[j] && other[q] < array[k]) {
+                    q++;
+                }
+                if (q == b.mCounts[j] || other[q] != array[k]) {
+                    out[n++] = array[k];
+                }
+            }
+        }
+        appendArray(key, out, n);
+    }
+
+    private void appendCopy(TagBitmap source, int i) {
+        if (source.mBits[i] != null) {
+            appendBits(source.mKeys[i], source.mBits[i].clone(), source.mCounts[i]);
+        } else {
+            appendArray(source.mKeys[i], Arrays.copyOf(source.mArrays[i], source.mCounts[i]), source.mCounts[i]);
+        }
+    }
+
+    // 位图块的元素不多于ARRAY_MAX时转为数组块
+    private void appendBits(char key, long[] bits, int count) {
+        if (count == 0) {
+            return;
+        }
+        if (count <= ARRAY_MAX) {
+            appendArray(key, toArray(bits, count), count);
+            return;
+        }
+        grow();
+        mKeys[mSize] = key;
+        mBits[mSize] = bits;
+        mCounts[mSize] = count;
+        mSize++;
+    }
+
+    private void appendArray(char key, char[] array, int count) {
+        if (count == 0) {
+            return;
+        }
+        grow();
+        mKeys[mSize] = key;
+        mArrays[mSize] = array;
+        mCounts[mSize] = count;
+        mSize++;
+    }
+
+    // 查找id所在的块；create为true时不存在则按顺序插入一个空的数组块
+    private int containerFor(long id, boolean create) {
+        if (id < 0 || id > 0xffffffffL) {
+            throw new IllegalArgumentException("Note id out of range: " + id);
+        }
+        char key = (char) (id >>> 16);
+        int i = mSize > 0 && mKeys[mSize - 1] < key ? -mSize - 1 : Arrays.binarySearch(mKeys, 0, mSize, key);
+        if (i >= 0 || !create) {
+            return i;
+        }
+        i = -i - 1;
+        grow();
+        System.arraycopy(mKeys, i, mKeys, i + 1, mSize - i);
+        System.arraycopy(mArrays, i, mArrays, i + 1, mSize - i);
+        System.arraycopy(mBits, i, mBits, i + 1, mSize - i);
+        System.arraycopy(mCounts, i, mCounts, i + 1, mSize - i);
+        mKeys[i] = key;
+        mArrays[i] = new char[4];
+        mBits[i] = null;
+        mCounts[i] = 0;
+        mSize++;
+        return i;
+    }
+
+    private void removeContainer(int i) {
+        System.arraycopy(mKeys, i + 1, mKeys, i, mSize - i - 1);
+        System.arraycopy(mArrays, i + 1, mArrays, i, mSize - i - 1);
+        System.arraycopy(mBits, i + 1, mBits, i, mSize - i - 1);
+        System.arraycopy(mCounts, i + 1, mCounts, i, mSize - i - 1);
+        mSize--;
+        mArrays[mSize] = null;
+        mBits[mSize] = null;
+    }
+
+    private void grow() {
+        if (mSize == mKeys.length) {
+            int capacity = mSize * 2;
+            mKeys = Arrays.copyOf(mKeys, capacity);
+            mArrays = Arrays.copyOf(mArrays, capacity);
+            mBits = Arrays.copyOf(mBits, capacity);
+            mCounts = Arrays.copyOf(mCounts, capacity);
+        }
+    }
+
+    private static int intersect(char[] x, int nx, char[] y, int ny, char[] out) {
+        int p = 0;
+        int q = 0;
+        int n = 0;
+        while (p < nx && q < ny) {
+            if (x[p] < y[q]) {
+                p++;
+            } else if (x[p] > y[q]) {
+                q++;
+            } else {
+                if (out != null) {
+                    out[n] = x[p];
+                }
+                n++;
+                p++;
+                q++;
+            }
+        }
+        return n;
+    }
+
+    private static int countIn(char[] array, int count, long[] bits) {
+        int n = 0;
+        for (int k = 0; k < count; k++) {
+            if ((bits[array[k] >>> 6] & (1L << array[k])) != 0) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static long[] toBits(char[] array, int count) {
+        long[] bits = new long[WORDS];
+        for (int k = 0; k < count; k++) {
+            bits[array[k] >>> 6] |= 1L << array[k];
+        }
+        return bits;
+    }
+
+    private static char[] toArray(long[] bits, int count) {
+        char[] array = new char[count];
+        int n = 0;
+        for (int w = 0; w < WORDS; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                array[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return array;
+    }
+
+    private static int bitCount(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.android.notepad;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 标签到笔记的内存索引：每个标签一个 {@link TagBitmap}。多标签的与/或/非筛选和各标签的计数
+ * 都在位图上完成，不需要对note_tags做多次连接。
+ *
+ * 由NotePadProvider在首次需要时从tags/note_tags表全量构建，之后随Provider的写入增量更新。
+ * 标签名比较与表中的COLLATE NOCASE一致，只忽略ASCII字母的大小写。
+ * 纯Java实现，benchmark模块直接编译本文件。非线程安全，由调用方加锁。
+ */
+final class TagIndex {
+    // 标签名之间的分隔符（URI参数与ContentValues中的标签列表）
+    static final char SEPARATOR = ',';
+
+    private final Map<String, Integer> mIdsByKey = new HashMap<>();
+    private final Map<Integer, String> mNames = new HashMap<>();
+    private final Map<Integer, TagBitmap> mBitmaps = new HashMap<>();
+
+    /**
+     * 解析逗号分隔的标签名：去掉首尾空白，丢弃空名，按忽略大小写去重，保留首次出现的写法。
+     * null返回空列表。
+     */
+    static List<String> parseNames(String names) {
+        if (names == null) {
+            return Collections.emptyList();
+        }
+        Map<String, String> unique = new LinkedHashMap<>();
+        int start = 0;
+        while (start <= names.length()) {
+            int end = names.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                end = names.length();
+            }
+            String name = names.substring(start, end).trim();
+            if (!name.isEmpty() && !unique.containsKey(key(name))) {
+                unique.put(key(name), name);
+            }
+            start = end + 1;
+        }
+        return new ArrayList<>(unique.values());
+    }
+
+    // 与SQLite的NOCASE相同：只把ASCII大写字母转为小写
+    static String key(String name) {
+        char[] chars = null;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                if (chars == null) {
+                    chars = name.toCharArray();
+                }
+                chars[i] = (char) (c + ('a' - 'A'));
+            }
+        }
+        return chars != null ? new String(chars) : name;
+    }
+
+    // 登记标签；已登记的保持原有写法
+    void putTag(int tagId, String name) {
+        if (mNames.containsKey(tagId)) {
+            return;
+        }
+        mNames.put(tagId, name);
+        mIdsByKey.put(key(name), tagId);
+        mBitmaps.put(tagId, new TagBitmap());
+    }
+
+    void removeTag(int tagId) {
+        String name = mNames.remove(tagId);
+        if (name != null) {
+            mIdsByKey.remove(key(name));
+            mBitmaps.remove(tagId);
+        }
+    }
+
+    // 全量构建时逐行加入，按笔记id升序加入最快
+    void add(int tagId, long noteId) {
+        TagBitmap bitmap = mBitmaps.get(tagId);
+        if (bitmap != null) {
+            bitmap.add(noteId);
+        }
+    }
+
+    // 把笔记的标签整体替换为tagIds（标签须已登记）
+    void setNoteTags(long noteId, int[] tagIds) {
+        removeNote(noteId);
+        for (int tagId : tagIds) {
+            add(tagId, noteId);
+        }
+    }
+
+    // 标签数量通常只有几十到几百个，逐个移除即可
+    void removeNote(long noteId) {
+        for (TagBitmap bitmap : mBitmaps.values()) {
+            bitmap.remove(noteId);
+        }
+    }
+
+    /**
+     * 计算筛选结果：包含all中的每个标签、至少包含any中的一个（any为空时不限）、不包含none中的任何一个。
+     * 三者都为空时返回null，表示不按标签筛选。未知的标签视为没有笔记。
+     * 结果可能直接引用索引内的位图，须在同一把锁内用完。
+     */
+    Match match(List<String> all, List<String> any, List<String> none) {
+        if (all.isEmpty() && any.isEmpty() && none.isEmpty()) {
+            return null;
+        }
+        TagBitmap positive = null;
+        if (!all.isEmpty()) {
+            // 从最小的位图开始求交，中间结果一直不大于它
+            List<TagBitmap> bitmaps = bitmaps(all);
+            Collections.sort(bitmaps, BY_CARDINALITY);
+            positive = bitmaps.contains(null) ? new TagBitmap() : bitmaps.get(0);
+            for (int i = 1; i < bitmaps.size() && !positive.isEmpty(); i++) {
+                positive = TagBitmap.and(positive, bitmaps.get(i));
+            }
+        }
+        if (!any.isEmpty()) {
+            TagBitmap union = union(any);
+            positive = positive == null ? union : TagBitmap.and(positive, union);
+        }
+        TagBitmap excluded = union(none);
+        if (positive == null) {
+            return new Match(excluded, true);
+        }
+        return new Match(excluded.isEmpty() ? positive : TagBitmap.andNot(positive, excluded), false);
+    }
+
+    private static final Comparator<TagBitmap> BY_CARDINALITY = (a, b) -> {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return Integer.compare(a.cardinality(), b.cardinality());
+    };
+
+    private List<TagBitmap> bitmaps(List<String> names) {
+        List<TagBitmap> bitmaps = new ArrayList<>(names.size());
+        for (String name : names) {
+            Integer tagId = mIdsByKey.get(key(name));
+            bitmaps.add(tagId != null ? mBitmaps.get(tagId) : null);
+        }
+        return bitmaps;
+    }
+
+    private TagBitmap union(List<String> names) {
+        TagBitmap union = new TagBitmap();
+        for (TagBitmap bitmap : bitmaps(names)) {
+            if (bitmap != null) {
+                union = TagBitmap.or(union, bitmap);
+            }
+        }
+        return union;
+    }
+
+    /**
+     * 全部标签及其笔记数，按标签名排列；within不为null时只计其中的笔记。
+     */
+    List<TagCount> counts(Match within) {
+        List<TagCount> counts = new ArrayList<>(mNames.size());
+        for (Map.Entry<Integer, String> entry : mNames.entrySet()) {
+            TagBitmap bitmap = mBitmaps.get(entry.getKey());
+            int count;
+            if (within == null) {
+                count = bitmap.cardinality();
+            } else if (within.complement) {
+                count = bitmap.cardinality() - TagBitmap.andCardinality(bitmap, within.ids);
+            } else {
+                count = TagBitmap.andCardinality(bitmap, within.ids);
+            }
+            counts.add(new TagCount(entry.getKey(), entry.getValue(), count));
+        }
+        Collections.sort(counts, (a, b) -> {
+            int c = key(a.name).compareTo(key(b.name));
+            return c != 0 ? c : Integer.compare(a.tagId, b.tagId);
+        });
+        return counts;
+    }
+
+    int tagCount() {
+        return mNames.size();
+    }
+
+    long sizeInBytes() {
+        long bytes = 0;
+        for (TagBitmap bitmap : mBitmaps.values()) {
+            bytes += bitmap.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * 筛选结果：complement为false时是ids中的笔记，为true时是除ids以外的全部笔记。
+     */
+    static final class Match {
+        final TagBitmap ids;
+        final boolean complement;
+
+        Match(TagBitmap ids, boolean complement) {
+            this.ids = ids;
+            this.complement = complement;
+        }
+    }
+
+    static final class TagCount {
+        final int tagId;
+        final String name;
+        final int count;
+
+        TagCount(int tagId, String name, int count) {
+            this.tagId = tagId;
+            this.name = name;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.android.notepad;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 两个版本正文之间的差量：由“从旧版本复制一段”和“插入一段新文字”两种操作组成，
+ * 对旧版本依次执行即得到新版本。
+ *
+ * 先去掉两版相同的开头和结尾；中间部分按行在旧版本中找相同的行，找到后向后尽量延长，
+ * 只改了几处的长笔记因此只记下改动的几行。每个操作以varint开头：最低位0为复制（其余位为长度，
+ * 后跟旧版本中的起点），1为插入（其余位为UTF-8字节数，后跟这些字节）。长度与位置都以char计。
+ * 纯Java实现，benchmark模块直接编译本文件。
+ */
+final class TextDelta {
+    // 短于此长度的行不作为匹配起点：空行、单个符号在旧版本中到处都有，复制反而比插入长
+    static final int MIN_MATCH = 8;
+
+    private TextDelta() {
+    }
+
+    /**
+     * 把base变为target的差量。
+     */
+    static byte[] diff(String base, String target) {
+        Encoder out = new Encoder();
+        int prefix = 0;
+        int max = Math.min(base.length(), target.length());
+        while (prefix < max && base.charAt(prefix) == target.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && base.charAt(base.length() - 1 - suffix) == target.charAt(target.length() - 1 - suffix)) {
+            suffix++;
+        }
+        // 不在代理对中间切开：插入的文字按UTF-8编码，半个字符无法还原
+        if (prefix > 0 && Character.isHighSurrogate(base.charAt(prefix - 1))) {
+            prefix--;
+        }
+        if (suffix > 0 && Character.isLowSurrogate(base.charAt(base.length() - suffix))) {
+            suffix--;
+        }
+        int baseEnd = base.length() - suffix;
+        int targetEnd = target.length() - suffix;
+        out.copy(0, prefix);
+
+        // 旧版本中间部分每种行内容第一次出现的位置。首尾两行都取完整的一行：相同的开头或结尾常常
+        // 停在行中间（段落互换位置时两段开头的字相同），截断的行无法与新版本中的行匹配
+        Map<String, Integer> lines = new HashMap<>();
+        for (int start = lineStart(base, prefix); start < baseEnd; ) {
+            int end = lineEnd(base, start, base.length());
+            if (end - start >= MIN_MATCH) {
+                String line = base.substring(start, end);
+                if (!lines.containsKey(line)) {
+                    lines.put(line, start);
+                }
+            }
+            start = end;
+        }
+
+        int literal = prefix;
+        int pos = prefix;
+        while (pos < targetEnd) {
+            // pos所在的整行；pos在行中间时从旧版本中对应的位置开始复制
+            int start = lineStart(target, pos);
+            int end = lineEnd(target, pos, target.length());
+            Integer line = end - start >= MIN_MATCH ? lines.get(target.substring(start, end)) : null;
+            if (line == null) {
+                pos = Math.min(end, targetEnd);
+                continue;
+            }
+            int from = line + pos - start;
+            int length = Math.min(end, targetEnd) - pos;
+            while (pos + length < targetEnd && from + length < base.length()
+                    && base.charAt(from + length) == target.charAt(pos + length)) {
+                length++;
+            }
+            if (length > 1 && Character.isHighSurrogate(target.charAt(pos + length - 1))) {
+                length--;
+            }
+            out.insert(target, literal, pos);
+            out.copy(from, length);
+            pos += length;
+            literal = pos;
+        }
+        out.insert(target, literal, targetEnd);
+        out.copy(baseEnd, suffix);
+        return out.toByteArray();
+    }
+
+    /**
+     * 对base执行差量，返回新版本。差量与base不对应时抛出IllegalArgumentException。
+     */
+    static String apply(String base, byte[] delta) {
+        StringBuilder text = new StringBuilder(base.length() + delta.length);
+        int[] pos = {0};
+        while (pos[0] < delta.length) {
+            long header = readVarint(delta, pos);
+            int length = (int) (header >>> 1);
+            if ((header & 1) == 0) {
+                long from = readVarint(delta, pos);
+                if (from + length > base.length()) {
+                    throw new IllegalArgumentException("Copy out of range: " + from + "+" + length);
+                }
+                text.append(base, (int) from, (int) from + length);
+            } else {
+                if (length > delta.length - pos[0]) {
+                    throw new IllegalArgumentException("Truncated insert at " + pos[0]);
+                }
+                text.append(new String(delta, pos[0], length, StandardCharsets.UTF_8));
+                pos[0] += length;
+            }
+        }
+        return text.toString();
+    }
+
+    // pos所在行的开头
+    private static int lineStart(String text, int pos) {
+        return pos == 0 ? 0 : text.lastIndexOf('\n', pos - 1) + 1;
+    }
+
+    // 从start起这一行的结尾（含换行符），不超过limit
+    private static int lineEnd(String text, int start, int limit) {
+        int newline = text.indexOf('\n', start);
+        return newline < 0 || newline >= limit ? limit : newline + 1;
+    }
+
+    private static long readVarint(byte[] data, int[] pos) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos[0] >= data.length) {
+                throw new IllegalArgumentException("Truncated varint at " + pos[0]);
+            }
+            byte b = data[pos[0]++];
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint at " + pos[0]);
+    }
+
+    // 相邻且在旧版本中连续的复制合并为一个
+    private static final class Encoder {
+        private final ByteArrayOutputStream mOut = new ByteArrayOutputStream();
+        private int mCopyFrom = -1;
+        private int mCopyLength;
+
+        void copy(int from, int length) {
+            if (length == 0) {
+                return;
+            }
+            if (mCopyFrom >= 0 && mCopyFrom + mCopyLength == from) {
+                mCopyLength += length;
+                return;
+            }
+            flushCopy();
+            mCopyFrom = from;
+            mCopyLength = length;
+        }
+
+        void insert(String text, int start, int end) {
+            if (start == end) {
+                return;
+            }
+            flushCopy();
+            byte[] bytes = text.substring(start, end).getBytes(StandardCharsets.UTF_8);
+            writeVarint(((long) bytes.length << 1) | 1);
+            mOut.write(bytes, 0, bytes.length);
+        }
+
+        byte[] toByteArray() {
+            flushCopy();
+            return mOut.toByteArray();
+        }
+
+        private void flushCopy() {
+            if (mCopyFrom < 0) {
+                return;
+            }
+            writeVarint((long) mCopyLength << 1);
+            writeVarint(mCopyFrom);
+            mCopyFrom = -1;
+        }
+
+        private void writeVarint(long value) {
+            while ((value & ~0x7fL) != 0) {
+                mOut.write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            mOut.write((int) value);
+        }
+    }
+}
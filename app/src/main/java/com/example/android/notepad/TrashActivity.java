@@ -0,0 +1,205 @@
+package com.example.android.notepad;
+
+import android.app.AlertDialog;
+import android.app.ListActivity;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回收站：列出移入回收站的笔记（最近移入的在前），点击可恢复，删除图标彻底删除，菜单可清空回收站。
+ * 读写都在后台线程执行，完成后重新加载。
+ */
+public class TrashActivity extends ListActivity {
+    private static final String[] PROJECTION = {
+            NotePad.Notes._ID,
+            NotePad.Notes.COLUMN_NAME_TITLE,
+            NotePad.Notes.COLUMN_NAME_DELETED_TIME,
+    };
+
+    private final ExecutorService loader = Executors.newSingleThreadExecutor();
+    private final TrashAdapter adapter = new TrashAdapter();
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setTitle("回收站");
+        getListView().setAdapter(adapter);
+        getListView().setOnItemClickListener((parent, view, position, id) -> showRestoreDialog(id));
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        load();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        loader.shutdownNow();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.trash_options_menu, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_empty_trash) {
+            new AlertDialog.Builder(this)
+                    .setTitle("清空回收站")
+                    .setMessage("回收站中的笔记将被彻底删除，无法恢复。")
+                    .setPositiveButton("清空", (dialog, which) -> run(() -> {
+                        getContentResolver().delete(NotePad.Trash.CONTENT_URI, null, null);
+                        return "回收站已清空";
+                    }))
+                    .setNegativeButton("取消", null)
+                    .show();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void load() {
+        loader.execute(() -> {
+            Cursor c = getContentResolver().query(NotePad.Trash.CONTENT_URI, PROJECTION, null, null, null);
+            if (c == null) {
+                return;
+            }
+            final Rows rows;
+            try {
+                rows = new Rows(c.getCount());
+                for (int i = 0; c.moveToNext(); i++) {
+                    rows.ids[i] = c.getLong(0);
+                    rows.titles[i] = c.getString(1);
+                    rows.deletedTimes[i] = c.getLong(2);
+                }
+            } finally {
+                c.close();
+            }
+            runOnUiThread(() -> {
+                if (!isDestroyed()) {
+                    adapter.setRows(rows);
+                }
+            });
+        });
+    }
+
+    private void showRestoreDialog(final long noteId) {
+        new AlertDialog.Builder(this)
+                .setTitle("恢复笔记")
+                .setMessage("把这条笔记恢复到笔记列表？")
+                .setPositiveButton("恢复", (dialog, which) -> run(() -> {
+                    Uri restoreUri = ContentUris.withAppendedId(NotePad.Trash.CONTENT_URI, noteId).buildUpon()
+                            .appendPath(NotePad.Trash.PATH_RESTORE).build();
+                    return getContentResolver().update(restoreUri, new ContentValues(), null, null) > 0
+                            ? "已恢复" : "恢复失败";
+                }))
+                .setNegativeButton("取消", null)
+                .show();
+    }
+
+    private void showDeleteDialog(final long noteId) {
+        new AlertDialog.Builder(this)
+                .setTitle("彻底删除")
+                .setMessage("彻底删除后无法恢复，确定吗？")
+                .setPositiveButton("删除", (dialog, which) -> run(() -> {
+                    Uri noteUri = ContentUris.withAppendedId(NotePad.Trash.CONTENT_URI, noteId);
+                    return getContentResolver().delete(noteUri, null, null) > 0 ? "已彻底删除" : "删除失败";
+                }))
+                .setNegativeButton("取消", null)
+                .show();
+    }
+
+    // 在后台执行写操作，完成后提示结果并重新加载
+    private void run(final Action action) {
+        loader.execute(() -> {
+            final String message = action.run();
+            runOnUiThread(() -> {
+                if (!isDestroyed()) {
+                    Toast.makeText(TrashActivity.this, message, Toast.LENGTH_SHORT).show();
+                }
+            });
+            load();
+        });
+    }
+
+    private interface Action {
+        String run();
+    }
+
+    // 一次加载的结果，加载完成后不再修改
+    private static final class Rows {
+        final long[] ids;
+        final String[] titles;
+        final long[] deletedTimes;
+
+        Rows(int count) {
+            ids = new long[count];
+            titles = new String[count];
+            deletedTimes = new long[count];
+        }
+    }
+
+    private final class TrashAdapter extends BaseAdapter {
+        private Rows rows = new Rows(0);
+
+        void setRows(Rows rows) {
+            this.rows = rows;
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public int getCount() {
+            return rows.ids.length;
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return rows.ids[position];
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return rows.ids[position];
+        }
+
+        @Override
+        public boolean hasStableIds() {
+            return true;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            View view = convertView != null ? convertView
+                    : getLayoutInflater().inflate(R.layout.note_list_item, parent, false);
+            ((TextView) view.findViewById(android.R.id.text1)).setText(rows.titles[position]);
+            long expires = rows.deletedTimes[position] + TimeUnit.DAYS.toMillis(NotePad.Trash.RETENTION_DAYS);
+            long daysLeft = Math.max(0, TimeUnit.MILLISECONDS.toDays(expires - System.currentTimeMillis()));
+            TextView remaining = view.findViewById(R.id.tv_note_snippet);
+            remaining.setVisibility(View.VISIBLE);
+            remaining.setText(daysLeft + "天后自动删除");
+            ((TextView) view.findViewById(R.id.tv_note_timestamp))
+                    .setText(ListSnapshotCache.formatTime(rows.deletedTimes[position]));
+            final long noteId = rows.ids[position];
+            view.findViewById(R.id.iv_delete).setOnClickListener(v -> showDeleteDialog(noteId));
+            return view;
+        }
+    }
+}
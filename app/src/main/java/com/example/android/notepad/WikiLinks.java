@@ -0,0 +1,108 @@
+package com.example.android.notepad;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 正文中的维基式链接 [[标题]]：解析出链接到的标题，以及被链接的笔记改名时改写正文。
+ *
+ * 链接内容去掉首尾空白后即目标标题，不能为空、不能含方括号或换行；标题比较与note_links表的
+ * COLLATE NOCASE一致，只忽略ASCII字母的大小写（同 {@link TagIndex#key}）。
+ * 纯Java实现，benchmark模块直接编译本文件。
+ */
+final class WikiLinks {
+    static final String OPEN = "[[";
+    static final String CLOSE = "]]";
+
+    private WikiLinks() {
+    }
+
+    /**
+     * 正文中链接到的标题，按首次出现的顺序，忽略大小写去重并保留首次出现的写法。null返回空列表。
+     */
+    static List<String> parse(String text) {
+        Map<String, String> unique = new LinkedHashMap<>();
+        if (text == null) {
+            return new ArrayList<>();
+        }
+        int start = 0;
+        while ((start = text.indexOf(OPEN, start)) >= 0) {
+            int end = linkEnd(text, start);
+            if (end < 0) {
+                // 这里不是链接，从下一个字符继续找（"[[[标题]]"中的链接从第二个括号开始）
+                start++;
+                continue;
+            }
+            String title = text.substring(start + OPEN.length(), end).trim();
+            String key = TagIndex.key(title);
+            if (!unique.containsKey(key)) {
+                unique.put(key, title);
+            }
+            start = end + CLOSE.length();
+        }
+        return new ArrayList<>(unique.values());
+    }
+
+    /**
+     * 把正文中指向oldTitle的链接改为指向newTitle，其余内容不变；没有这样的链接时返回原字符串。
+     */
+    static String rename(String text, String oldTitle, String newTitle) {
+        if (text == null) {
+            return null;
+        }
+        String oldKey = TagIndex.key(oldTitle.trim());
+        StringBuilder renamed = null;
+        int copied = 0;
+        int start = 0;
+        while ((start = text.indexOf(OPEN, start)) >= 0) {
+            int end = linkEnd(text, start);
+            if (end < 0) {
+                start++;
+                continue;
+            }
+            if (TagIndex.key(text.substring(start + OPEN.length(), end).trim()).equals(oldKey)) {
+                if (renamed == null) {
+                    renamed = new StringBuilder(text.length() + 16);
+                }
+                renamed.append(text, copied, start).append(OPEN).append(newTitle.trim()).append(CLOSE);
+                copied = end + CLOSE.length();
+            }
+            start = end + CLOSE.length();
+        }
+        return renamed == null ? text : renamed.append(text, copied, text.length()).toString();
+    }
+
+    // 能否作为链接目标：改名后的标题不满足时，指向旧标题的链接保持原样
+    static boolean isLinkable(String title) {
+        if (title == null || title.trim().isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < title.length(); i++) {
+            if (!isTitleChar(title.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // start处的"[["开始一个合法链接时返回对应"]]"的位置，否则返回-1
+    private static int linkEnd(String text, int start) {
+        int from = start + OPEN.length();
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ']') {
+                return text.startsWith(CLOSE, i) && !text.substring(from, i).trim().isEmpty() ? i : -1;
+            }
+            if (!isTitleChar(c)) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isTitleChar(char c) {
+        return c != '[' && c != ']' && c != '\n' && c != '\r';
+    }
+}
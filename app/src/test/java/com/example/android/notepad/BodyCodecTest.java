@@ -0,0 +1,84 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class BodyCodecTest {
+
+    private static String meetingNotes(int lines) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            text.append("第").append(i).append("项：季度复盘 \uD83D\uDE00 owner=alice\n");
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void longBodiesRoundTrip() {
+        String body = meetingNotes(1000);
+        byte[] data = BodyCodec.encode(body);
+        assertNotNull(data);
+        assertEquals(BodyCodec.CODEC_DEFLATE, data[0]);
+        assertTrue(data.length < body.length() / 4);
+        assertEquals(body, BodyCodec.decode(data));
+        assertEquals(body, BodyCodec.body(BodyCodec.head(body), data));
+        assertEquals(body.substring(0, BodyCodec.HEAD_CHARS), BodyCodec.head(body));
+    }
+
+    @Test
+    public void shortOrIncompressibleBodiesStayPlain() {
+        assertNull(BodyCodec.encode(meetingNotes(10)));
+        assertNull(BodyCodec.encode(""));
+        assertEquals("明文", BodyCodec.body("明文", null));
+        // 随机字符压缩不下四分之一
+        Random random = new Random(42);
+        char[] noise = new char[BodyCodec.MIN_CHARS * 2];
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = (char) (0x4e00 + random.nextInt(0x5000));
+        }
+        assertNull(BodyCodec.encode(new String(noise)));
+    }
+
+    @Test
+    public void headKeepsSurrogatePairs() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < BodyCodec.HEAD_CHARS - 1; i++) {
+            text.append('a');
+        }
+        text.append("\uD83D\uDE00tail");
+        String head = BodyCodec.head(text.toString());
+        assertEquals(BodyCodec.HEAD_CHARS + 1, head.length());
+        assertTrue(head.endsWith("\uD83D\uDE00"));
+        assertEquals("短", BodyCodec.head("短"));
+    }
+
+    @Test
+    public void rejectsUnknownOrCorruptData() {
+        byte[] data = BodyCodec.encode(meetingNotes(1000));
+        byte[] unknown = data.clone();
+        unknown[0] = 9;
+        try {
+            BodyCodec.decode(unknown);
+            fail("unknown codec decoded");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            BodyCodec.decode(Arrays.copyOf(data, data.length / 2));
+            fail("truncated body decoded");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            BodyCodec.decode(new byte[0]);
+            fail("empty data decoded");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BodyMatchesTest {
+
+    private static String filler(int chars) {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < chars) {
+            text.append("会议记录\n");
+        }
+        return text.substring(0, chars);
+    }
+
+    @Test
+    public void snippetFromFullBodyIgnoringAsciiCase() {
+        BodyMatches matches = new BodyMatches("Release");
+        matches.find(filler(5000) + "RELEASE plan\nrelease notes");
+        // 命中较远时从命中前SNIPPET_CONTEXT个字符起截取并加省略号，换行替换为空格
+        String tail = filler(5000).substring(5000 - NotePadSchema.SNIPPET_CONTEXT).replace('\n', ' ');
+        assertEquals("…" + tail + "RELEASE plan release notes", matches.snippet());
+        assertEquals(NotePadSchema.SNIPPET_CONTEXT + 1, matches.snippetMatch());
+
+        matches.find("release\nfirst");
+        assertEquals("release first", matches.snippet());
+        assertEquals(0, matches.snippetMatch());
+
+        matches.find(filler(3000));
+        assertNull(matches.snippet());
+        assertEquals(-1, matches.snippetMatch());
+    }
+
+    @Test
+    public void termsAreDistinctLowercaseWords() {
+        assertEquals("release plan 周会 release, notes",
+                BodyMatches.terms("  Release plan 周会\nrelease, RELEASE\tplan notes\r\n"));
+        assertEquals("", BodyMatches.terms(" \n "));
+
+        // 不含空白的关键字：在检索词中LIKE命中当且仅当在完整正文中命中
+        String body = filler(300) + "Deploy v2.1 (final)\nrelease-notes 会议记录";
+        String terms = BodyMatches.terms(body);
+        for (String keyword : new String[]{"deploy", "V2.1", "(final)", "se-no", "议记", "absent"}) {
+            String lower = BodyMatches.lowerAscii(keyword);
+            assertEquals(keyword, BodyMatches.lowerAscii(body).contains(lower), terms.contains(lower));
+        }
+        assertTrue(terms.length() < body.length() / 4);
+    }
+
+    @Test
+    public void headSnippetCompleteness() {
+        StringBuilder full = new StringBuilder();
+        for (int i = 0; i < NotePadSchema.SNIPPET_LENGTH; i++) {
+            full.append('字');
+        }
+        assertTrue(BodyMatches.isComplete(full.toString()));
+        assertTrue(BodyMatches.isComplete("…" + full));
+        // 省略号后只剩79个字符：摘要截到了开头的末尾
+        assertFalse(BodyMatches.isComplete("…" + full.substring(1)));
+        assertFalse(BodyMatches.isComplete("release"));
+    }
+
+    @Test
+    public void keywordSelectionDoesNotGrowWithMatches() {
+        assertEquals("(title LIKE ? OR note LIKE ? OR _id IN (SELECT note_id FROM note_search WHERE terms LIKE ?))",
+                NotePadSchema.KEYWORD_SELECTION);
+        assertEquals(NotePadSchema.KEYWORD_SELECTION + " AND category = ?",
+                NotePadSchema.filterSelection("release", "工作"));
+        assertEquals(4, NotePadSchema.filterArgs("release", "工作").length);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FractionalPositionTest {
+
+    @Test
+    public void placesAtEndsAndBetween() {
+        assertEquals(0, FractionalPosition.between(Double.NaN, Double.NaN), 0);
+        assertEquals(2, FractionalPosition.between(Double.NaN, 3), 0);
+        assertEquals(4, FractionalPosition.between(3, Double.NaN), 0);
+        assertEquals(3.5, FractionalPosition.between(3, 4), 0);
+    }
+
+    @Test
+    public void repeatedInsertsStayOrderedUntilRebalance() {
+        double previous = 1;
+        double next = 2;
+        int inserts = 0;
+        // 总是插到上一次插入的位置之前，间隔每次减半
+        while (!FractionalPosition.needsRebalance(previous, next)) {
+            double position = FractionalPosition.between(previous, next);
+            assertTrue(previous < position && position < next);
+            next = position;
+            inserts++;
+        }
+        assertEquals(19, inserts);
+        assertTrue(previous < FractionalPosition.between(previous, next));
+    }
+
+    @Test
+    public void endsNeverNeedRebalance() {
+        assertFalse(FractionalPosition.needsRebalance(Double.NaN, 1));
+        assertFalse(FractionalPosition.needsRebalance(1, Double.NaN));
+        assertFalse(FractionalPosition.needsRebalance(1, 2));
+    }
+
+    @Test
+    public void rebalancedPositionsAreEvenlySpaced() {
+        assertEquals(FractionalPosition.STEP, FractionalPosition.rebalanced(0), 0);
+        assertEquals(FractionalPosition.STEP, FractionalPosition.rebalanced(10) - FractionalPosition.rebalanced(9), 0);
+        assertFalse(FractionalPosition.needsRebalance(FractionalPosition.rebalanced(0), FractionalPosition.rebalanced(1)));
+    }
+}
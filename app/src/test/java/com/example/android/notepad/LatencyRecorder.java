@@ -0,0 +1,60 @@
+package com.example.android.notepad;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 单线程使用的延迟采样，结束后合并计算百分位。样本用原始long数组保存，避免装箱带来的GC干扰。
+ */
+final class LatencyRecorder {
+    private long[] mSamples = new long[1024];
+    private int mCount;
+
+    void record(long nanos) {
+        if (mCount == mSamples.length) {
+            mSamples = Arrays.copyOf(mSamples, mCount * 2);
+        }
+        mSamples[mCount++] = nanos;
+    }
+
+    int count() {
+        return mCount;
+    }
+
+    void clear() {
+        mCount = 0;
+    }
+
+    /**
+     * 合并多个线程的样本并返回 {count, p50, p99, max}，单位纳秒。
+     */
+    static long[] summarize(List<LatencyRecorder> recorders) {
+        int total = 0;
+        for (LatencyRecorder r : recorders) {
+            total += r.mCount;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (LatencyRecorder r : recorders) {
+            System.arraycopy(r.mSamples, 0, all, offset, r.mCount);
+            offset += r.mCount;
+        }
+        if (total == 0) {
+            return new long[]{0, 0, 0, 0};
+        }
+        Arrays.sort(all);
+        return new long[]{total, percentile(all, 0.50), percentile(all, 0.99), all[total - 1]};
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(sorted.length * p) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    static String format(String name, long[] summary, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        return String.format(Locale.US, "%-8s ops=%-8d %8.1f ops/s  p50=%7.3fms  p99=%7.3fms  max=%7.3fms",
+                name, summary[0], summary[0] / seconds, summary[1] / 1e6, summary[2] / 1e6, summary[3] / 1e6);
+    }
+}
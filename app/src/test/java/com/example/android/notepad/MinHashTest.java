@@ -0,0 +1,143 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class MinHashTest {
+
+    private static String paragraph(Random random, int lines) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            text.append(line(random)).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String line(Random random) {
+        StringBuilder line = new StringBuilder();
+        for (int w = 0; w < 8; w++) {
+            line.append("word").append(random.nextInt(100000)).append(' ');
+        }
+        return line.toString();
+    }
+
+    @Test
+    public void editedCopyIsSimilar() {
+        Random random = new Random(1);
+        String body = paragraph(random, 10);
+        // 改动最后一行
+        String edited = body.substring(0, body.lastIndexOf('\n', body.length() - 2) + 1) + line(random);
+        double similarity = MinHash.similarity(MinHash.signature("周报", body), MinHash.signature("周报", edited));
+        assertTrue("similarity " + similarity, similarity >= MinHash.THRESHOLD);
+    }
+
+    @Test
+    public void unrelatedNotesAreNotSimilar() {
+        Random random = new Random(2);
+        double similarity = MinHash.similarity(MinHash.signature("a", paragraph(random, 10)),
+                MinHash.signature("b", paragraph(random, 10)));
+        assertTrue("similarity " + similarity, similarity < 0.2);
+    }
+
+    @Test
+    public void ignoresCaseAndWhitespace() {
+        assertArrayEquals(MinHash.signature("Meeting Notes", "Agenda for Monday"),
+                MinHash.signature("meeting notes", "agenda\n  for monday"));
+    }
+
+    @Test
+    public void emptyNoteHasNoSignature() {
+        assertNull(MinHash.signature("", null));
+        assertNull(MinHash.signature("ab", "  c "));
+        assertNotNull(MinHash.signature("abcde", null));
+        assertNull(MinHash.fromBlob(MinHash.toBlob(null)));
+    }
+
+    @Test
+    public void blobRoundTrip() {
+        int[] signature = MinHash.signature("标题", paragraph(new Random(3), 5));
+        assertEquals(MinHash.NUM_HASHES * 4, MinHash.toBlob(signature).length);
+        assertArrayEquals(signature, MinHash.fromBlob(MinHash.toBlob(signature)));
+    }
+
+    // 估计值与精确的片段Jaccard相似度相差不大
+    @Test
+    public void estimatesJaccard() {
+        Random random = new Random(4);
+        double squaredError = 0;
+        int trials = 200;
+        for (int t = 0; t < trials; t++) {
+            String shared = paragraph(random, 1 + random.nextInt(10));
+            String a = shared + paragraph(random, random.nextInt(5));
+            String b = shared + paragraph(random, random.nextInt(5));
+            double error = MinHash.similarity(MinHash.signature(null, a), MinHash.signature(null, b)) - jaccard(a, b);
+            squaredError += error * error;
+        }
+        assertTrue(Math.sqrt(squaredError / trials) < 0.08);
+    }
+
+    private static double jaccard(String a, String b) {
+        Set<String> sa = shingles(a);
+        Set<String> sb = shingles(b);
+        Set<String> union = new HashSet<>(sa);
+        union.addAll(sb);
+        sa.retainAll(sb);
+        return (double) sa.size() / union.size();
+    }
+
+    private static Set<String> shingles(String text) {
+        String compact = text.replaceAll("\\s", "").toLowerCase();
+        Set<String> shingles = new HashSet<>();
+        for (int i = 0; i + MinHash.SHINGLE_LENGTH <= compact.length(); i++) {
+            shingles.add(compact.substring(i, i + MinHash.SHINGLE_LENGTH));
+        }
+        return shingles;
+    }
+
+    // 相似的笔记通过共同的桶合并成组，无关的笔记不进组
+    @Test
+    public void groupsNearDuplicatesThroughSharedBuckets() {
+        Random random = new Random(5);
+        String base = paragraph(random, 10);
+        Map<Long, int[]> signatures = new HashMap<>();
+        signatures.put(1L, MinHash.signature("计划", base));
+        signatures.put(2L, MinHash.signature("计划", base + line(random)));
+        signatures.put(3L, MinHash.signature("无关", paragraph(random, 10)));
+        signatures.put(4L, MinHash.signature("计划", base));
+
+        // 按(band, bucket)把签名分桶，与note_lsh表的内容相同
+        Map<Long, long[]> buckets = new HashMap<>();
+        for (Map.Entry<Long, int[]> entry : signatures.entrySet()) {
+            for (int band = 0; band < MinHash.BANDS; band++) {
+                long key = MinHash.bandKey(entry.getValue(), band);
+                long[] members = buckets.get(key);
+                long[] grown = members == null ? new long[1] : Arrays.copyOf(members, members.length + 1);
+                grown[grown.length - 1] = entry.getKey();
+                buckets.put(key, grown);
+            }
+        }
+        MinHash.Grouper grouper = new MinHash.Grouper(signatures);
+        for (long[] members : buckets.values()) {
+            if (members.length > 1) {
+                Arrays.sort(members);
+                grouper.addBucket(members, members.length);
+            }
+        }
+        List<long[]> groups = grouper.groups();
+        assertEquals(1, groups.size());
+        assertArrayEquals(new long[]{1, 2, 4}, groups.get(0));
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.android.notepad;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * SyncEngine测试用的同步服务器，监听本机随机端口：
+ * POST /notes/push 接收gzip压缩的变更，按与客户端相同的规则（修改时间较新者胜）合并；
+ * GET /notes/changes?since=&limit= 按序号分页返回变更，游标为最后一条的序号。
+ */
+final class MockSyncServer {
+    private final HttpServer mServer;
+    // 每次被接受的变更取一个新序号，同一uuid只保留最新一条
+    private final TreeMap<Long, JSONObject> mLog = new TreeMap<>();
+    private final Map<String, Long> mSeqs = new HashMap<>();
+    private long mNextSeq = 1;
+    private final List<JSONObject> mPushed = new ArrayList<>();
+    private Runnable mOnPush;
+
+    MockSyncServer() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext("/notes/push", this::handlePush);
+        mServer.createContext("/notes/changes", this::handleChanges);
+        mServer.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/";
+    }
+
+    void stop() {
+        mServer.stop(0);
+    }
+
+    // 推送处理完、返回响应之前执行，模拟同步期间用户在本机的编辑
+    synchronized void onPush(Runnable action) {
+        mOnPush = action;
+    }
+
+    // 其他设备写入的变更
+    synchronized void putRemote(JSONObject change) {
+        accept(change);
+    }
+
+    synchronized List<JSONObject> pushed() {
+        return new ArrayList<>(mPushed);
+    }
+
+    synchronized JSONObject latest(String uuid) {
+        Long seq = mSeqs.get(uuid);
+        return seq != null ? mLog.get(seq) : null;
+    }
+
+    private void accept(JSONObject change) {
+        String uuid = change.optString(SyncEngine.KEY_UUID);
+        Long seq = mSeqs.get(uuid);
+        if (seq != null) {
+            if (mLog.get(seq).optLong(SyncEngine.KEY_MODIFIED) > change.optLong(SyncEngine.KEY_MODIFIED)) {
+                return;
+            }
+            mLog.remove(seq);
+        }
+        mLog.put(mNextSeq, change);
+        mSeqs.put(uuid, mNextSeq++);
+    }
+
+    private void handlePush(HttpExchange exchange) throws IOException {
+        Runnable after;
+        try {
+            InputStream body = exchange.getRequestBody();
+            if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                body = new GZIPInputStream(body);
+            }
+            JSONArray changes = new JSONObject(read(body)).getJSONArray("changes");
+            synchronized (this) {
+                for (int i = 0; i < changes.length(); i++) {
+                    mPushed.add(changes.getJSONObject(i));
+                    accept(changes.getJSONObject(i));
+                }
+                after = mOnPush;
+                mOnPush = null;
+            }
+        } catch (JSONException e) {
+            respond(exchange, 400, "{}");
+            return;
+        }
+        if (after != null) {
+            after.run();
+        }
+        respond(exchange, 200, "{}");
+    }
+
+    private void handleChanges(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        for (String pair : query != null ? query.split("&") : new String[0]) {
+            int eq = pair.indexOf('=');
+            params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+        }
+        String since = params.get("since");
+        long cursor = since == null || since.isEmpty() ? 0 : Long.parseLong(since);
+        int limit = Integer.parseInt(params.get("limit"));
+        JSONObject page = new JSONObject();
+        try {
+            synchronized (this) {
+                JSONArray changes = new JSONArray();
+                SortedMap<Long, JSONObject> after = mLog.tailMap(cursor + 1);
+                for (Map.Entry<Long, JSONObject> e : after.entrySet()) {
+                    if (changes.length() == limit) {
+                        break;
+                    }
+                    changes.put(e.getValue());
+                    cursor = e.getKey();
+                }
+                page.put("changes", changes);
+                page.put("cursor", String.valueOf(cursor));
+                page.put("has_more", changes.length() < after.size());
+            }
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+        respond(exchange, 200, page.toString());
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+
+/**
+ * 增量快照按本地变更序号选取：同步拉取的旧修改时间的笔记、移入回收站、墓碑已清理的彻底删除都包含在内；
+ * 失败时不留下临时文件。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NoteBackupTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ContentResolver resolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(NotePadProvider.class).create(NotePad.AUTHORITY);
+        resolver = ApplicationProvider.getApplicationContext().getContentResolver();
+    }
+
+    private static Uri asSyncAdapter(Uri uri) {
+        return uri.buildUpon().appendQueryParameter(NotePad.CALLER_IS_SYNC_ADAPTER, "true").build();
+    }
+
+    // 同步引擎写入时保留给出的修改时间
+    private long insert(String uuid, String title, long modified) {
+        ContentValues values = new ContentValues();
+        values.put(NotePad.Notes.COLUMN_NAME_UUID, uuid);
+        values.put(NotePad.Notes.COLUMN_NAME_TITLE, title);
+        values.put(NotePad.Notes.COLUMN_NAME_NOTE, title + "的正文");
+        values.put(NotePad.Notes.COLUMN_NAME_MODIFIED_TIME, modified);
+        return ContentUris.parseId(resolver.insert(asSyncAdapter(NotePad.Notes.CONTENT_URI), values));
+    }
+
+    private Bundle backup(File target, long since) {
+        Bundle extras = new Bundle();
+        extras.putLong(NotePad.EXTRA_SINCE, since);
+        return resolver.call(NotePad.Notes.CONTENT_URI, NotePad.METHOD_BACKUP, target.getAbsolutePath(), extras);
+    }
+
+    private void restore(File source) {
+        resolver.call(NotePad.Notes.CONTENT_URI, NotePad.METHOD_RESTORE, source.getAbsolutePath(), null);
+    }
+
+    @Test
+    public void incrementalCoversSyncTrashAndPurge() throws Exception {
+        insert("a", "甲", 1000);
+        long b = insert("b", "乙", 2000);
+        long c = insert("c", "丙", 3000);
+        long d = insert("d", "丁", 4000);
+        File full = new File(folder.getRoot(), "full.npbk");
+        Bundle fullResult = backup(full, 0);
+        assertEquals(4, fullResult.getInt(NoteBackup.RESULT_RECORDS));
+        long since = fullResult.getLong(NoteBackup.RESULT_HIGH_WATER);
+        assertTrue(since > 0);
+
+        // 同步拉取的远端修改，修改时间早于全量快照中最新的笔记
+        ContentValues pulled = new ContentValues();
+        pulled.put(NotePad.Notes.COLUMN_NAME_TITLE, "乙（远端）");
+        pulled.put(NotePad.Notes.COLUMN_NAME_MODIFIED_TIME, 2500);
+        resolver.update(asSyncAdapter(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, b)), pulled, null, null);
+        // 移入回收站；彻底删除后同步墓碑也已推送清理
+        resolver.delete(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, c), null, null);
+        resolver.delete(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, d), null, null);
+        resolver.delete(ContentUris.withAppendedId(NotePad.Trash.CONTENT_URI, d), null, null);
+        resolver.delete(NotePad.SyncTombstones.CONTENT_URI, null, null);
+
+        File incremental = new File(folder.getRoot(), "full-inc.npbk");
+        Bundle incResult = backup(incremental, since);
+        assertTrue(NoteBackup.isIncremental(incremental));
+        assertEquals(3, incResult.getInt(NoteBackup.RESULT_RECORDS));
+        assertEquals(0, backup(new File(folder.getRoot(), "empty-inc.npbk"), incResult.getLong(
+                NoteBackup.RESULT_HIGH_WATER)).getInt(NoteBackup.RESULT_RECORDS));
+
+        // 清空后依次恢复：全量加增量得到备份时的状态
+        resolver.delete(asSyncAdapter(NotePad.Notes.CONTENT_URI), null, null);
+        restore(full);
+        restore(incremental);
+        Cursor cursor = resolver.query(asSyncAdapter(NotePad.Notes.CONTENT_URI), new String[]{
+                NotePad.Notes.COLUMN_NAME_UUID, NotePad.Notes.COLUMN_NAME_TITLE}, null, null,
+                NotePad.Notes.COLUMN_NAME_UUID + " ASC");
+        try {
+            assertEquals(2, cursor.getCount());
+            cursor.moveToNext();
+            assertEquals("a", cursor.getString(0));
+            cursor.moveToNext();
+            assertEquals("b", cursor.getString(0));
+            assertEquals("乙（远端）", cursor.getString(1));
+        } finally {
+            cursor.close();
+        }
+        // 增量中的删除记录留下同步墓碑，下次同步推送给服务器
+        Cursor tombstones = resolver.query(NotePad.SyncTombstones.CONTENT_URI,
+                new String[]{NotePad.SyncTombstones.COLUMN_NAME_UUID}, null, null,
+                NotePad.SyncTombstones.COLUMN_NAME_UUID + " ASC");
+        try {
+            assertEquals(2, tombstones.getCount());
+            tombstones.moveToNext();
+            assertEquals("c", tombstones.getString(0));
+            tombstones.moveToNext();
+            assertEquals("d", tombstones.getString(0));
+        } finally {
+            tombstones.close();
+        }
+        assertFalse(new File(incremental.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void failedBackupRemovesTempFile() throws Exception {
+        insert("a", "甲", 1000);
+        // 目标是已存在的目录，临时文件写完后无法改名
+        File target = folder.newFolder("taken.npbk");
+        try {
+            backup(target, 0);
+            fail("backup over a directory should fail");
+        } catch (IllegalStateException expected) {
+            // call()把IOException包装为IllegalStateException
+        }
+        assertFalse(new File(target.getPath() + ".tmp").exists());
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 经Provider读写压缩存储的长正文：读回完整正文，关键字搜索、摘要与相关度排序覆盖note列中看不到的部分。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NoteBodiesTest {
+    private ContentResolver resolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(NotePadProvider.class).create(NotePad.AUTHORITY);
+        resolver = ApplicationProvider.getApplicationContext().getContentResolver();
+    }
+
+    // 关键字只出现在明文开头之后
+    private static String longBody(String tail) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < BodyCodec.MIN_CHARS * 2; i++) {
+            text.append("第").append(i).append("项：季度复盘 meeting notes\n");
+        }
+        return text.append(tail).toString();
+    }
+
+    private long insert(String title, String body) {
+        ContentValues values = new ContentValues();
+        values.put(NotePad.Notes.COLUMN_NAME_TITLE, title);
+        values.put(NotePad.Notes.COLUMN_NAME_NOTE, body);
+        ContentValues before = new ContentValues(values);
+        Uri uri = resolver.insert(NotePad.Notes.CONTENT_URI, values);
+        // 调用方的ContentValues不被改写
+        assertEquals(before, values);
+        return ContentUris.parseId(uri);
+    }
+
+    @Test
+    public void readsFullBodyBack() {
+        String body = longBody("结尾");
+        long id = insert("长笔记", body);
+        Cursor c = resolver.query(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, id),
+                new String[]{NotePad.Notes._ID, NotePad.Notes.COLUMN_NAME_NOTE}, null, null, null);
+        try {
+            assertTrue(c.moveToFirst());
+            assertEquals(2, c.getColumnCount());
+            assertEquals(body, c.getString(1));
+        } finally {
+            c.close();
+        }
+        insert("短笔记", "短正文");
+    }
+
+    @Test
+    public void keywordSearchCoversCompressedTail() {
+        long compressed = insert("长笔记", longBody("最后确认 Release 日期\n"));
+        long plain = insert("短笔记", "release 一次");
+        insert("无关", longBody("没有关键字"));
+
+        Uri uri = new NoteFilter("release", null).appendTo(NotePad.Notes.CONTENT_URI);
+        Cursor c = resolver.query(uri, new String[]{NotePad.Notes._ID, NotePad.Notes.COLUMN_NAME_SNIPPET,
+                NotePad.Notes.COLUMN_NAME_SNIPPET_MATCH}, null, null, NotePad.Notes._ID + " ASC");
+        try {
+            assertEquals(2, c.getCount());
+            c.moveToNext();
+            assertEquals(compressed, c.getLong(0));
+            String snippet = c.getString(1);
+            assertEquals("release", snippet.substring(c.getInt(2), c.getInt(2) + 7).toLowerCase());
+            c.moveToNext();
+            assertEquals(plain, c.getLong(0));
+        } finally {
+            c.close();
+        }
+
+        Uri ranked = uri.buildUpon()
+                .appendQueryParameter(NotePad.Notes.PARAM_ORDER, NotePad.Notes.ORDER_RANKED).build();
+        c = resolver.query(ranked, new String[]{NotePad.Notes._ID}, null, null, null);
+        try {
+            assertEquals(2, c.getCount());
+            // 短正文中的一次命中比长正文中的一次命中更相关
+            c.moveToFirst();
+            assertEquals(plain, c.getLong(0));
+        } finally {
+            c.close();
+        }
+
+        Cursor none = resolver.query(new NoteFilter("没有的词", null).appendTo(NotePad.Notes.CONTENT_URI),
+                new String[]{NotePad.Notes._ID}, null, null, null);
+        try {
+            assertFalse(none.moveToFirst());
+        } finally {
+            none.close();
+        }
+    }
+
+    private List<Long> search(String keyword) {
+        List<Long> ids = new ArrayList<>();
+        Cursor c = resolver.query(new NoteFilter(keyword, null).appendTo(NotePad.Notes.CONTENT_URI),
+                new String[]{NotePad.Notes._ID}, null, null, NotePad.Notes._ID + " ASC");
+        try {
+            while (c.moveToNext()) {
+                ids.add(c.getLong(0));
+            }
+        } finally {
+            c.close();
+        }
+        return ids;
+    }
+
+    private void updateBody(long id, String body) {
+        ContentValues values = new ContentValues();
+        values.put(NotePad.Notes.COLUMN_NAME_NOTE, body);
+        assertEquals(1, resolver.update(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, id), values,
+                null, null));
+    }
+
+    private static long searchTermRows() {
+        Context context = ApplicationProvider.getApplicationContext();
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(
+                context.getDatabasePath(NotePadProvider.DATABASE_NAME).getPath(), null, SQLiteDatabase.OPEN_READONLY);
+        try {
+            return DatabaseUtils.queryNumEntries(db, NotePadSchema.SEARCH_TERMS);
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void searchTermsFollowBodyWrites() {
+        long id = insert("长笔记", longBody("部署 Kubernetes 集群\n"));
+        assertEquals(1, searchTermRows());
+        assertEquals(Collections.singletonList(id), search("kubernetes"));
+
+        // 改为明文：检索词随之删除，关键字仍在note列中找到
+        updateBody(id, "短正文 kubernetes");
+        assertEquals(0, searchTermRows());
+        assertEquals(Collections.singletonList(id), search("kubernetes"));
+
+        // 换成另一篇长正文：旧正文的词不再命中
+        updateBody(id, longBody("只在结尾 Terraform\n"));
+        assertEquals(1, searchTermRows());
+        assertEquals(Collections.emptyList(), search("kubernetes"));
+        assertEquals(Collections.singletonList(id), search("terraform"));
+
+        resolver.delete(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, id), null, null);
+        resolver.delete(NotePad.Trash.CONTENT_URI, null, null);
+        assertEquals(0, searchTermRows());
+    }
+
+    @Test
+    public void snippetCrossingHeadEndComesFromFullBody() {
+        // 命中在note列开头的末尾附近，SQL截出的摘要不完整
+        StringBuilder text = new StringBuilder();
+        while (text.length() < BodyCodec.HEAD_CHARS - 10) {
+            text.append("记录 ");
+        }
+        int at = text.length();
+        text.append("Release 计划");
+        String body = text + longBody("");
+        long id = insert("长笔记", body);
+        String expected = "…" + body.substring(at - NotePadSchema.SNIPPET_CONTEXT,
+                at - NotePadSchema.SNIPPET_CONTEXT + NotePadSchema.SNIPPET_LENGTH).replace('\n', ' ');
+        String[] projection = {NotePad.Notes._ID, NotePad.Notes.COLUMN_NAME_SNIPPET,
+                NotePad.Notes.COLUMN_NAME_SNIPPET_MATCH};
+
+        Uri uri = new NoteFilter("release", null).appendTo(NotePad.Notes.CONTENT_URI);
+        Uri ranked = uri.buildUpon()
+                .appendQueryParameter(NotePad.Notes.PARAM_ORDER, NotePad.Notes.ORDER_RANKED).build();
+        for (Uri u : new Uri[]{uri, ranked}) {
+            Cursor c = resolver.query(u, projection, null, null, null);
+            try {
+                assertTrue(c.moveToFirst());
+                assertEquals(id, c.getLong(0));
+                assertEquals(Cursor.FIELD_TYPE_STRING, c.getType(1));
+                assertEquals(expected, c.getString(1));
+                assertEquals(NotePadSchema.SNIPPET_CONTEXT + 1, c.getInt(2));
+            } finally {
+                c.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 导出格式与分页：CSV按RFC 4180加引号并带BOM与表头，JSON Lines转义控制字符、空字段写null，
+ * 超过一页的笔记按_id连续分页导出，带关键字筛选时同样不重不漏。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NoteExporterTest {
+    private static final String CSV_HEADER = "id,uuid,title,note,category,created_time,modified_time\r\n";
+
+    private ContentResolver resolver;
+    private NoteExporter exporter;
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(NotePadProvider.class).create(NotePad.AUTHORITY);
+        resolver = ApplicationProvider.getApplicationContext().getContentResolver();
+        exporter = new NoteExporter(resolver);
+    }
+
+    private static ContentValues note(String uuid, String title, String body, String category) {
+        ContentValues values = new ContentValues();
+        values.put(NotePad.Notes.COLUMN_NAME_UUID, uuid);
+        values.put(NotePad.Notes.COLUMN_NAME_TITLE, title);
+        if (body != null) {
+            values.put(NotePad.Notes.COLUMN_NAME_NOTE, body);
+        }
+        if (category != null) {
+            values.put(NotePad.Notes.COLUMN_NAME_CATEGORY, category);
+        } else {
+            values.putNull(NotePad.Notes.COLUMN_NAME_CATEGORY);
+        }
+        values.put(NotePad.Notes.COLUMN_NAME_CREATED_TIME, 1000L);
+        return values;
+    }
+
+    private String export(String format, NoteFilter filter, List<Integer> progress) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int rows = exporter.export(format, filter, out, progress == null ? null
+                : (exported, total) -> {
+                    progress.add(exported);
+                    assertTrue(exported <= total);
+                });
+        String text = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        if (progress != null && !progress.isEmpty()) {
+            assertEquals(rows, (int) progress.get(progress.size() - 1));
+        }
+        return text;
+    }
+
+    private static List<Long> jsonIds(String jsonl) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (String line : jsonl.split("\n")) {
+            ids.add(new JSONObject(line).getLong("id"));
+        }
+        return ids;
+    }
+
+    // 插入count篇笔记，下标为偶数的标题含关键字
+    private void insertMany(int count) {
+        ContentValues[] values = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = note("u" + i, (i % 2 == 0 ? "Release " : "周报 ") + i, "正文" + i, "工作");
+        }
+        assertEquals(count, resolver.bulkInsert(NotePad.Notes.CONTENT_URI, values));
+    }
+
+    private static void assertAscending(List<Long> ids) {
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i - 1) + " then " + ids.get(i), ids.get(i) > ids.get(i - 1));
+        }
+    }
+
+    @Test
+    public void csvQuotesSpecialCharacters() throws Exception {
+        resolver.insert(NotePad.Notes.CONTENT_URI, note("u1", "a,b", "say \"hi\"\r\nbye", null));
+        resolver.insert(NotePad.Notes.CONTENT_URI, note("u2", "纯文本", "单行\n第二行", "工作"));
+
+        String csv = export(NoteExporter.FORMAT_CSV, new NoteFilter(null, null), null);
+        assertTrue(csv, csv.startsWith("\uFEFF" + CSV_HEADER));
+        // 含逗号、引号或CR/LF的字段整体加引号，引号双写；空分类写成空字段
+        assertTrue(csv, csv.contains(CSV_HEADER + "1,u1,\"a,b\",\"say \"\"hi\"\"\r\nbye\",,1000,"));
+        assertTrue(csv, csv.contains("\r\n2,u2,纯文本,\"单行\n第二行\",工作,1000,"));
+        assertTrue(csv, csv.endsWith("\r\n"));
+    }
+
+    @Test
+    public void jsonEscapesControlCharactersAndNulls() throws Exception {
+        String body = "引号\" 反斜杠\\ 换行\n回车\r制表\t响铃\u0007";
+        resolver.insert(NotePad.Notes.CONTENT_URI, note("u1", "标题", body, null));
+        resolver.insert(NotePad.Notes.CONTENT_URI, note("u2", "无正文", null, "工作"));
+
+        String jsonl = export(NoteExporter.FORMAT_JSONL, new NoteFilter(null, null), null);
+        String[] lines = jsonl.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0], lines[0].contains(
+                "\"note\":\"引号\\\" 反斜杠\\\\ 换行\\n回车\\r制表\\t响铃\\u0007\",\"category\":null,"));
+        // 每行都是独立的合法JSON，解析回原值
+        JSONObject first = new JSONObject(lines[0]);
+        assertEquals(body, first.getString("note"));
+        assertTrue(first.isNull("category"));
+        assertEquals(1000L, first.getLong("created_time"));
+        JSONObject second = new JSONObject(lines[1]);
+        assertTrue(lines[1], lines[1].contains("\"note\":null,"));
+        assertTrue(second.isNull("note"));
+        assertEquals("工作", second.getString("category"));
+    }
+
+    @Test
+    public void pagesAcrossChunks() throws Exception {
+        int count = NoteExporter.CHUNK_SIZE * 2 + 1;
+        insertMany(count);
+
+        List<Integer> progress = new ArrayList<>();
+        List<Long> ids = jsonIds(export(NoteExporter.FORMAT_JSONL, new NoteFilter(null, null), progress));
+        assertEquals(count, ids.size());
+        assertAscending(ids);
+        assertEquals(Arrays.asList(NoteExporter.CHUNK_SIZE, NoteExporter.CHUNK_SIZE * 2, count), progress);
+
+        String csv = export(NoteExporter.FORMAT_CSV, new NoteFilter(null, null), null);
+        // 表头加每篇一行，正文不含换行
+        assertEquals(count + 1, csv.split("\r\n").length);
+    }
+
+    @Test
+    public void pagesAcrossChunksWithKeyword() throws Exception {
+        int count = NoteExporter.CHUNK_SIZE * 2 + 3;
+        insertMany(count);
+        int matching = (count + 1) / 2;
+
+        NoteFilter filter = new NoteFilter("release", "工作");
+        assertEquals(matching, exporter.count(filter));
+        List<Integer> progress = new ArrayList<>();
+        String jsonl = export(NoteExporter.FORMAT_JSONL, filter, progress);
+        List<Long> ids = jsonIds(jsonl);
+        assertEquals(matching, ids.size());
+        assertAscending(ids);
+        assertEquals(Arrays.asList(NoteExporter.CHUNK_SIZE, matching), progress);
+        for (String line : jsonl.split("\n")) {
+            assertTrue(line, new JSONObject(line).getString("title").startsWith("Release "));
+        }
+    }
+}
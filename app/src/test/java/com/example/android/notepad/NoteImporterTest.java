@@ -0,0 +1,85 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量导入中个别文件解析失败：计为失败文件，其余文件照常写入，导入正常结束。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NoteImporterTest {
+    private ContentResolver resolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(NotePadProvider.class).create(NotePad.AUTHORITY);
+        resolver = ApplicationProvider.getApplicationContext().getContentResolver();
+    }
+
+    // 名字以bad开头的文件在解析时抛出运行时异常（如内容编码错误）
+    private NoteImporter importer() {
+        return new NoteImporter(resolver, 2) {
+            @Override
+            ParsedNote parse(Source source) throws IOException {
+                if (source.name.startsWith("bad")) {
+                    throw new IllegalArgumentException("Malformed input in " + source.name);
+                }
+                return NoteImporter.parse("# " + source.name + "\n会议记录", source.name, null);
+            }
+        };
+    }
+
+    private static List<NoteImporter.Source> sources(String... names) {
+        List<NoteImporter.Source> sources = new ArrayList<>();
+        for (String name : names) {
+            sources.add(new NoteImporter.Source(Uri.parse("content://test/" + name), name, null));
+        }
+        return sources;
+    }
+
+    private int noteCount() {
+        Cursor c = resolver.query(NotePad.Notes.CONTENT_URI, new String[]{NotePad.Notes._ID}, null, null, null);
+        try {
+            return c.getCount();
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void parseFailureCountsAsFailedFile() throws Exception {
+        NoteImporter.Progress progress = importer().importSources(
+                sources("a.md", "bad.md", "b.txt", "c.md"), null);
+        assertEquals(4, progress.filesFound);
+        assertEquals(3, progress.filesParsed);
+        assertEquals(1, progress.failed);
+        assertEquals(3, progress.imported);
+        assertFalse(progress.cancelled);
+        assertEquals(3, noteCount());
+    }
+
+    @Test(timeout = 30000)
+    public void importFinishesWhenEveryFileFails() throws Exception {
+        NoteImporter.Progress progress = importer().importSources(sources("bad1.md", "bad2.md"), null);
+        assertEquals(0, progress.filesParsed);
+        assertEquals(2, progress.failed);
+        assertEquals(0, progress.imported);
+        assertEquals(0, noteCount());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class NoteListModelTest {
+
+    @Test
+    public void upsertKeepsCreatedTimeDescendingOrder() {
+        NoteListModel model = new NoteListModel(null, 0);
+        model.upsert(1, "a", 100, "工作");
+        model.upsert(2, "b", 300, "生活");
+        model.upsert(3, "c", 200, "工作");
+        assertEquals(3, model.size());
+        assertEquals(2, model.getId(0));
+        assertEquals(3, model.getId(1));
+        assertEquals(1, model.getId(2));
+
+        // 时间变化时移动位置，时间不变时原地更新
+        model.upsert(1, "a2", 400, "学习");
+        assertEquals(1, model.getId(0));
+        assertEquals("a2", model.getTitle(0));
+        assertEquals("学习", model.getCategory(0));
+        model.upsert(3, "c2", 200, "工作");
+        assertEquals(2, model.indexOf(3));
+        assertEquals("c2", model.getTitle(2));
+    }
+
+    @Test
+    public void removeShiftsRows() {
+        NoteListModel model = new NoteListModel(null, 0);
+        for (int i = 0; i < 5; i++) {
+            model.add(i, "t" + i, 100 - i, null);
+        }
+        assertTrue(model.remove(2));
+        assertFalse(model.remove(2));
+        assertEquals(4, model.size());
+        assertEquals(3, model.getId(2));
+        assertEquals("t3", model.getTitle(2));
+        assertEquals("", model.getCategory(2));
+    }
+
+    @Test
+    public void titlesAreTruncated() {
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < NoteListModel.MAX_TITLE_LENGTH * 2; i++) {
+            title.append('字');
+        }
+        NoteListModel model = new NoteListModel(null, 0);
+        model.add(1, title.toString(), 1, null);
+        assertEquals(NoteListModel.MAX_TITLE_LENGTH, model.getTitleLength(0));
+    }
+
+    // 随机增删改后与参照结果一致（覆盖标题池整理）
+    @Test
+    public void randomDeltasMatchReference() {
+        NoteListModel model = new NoteListModel(null, 0);
+        Map<Long, Long> times = new HashMap<>();
+        Map<Long, String> titles = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            long id = random.nextInt(2000);
+            if (random.nextInt(4) == 0) {
+                model.remove(id);
+                times.remove(id);
+            } else {
+                long time = random.nextInt(500);
+                String title = "note-" + random.nextInt(100000);
+                model.upsert(id, title, time, "c" + random.nextInt(3));
+                times.put(id, time);
+                titles.put(id, title);
+            }
+        }
+        assertEquals(times.size(), model.size());
+        for (int i = 0; i < model.size(); i++) {
+            long id = model.getId(i);
+            if (i > 0) {
+                assertTrue(model.getCreatedTime(i) <= model.getCreatedTime(i - 1));
+            }
+            assertEquals((long) times.get(id), model.getCreatedTime(i));
+            assertEquals(titles.get(id), model.getTitle(i));
+        }
+    }
+
+    private static String snippet(NoteListModel model, int position) {
+        return new String(model.getTitlePool(), model.getSnippetStart(position), model.getSnippetLength(position));
+    }
+
+    @Test
+    public void matchesFollowRowsAndSurviveCompaction() {
+        NoteListModel model = new NoteListModel(null, 0);
+        model.add(1, "周会记录", 300, null);
+        model.add(2, "购物", 200, null);
+        model.setMatch(0, 0, "……讨论了周会安排", 6);
+        model.setMatch(1, -1, null, 3);
+        assertEquals(0, model.getTitleMatch(0));
+        assertEquals("……讨论了周会安排", snippet(model, 0));
+        assertEquals(6, model.getSnippetMatch(0));
+        assertEquals(0, model.getSnippetLength(1));
+        assertEquals(-1, model.getSnippetMatch(1));
+
+        // 插入到前面时命中随行移动；更新行会清除旧的命中
+        model.upsert(3, "新笔记", 400, null);
+        assertEquals("……讨论了周会安排", snippet(model, 1));
+        int position = model.upsert(1, "周会记录2", 300, null);
+        assertEquals(1, position);
+        assertEquals(-1, model.getTitleMatch(1));
+        assertEquals(0, model.getSnippetLength(1));
+
+        NoteListModel other = new NoteListModel(null, 0);
+        other.add(1, "周会记录2", 300, null);
+        other.setMatch(0, 0, "周会", 0);
+        // 反复替换摘要触发字符池整理，内容保持不变
+        for (int i = 0; i < 2000; i++) {
+            model.copyMatch(position, other, 0);
+            model.setMatch(2, -1, "第" + i + "次的一段比较长的摘要文字", 1);
+        }
+        assertEquals("周会", snippet(model, 1));
+        assertEquals("第1999次的一段比较长的摘要文字", snippet(model, 2));
+        assertEquals("新笔记", model.getTitle(0));
+        assertEquals("周会记录2", model.getTitle(1));
+        assertEquals("购物", model.getTitle(2));
+    }
+}
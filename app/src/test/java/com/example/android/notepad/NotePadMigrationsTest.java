@@ -0,0 +1,175 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 从v4（只有标题、正文、创建时间、分类的notes表）升级：经NotePadProvider打开后结构与新装一致，
+ * 第6步重建表保留了自增序列并补上创建时间的默认值，后续步骤的加列被结构缓存跳过，v5回填在后台完成。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NotePadMigrationsTest {
+    // v4的建表语句：创建时间的默认值是建表那一刻的常量
+    private static final String V4_NOTES_SQL = "CREATE TABLE notes ("
+            + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + "title TEXT NOT NULL, "
+            + "note TEXT, "
+            + "created_time INTEGER DEFAULT 1500000000000, "
+            + "category TEXT DEFAULT '默认分类'"
+            + ");";
+
+    private Context context;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        File path = context.getDatabasePath(NotePadProvider.DATABASE_NAME);
+        path.getParentFile().mkdirs();
+        SQLiteDatabase old = SQLiteDatabase.openOrCreateDatabase(path, null);
+        try {
+            old.execSQL(V4_NOTES_SQL);
+            for (int i = 1; i <= 5; i++) {
+                old.execSQL("INSERT INTO notes (title, note) VALUES (?, ?)", new Object[]{"旧笔记" + i, "正文" + i});
+            }
+            // 删掉最后两篇：序列停在5，之后的新笔记不得复用4、5
+            old.execSQL("DELETE FROM notes WHERE _id >= 4");
+            old.setVersion(4);
+        } finally {
+            old.close();
+        }
+        Robolectric.buildContentProvider(NotePadProvider.class).create(NotePad.AUTHORITY);
+        // 第一次查询打开数据库并执行升级
+        Cursor c = context.getContentResolver().query(NotePad.Notes.CONTENT_URI, null, null, null, null);
+        try {
+            assertEquals(3, c.getCount());
+        } finally {
+            c.close();
+        }
+        db = SQLiteDatabase.openDatabase(path.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    private List<String> strings(String sql, String... args) {
+        List<String> values = new ArrayList<>();
+        Cursor c = db.rawQuery(sql, args);
+        try {
+            while (c.moveToNext()) {
+                values.add(c.getString(0));
+            }
+        } finally {
+            c.close();
+        }
+        return values;
+    }
+
+    private List<String> schemaNames(String type) {
+        return strings("SELECT name FROM sqlite_master WHERE type = ? AND tbl_name = ? AND sql IS NOT NULL"
+                + " ORDER BY name", type, NotePad.Notes.TABLE_NAME);
+    }
+
+    // 回填在后台线程分批执行，等到登记表清空
+    private void awaitBackfills() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (DatabaseUtils.queryNumEntries(db, SchemaMigrator.BACKFILL_TABLE) > 0) {
+            assertTrue("backfills still pending", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    public void upgradeFromV4MatchesFreshSchema() throws Exception {
+        List<String> columns = new ArrayList<>();
+        Cursor c = db.rawQuery("PRAGMA table_info(" + NotePad.Notes.TABLE_NAME + ")", null);
+        try {
+            while (c.moveToNext()) {
+                columns.add(c.getString(c.getColumnIndexOrThrow("name")));
+            }
+        } finally {
+            c.close();
+        }
+        assertEquals(Arrays.asList(NotePad.Notes._ID, NotePad.Notes.COLUMN_NAME_TITLE, NotePad.Notes.COLUMN_NAME_NOTE,
+                NotePad.Notes.COLUMN_NAME_CREATED_TIME, NotePad.Notes.COLUMN_NAME_CATEGORY,
+                NotePad.Notes.COLUMN_NAME_MODIFIED_TIME, NotePad.Notes.COLUMN_NAME_UUID,
+                NotePad.Notes.COLUMN_NAME_DIRTY, NotePad.Notes.COLUMN_NAME_PINNED, NotePad.Notes.COLUMN_NAME_POSITION,
+                NotePad.Notes.COLUMN_NAME_DELETED_TIME, NotePadSchema.NOTE_DATA), columns);
+
+        assertEquals(Arrays.asList(NotePadSchema.INDEX_DIRTY, NotePadSchema.INDEX_POSITION, NotePadSchema.INDEX_TITLE,
+                NotePadSchema.INDEX_TRASH, NotePadSchema.INDEX_UUID), schemaNames("index"));
+        assertEquals(Arrays.asList(NotePadSchema.TRIGGER_CHANGES_DELETE, NotePadSchema.TRIGGER_CHANGES_INSERT,
+                NotePadSchema.TRIGGER_CHANGES_UPDATE, NotePadSchema.TRIGGER_LINKS_DELETE,
+                NotePadSchema.TRIGGER_REVISIONS_DELETE, NotePadSchema.TRIGGER_SEARCH_DELETE,
+                NotePadSchema.TRIGGER_SIMILARITY_DELETE, NotePadSchema.TRIGGER_SIMILARITY_UPDATE,
+                NotePadSchema.TRIGGER_NOTE_TAGS_DELETE), schemaNames("trigger"));
+        assertTrue(strings("SELECT name FROM sqlite_master WHERE name = ?", NotePad.Notes.TABLE_NAME + "_rebuild")
+                .isEmpty());
+        assertEquals(1, DatabaseUtils.longForQuery(db, "SELECT count(*) FROM sqlite_master WHERE name = ?",
+                new String[]{NotePadSchema.TRIGGER_TAG_DELETE}));
+    }
+
+    @Test
+    public void rebuildKeepsSequenceAndCreatedTimeDefault() throws Exception {
+        awaitBackfills();
+        assertEquals(5, DatabaseUtils.longForQuery(db, "SELECT seq FROM sqlite_sequence WHERE name = ?",
+                new String[]{NotePad.Notes.TABLE_NAME}));
+        ContentValues values = new ContentValues();
+        values.put(NotePad.Notes.COLUMN_NAME_TITLE, "升级后的笔记");
+        long id = ContentUris.parseId(context.getContentResolver().insert(NotePad.Notes.CONTENT_URI, values));
+        assertEquals(6, id);
+
+        // 不带创建时间直接写表时取插入那一刻（毫秒，精确到秒），不再是v4建表时的常量
+        db.execSQL("INSERT INTO " + NotePad.Notes.TABLE_NAME + " (" + NotePad.Notes.COLUMN_NAME_TITLE
+                + ") VALUES ('直接写入')");
+        long created = DatabaseUtils.longForQuery(db, "SELECT " + NotePad.Notes.COLUMN_NAME_CREATED_TIME + " FROM "
+                + NotePad.Notes.TABLE_NAME + " WHERE " + NotePad.Notes._ID + " = 7", null);
+        assertTrue(String.valueOf(created), created > 1500000000000L && created % 1000 == 0);
+    }
+
+    @Test
+    public void syncBackfillCompletes() throws Exception {
+        awaitBackfills();
+        // v5回填：旧笔记都有uuid，修改时间取创建时间，并全部待上传
+        Cursor c = db.rawQuery("SELECT " + NotePad.Notes.COLUMN_NAME_UUID + ", "
+                + NotePad.Notes.COLUMN_NAME_MODIFIED_TIME + ", " + NotePad.Notes.COLUMN_NAME_DIRTY + " FROM "
+                + NotePad.Notes.TABLE_NAME + " ORDER BY " + NotePad.Notes._ID, null);
+        try {
+            assertEquals(3, c.getCount());
+            while (c.moveToNext()) {
+                assertFalse(c.isNull(0));
+                assertEquals(1500000000000L, c.getLong(1));
+                assertEquals(1, c.getInt(2));
+            }
+        } finally {
+            c.close();
+        }
+        assertEquals(3, DatabaseUtils.longForQuery(db, "SELECT count(DISTINCT " + NotePad.Notes.COLUMN_NAME_UUID
+                + ") FROM " + NotePad.Notes.TABLE_NAME, null));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, SchemaMigrator.BACKFILL_TABLE));
+    }
+}
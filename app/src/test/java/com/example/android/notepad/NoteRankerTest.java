@@ -0,0 +1,71 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class NoteRankerTest {
+    private static final long NOW = 1735689600000L;
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    @Test
+    public void oldTitleMatchBeatsNewBodyMention() {
+        NoteRanker ranker = new NoteRanker(NOW, 0);
+        ranker.add(1, NOW - 365 * DAY, 10, 200, 1, 0);
+        ranker.add(2, NOW, 10, 200, 0, 1);
+        assertArrayEquals(new long[]{1, 2}, ranker.top(10));
+    }
+
+    @Test
+    public void recencyBreaksEqualRelevance() {
+        NoteRanker ranker = new NoteRanker(NOW, 0);
+        ranker.add(1, NOW - 90 * DAY, 10, 200, 0, 1);
+        ranker.add(2, NOW - DAY, 10, 200, 0, 1);
+        ranker.add(3, NOW - 30 * DAY, 10, 200, 0, 1);
+        assertArrayEquals(new long[]{2, 3, 1}, ranker.top(10));
+    }
+
+    @Test
+    public void shorterBodyWithSameHitsRanksHigher() {
+        NoteRanker ranker = new NoteRanker(NOW, 0);
+        ranker.add(1, NOW, 10, 5000, 0, 2);
+        ranker.add(2, NOW, 10, 100, 0, 2);
+        assertArrayEquals(new long[]{2, 1}, ranker.top(10));
+    }
+
+    // 前k名与对全部候选排序后的前k名一致
+    @Test
+    public void topKMatchesFullSort() {
+        Random random = new Random(7);
+        NoteRanker ranker = new NoteRanker(NOW, 0);
+        for (int i = 0; i < 20000; i++) {
+            ranker.add(i + 1, NOW - random.nextInt(1000) * DAY, 5 + random.nextInt(20), random.nextInt(2000),
+                    random.nextInt(10) == 0 ? 1 : 0, random.nextInt(3));
+        }
+        long[] all = ranker.top(Integer.MAX_VALUE);
+        assertEquals(20000, all.length);
+        for (int k : new int[]{1, 50, 500}) {
+            long[] top = ranker.top(k);
+            assertArrayEquals(java.util.Arrays.copyOf(all, k), top);
+        }
+    }
+
+    @Test
+    public void recencyTableMatchesHalfLife() {
+        Random random = new Random(11);
+        for (int i = 0; i < 10000; i++) {
+            long age = (long) (random.nextDouble() * 700 * DAY);
+            assertEquals(Math.pow(0.5, (double) age / NoteRanker.HALF_LIFE_MS), NoteRanker.recency(age), 1e-12);
+        }
+        assertEquals(1.0, NoteRanker.recency(-DAY), 0);
+        assertEquals(0.5, NoteRanker.recency(NoteRanker.HALF_LIFE_MS), 1e-12);
+    }
+
+    @Test
+    public void emptyCandidates() {
+        assertEquals(0, new NoteRanker(NOW, 0).top(10).length);
+    }
+}
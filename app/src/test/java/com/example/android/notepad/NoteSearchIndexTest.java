@@ -0,0 +1,118 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class NoteSearchIndexTest {
+
+    private static long[] ids(NoteSearchIndex.Hits hits) {
+        return java.util.Arrays.copyOf(hits.ids, hits.size);
+    }
+
+    private static NoteSearchIndex sample() {
+        NoteSearchIndex index = new NoteSearchIndex(Long.MAX_VALUE);
+        index.put(1, "周会记录", "讨论了项目进度 meeting notes", false, 1000, "工作");
+        index.put(2, "购物清单", "周末去超市，顺便讨论旅行计划", false, 3000, "生活");
+        index.put(3, "Reading list", "Android database internals", false, 2000, "学习");
+        return index;
+    }
+
+    @Test
+    public void cjkBigramsMatchTitleAndBody() {
+        NoteSearchIndex index = sample();
+        assertArrayEquals(new long[]{1}, ids(index.search("周会", null, 10)));
+        // 都只在正文命中时按创建时间倒序
+        assertArrayEquals(new long[]{2, 1}, ids(index.search("讨论", null, 10)));
+        assertEquals(0, index.search("不存在的词", null, 10).size);
+    }
+
+    @Test
+    public void lastLatinWordMatchesAsPrefix() {
+        NoteSearchIndex index = sample();
+        assertArrayEquals(new long[]{1}, ids(index.search("meet", null, 10)));
+        assertArrayEquals(new long[]{3}, ids(index.search("READ", null, 10)));
+        // 前面的词需完整匹配
+        assertArrayEquals(new long[]{1}, ids(index.search("meeting not", null, 10)));
+    }
+
+    @Test
+    public void wordsSqlCouldMatchMidWordAreLeftToSql() {
+        NoteSearchIndex index = sample();
+        // LIKE '%ook%'可能命中book这类词中间的位置，索引回答不了
+        assertNull(index.search("ook", null, 10));
+        assertNull(index.search("ting notes", null, 10));
+        assertNull(index.search("meet notes", null, 10));
+        // 词典中的词照常回答
+        assertEquals(0, index.search("android 周会", null, 10).size);
+    }
+
+    @Test
+    public void wordsAddedByEditsAreFoundBeforeAndAfterMerging() {
+        NoteSearchIndex index = sample();
+        index.put(4, "Zebra", "zeppelin", false, 4000, "其他");
+        assertArrayEquals(new long[]{4}, ids(index.search("zep", null, 10)));
+        assertArrayEquals(new long[]{4}, ids(index.search("ze", null, 10)));
+        // 大量新词触发归并后，前缀查询仍覆盖新旧所有词
+        for (int i = 0; i < 500; i++) {
+            index.put(100 + i, "word" + i, "extra" + i, false, i, "其他");
+        }
+        assertArrayEquals(new long[]{4}, ids(index.search("zep", null, 10)));
+        assertArrayEquals(new long[]{3}, ids(index.search("intern", null, 10)));
+        assertArrayEquals(new long[]{599}, ids(index.search("extra499", null, 10)));
+        assertNull(index.search("extra", null, 10));
+    }
+
+    @Test
+    public void singleCjkCharacterIsLeftToSql() {
+        assertNull(sample().search("周", null, 10));
+    }
+
+    @Test
+    public void categoryAndLimitAreApplied() {
+        NoteSearchIndex index = sample();
+        assertArrayEquals(new long[]{2}, ids(index.search("讨论", "生活", 10)));
+        assertEquals(0, index.search("讨论", "学习", 10).size);
+        assertArrayEquals(new long[]{2}, ids(index.search("讨论", null, 1)));
+    }
+
+    @Test
+    public void updatesAndRemovalsAreVisible() {
+        NoteSearchIndex index = sample();
+        index.put(1, "周会记录", "改成了别的内容", false, 1000, "工作");
+        assertArrayEquals(new long[]{2}, ids(index.search("讨论", null, 10)));
+        index.remove(2);
+        assertEquals(0, index.search("讨论", null, 10).size);
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void compactionKeepsResults() {
+        NoteSearchIndex index = new NoteSearchIndex(Long.MAX_VALUE);
+        for (int round = 0; round < 5; round++) {
+            for (int id = 1; id <= 1000; id++) {
+                index.put(id, "标题" + id, id % 2 == 0 ? "偶数笔记" : "奇数笔记", false, id, "工作");
+            }
+        }
+        index.compact();
+        assertEquals(1000, index.size());
+        NoteSearchIndex.Hits hits = index.search("偶数", null, 2000);
+        assertEquals(500, hits.size);
+        // 同为正文命中时按创建时间倒序
+        assertEquals(1000, hits.ids[0]);
+    }
+
+    @Test
+    public void longBodiesAreReportedAsPartial() {
+        NoteSearchIndex index = new NoteSearchIndex(Long.MAX_VALUE);
+        StringBuilder body = new StringBuilder();
+        while (body.length() <= NoteSearchIndex.MAX_INDEXED_CHARS) {
+            body.append("很长的正文");
+        }
+        index.put(7, "长笔记", body.toString(), false, 1, "工作");
+        index.put(8, "短笔记", "内容", false, 1, "工作");
+        assertArrayEquals(new long[]{7}, index.getPartialIds());
+    }
+}
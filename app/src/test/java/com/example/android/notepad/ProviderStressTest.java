@@ -0,0 +1,397 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * NotePadProvider的并发压力与长时间浸泡测试：多个读线程和写线程同时通过ContentResolver访问，
+ * 报告吞吐量与p50/p99延迟，并检查不变量：
+ * <ul>
+ *   <li>没有丢失的更新：每个写线程独占一组笔记，结束时库中内容等于最后一次写入</li>
+ *   <li>读线程看到的版本号单调不减，且独占的笔记始终可读</li>
+ *   <li>版本历史中最新的版本还原后等于最后一次写入之前的内容</li>
+ *   <li>每次成功写入都发出了变更通知</li>
+ *   <li>没有任何异常，包括 "database is locked"</li>
+ * </ul>
+ *
+ * 参数（-P传给Gradle）：notepad.stress.readers、notepad.stress.writers、notepad.stress.seconds；
+ * notepad.soak.minutes大于0时运行浸泡测试，每分钟记录一次堆和数据库文件大小。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ProviderStressTest {
+    private static final int READERS = Integer.getInteger("notepad.stress.readers", 4);
+    private static final int WRITERS = Integer.getInteger("notepad.stress.writers", 4);
+    private static final long SECONDS = Long.getLong("notepad.stress.seconds", 5L);
+    private static final long SOAK_MINUTES = Long.getLong("notepad.soak.minutes", 0L);
+
+    private static final int NOTES_PER_WRITER = 20;
+    // 每个写线程临时插入、随后删除的笔记数上限，浸泡时数据量保持稳定
+    private static final int MAX_SCRATCH_PER_WRITER = 50;
+    private static final String SCRATCH_TITLE = "scratch";
+
+    // 浸泡时允许的增长：堆相对第一轮的增量，数据库文件相对第一轮的倍数
+    private static final long SOAK_MAX_HEAP_GROWTH = 64L << 20;
+    private static final long SOAK_MAX_FILE_FACTOR = 2;
+
+    private Context context;
+    private ContentResolver resolver;
+    private final AtomicLong notifications = new AtomicLong();
+    private ContentObserver observer;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        Robolectric.buildContentProvider(NotePadProvider.class).create(NotePad.AUTHORITY);
+        resolver = context.getContentResolver();
+        observer = new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                notifications.incrementAndGet();
+            }
+        };
+        resolver.registerContentObserver(NotePad.Notes.CONTENT_URI, true, observer);
+    }
+
+    @After
+    public void tearDown() {
+        resolver.unregisterContentObserver(observer);
+    }
+
+    @Test
+    public void mixedWorkload_keepsInvariants() throws Exception {
+        Workload workload = new Workload(READERS, WRITERS);
+        workload.populate();
+        workload.run(TimeUnit.SECONDS.toNanos(SECONDS));
+        workload.verify();
+    }
+
+    @Test
+    public void soak_heapAndFileStayBounded() throws Exception {
+        assumeTrue("set -Pnotepad.soak.minutes=N to run", SOAK_MINUTES > 0);
+        Workload workload = new Workload(READERS, WRITERS);
+        workload.populate();
+
+        File dbFile = context.getDatabasePath(NotePadProvider.DATABASE_NAME);
+        long baselineHeap = -1;
+        long baselineFile = -1;
+        for (long minute = 1; minute <= SOAK_MINUTES; minute++) {
+            workload.run(TimeUnit.MINUTES.toNanos(1));
+            workload.verify();
+
+            long heap = usedHeapAfterGc();
+            long file = databaseBytes(dbFile);
+            System.out.println(String.format(Locale.US, "soak minute %d: heap=%.1fMB db=%.1fMB rows=%d",
+                    minute, heap / 1048576.0, file / 1048576.0, workload.expectedRows()));
+            if (baselineHeap < 0) {
+                baselineHeap = heap;
+                baselineFile = file;
+                continue;
+            }
+            assertTrue("heap grew from " + baselineHeap + " to " + heap,
+                    heap - baselineHeap < SOAK_MAX_HEAP_GROWTH);
+            assertTrue("database grew from " + baselineFile + " to " + file,
+                    file <= baselineFile * SOAK_MAX_FILE_FACTOR + (1L << 20));
+        }
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long databaseBytes(File dbFile) {
+        return dbFile.length()
+                + new File(dbFile.getPath() + "-journal").length()
+                + new File(dbFile.getPath() + "-wal").length();
+    }
+
+    private static String body(int writer, int note, long version) {
+        StringBuilder sb = new StringBuilder("w").append(writer).append('-').append(note)
+                .append(" v=").append(version).append(' ');
+        // 正文长度随版本变化，让页分配和回收都参与进来
+        for (int i = 0; i < (version % 16) * 20; i++) {
+            sb.append("内容content");
+        }
+        return sb.toString();
+    }
+
+    // 从正文中解析版本号，格式见body()
+    private static long versionOf(String body) {
+        int start = body.indexOf(" v=") + 3;
+        int end = body.indexOf(' ', start);
+        return Long.parseLong(body.substring(start, end));
+    }
+
+    private final class Workload {
+        private final int mReaderCount;
+        private final int mWriterCount;
+        private final long[][] mOwnIds;
+        private final long[][] mVersions;
+        private final List<List<Long>> mScratch = new ArrayList<>();
+        private final ConcurrentLinkedQueue<Throwable> mErrors = new ConcurrentLinkedQueue<>();
+        private final AtomicLong mWrites = new AtomicLong();
+        private final List<LatencyRecorder> mReadLatency = new ArrayList<>();
+        private final List<LatencyRecorder> mWriteLatency = new ArrayList<>();
+        private long[] mAllIds;
+
+        Workload(int readers, int writers) {
+            mReaderCount = readers;
+            mWriterCount = writers;
+            mOwnIds = new long[writers][NOTES_PER_WRITER];
+            mVersions = new long[writers][NOTES_PER_WRITER];
+            for (int w = 0; w < writers; w++) {
+                mScratch.add(new ArrayList<Long>());
+                mWriteLatency.add(new LatencyRecorder());
+            }
+            for (int r = 0; r < readers; r++) {
+                mReadLatency.add(new LatencyRecorder());
+            }
+        }
+
+        void populate() {
+            mAllIds = new long[mWriterCount * NOTES_PER_WRITER];
+            for (int w = 0; w < mWriterCount; w++) {
+                for (int k = 0; k < NOTES_PER_WRITER; k++) {
+                    ContentValues values = new ContentValues();
+                    values.put(NotePad.Notes.COLUMN_NAME_TITLE, "w" + w + "-" + k);
+                    values.put(NotePad.Notes.COLUMN_NAME_NOTE, body(w, k, 0));
+                    values.put(NotePad.Notes.COLUMN_NAME_CATEGORY, NotePad.Notes.CATEGORY_WORK);
+                    Uri uri = resolver.insert(NotePad.Notes.CONTENT_URI, values);
+                    mOwnIds[w][k] = ContentUris.parseId(uri);
+                    mAllIds[w * NOTES_PER_WRITER + k] = mOwnIds[w][k];
+                }
+            }
+        }
+
+        long expectedRows() {
+            long rows = (long) mWriterCount * NOTES_PER_WRITER;
+            for (List<Long> scratch : mScratch) {
+                rows += scratch.size();
+            }
+            return rows;
+        }
+
+        void run(long durationNanos) throws InterruptedException {
+            for (LatencyRecorder r : mReadLatency) {
+                r.clear();
+            }
+            for (LatencyRecorder r : mWriteLatency) {
+                r.clear();
+            }
+            mWrites.set(0);
+            notifications.set(0);
+
+            final long deadline = System.nanoTime() + durationNanos;
+            List<Thread> threads = new ArrayList<>();
+            for (int w = 0; w < mWriterCount; w++) {
+                final int writer = w;
+                threads.add(new Thread(() -> write(writer, deadline), "stress-writer-" + w));
+            }
+            for (int r = 0; r < mReaderCount; r++) {
+                final int reader = r;
+                threads.add(new Thread(() -> read(reader, deadline), "stress-reader-" + r));
+            }
+            long start = System.nanoTime();
+            for (Thread t : threads) {
+                t.start();
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            System.out.println("NotePadProvider stress: " + mReaderCount + " readers, " + mWriterCount + " writers");
+            System.out.println("  " + LatencyRecorder.format("read", LatencyRecorder.summarize(mReadLatency), elapsed));
+            System.out.println("  " + LatencyRecorder.format("write", LatencyRecorder.summarize(mWriteLatency), elapsed));
+            System.out.println("  notifications=" + notifications.get() + " writes=" + mWrites.get());
+        }
+
+        private void write(int writer, long deadline) {
+            Random random = new Random(writer);
+            LatencyRecorder latency = mWriteLatency.get(writer);
+            List<Long> scratch = mScratch.get(writer);
+            while (System.nanoTime() < deadline && mErrors.isEmpty()) {
+                int op = random.nextInt(10);
+                long start = System.nanoTime();
+                try {
+                    if (op < 6) {
+                        int k = random.nextInt(NOTES_PER_WRITER);
+                        long version = mVersions[writer][k] + 1;
+                        ContentValues values = new ContentValues();
+                        values.put(NotePad.Notes.COLUMN_NAME_NOTE, body(writer, k, version));
+                        int rows = resolver.update(
+                                ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, mOwnIds[writer][k]), values, null, null);
+                        assertEquals("update of own note", 1, rows);
+                        mVersions[writer][k] = version;
+                    } else if ((op < 8 && scratch.size() < MAX_SCRATCH_PER_WRITER) || scratch.isEmpty()) {
+                        ContentValues values = new ContentValues();
+                        values.put(NotePad.Notes.COLUMN_NAME_TITLE, SCRATCH_TITLE);
+                        values.put(NotePad.Notes.COLUMN_NAME_NOTE, body(writer, -1, random.nextInt(16)));
+                        values.put(NotePad.Notes.COLUMN_NAME_CATEGORY, NotePad.Notes.CATEGORY_LIFE);
+                        Uri uri = resolver.insert(NotePad.Notes.CONTENT_URI, values);
+                        assertTrue("insert returned null", uri != null);
+                        scratch.add(ContentUris.parseId(uri));
+                    } else {
+                        long id = scratch.remove(random.nextInt(scratch.size()));
+                        int rows = resolver.delete(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, id), null, null);
+                        assertEquals("delete of own scratch note", 1, rows);
+                        // 删除只是移入回收站，再彻底删除，浸泡时数据量保持稳定
+                        rows = resolver.delete(ContentUris.withAppendedId(NotePad.Trash.CONTENT_URI, id), null, null);
+                        assertEquals("purge of own scratch note", 1, rows);
+                    }
+                    mWrites.incrementAndGet();
+                } catch (Throwable t) {
+                    mErrors.add(t);
+                }
+                latency.record(System.nanoTime() - start);
+            }
+        }
+
+        private void read(int reader, long deadline) {
+            Random random = new Random(1000 + reader);
+            LatencyRecorder latency = mReadLatency.get(reader);
+            long[] seenVersions = new long[mAllIds.length];
+            while (System.nanoTime() < deadline && mErrors.isEmpty()) {
+                int op = random.nextInt(10);
+                long start = System.nanoTime();
+                try {
+                    if (op < 5) {
+                        String category = random.nextBoolean() ? NotePad.Notes.CATEGORY_WORK : null;
+                        NoteFilter filter = new NoteFilter(null, category);
+                        drain(resolver.query(NotePad.Notes.CONTENT_URI, NotePadSchema.LIST_PROJECTION,
+                                filter.getSelection(), filter.getSelectionArgs(), NotePad.Notes.DEFAULT_SORT_ORDER));
+                    } else if (op < 8) {
+                        int index = random.nextInt(mAllIds.length);
+                        Cursor c = resolver.query(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, mAllIds[index]),
+                                new String[]{NotePad.Notes.COLUMN_NAME_NOTE}, null, null, null);
+                        try {
+                            assertTrue("own note missing", c != null && c.moveToFirst());
+                            long version = versionOf(c.getString(0));
+                            assertTrue("version went backwards", version >= seenVersions[index]);
+                            seenVersions[index] = version;
+                        } finally {
+                            if (c != null) {
+                                c.close();
+                            }
+                        }
+                    } else {
+                        NoteFilter filter = new NoteFilter(SCRATCH_TITLE, null);
+                        drain(resolver.query(NotePad.Notes.CONTENT_URI, NotePadSchema.LIST_PROJECTION,
+                                filter.getSelection(), filter.getSelectionArgs(), NotePad.Notes.DEFAULT_SORT_ORDER));
+                    }
+                } catch (Throwable t) {
+                    mErrors.add(t);
+                }
+                latency.record(System.nanoTime() - start);
+            }
+        }
+
+        // 版本历史中最新的一个版本（被最后一次写入覆盖的正文）
+        private String latestRevision(long id) {
+            Uri revisions = Uri.withAppendedPath(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, id),
+                    NotePad.Revisions.PATH);
+            Cursor list = resolver.query(revisions, new String[]{NotePad.Revisions._ID}, null, null, null);
+            long revisionId;
+            try {
+                assertTrue("no revisions of note " + id, list != null && list.moveToFirst());
+                revisionId = list.getLong(0);
+            } finally {
+                if (list != null) {
+                    list.close();
+                }
+            }
+            Cursor c = resolver.query(ContentUris.withAppendedId(revisions, revisionId),
+                    new String[]{NotePad.Revisions.COLUMN_NAME_NOTE}, null, null, null);
+            try {
+                assertTrue("revision " + revisionId + " missing", c != null && c.moveToFirst());
+                return c.getString(0);
+            } finally {
+                if (c != null) {
+                    c.close();
+                }
+            }
+        }
+
+        private void drain(Cursor c) {
+            assertTrue("query returned null", c != null);
+            try {
+                while (c.moveToNext()) {
+                    for (int i = 0; i < c.getColumnCount(); i++) {
+                        c.getString(i);
+                    }
+                }
+            } finally {
+                c.close();
+            }
+        }
+
+        void verify() {
+            if (!mErrors.isEmpty()) {
+                Throwable first = mErrors.peek();
+                AssertionError error = new AssertionError(mErrors.size() + " errors during workload, first: " + first);
+                error.initCause(first);
+                throw error;
+            }
+            for (int w = 0; w < mWriterCount; w++) {
+                for (int k = 0; k < NOTES_PER_WRITER; k++) {
+                    Cursor c = resolver.query(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, mOwnIds[w][k]),
+                            new String[]{NotePad.Notes.COLUMN_NAME_NOTE}, null, null, null);
+                    try {
+                        if (c == null || !c.moveToFirst()) {
+                            fail("note " + mOwnIds[w][k] + " disappeared");
+                        }
+                        assertEquals("lost update on note " + mOwnIds[w][k], mVersions[w][k], versionOf(c.getString(0)));
+                        if (mVersions[w][k] > 0) {
+                            assertEquals("history of note " + mOwnIds[w][k], mVersions[w][k] - 1,
+                                    versionOf(latestRevision(mOwnIds[w][k])));
+                        }
+                    } finally {
+                        if (c != null) {
+                            c.close();
+                        }
+                    }
+                }
+            }
+            Cursor count = resolver.query(NotePad.Notes.CONTENT_URI, new String[]{NotePad.Notes._ID}, null, null, null);
+            try {
+                assertEquals("row count", expectedRows(), count.getCount());
+            } finally {
+                count.close();
+            }
+            assertTrue("missing change notifications: " + notifications.get() + " < " + mWrites.get(),
+                    notifications.get() >= mWrites.get());
+        }
+    }
+}
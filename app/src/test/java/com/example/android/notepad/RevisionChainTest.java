@@ -0,0 +1,94 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class RevisionChainTest {
+
+    @Test
+    public void snapshotAfterMaxDepthDeltas() {
+        assertFalse(RevisionChain.needsSnapshot(new boolean[0], 10, 100));
+        boolean[] rows = new boolean[RevisionChain.MAX_DEPTH + 5];
+        assertTrue(RevisionChain.needsSnapshot(rows, 10, 100));
+        // 最新的MAX_DEPTH行中有快照时不需要
+        rows[RevisionChain.MAX_DEPTH - 1] = true;
+        assertFalse(RevisionChain.needsSnapshot(rows, 10, 100));
+        rows[0] = true;
+        assertFalse(RevisionChain.needsSnapshot(rows, 10, 100));
+        // 差量达到正文的字符数时直接存快照
+        assertTrue(RevisionChain.needsSnapshot(new boolean[0], 100, 100));
+    }
+
+    @Test
+    public void snapshotsRoundTrip() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("第").append(i).append("行：季度复盘 \uD83D\uDE00\n");
+        }
+        byte[] snapshot = RevisionChain.encodeSnapshot(text.toString());
+        assertTrue(snapshot.length < text.length());
+        assertEquals(text.toString(), RevisionChain.decodeSnapshot(snapshot));
+        assertEquals("", RevisionChain.decodeSnapshot(RevisionChain.encodeSnapshot("")));
+        try {
+            RevisionChain.decodeSnapshot(Arrays.copyOf(snapshot, snapshot.length / 2));
+            fail("truncated snapshot decoded");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void rebuildsFromNewestBackwards() {
+        String[] versions = {"第一版", "第一版，加一句", "第二版，加一句", "第二版"};
+        String live = versions[versions.length - 1];
+        // 由新到旧，每个差量把较新的版本变回较旧的版本
+        List<byte[]> deltas = new ArrayList<>();
+        for (int i = versions.length - 2; i >= 0; i--) {
+            deltas.add(TextDelta.diff(versions[i + 1], versions[i]));
+            assertEquals(versions[i], RevisionChain.rebuild(live, deltas));
+        }
+        assertEquals(live, RevisionChain.rebuild(live, new ArrayList<byte[]>()));
+    }
+
+    @Test
+    public void depthStaysBounded() {
+        // 模拟连续保存：每行记下是否快照，任一行到起点（快照或当前正文）的差量数不超过MAX_DEPTH
+        List<Boolean> rows = new ArrayList<>();
+        for (int save = 0; save < 200; save++) {
+            boolean[] snapshots = new boolean[rows.size()];
+            for (int i = 0; i < snapshots.length; i++) {
+                snapshots[i] = rows.get(i);
+            }
+            rows.add(0, RevisionChain.needsSnapshot(snapshots, 10, 100));
+            int depth = 0;
+            for (int i = 0; i < rows.size(); i++) {
+                depth = rows.get(i) ? 0 : depth + 1;
+                assertTrue("save " + save + " row " + i, depth <= RevisionChain.MAX_DEPTH);
+            }
+        }
+        int snapshots = 0;
+        for (boolean snapshot : rows) {
+            snapshots += snapshot ? 1 : 0;
+        }
+        assertEquals(200 / (RevisionChain.MAX_DEPTH + 1), snapshots);
+    }
+
+    @Test
+    public void keepsNewestWithinCountAndAge() {
+        long[] times = {80, 70, 60, 50, 40, 30, 20, 10};
+        assertEquals(8, RevisionChain.keptCount(times, 50, 0));
+        assertEquals(4, RevisionChain.keptCount(times, 4, 0));
+        assertEquals(3, RevisionChain.keptCount(times, 50, 60));
+        assertEquals(2, RevisionChain.keptCount(times, 50, 65));
+        // 全部过期时仍保留最新的一个
+        assertEquals(1, RevisionChain.keptCount(times, 50, 100));
+        assertEquals(0, RevisionChain.keptCount(new long[0], 50, 0));
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+
+/**
+ * 慢查询记录的是Provider实际执行的语句：URI上的关键字、标签、条数限制与摘要等计算列都已展开，
+ * 用同一语句和参数执行的EXPLAIN QUERY PLAN能够成功。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SlowQueryLogTest {
+    private ContentResolver resolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(NotePadProvider.class).create(NotePad.AUTHORITY);
+        resolver = ApplicationProvider.getApplicationContext().getContentResolver();
+        ContentValues values = new ContentValues();
+        values.put(NotePad.Notes.COLUMN_NAME_TITLE, "发布计划");
+        values.put(NotePad.Notes.COLUMN_NAME_NOTE, "release 日期待定");
+        values.put(NotePad.Notes.COLUMN_NAME_TAGS, "工作");
+        resolver.insert(NotePad.Notes.CONTENT_URI, values);
+        // 阈值为0时每次查询都被记录
+        resolver.call(NotePad.Notes.CONTENT_URI, NotePad.METHOD_SET_SLOW_QUERY_THRESHOLD, "0", null);
+    }
+
+    private List<String> slowQueries() {
+        return resolver.call(NotePad.Notes.CONTENT_URI, NotePad.METHOD_SLOW_QUERIES, null, null)
+                .getStringArrayList(NotePad.RESULT_SLOW_QUERIES);
+    }
+
+    private void query(Uri uri, String[] projection) {
+        resolver.call(NotePad.Notes.CONTENT_URI, NotePad.METHOD_SLOW_QUERIES, NotePad.ARG_RESET, null);
+        Cursor c = resolver.query(uri, projection, null, null, null);
+        try {
+            assertEquals(1, c.getCount());
+        } finally {
+            c.close();
+        }
+    }
+
+    private static void assertExplained(List<String> entries, String... fragments) {
+        assertEquals(entries.toString(), 1, entries.size());
+        String entry = entries.get(0);
+        assertFalse(entry, entry.contains("explain failed"));
+        for (String fragment : fragments) {
+            assertTrue(entry, entry.contains(fragment));
+        }
+    }
+
+    @Test
+    public void recordsFilteredQueryWithComputedColumns() {
+        Uri uri = new NoteFilter("release", null).appendTo(NotePad.Notes.CONTENT_URI).buildUpon()
+                .appendQueryParameter(NotePad.Notes.PARAM_TAGS_ALL, "工作")
+                .appendQueryParameter(NotePad.Notes.PARAM_LIMIT, "10")
+                .build();
+        query(uri, new String[]{NotePad.Notes._ID, NotePad.Notes.COLUMN_NAME_TITLE_MATCH,
+                NotePad.Notes.COLUMN_NAME_SNIPPET, NotePad.Notes.COLUMN_NAME_TAGS});
+        // 关键字条件、回收站过滤、默认排序与条数限制都在记录的语句中
+        assertExplained(slowQueries(), NotePadSchema.KEYWORD_SELECTION, NotePadSchema.LIVE_SELECTION,
+                " AS " + NotePad.Notes.COLUMN_NAME_SNIPPET, "ORDER BY", "LIMIT ?");
+    }
+
+    @Test
+    public void recordsRankedCandidateQuery() {
+        Uri uri = new NoteFilter("release", null).appendTo(NotePad.Notes.CONTENT_URI).buildUpon()
+                .appendQueryParameter(NotePad.Notes.PARAM_ORDER, NotePad.Notes.ORDER_RANKED).build();
+        query(uri, new String[]{NotePad.Notes._ID, NotePad.Notes.COLUMN_NAME_SNIPPET});
+        assertExplained(slowQueries(), " LIKE ?");
+    }
+
+    @Test
+    public void clearResetsRecordedCount() {
+        SlowQueryLog log = new SlowQueryLog();
+        log.record(null, "query", "/notes", "SELECT 1", null, 1, 0);
+        log.record(null, "query", "/notes", "SELECT 2", null, 1, 0);
+        log.clear();
+        StringWriter out = new StringWriter();
+        log.dump(new PrintWriter(out));
+        assertTrue(out.toString(), out.toString().contains(" 0 recorded, last 0 kept"));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.widget.ListView;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.Shadows;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 启动时间线的阶段顺序：冷启动从Provider创建、快照读取到快照首次绑定和列表首帧；
+ * 编辑页以列表传入的点击时刻为起点，依次为创建、读取笔记和正文首帧。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class StartupTimelineTest {
+    private Context context;
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(NotePadProvider.class).create(NotePad.AUTHORITY);
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    private static List<String> names(List<StartupTimeline.Phase> phases) {
+        List<String> names = new ArrayList<>();
+        for (StartupTimeline.Phase p : phases) {
+            names.add(p.name);
+        }
+        return names;
+    }
+
+    // 各阶段第一次出现的位置依次递增
+    private static void assertInOrder(List<String> names, String... expected) {
+        int last = -1;
+        for (String phase : expected) {
+            int index = names.indexOf(phase);
+            assertTrue(phase + " missing or out of order in " + names, index > last);
+            last = index;
+        }
+    }
+
+    @Test
+    public void coldStartPhasesInOrder() throws Exception {
+        // 上次运行留下的快照：首屏先绑定快照，不等数据库查询
+        NoteListModel snapshot = new NoteListModel(null, 1);
+        snapshot.add(1, "快照中的笔记", System.currentTimeMillis(), "默认分类");
+        ListSnapshotCache.write(context, snapshot);
+
+        ActivityController<NotesList> controller = Robolectric.buildActivity(NotesList.class).setup();
+        Shadows.shadowOf(Looper.getMainLooper()).idle();
+        StartupTimeline timeline = StartupTimeline.coldStart();
+        if (!timeline.isFinished()) {
+            // 没有真实绘制时手动派发一次绘制回调
+            ListView list = controller.get().findViewById(android.R.id.list);
+            ReflectionHelpers.callInstanceMethod(list.getViewTreeObserver(), "dispatchOnDraw");
+        }
+        controller.pause().stop().destroy();
+
+        assertTrue(timeline.isFinished());
+        List<String> names = names(timeline.getPhases());
+        assertInOrder(names, StartupTimeline.PROVIDER_CREATE, StartupTimeline.SNAPSHOT_LOAD,
+                StartupTimeline.FIRST_BIND, StartupTimeline.FIRST_FRAME);
+
+        // 完成后持久化一次，再有的阶段不计入
+        List<String> history = StartupTimeline.getHistory(context, StartupTimeline.KIND_COLD_START);
+        assertEquals(1, history.size());
+        timeline.mark(StartupTimeline.FIRST_QUERY);
+        assertEquals(names, names(timeline.getPhases()));
+    }
+
+    @Test
+    public void editorOpenStartsAtTapTime() throws Exception {
+        ContentValues values = new ContentValues();
+        values.put(NotePad.Notes.COLUMN_NAME_TITLE, "标题");
+        values.put(NotePad.Notes.COLUMN_NAME_NOTE, "正文");
+        Uri uri = context.getContentResolver().insert(NotePad.Notes.CONTENT_URI, values);
+
+        // 点击后500ms编辑页才开始创建，这段等待计入时间线
+        long tapTime = SystemClock.elapsedRealtime();
+        SystemClock.sleep(500);
+        Intent intent = new Intent(context, NoteEditor.class)
+                .setData(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, ContentUris.parseId(uri)))
+                .putExtra(NoteEditor.EXTRA_TAP_TIME, tapTime);
+        ActivityController<NoteEditor> controller = Robolectric.buildActivity(NoteEditor.class, intent).setup();
+        Shadows.shadowOf(Looper.getMainLooper()).idle();
+        controller.get().findViewById(R.id.et_note_content).getViewTreeObserver().dispatchOnPreDraw();
+        controller.pause().stop().destroy();
+
+        List<String> history = StartupTimeline.getHistory(context, StartupTimeline.KIND_EDITOR_OPEN);
+        assertEquals(1, history.size());
+        JSONArray phases = new JSONObject(history.get(0)).getJSONArray("phases");
+        assertEquals(3, phases.length());
+        String[] expected = {StartupTimeline.EDITOR_CREATE, StartupTimeline.EDITOR_LOAD,
+                StartupTimeline.EDITOR_FIRST_FRAME};
+        long previousEnd = 500;
+        for (int i = 0; i < expected.length; i++) {
+            JSONObject phase = phases.getJSONObject(i);
+            assertEquals(expected[i], phase.getString("name"));
+            // 以点击时刻为起点：第一个阶段从点击后500ms开始，之后各阶段依次进行、互不重叠
+            assertTrue(phase.toString(), phase.getLong("start") >= previousEnd);
+            assertTrue(phase.toString(), phase.getLong("end") >= phase.getLong("start"));
+            previousEnd = phase.getLong("end");
+        }
+    }
+}
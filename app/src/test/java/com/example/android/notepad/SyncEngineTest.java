@@ -0,0 +1,294 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.Shadows;
+import org.robolectric.shadows.ShadowContentResolver;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 端到端同步：对本机的模拟服务器（MockSyncServer）推送本地变更与删除墓碑、分页拉取远端变更，
+ * 以及推送期间本地又被编辑时按修改时间解决冲突；移入回收站与恢复在两端之间同步。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SyncEngineTest {
+    private Context context;
+    private ContentResolver resolver;
+    private MockSyncServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        Robolectric.buildContentProvider(NotePadProvider.class).create(NotePad.AUTHORITY);
+        context = ApplicationProvider.getApplicationContext();
+        resolver = context.getContentResolver();
+        server = new MockSyncServer();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    private SyncEngine engine() {
+        return new SyncEngine(context, server.url());
+    }
+
+    private static Uri asSyncAdapter(Uri uri) {
+        return uri.buildUpon().appendQueryParameter(NotePad.CALLER_IS_SYNC_ADAPTER, "true").build();
+    }
+
+    private long insert(String title) {
+        ContentValues values = new ContentValues();
+        values.put(NotePad.Notes.COLUMN_NAME_TITLE, title);
+        values.put(NotePad.Notes.COLUMN_NAME_NOTE, title + "的正文");
+        return ContentUris.parseId(resolver.insert(NotePad.Notes.CONTENT_URI, values));
+    }
+
+    private void edit(long id, String title) {
+        ContentValues values = new ContentValues();
+        values.put(NotePad.Notes.COLUMN_NAME_TITLE, title);
+        resolver.update(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, id), values, null, null);
+    }
+
+    // 指定修改时间的本地编辑，待上传
+    private void editAt(long id, String title, long modified) {
+        ContentValues values = new ContentValues();
+        values.put(NotePad.Notes.COLUMN_NAME_TITLE, title);
+        values.put(NotePad.Notes.COLUMN_NAME_MODIFIED_TIME, modified);
+        values.put(NotePad.Notes.COLUMN_NAME_DIRTY, 1);
+        resolver.update(asSyncAdapter(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, id)), values, null, null);
+    }
+
+    private long modifiedOf(long id) {
+        Cursor c = resolver.query(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, id),
+                new String[]{NotePad.Notes.COLUMN_NAME_MODIFIED_TIME}, null, null, null);
+        try {
+            c.moveToFirst();
+            return c.getLong(0);
+        } finally {
+            c.close();
+        }
+    }
+
+    private static JSONObject remoteNote(String uuid, String title, long modified) throws Exception {
+        JSONObject o = new JSONObject();
+        o.put(SyncEngine.KEY_UUID, uuid);
+        o.put(SyncEngine.KEY_TITLE, title);
+        o.put(SyncEngine.KEY_NOTE, title + "的正文");
+        o.put(SyncEngine.KEY_CATEGORY, "默认分类");
+        o.put(SyncEngine.KEY_CREATED, modified);
+        o.put(SyncEngine.KEY_MODIFIED, modified);
+        return o;
+    }
+
+    // 同步引擎的视图：含回收站中的笔记；没有该笔记时返回null
+    private String[] row(String selection, String... args) {
+        Cursor c = resolver.query(asSyncAdapter(NotePad.Notes.CONTENT_URI), new String[]{
+                NotePad.Notes.COLUMN_NAME_UUID, NotePad.Notes.COLUMN_NAME_TITLE, NotePad.Notes.COLUMN_NAME_DIRTY},
+                selection, args, null);
+        try {
+            return c.moveToFirst() ? new String[]{c.getString(0), c.getString(1), c.getString(2)} : null;
+        } finally {
+            c.close();
+        }
+    }
+
+    private String uuidOf(long id) {
+        return row(NotePad.Notes._ID + " = ?", String.valueOf(id))[0];
+    }
+
+    // 从第from条起发出过的变更通知
+    private Set<Uri> notifiedSince(int from) {
+        List<ShadowContentResolver.NotifiedUri> all = Shadows.shadowOf(resolver).getNotifiedUris();
+        Set<Uri> uris = new HashSet<>();
+        for (ShadowContentResolver.NotifiedUri notified : all.subList(from, all.size())) {
+            uris.add(notified.uri);
+        }
+        return uris;
+    }
+
+    private int notifiedCount() {
+        return Shadows.shadowOf(resolver).getNotifiedUris().size();
+    }
+
+    private int count(Uri uri) {
+        Cursor c = resolver.query(uri, null, null, null, null);
+        try {
+            return c.getCount();
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void pushesLocalChangesAndPullsRemote() throws Exception {
+        long a = insert("甲");
+        long b = insert("乙");
+        long c = insert("丙");
+        String uuidC = uuidOf(c);
+        // 彻底删除留下墓碑
+        resolver.delete(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, c), null, null);
+        resolver.delete(ContentUris.withAppendedId(NotePad.Trash.CONTENT_URI, c), null, null);
+        assertEquals(1, count(NotePad.SyncTombstones.CONTENT_URI));
+        server.putRemote(remoteNote("remote-1", "远端笔记", 1000));
+
+        SyncEngine.Stats stats = engine().sync();
+
+        // 墓碑先推送，再推送两篇新笔记
+        List<JSONObject> pushed = server.pushed();
+        assertEquals(3, pushed.size());
+        assertEquals(uuidC, pushed.get(0).getString(SyncEngine.KEY_UUID));
+        assertEquals(1, pushed.get(0).getInt(SyncEngine.KEY_DELETED));
+        Set<String> notes = new HashSet<>();
+        notes.add(pushed.get(1).getString(SyncEngine.KEY_UUID));
+        notes.add(pushed.get(2).getString(SyncEngine.KEY_UUID));
+        assertTrue(notes.contains(uuidOf(a)) && notes.contains(uuidOf(b)));
+        assertEquals(3, stats.pushed);
+        assertTrue(stats.bytesSent > 0 && stats.bytesReceived > 0);
+        assertEquals(0, count(NotePad.SyncTombstones.CONTENT_URI));
+        assertEquals("0", row(NotePad.Notes._ID + " = ?", String.valueOf(a))[2]);
+
+        String[] remote = row(NotePad.Notes.COLUMN_NAME_UUID + " = ?", "remote-1");
+        assertNotNull(remote);
+        assertEquals("远端笔记", remote[1]);
+        assertEquals("0", remote[2]);
+
+        // 没有新的变更时不再推送，游标之后也没有新的拉取
+        SyncEngine.Stats again = engine().sync();
+        assertEquals(0, again.pushed);
+        assertEquals(0, again.pulled);
+        assertEquals(3, server.pushed().size());
+
+        // 远端删除拉取后直接删除本地笔记，不留墓碑
+        JSONObject deleted = new JSONObject();
+        deleted.put(SyncEngine.KEY_UUID, "remote-1");
+        deleted.put(SyncEngine.KEY_MODIFIED, 2000);
+        deleted.put(SyncEngine.KEY_DELETED, 1);
+        server.putRemote(deleted);
+        engine().sync();
+        assertNull(row(NotePad.Notes.COLUMN_NAME_UUID + " = ?", "remote-1"));
+        assertEquals(0, count(NotePad.SyncTombstones.CONTENT_URI));
+    }
+
+    @Test
+    public void conflictKeepsNewerVersion() throws Exception {
+        final long x = insert("X");
+        final long y = insert("Y");
+        engine().sync();
+        final String uuidX = uuidOf(x);
+        final String uuidY = uuidOf(y);
+
+        // 两篇都在本地修改后推送。推送期间用户又编辑了它们（推送的版本不再是最新，脏标记保留），
+        // 其他设备也修改了它们：X的远端修改早于本地的再次编辑，Y的远端修改晚于本地的再次编辑
+        edit(x, "X本地1");
+        edit(y, "Y本地1");
+        server.onPush(() -> {
+            try {
+                long pushedX = modifiedOf(x);
+                long pushedY = modifiedOf(y);
+                editAt(x, "X本地2", pushedX + 2000);
+                server.putRemote(remoteNote(uuidX, "X远端", pushedX + 1000));
+                editAt(y, "Y本地2", pushedY + 1000);
+                server.putRemote(remoteNote(uuidY, "Y远端", pushedY + 2000));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        SyncEngine.Stats stats = engine().sync();
+
+        // X：本地较新，保留本地且仍待上传；Y：远端较新，取远端并清除脏标记
+        assertEquals(1, stats.conflictsKeptLocal);
+        String[] localX = row(NotePad.Notes._ID + " = ?", String.valueOf(x));
+        assertEquals("X本地2", localX[1]);
+        assertEquals("1", localX[2]);
+        String[] localY = row(NotePad.Notes._ID + " = ?", String.valueOf(y));
+        assertEquals("Y远端", localY[1]);
+        assertEquals("0", localY[2]);
+
+        // 下一次同步把保留的本地版本推送上去，服务器以它为准
+        engine().sync();
+        assertEquals("X本地2", server.latest(uuidX).getString(SyncEngine.KEY_TITLE));
+        assertEquals("0", row(NotePad.Notes._ID + " = ?", String.valueOf(x))[2]);
+        assertEquals("Y远端", server.latest(uuidY).getString(SyncEngine.KEY_TITLE));
+    }
+
+    @Test
+    public void trashSyncsBothWays() throws Exception {
+        long a = insert("甲");
+        long b = insert("乙");
+        long c = insert("丙");
+        engine().sync();
+        String uuidA = uuidOf(a);
+        String uuidB = uuidOf(b);
+
+        // 本地移入回收站计为修改，推送时带上移入时间，远端仍保留这篇笔记
+        resolver.delete(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, a), null, null);
+        assertEquals("1", row(NotePad.Notes._ID + " = ?", String.valueOf(a))[2]);
+        engine().sync();
+        assertTrue(server.latest(uuidA).has(SyncEngine.KEY_TRASHED));
+        assertEquals(0, count(NotePad.SyncTombstones.CONTENT_URI));
+
+        // 恢复同样推送，远端的版本不再带移入时间
+        resolver.update(ContentUris.withAppendedId(NotePad.Trash.CONTENT_URI, a).buildUpon()
+                .appendPath(NotePad.Trash.PATH_RESTORE).build(), new ContentValues(), null, null);
+        engine().sync();
+        assertFalse(server.latest(uuidA).has(SyncEngine.KEY_TRASHED));
+
+        // 其他设备把乙移入回收站：拉取后本机也移入回收站，回收站列表收到通知
+        JSONObject trashed = remoteNote(uuidB, "乙", modifiedOf(b) + 1000);
+        trashed.put(SyncEngine.KEY_TRASHED, modifiedOf(b) + 1000);
+        server.putRemote(trashed);
+        int before = notifiedCount();
+        engine().sync();
+        assertEquals(1, count(NotePad.Trash.CONTENT_URI));
+        assertEquals(2, count(NotePad.Notes.CONTENT_URI));
+        assertEquals("0", row(NotePad.Notes._ID + " = ?", String.valueOf(b))[2]);
+        assertTrue(notifiedSince(before).contains(NotePad.Trash.CONTENT_URI));
+
+        // 本地的批量移入回收站同样通知回收站列表
+        ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+        ops.add(ContentProviderOperation.newDelete(ContentUris.withAppendedId(NotePad.Notes.CONTENT_URI, c)).build());
+        before = notifiedCount();
+        resolver.applyBatch(NotePad.AUTHORITY, ops);
+        Set<Uri> notified = notifiedSince(before);
+        assertTrue(notified.contains(NotePad.Notes.CONTENT_URI));
+        assertTrue(notified.contains(NotePad.Trash.CONTENT_URI));
+        assertEquals(2, count(NotePad.Trash.CONTENT_URI));
+    }
+
+    @Test
+    public void serverUrlSettingResetsCursor() {
+        SyncEngine.setServerUrl(context, server.url());
+        assertEquals(server.url(), context.getSharedPreferences(SyncEngine.PREFS_NAME, Context.MODE_PRIVATE)
+                .getString(SyncEngine.PREF_SERVER_URL, null));
+        SyncEngine.setServerUrl(context, "");
+        assertNull(context.getSharedPreferences(SyncEngine.PREFS_NAME, Context.MODE_PRIVATE)
+                .getString(SyncEngine.PREF_SERVER_URL, null));
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SyntheticNotesTest {
+
+    private static SyntheticNotes.Config config(long seed) {
+        SyntheticNotes.Config config = new SyntheticNotes.Config();
+        config.count = 300;
+        config.seed = seed;
+        config.maxBodyBytes = 256 * 1024;
+        return config;
+    }
+
+    @Test
+    public void sameSeedProducesSameDataset() {
+        SyntheticNotes a = new SyntheticNotes(config(7));
+        SyntheticNotes b = new SyntheticNotes(config(7));
+        int count = 0;
+        while (a.hasNext()) {
+            assertTrue(b.hasNext());
+            SyntheticNotes.Note x = a.next();
+            SyntheticNotes.Note y = b.next();
+            assertEquals(x.title, y.title);
+            assertEquals(x.body, y.body);
+            assertEquals(x.category, y.category);
+            assertEquals(x.createdTime, y.createdTime);
+            count++;
+        }
+        assertFalse(b.hasNext());
+        assertEquals(300, count);
+    }
+
+    @Test
+    public void differentSeedProducesDifferentDataset() {
+        assertNotEquals(new SyntheticNotes(config(1)).next().body, new SyntheticNotes(config(2)).next().body);
+    }
+
+    @Test
+    public void valuesStayWithinConfiguredRanges() {
+        SyntheticNotes.Config config = config(11);
+        SyntheticNotes generator = new SyntheticNotes(config);
+        long oldest = config.anchorTime - config.years * 365L * 24 * 3600 * 1000;
+        while (generator.hasNext()) {
+            SyntheticNotes.Note note = generator.next();
+            assertFalse(note.title.isEmpty());
+            assertTrue(note.createdTime <= config.anchorTime && note.createdTime >= oldest);
+            // 中文按3字节估算，字符数不超过字节上限
+            assertTrue(note.body.length() <= config.maxBodyBytes + 1024);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class TagBitmapTest {
+
+    private static long[] toArray(TreeSet<Long> set) {
+        long[] ids = new long[set.size()];
+        int i = 0;
+        for (long id : set) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    // 随机id集中在少数几个块内，数组块和位图块都会出现并来回转换
+    private static void fill(Random random, TagBitmap bitmap, TreeSet<Long> reference, int count, int range) {
+        for (int i = 0; i < count; i++) {
+            long id = (long) random.nextInt(3) * 65536 + random.nextInt(range);
+            bitmap.add(id);
+            reference.add(id);
+        }
+    }
+
+    @Test
+    public void addRemoveMatchesTreeSet() {
+        Random random = new Random(1);
+        TagBitmap bitmap = new TagBitmap();
+        TreeSet<Long> reference = new TreeSet<>();
+        for (int round = 0; round < 5; round++) {
+            fill(random, bitmap, reference, 8000, 20000);
+            for (int i = 0; i < 6000; i++) {
+                long id = (long) random.nextInt(3) * 65536 + random.nextInt(20000);
+                bitmap.remove(id);
+                reference.remove(id);
+            }
+            assertEquals(reference.size(), bitmap.cardinality());
+            assertArrayEquals(toArray(reference), bitmap.toArray());
+        }
+        for (long id : toArray(reference)) {
+            assertTrue(bitmap.contains(id));
+            bitmap.remove(id);
+        }
+        assertTrue(bitmap.isEmpty());
+    }
+
+    @Test
+    public void setOperationsMatchTreeSet() {
+        Random random = new Random(2);
+        // 稀疏与稀疏、稀疏与密集、密集与密集
+        int[][] sizes = {{300, 500}, {300, 30000}, {30000, 40000}};
+        for (int[] size : sizes) {
+            TagBitmap a = new TagBitmap();
+            TagBitmap b = new TagBitmap();
+            TreeSet<Long> ra = new TreeSet<>();
+            TreeSet<Long> rb = new TreeSet<>();
+            fill(random, a, ra, size[0], 65536);
+            fill(random, b, rb, size[1], 65536);
+
+            TreeSet<Long> and = new TreeSet<>(ra);
+            and.retainAll(rb);
+            TreeSet<Long> or = new TreeSet<>(ra);
+            or.addAll(rb);
+            TreeSet<Long> andNot = new TreeSet<>(ra);
+            andNot.removeAll(rb);
+
+            assertArrayEquals(toArray(and), TagBitmap.and(a, b).toArray());
+            assertEquals(and.size(), TagBitmap.andCardinality(a, b));
+            assertArrayEquals(toArray(or), TagBitmap.or(a, b).toArray());
+            assertArrayEquals(toArray(andNot), TagBitmap.andNot(a, b).toArray());
+            // 参数不被修改
+            assertArrayEquals(toArray(ra), a.toArray());
+            assertArrayEquals(toArray(rb), b.toArray());
+        }
+    }
+
+    @Test
+    public void rejectsIdsOutsideUnsigned32Bits() {
+        TagBitmap bitmap = TagBitmap.of((1L << 32) - 1);
+        assertTrue(bitmap.contains((1L << 32) - 1));
+        try {
+            bitmap.add(1L << 32);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // id超出范围
+        }
+    }
+
+    // 密集位图远小于每个id一个long
+    @Test
+    public void denseBitmapIsCompact() {
+        TagBitmap bitmap = new TagBitmap();
+        for (long id = 1; id <= 100000; id++) {
+            bitmap.add(id);
+        }
+        assertTrue("bytes " + bitmap.sizeInBytes(), bitmap.sizeInBytes() < 100000 / 4);
+    }
+
+    @Test
+    public void parseNamesTrimsAndDedupes() {
+        assertEquals(Arrays.asList("工作", "Todo"), TagIndex.parseNames(" 工作, Todo ,,todo,TODO ,"));
+        assertTrue(TagIndex.parseNames(null).isEmpty());
+        assertTrue(TagIndex.parseNames(" , ").isEmpty());
+    }
+
+    private static TagIndex index() {
+        TagIndex index = new TagIndex();
+        index.putTag(1, "work");
+        index.putTag(2, "Urgent");
+        index.putTag(3, "home");
+        index.setNoteTags(10, new int[]{1, 2});
+        index.setNoteTags(11, new int[]{1});
+        index.setNoteTags(12, new int[]{3});
+        index.setNoteTags(13, new int[]{2, 3});
+        return index;
+    }
+
+    private static List<String> names(String names) {
+        return TagIndex.parseNames(names);
+    }
+
+    @Test
+    public void matchCombinesAllAnyNone() {
+        TagIndex index = index();
+        assertNull(index.match(names(null), names(null), names(null)));
+        assertArrayEquals(new long[]{10}, index.match(names("work,URGENT"), names(null), names(null)).ids.toArray());
+        assertArrayEquals(new long[]{10, 12, 13},
+                index.match(names(null), names("urgent,home"), names(null)).ids.toArray());
+        assertArrayEquals(new long[]{11}, index.match(names("work"), names(null), names("urgent")).ids.toArray());
+        assertArrayEquals(new long[0], index.match(names("work,nosuch"), names(null), names(null)).ids.toArray());
+
+        // 只有none时是补集：除带这些标签以外的全部笔记
+        TagIndex.Match none = index.match(names(null), names(null), names("home"));
+        assertTrue(none.complement);
+        assertArrayEquals(new long[]{12, 13}, none.ids.toArray());
+    }
+
+    @Test
+    public void countsWithinMatch() {
+        TagIndex index = index();
+        index.removeNote(13);
+        List<TagIndex.TagCount> counts = index.counts(index.match(names(null), names(null), names("urgent")));
+        assertEquals(3, counts.size());
+        // 按名称排序，忽略大小写
+        assertEquals("home", counts.get(0).name);
+        assertEquals(1, counts.get(0).count);
+        assertEquals("Urgent", counts.get(1).name);
+        assertEquals(0, counts.get(1).count);
+        assertEquals("work", counts.get(2).name);
+        assertEquals(1, counts.get(2).count);
+
+        index.removeTag(2);
+        assertEquals(2, index.counts(null).size());
+    }
+}
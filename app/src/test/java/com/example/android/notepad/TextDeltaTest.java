@@ -0,0 +1,100 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TextDeltaTest {
+
+    private static void assertRoundTrip(String base, String target) {
+        assertEquals(target, TextDelta.apply(base, TextDelta.diff(base, target)));
+    }
+
+    @Test
+    public void roundTripsSimpleEdits() {
+        assertRoundTrip("", "");
+        assertRoundTrip("", "新笔记");
+        assertRoundTrip("全部删除", "");
+        assertRoundTrip("会议记录：周一", "会议记录：周二");
+        assertRoundTrip("abc", "abcabc");
+        assertRoundTrip("aaaa", "aa");
+    }
+
+    @Test
+    public void keepsSurrogatePairsWhole() {
+        // 两个表情的高位代理相同、低位代理不同，相同的前缀停在代理对中间
+        assertRoundTrip("前😀后", "前😁后");
+        assertRoundTrip("😀", "😁");
+        String line = "这一行足够长，可以匹配😀\n";
+        assertRoundTrip("开头\n" + line + "结尾", "改了开头\n" + line.substring(0, line.length() - 3) + "😁\n改了结尾");
+    }
+
+    @Test
+    public void smallEditOfLongNoteIsSmall() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("第").append(i).append("行：季度复盘的待办事项\n");
+        }
+        String base = text.toString();
+        // 改动散在开头、中间和结尾三处
+        String target = "标题\n" + base.replace("第100行", "第一百行").replace("第199行：季度复盘", "最后一行") + "补充";
+        byte[] delta = TextDelta.diff(base, target);
+        assertEquals(target, TextDelta.apply(base, delta));
+        assertTrue("delta too large: " + delta.length, delta.length < 100);
+    }
+
+    @Test
+    public void movedParagraphsAreCopied() {
+        String first = "第一段的内容比较长，足以匹配\n";
+        String second = "第二段的内容也比较长，足以匹配\n";
+        byte[] delta = TextDelta.diff(first + second, second + first);
+        assertEquals(second + first, TextDelta.apply(first + second, delta));
+        assertTrue("delta too large: " + delta.length, delta.length < 10);
+    }
+
+    @Test
+    public void randomEditsRoundTrip() {
+        Random random = new Random(42);
+        String alphabet = "ab \n中文😀";
+        for (int round = 0; round < 500; round++) {
+            String base = randomText(random, alphabet, random.nextInt(200));
+            StringBuilder target = new StringBuilder(base);
+            for (int edits = random.nextInt(5); edits > 0; edits--) {
+                int at = random.nextInt(target.length() + 1);
+                if (at > 0 && at < target.length() && Character.isLowSurrogate(target.charAt(at))) {
+                    at--;
+                }
+                target.insert(at, randomText(random, alphabet, random.nextInt(10)));
+            }
+            assertRoundTrip(base, target.toString());
+            assertRoundTrip(target.toString(), base);
+        }
+    }
+
+    @Test
+    public void rejectsDeltaForAnotherBase() {
+        try {
+            TextDelta.apply("短", TextDelta.diff("一段比较长的正文", "一段比较长的正文。"));
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // 复制的范围超出了旧版本
+        }
+    }
+
+    private static String randomText(Random random, String alphabet, int length) {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length) {
+            int i = random.nextInt(alphabet.length());
+            if (Character.isHighSurrogate(alphabet.charAt(i))) {
+                text.append(alphabet, i, i + 2);
+            } else if (!Character.isLowSurrogate(alphabet.charAt(i))) {
+                text.append(alphabet.charAt(i));
+            }
+        }
+        return text.toString();
+    }
+}
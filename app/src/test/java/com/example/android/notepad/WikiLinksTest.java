@@ -0,0 +1,50 @@
+package com.example.android.notepad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class WikiLinksTest {
+
+    @Test
+    public void parsesLinksInOrder() {
+        assertEquals(Arrays.asList("周报", "Project Plan"),
+                WikiLinks.parse("见[[周报]]和[[ Project Plan ]]，以及[[project plan]]"));
+        assertEquals(Collections.emptyList(), WikiLinks.parse(null));
+    }
+
+    @Test
+    public void ignoresMalformedLinks() {
+        assertEquals(Collections.emptyList(), WikiLinks.parse("[[]] [[  ]] [[未闭合 [[跨\n行]] [单括号]"));
+        // 多余的左括号不算在标题内
+        assertEquals(Collections.singletonList("标题"), WikiLinks.parse("[[[标题]]]"));
+        assertEquals(Collections.singletonList("b"), WikiLinks.parse("[[a]b]] [[b]]"));
+    }
+
+    @Test
+    public void renameRewritesOnlyMatchingLinks() {
+        String text = "先看[[Plan]]，再看[[plan ]]和[[Planning]]；Plan本身不是链接";
+        assertEquals("先看[[计划]]，再看[[计划]]和[[Planning]]；Plan本身不是链接",
+                WikiLinks.rename(text, "PLAN", "计划"));
+    }
+
+    @Test
+    public void renameWithoutMatchReturnsSameString() {
+        String text = "没有指向它的链接 [[别的]]";
+        assertSame(text, WikiLinks.rename(text, "它", "新"));
+    }
+
+    @Test
+    public void linkableTitles() {
+        assertTrue(WikiLinks.isLinkable("会议记录 2024"));
+        assertFalse(WikiLinks.isLinkable(" "));
+        assertFalse(WikiLinks.isLinkable("a]]b"));
+        assertFalse(WikiLinks.isLinkable("两\n行"));
+    }
+}
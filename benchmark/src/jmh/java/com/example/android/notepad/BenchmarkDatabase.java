@@ -0,0 +1,226 @@
+package com.example.android.notepad;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * 基准测试用的数据库：临时文件上的sqlite-jdbc连接，建表语句来自 {@link NotePadSchema}，
+ * 连接参数与PerformanceProfile的interactive预设一致。
+ *
+ * 数据由固定种子生成，同样的行数每次得到同样的内容，不同版本的结果可以直接比较。
+ */
+final class BenchmarkDatabase {
+    static final long SEED = 42;
+
+    static final String[] CATEGORIES = {"默认分类", "工作", "生活", "学习"};
+    // 关键字搜索用的词，约5%的笔记包含
+    static final String KEYWORD = "季度复盘";
+
+    private static final String[] WORDS = {
+            "会议", "记录", "项目", "进度", "计划", "购物", "清单", "读书", "笔记", "周末",
+            "旅行", "预算", "代码", "评审", "接口", "设计", "测试", "发布", "想法", "总结",
+            "meeting", "draft", "todo", "release", "review", "android", "sqlite", "index"
+    };
+
+    // SQLiteDatabase.insert对Provider插入的ContentValues生成的语句
+    static final String INSERT_SQL = "INSERT INTO " + NotePadSchema.NOTES + " ("
+            + NotePadSchema.TITLE + ", " + NotePadSchema.NOTE + ", " + NotePadSchema.CATEGORY + ", "
+            + NotePadSchema.CREATED_TIME + ", " + NotePadSchema.UUID + ", " + NotePadSchema.MODIFIED_TIME + ", "
+            + NotePadSchema.DIRTY + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    final File file;
+    final Connection connection;
+
+    private BenchmarkDatabase(File file, Connection connection) {
+        this.file = file;
+        this.connection = connection;
+    }
+
+    /**
+     * 新建空库，不建表。
+     */
+    static BenchmarkDatabase createEmpty(String synchronous) throws IOException, SQLException {
+        File file = File.createTempFile("notepad-bench", ".db");
+        file.delete();
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        Statement s = connection.createStatement();
+        try {
+            // 与PerformanceProfile.interactive一致，synchronous可由用例覆盖
+            s.execute("PRAGMA journal_mode = TRUNCATE");
+            s.execute("PRAGMA cache_size = -8192");
+            s.execute("PRAGMA mmap_size = " + (64L << 20));
+            s.execute("PRAGMA synchronous = " + synchronous);
+            s.execute("PRAGMA temp_store = 2");
+            s.execute("PRAGMA journal_size_limit = " + (4L << 20));
+        } finally {
+            s.close();
+        }
+        return new BenchmarkDatabase(file, connection);
+    }
+
+    // 新装应用的最新结构
+    static BenchmarkDatabase createCurrent(String synchronous) throws IOException, SQLException {
+        BenchmarkDatabase db = createEmpty(synchronous);
+        db.execute(NotePadSchema.notesTableSql(NotePadSchema.NOTES),
+                NotePadSchema.INDEX_UUID_SQL,
+                NotePadSchema.INDEX_DIRTY_SQL,
+                NotePadSchema.INDEX_TRASH_SQL,
+                NotePadSchema.TOMBSTONES_TABLE_SQL,
+                NotePadSchema.SEARCH_TERMS_TABLE_SQL);
+        return db;
+    }
+
+    void execute(String... statements) throws SQLException {
+        Statement s = connection.createStatement();
+        try {
+            for (String sql : statements) {
+                s.execute(sql);
+            }
+        } finally {
+            s.close();
+        }
+    }
+
+    /**
+     * 在一个事务中插入rows条笔记，与Provider.bulkInsert相同。
+     */
+    void seed(int rows) throws SQLException {
+        Note[] notes = generate(rows, SEED);
+        connection.setAutoCommit(false);
+        try {
+            PreparedStatement insert = connection.prepareStatement(INSERT_SQL);
+            try {
+                for (Note note : notes) {
+                    bindInsert(insert, note);
+                    insert.executeUpdate();
+                }
+            } finally {
+                insert.close();
+            }
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    static void bindInsert(PreparedStatement insert, Note note) throws SQLException {
+        insert.setString(1, note.title);
+        insert.setString(2, note.body);
+        insert.setString(3, note.category);
+        insert.setLong(4, note.createdTime);
+        insert.setString(5, note.uuid);
+        insert.setLong(6, note.createdTime);
+        insert.setInt(7, 1);
+    }
+
+    void close() {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+        file.delete();
+        new File(file.getPath() + "-journal").delete();
+    }
+
+    static final class Note {
+        final String title;
+        final String body;
+        final String category;
+        final long createdTime;
+        final String uuid;
+
+        Note(String title, String body, String category, long createdTime, String uuid) {
+            this.title = title;
+            this.body = body;
+            this.category = category;
+            this.createdTime = createdTime;
+            this.uuid = uuid;
+        }
+    }
+
+    static Note[] generate(int rows, long seed) {
+        Random random = new Random(seed);
+        long base = 1700000000000L;
+        Note[] notes = new Note[rows];
+        for (int i = 0; i < rows; i++) {
+            String title = words(random, 2 + random.nextInt(4));
+            String body = words(random, 20 + random.nextInt(180));
+            if (random.nextInt(20) == 0) {
+                body = body + " " + KEYWORD;
+            }
+            String uuid = new UUID(random.nextLong(), random.nextLong()).toString().replace("-", "");
+            notes[i] = new Note(title, body, CATEGORIES[random.nextInt(CATEGORIES.length)], base + i * 60000L, uuid);
+        }
+        return notes;
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 与SQLiteQueryBuilder.buildQueryString对Provider查询生成的语句相同。
+     */
+    static String select(String[] projection, String selection, String orderBy) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        if (projection == null) {
+            sql.append('*');
+        } else {
+            for (int i = 0; i < projection.length; i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(projection[i]);
+            }
+        }
+        sql.append(" FROM ").append(NotePadSchema.NOTES);
+        if (selection != null) {
+            sql.append(" WHERE ").append(selection);
+        }
+        if (orderBy != null) {
+            sql.append(" ORDER BY ").append(orderBy);
+        }
+        return sql.toString();
+    }
+
+    static void bind(PreparedStatement statement, String[] args) throws SQLException {
+        if (args == null) {
+            return;
+        }
+        for (int i = 0; i < args.length; i++) {
+            statement.setString(i + 1, args[i]);
+        }
+    }
+
+    /**
+     * 读出结果集的全部行和列，相当于Provider中getCount()触发的CursorWindow填充。返回行数。
+     */
+    static int drain(ResultSet rs, Blackhole bh) throws SQLException {
+        int columns = rs.getMetaData().getColumnCount();
+        int rows = 0;
+        while (rs.next()) {
+            for (int i = 1; i <= columns; i++) {
+                bh.consume(rs.getObject(i));
+            }
+            rows++;
+        }
+        return rows;
+    }
+}
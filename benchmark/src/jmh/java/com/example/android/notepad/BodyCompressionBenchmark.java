@@ -0,0 +1,235 @@
+package com.example.android.notepad;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 长正文压缩存储：同样的笔记分别以明文和压缩格式（见BodyCodec）写入两个库，对比列表查询、读取一篇正文
+ * （压缩时含解压）的耗时，以及保存时压缩、读取时解压本身的耗时；关键字搜索在压缩行的检索词中查找、不解压，
+ * 与明文库中的同一查询对比。构建结束后输出压缩率（含检索词）与两个库的文件大小。
+ * 每篇正文由若干行组成，部分行在笔记内重复出现（会议纪要中的固定栏目、导入文档的页眉等）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class BodyCompressionBenchmark {
+    private static final int NOTES = 500;
+    private static final long NOTE_ID = NOTES / 2;
+    private static final String READ_SQL = "SELECT " + NotePadSchema.NOTE + ", " + NotePadSchema.NOTE_DATA + " FROM "
+            + NotePadSchema.NOTES + " WHERE " + NotePadSchema.ID + " = ?";
+
+    // 刚过压缩门槛的长笔记与导入的大文档
+    @Param({"10000", "100000"})
+    public int chars;
+
+    private BenchmarkDatabase plain;
+    private BenchmarkDatabase compressed;
+    private String body;
+    private byte[] data;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Random random = new Random(BenchmarkDatabase.SEED);
+        String[] bodies = new String[NOTES];
+        for (int i = 0; i < NOTES; i++) {
+            bodies[i] = body(random, chars);
+        }
+        body = bodies[(int) NOTE_ID - 1];
+        data = BodyCodec.encode(body);
+
+        plain = BenchmarkDatabase.createCurrent("OFF");
+        compressed = BenchmarkDatabase.createCurrent("OFF");
+        long rawBytes = 0;
+        long storedBytes = 0;
+        int compressedCount = 0;
+        plain.connection.setAutoCommit(false);
+        compressed.connection.setAutoCommit(false);
+        PreparedStatement insertPlain = plain.connection.prepareStatement(BenchmarkDatabase.INSERT_SQL);
+        PreparedStatement insertCompressed = compressed.connection.prepareStatement(BenchmarkDatabase.INSERT_SQL);
+        PreparedStatement compress = compressed.connection.prepareStatement(NotePadSchema.COMPRESS_BODY_SQL);
+        PreparedStatement terms = compressed.connection.prepareStatement(NotePadSchema.INSERT_SEARCH_TERMS_SQL);
+        try {
+            for (int i = 0; i < NOTES; i++) {
+                BenchmarkDatabase.Note note = new BenchmarkDatabase.Note("标题" + i, bodies[i],
+                        BenchmarkDatabase.CATEGORIES[i % BenchmarkDatabase.CATEGORIES.length],
+                        System.currentTimeMillis() - i, "uuid-" + i);
+                BenchmarkDatabase.bindInsert(insertPlain, note);
+                insertPlain.executeUpdate();
+                BenchmarkDatabase.bindInsert(insertCompressed, note);
+                insertCompressed.executeUpdate();
+                rawBytes += bodies[i].getBytes(StandardCharsets.UTF_8).length;
+                byte[] encoded = BodyCodec.encode(bodies[i]);
+                if (encoded == null) {
+                    storedBytes += bodies[i].getBytes(StandardCharsets.UTF_8).length;
+                    continue;
+                }
+                // 与NoteBodies.encode写入的两列及NoteBodies.index写入的检索词相同
+                String head = BodyCodec.head(bodies[i]);
+                compress.setString(1, head);
+                compress.setBytes(2, encoded);
+                compress.setLong(3, i + 1);
+                compress.executeUpdate();
+                String words = BodyMatches.terms(bodies[i]);
+                terms.setLong(1, i + 1);
+                terms.setInt(2, bodies[i].length());
+                terms.setString(3, words);
+                terms.executeUpdate();
+                storedBytes += head.getBytes(StandardCharsets.UTF_8).length + encoded.length
+                        + words.getBytes(StandardCharsets.UTF_8).length;
+                compressedCount++;
+            }
+            plain.connection.commit();
+            compressed.connection.commit();
+        } finally {
+            insertPlain.close();
+            insertCompressed.close();
+            compress.close();
+            terms.close();
+            plain.connection.setAutoCommit(true);
+            compressed.connection.setAutoCommit(true);
+        }
+        plain.execute("VACUUM", "ANALYZE");
+        compressed.execute("VACUUM", "ANALYZE");
+
+        System.out.println();
+        System.out.println(String.format(Locale.US,
+                "[%d chars] compressed=%d/%d bodies=%dKB stored=%dKB (%.1f%%) file plain=%dKB compressed=%dKB",
+                chars, compressedCount, NOTES, rawBytes / 1024, storedBytes / 1024, 100.0 * storedBytes / rawBytes,
+                plain.file.length() / 1024, compressed.file.length() / 1024));
+    }
+
+    // 由若干行组成的正文，约三分之一的行是笔记内重复出现的固定内容
+    private static String body(Random random, int chars) {
+        String[] repeated = new String[8];
+        for (int i = 0; i < repeated.length; i++) {
+            repeated[i] = SearchIndexBenchmark.text(random, 20 + random.nextInt(40)) + "\n";
+        }
+        StringBuilder sb = new StringBuilder(chars + 128);
+        while (sb.length() < chars) {
+            sb.append(random.nextInt(3) == 0 ? repeated[random.nextInt(repeated.length)]
+                    : SearchIndexBenchmark.text(random, 20 + random.nextInt(80)) + "\n");
+        }
+        return sb.toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        plain.close();
+        compressed.close();
+    }
+
+    // 列表投影不含正文，两种存储读到的列相同，压缩数据不被读出
+    @Benchmark
+    public int listPlain(Blackhole bh) throws SQLException {
+        return list(plain, bh);
+    }
+
+    @Benchmark
+    public int listCompressed(Blackhole bh) throws SQLException {
+        return list(compressed, bh);
+    }
+
+    @Benchmark
+    public String readBodyPlain() throws SQLException {
+        return read(plain);
+    }
+
+    // 与NoteBodies.wrap包装的游标读取note列相同：有note_data时解压
+    @Benchmark
+    public String readBodyCompressed() throws SQLException {
+        return read(compressed);
+    }
+
+    // 保存一篇正文时的压缩开销（NoteBodies.encode）
+    @Benchmark
+    public byte[] encode() {
+        return BodyCodec.encode(body);
+    }
+
+    @Benchmark
+    public String decode() {
+        return BodyCodec.decode(data);
+    }
+
+    // 列表的关键字搜索：明文库在完整的note列中查找
+    @Benchmark
+    public int searchPlain(Blackhole bh) throws SQLException {
+        return search(plain, bh);
+    }
+
+    // 与Provider相同：压缩行在note列的开头与检索词中查找，不解压
+    @Benchmark
+    public int searchCompressed(Blackhole bh) throws SQLException {
+        return search(compressed, bh);
+    }
+
+    private static int search(BenchmarkDatabase db, Blackhole bh) throws SQLException {
+        PreparedStatement statement = db.connection.prepareStatement(BenchmarkDatabase.select(
+                NotePadSchema.LIST_PROJECTION,
+                NotePadSchema.liveSelection(NotePadSchema.filterSelection(BenchmarkDatabase.KEYWORD, null)),
+                NotePadSchema.DEFAULT_SORT_ORDER));
+        try {
+            BenchmarkDatabase.bind(statement, NotePadSchema.filterArgs(BenchmarkDatabase.KEYWORD, null));
+            ResultSet rs = statement.executeQuery();
+            try {
+                return BenchmarkDatabase.drain(rs, bh);
+            } finally {
+                rs.close();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    private static int list(BenchmarkDatabase db, Blackhole bh) throws SQLException {
+        PreparedStatement statement = db.connection.prepareStatement(BenchmarkDatabase.select(
+                NotePadSchema.LIST_PROJECTION, NotePadSchema.LIVE_SELECTION, NotePadSchema.DEFAULT_SORT_ORDER));
+        try {
+            ResultSet rs = statement.executeQuery();
+            try {
+                return BenchmarkDatabase.drain(rs, bh);
+            } finally {
+                rs.close();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    private static String read(BenchmarkDatabase db) throws SQLException {
+        PreparedStatement statement = db.connection.prepareStatement(READ_SQL);
+        try {
+            statement.setLong(1, NOTE_ID);
+            ResultSet rs = statement.executeQuery();
+            try {
+                rs.next();
+                return BodyCodec.body(rs.getString(1), rs.getBytes(2));
+            } finally {
+                rs.close();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+}
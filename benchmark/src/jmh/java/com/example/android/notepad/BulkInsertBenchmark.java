@@ -0,0 +1,75 @@
+package com.example.android.notepad;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provider.bulkInsert：整批在一个事务中逐行插入空表。
+ * synchronous对应PerformanceProfile的两种预设：FULL为interactive，OFF为bulk-import。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class BulkInsertBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    @Param({"FULL", "OFF"})
+    public String synchronous;
+
+    private BenchmarkDatabase.Note[] notes;
+    private BenchmarkDatabase db;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        notes = BenchmarkDatabase.generate(rows, BenchmarkDatabase.SEED);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        db = BenchmarkDatabase.createCurrent(synchronous);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    public int bulkInsert() throws SQLException {
+        int count = 0;
+        db.connection.setAutoCommit(false);
+        try {
+            PreparedStatement insert = db.connection.prepareStatement(BenchmarkDatabase.INSERT_SQL);
+            try {
+                for (BenchmarkDatabase.Note note : notes) {
+                    BenchmarkDatabase.bindInsert(insert, note);
+                    count += insert.executeUpdate();
+                }
+            } finally {
+                insert.close();
+            }
+            db.connection.commit();
+        } finally {
+            db.connection.setAutoCommit(true);
+        }
+        return count;
+    }
+}
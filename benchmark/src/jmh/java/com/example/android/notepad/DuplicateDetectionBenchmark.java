@@ -0,0 +1,218 @@
+package com.example.android.notepad;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 近似重复检测：单篇笔记写入时的签名计算，Provider的notes/#/similar与duplicates两条查询路径。
+ * 数据集中约2%的笔记是另一篇改动了结尾的副本；查找全部重复组的耗时应随行数线性增长。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class DuplicateDetectionBenchmark {
+    @Param({"10000", "100000"})
+    public int rows;
+
+    private BenchmarkDatabase db;
+    private String title;
+    private String body;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = BenchmarkDatabase.createCurrent("OFF");
+        db.execute(NotePadSchema.SIGNATURES_TABLE_SQL, NotePadSchema.LSH_TABLE_SQL, NotePadSchema.INDEX_LSH_NOTE_SQL);
+        Random random = new Random(BenchmarkDatabase.SEED);
+        db.connection.setAutoCommit(false);
+        PreparedStatement insert = db.connection.prepareStatement(
+                "INSERT INTO " + NotePadSchema.NOTES + " (" + NotePadSchema.TITLE + ", " + NotePadSchema.NOTE
+                        + ") VALUES (?, ?)");
+        PreparedStatement signature = db.connection.prepareStatement(NotePadSchema.INSERT_SIGNATURE_SQL);
+        PreparedStatement bucket = db.connection.prepareStatement(NotePadSchema.INSERT_BUCKET_SQL);
+        try {
+            String previousTitle = null;
+            String previousBody = null;
+            for (int id = 1; id <= rows; id++) {
+                String noteTitle;
+                String noteBody;
+                if (previousBody != null && random.nextInt(50) == 0) {
+                    noteTitle = previousTitle;
+                    noteBody = previousBody.substring(0, previousBody.length() * 9 / 10)
+                            + SearchIndexBenchmark.text(random, previousBody.length() / 10);
+                } else {
+                    noteTitle = SearchIndexBenchmark.text(random, 4 + random.nextInt(12));
+                    noteBody = SearchIndexBenchmark.text(random, 50 + random.nextInt(400));
+                }
+                insert.setString(1, noteTitle);
+                insert.setString(2, noteBody);
+                insert.executeUpdate();
+                // 与NearDuplicates写入签名的语句相同
+                int[] sig = MinHash.signature(noteTitle, noteBody);
+                signature.setLong(1, id);
+                signature.setBytes(2, MinHash.toBlob(sig));
+                signature.executeUpdate();
+                for (int band = 0; sig != null && band < MinHash.BANDS; band++) {
+                    bucket.setLong(1, band);
+                    bucket.setLong(2, MinHash.bandKey(sig, band));
+                    bucket.setLong(3, id);
+                    bucket.executeUpdate();
+                }
+                previousTitle = noteTitle;
+                previousBody = noteBody;
+            }
+            db.connection.commit();
+        } finally {
+            insert.close();
+            signature.close();
+            bucket.close();
+            db.connection.setAutoCommit(true);
+        }
+        db.execute("ANALYZE");
+        title = SearchIndexBenchmark.text(random, 10);
+        body = SearchIndexBenchmark.text(random, 400);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+    }
+
+    // Provider每次插入或修改标题/内容时的额外计算
+    @Benchmark
+    public int[] signature() {
+        return MinHash.signature(title, body);
+    }
+
+    // notes/#/similar：同桶候选，再用签名核对
+    @Benchmark
+    public int similar() throws SQLException {
+        long id = rows / 2;
+        int[] target = loadSignatures(Arrays.asList(id)).get(id);
+        List<Long> candidates = new ArrayList<>();
+        PreparedStatement statement = db.connection.prepareStatement(NotePadSchema.SIMILAR_CANDIDATES_SQL);
+        try {
+            statement.setLong(1, id);
+            ResultSet rs = statement.executeQuery();
+            try {
+                while (rs.next()) {
+                    candidates.add(rs.getLong(1));
+                }
+            } finally {
+                rs.close();
+            }
+        } finally {
+            statement.close();
+        }
+        int similar = 0;
+        for (int[] signature : loadSignatures(candidates).values()) {
+            if (target != null && MinHash.similarity(target, signature) >= MinHash.THRESHOLD) {
+                similar++;
+            }
+        }
+        return similar;
+    }
+
+    // duplicates：扫描共用桶的行，加载这些笔记的签名后分组
+    @Benchmark
+    public List<long[]> duplicates() throws SQLException {
+        List<Long> members = new ArrayList<>();
+        List<long[]> buckets = new ArrayList<>();
+        PreparedStatement statement = db.connection.prepareStatement(NotePadSchema.SHARED_BUCKETS_SQL);
+        try {
+            ResultSet rs = statement.executeQuery();
+            try {
+                long band = -1;
+                long bucket = 0;
+                long[] current = new long[8];
+                int count = 0;
+                while (rs.next()) {
+                    if (rs.getLong(1) != band || rs.getLong(2) != bucket) {
+                        if (count > 1) {
+                            buckets.add(Arrays.copyOf(current, count));
+                        }
+                        band = rs.getLong(1);
+                        bucket = rs.getLong(2);
+                        count = 0;
+                    }
+                    if (count == current.length) {
+                        current = Arrays.copyOf(current, count * 2);
+                    }
+                    current[count++] = rs.getLong(3);
+                    members.add(rs.getLong(3));
+                }
+                if (count > 1) {
+                    buckets.add(Arrays.copyOf(current, count));
+                }
+            } finally {
+                rs.close();
+            }
+        } finally {
+            statement.close();
+        }
+        MinHash.Grouper grouper = new MinHash.Grouper(loadSignatures(members));
+        for (long[] bucket : buckets) {
+            grouper.addBucket(bucket, bucket.length);
+        }
+        return grouper.groups();
+    }
+
+    private Map<Long, int[]> loadSignatures(List<Long> ids) throws SQLException {
+        long[] unique = new long[ids.size()];
+        for (int i = 0; i < unique.length; i++) {
+            unique[i] = ids.get(i);
+        }
+        Arrays.sort(unique);
+        Map<Long, int[]> signatures = new HashMap<>();
+        StringBuilder in = new StringBuilder();
+        for (int i = 0; i < unique.length; i++) {
+            if (i == 0 || unique[i] != unique[i - 1]) {
+                in.append(in.length() > 0 ? "," : "").append(unique[i]);
+            }
+        }
+        if (in.length() == 0) {
+            return signatures;
+        }
+        PreparedStatement statement = db.connection.prepareStatement("SELECT " + NotePadSchema.NOTE_ID + ", "
+                + NotePadSchema.SIGNATURE + " FROM " + NotePadSchema.SIGNATURES
+                + " WHERE " + NotePadSchema.NOTE_ID + " IN (" + in + ")");
+        try {
+            ResultSet rs = statement.executeQuery();
+            try {
+                while (rs.next()) {
+                    int[] signature = MinHash.fromBlob(rs.getBytes(2));
+                    if (signature != null) {
+                        signatures.put(rs.getLong(1), signature);
+                    }
+                }
+            } finally {
+                rs.close();
+            }
+        } finally {
+            statement.close();
+        }
+        return signatures;
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.android.notepad;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 手动排序：把一篇笔记移到列表中部，小数位置只更新这一行，对比按整数序号排序时给其后的行全部加一；
+ * 以及间隔耗尽后的整体重排和按手动顺序读取首屏。写入在事务内执行后回滚，每次测量的数据相同。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class ManualOrderBenchmark {
+    private static final int PAGE = 50;
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    private BenchmarkDatabase db;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = BenchmarkDatabase.createCurrent("OFF");
+        db.execute(NotePadSchema.INDEX_POSITION_SQL);
+        db.connection.setAutoCommit(false);
+        PreparedStatement insert = db.connection.prepareStatement(
+                "INSERT INTO " + NotePadSchema.NOTES + " (" + NotePadSchema.TITLE + ", " + NotePadSchema.POSITION
+                        + ") VALUES (?, ?)");
+        try {
+            for (int i = 0; i < rows; i++) {
+                insert.setString(1, "笔记" + i);
+                insert.setDouble(2, FractionalPosition.rebalanced(i));
+                insert.executeUpdate();
+            }
+            db.connection.commit();
+        } finally {
+            insert.close();
+            db.connection.setAutoCommit(true);
+        }
+        db.execute("ANALYZE");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+    }
+
+    // 第一篇移到中部那篇之后：读两个相邻位置，更新一行，与ManualOrder.move相同
+    @Benchmark
+    public double moveFractional() throws SQLException {
+        long id = 1;
+        long afterId = rows / 2;
+        db.connection.setAutoCommit(false);
+        try {
+            double previous = queryPosition(NotePadSchema.POSITION_OF_SQL, 2, String.valueOf(afterId));
+            double next = queryPosition(NotePadSchema.NEXT_POSITION_SQL, 1,
+                    "0", String.valueOf(previous), String.valueOf(id));
+            double position = FractionalPosition.between(previous, next);
+            update(NotePadSchema.SET_POSITION_SQL, 0, position, id);
+            return position;
+        } finally {
+            db.connection.rollback();
+            db.connection.setAutoCommit(true);
+        }
+    }
+
+    // 整数序号的做法：目标之后的行全部后移一位再放入，改写的行数随列表长度增长
+    @Benchmark
+    public int moveRenumber() throws SQLException {
+        long id = 1;
+        double target = FractionalPosition.rebalanced(rows / 2);
+        db.connection.setAutoCommit(false);
+        try {
+            PreparedStatement shift = db.connection.prepareStatement("UPDATE " + NotePadSchema.NOTES + " SET "
+                    + NotePadSchema.POSITION + " = " + NotePadSchema.POSITION + " + 1 WHERE "
+                    + NotePadSchema.POSITION + " >= ?");
+            int shifted;
+            try {
+                shift.setDouble(1, target);
+                shifted = shift.executeUpdate();
+            } finally {
+                shift.close();
+            }
+            update(NotePadSchema.SET_POSITION_SQL, 0, target, id);
+            return shifted;
+        } finally {
+            db.connection.rollback();
+            db.connection.setAutoCommit(true);
+        }
+    }
+
+    // 后台重排：按当前顺序读出全部id，逐行写入等间隔位置，与ManualOrder.rebalance相同
+    @Benchmark
+    public int rebalance() throws SQLException {
+        db.connection.setAutoCommit(false);
+        try {
+            long[] ids = new long[rows];
+            int count = 0;
+            PreparedStatement read = db.connection.prepareStatement(NotePadSchema.ORDERED_IDS_SQL);
+            try {
+                ResultSet rs = read.executeQuery();
+                while (rs.next()) {
+                    ids[count++] = rs.getLong(1);
+                }
+                rs.close();
+            } finally {
+                read.close();
+            }
+            PreparedStatement update = db.connection.prepareStatement(NotePadSchema.UPDATE_POSITION_SQL);
+            try {
+                for (int i = 0; i < count; i++) {
+                    update.setDouble(1, FractionalPosition.rebalanced(i));
+                    update.setLong(2, ids[i]);
+                    update.executeUpdate();
+                }
+            } finally {
+                update.close();
+            }
+            return count;
+        } finally {
+            db.connection.rollback();
+            db.connection.setAutoCommit(true);
+        }
+    }
+
+    // 按手动顺序读取首屏，走notes_position索引
+    @Benchmark
+    public int firstPage() throws SQLException {
+        PreparedStatement statement = db.connection.prepareStatement("SELECT " + NotePadSchema.ID + ", "
+                + NotePadSchema.TITLE + " FROM " + NotePadSchema.NOTES + " ORDER BY "
+                + NotePadSchema.MANUAL_SORT_ORDER + " LIMIT " + PAGE);
+        try {
+            ResultSet rs = statement.executeQuery();
+            int count = 0;
+            try {
+                while (rs.next()) {
+                    count++;
+                }
+            } finally {
+                rs.close();
+            }
+            return count;
+        } finally {
+            statement.close();
+        }
+    }
+
+    private double queryPosition(String sql, int column, String... args) throws SQLException {
+        PreparedStatement statement = db.connection.prepareStatement(sql);
+        try {
+            BenchmarkDatabase.bind(statement, args);
+            ResultSet rs = statement.executeQuery();
+            try {
+                return rs.next() ? rs.getDouble(column) : Double.NaN;
+            } finally {
+                rs.close();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    private void update(String sql, int pinned, double position, long id) throws SQLException {
+        PreparedStatement statement = db.connection.prepareStatement(sql);
+        try {
+            statement.setInt(1, pinned);
+            statement.setDouble(2, position);
+            statement.setLong(3, id);
+            statement.executeUpdate();
+        } finally {
+            statement.close();
+        }
+    }
+}
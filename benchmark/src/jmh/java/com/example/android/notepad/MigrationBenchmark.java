@@ -0,0 +1,211 @@
+package com.example.android.notepad;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大库升级的耗时，对应NotePadMigrations的步骤：
+ * <ul>
+ *   <li>v4→v5结构切换：加列、建索引、建墓碑表（在启动路径上执行）</li>
+ *   <li>v5回填：每批500行、每批一个事务，直到全部完成（在后台执行）</li>
+ *   <li>v5→v6重建notes表（在启动路径上执行）</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+public class MigrationBenchmark {
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    // 旧版onCreate：created_time的默认值是建库时刻的常量
+    private static String legacyNotesSql() {
+        return "CREATE TABLE " + NotePadSchema.NOTES + " ("
+                + NotePadSchema.ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + NotePadSchema.TITLE + " TEXT NOT NULL, "
+                + NotePadSchema.NOTE + " TEXT, "
+                + NotePadSchema.CREATED_TIME + " INTEGER DEFAULT " + System.currentTimeMillis() + ", "
+                + NotePadSchema.CATEGORY + " TEXT DEFAULT '默认分类'"
+                + ");";
+    }
+
+    private static BenchmarkDatabase createLegacyV4(int rows) throws Exception {
+        BenchmarkDatabase db = BenchmarkDatabase.createEmpty("FULL");
+        db.execute(legacyNotesSql());
+        db.connection.setAutoCommit(false);
+        try {
+            PreparedStatement insert = db.connection.prepareStatement("INSERT INTO " + NotePadSchema.NOTES + " ("
+                    + NotePadSchema.TITLE + ", " + NotePadSchema.NOTE + ", " + NotePadSchema.CATEGORY + ", "
+                    + NotePadSchema.CREATED_TIME + ") VALUES (?, ?, ?, ?)");
+            try {
+                for (BenchmarkDatabase.Note note : BenchmarkDatabase.generate(rows, BenchmarkDatabase.SEED)) {
+                    insert.setString(1, note.title);
+                    insert.setString(2, note.body);
+                    insert.setString(3, note.category);
+                    insert.setLong(4, note.createdTime);
+                    insert.executeUpdate();
+                }
+            } finally {
+                insert.close();
+            }
+            db.connection.commit();
+        } finally {
+            db.connection.setAutoCommit(true);
+        }
+        return db;
+    }
+
+    // 与NotePadMigrations第5步的结构切换相同
+    private static void flipToV5(BenchmarkDatabase db) throws SQLException {
+        inTransaction(db, "ALTER TABLE " + NotePadSchema.NOTES + " ADD COLUMN " + NotePadSchema.MODIFIED_TIME + " INTEGER DEFAULT 0",
+                "ALTER TABLE " + NotePadSchema.NOTES + " ADD COLUMN " + NotePadSchema.UUID + " TEXT",
+                "ALTER TABLE " + NotePadSchema.NOTES + " ADD COLUMN " + NotePadSchema.DIRTY + " INTEGER DEFAULT 1",
+                NotePadSchema.INDEX_UUID_SQL,
+                NotePadSchema.INDEX_DIRTY_SQL,
+                NotePadSchema.TOMBSTONES_TABLE_SQL);
+    }
+
+    private static int backfill(BenchmarkDatabase db) throws SQLException {
+        int total = 0;
+        while (true) {
+            int rows;
+            db.connection.setAutoCommit(false);
+            try {
+                Statement s = db.connection.createStatement();
+                try {
+                    rows = s.executeUpdate(NotePadSchema.syncBackfillSql(BACKFILL_BATCH_SIZE));
+                } finally {
+                    s.close();
+                }
+                db.connection.commit();
+            } finally {
+                db.connection.setAutoCommit(true);
+            }
+            if (rows == 0) {
+                return total;
+            }
+            total += rows;
+        }
+    }
+
+    private static void inTransaction(BenchmarkDatabase db, String... statements) throws SQLException {
+        db.connection.setAutoCommit(false);
+        try {
+            db.execute(statements);
+            db.connection.commit();
+        } finally {
+            db.connection.setAutoCommit(true);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class LegacyV4 {
+        @Param({"10000", "100000"})
+        public int rows;
+
+        BenchmarkDatabase db;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws Exception {
+            db = createLegacyV4(rows);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            db.close();
+        }
+    }
+
+    // 已完成v5结构切换、尚未回填
+    @State(Scope.Benchmark)
+    public static class FlippedV5 {
+        @Param({"10000", "100000"})
+        public int rows;
+
+        BenchmarkDatabase db;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws Exception {
+            db = createLegacyV4(rows);
+            flipToV5(db);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            db.close();
+        }
+    }
+
+    // 回填完成的v5库，created_time默认值仍是旧的常量
+    @State(Scope.Benchmark)
+    public static class BackfilledV5 {
+        @Param({"10000", "100000"})
+        public int rows;
+
+        BenchmarkDatabase db;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws Exception {
+            db = createLegacyV4(rows);
+            flipToV5(db);
+            backfill(db);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            db.close();
+        }
+    }
+
+    @Benchmark
+    public void v4ToV5SchemaFlip(LegacyV4 state) throws SQLException {
+        flipToV5(state.db);
+    }
+
+    @Benchmark
+    public int v5Backfill(FlippedV5 state) throws SQLException {
+        return backfill(state.db);
+    }
+
+    // 与NotePadMigrations第6步相同
+    @Benchmark
+    public void v5ToV6Rebuild(BackfilledV5 state) throws SQLException {
+        BenchmarkDatabase db = state.db;
+        String rebuilt = NotePadSchema.NOTES + "_rebuild";
+        long sequence;
+        Statement s = db.connection.createStatement();
+        try {
+            ResultSet rs = s.executeQuery("SELECT seq FROM sqlite_sequence WHERE name = '" + NotePadSchema.NOTES + "'");
+            try {
+                sequence = rs.next() ? rs.getLong(1) : 0;
+            } finally {
+                rs.close();
+            }
+        } finally {
+            s.close();
+        }
+        inTransaction(db, NotePadSchema.notesTableSql(rebuilt),
+                NotePadSchema.copyNotesSql(NotePadSchema.NOTES, rebuilt),
+                "DROP TABLE " + NotePadSchema.NOTES,
+                "ALTER TABLE " + rebuilt + " RENAME TO " + NotePadSchema.NOTES,
+                NotePadSchema.INDEX_UUID_SQL,
+                NotePadSchema.INDEX_DIRTY_SQL,
+                "UPDATE sqlite_sequence SET seq = MAX(seq, " + sequence + ") WHERE name = '" + NotePadSchema.NOTES + "'");
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.android.notepad;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provider读路径与单条写路径：列表加载、分类筛选、关键字搜索（含摘要）、单条读取、单条更新、移入回收站和删除。
+ * 列表类查询与Provider一样只取不在回收站中的笔记。
+ * 每个语句在每次调用时重新prepare，与Provider每次query()重新编译语句的开销一致。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class NoteQueryBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private BenchmarkDatabase db;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = BenchmarkDatabase.createCurrent("FULL");
+        db.seed(rows);
+        db.execute("ANALYZE");
+        random = new Random(BenchmarkDatabase.SEED);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+    }
+
+    private int query(String selection, String[] args, String[] projection, String orderBy, Blackhole bh)
+            throws SQLException {
+        PreparedStatement statement = db.connection.prepareStatement(
+                BenchmarkDatabase.select(projection, selection, orderBy));
+        try {
+            BenchmarkDatabase.bind(statement, args);
+            ResultSet rs = statement.executeQuery();
+            try {
+                return BenchmarkDatabase.drain(rs, bh);
+            } finally {
+                rs.close();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    // NotesList未筛选时的完整列表
+    @Benchmark
+    public int listLoad(Blackhole bh) throws SQLException {
+        return query(NotePadSchema.LIVE_SELECTION, null, NotePadSchema.LIST_PROJECTION,
+                NotePadSchema.DEFAULT_SORT_ORDER, bh);
+    }
+
+    @Benchmark
+    public int categoryFilter(Blackhole bh) throws SQLException {
+        String category = BenchmarkDatabase.CATEGORIES[1];
+        return query(NotePadSchema.liveSelection(NotePadSchema.filterSelection(null, category)),
+                NotePadSchema.filterArgs(null, category), NotePadSchema.LIST_PROJECTION, NotePadSchema.DEFAULT_SORT_ORDER, bh);
+    }
+
+    @Benchmark
+    public int keywordSearch(Blackhole bh) throws SQLException {
+        String keyword = BenchmarkDatabase.KEYWORD;
+        return query(NotePadSchema.liveSelection(NotePadSchema.filterSelection(keyword, null)),
+                NotePadSchema.filterArgs(keyword, null), NotePadSchema.LIST_PROJECTION, NotePadSchema.DEFAULT_SORT_ORDER, bh);
+    }
+
+    // 同样的搜索附带命中摘要：摘要在库内截取，与keywordSearch的差值即摘要的开销
+    @Benchmark
+    public int keywordSearchWithSnippets(Blackhole bh) throws SQLException {
+        String keyword = BenchmarkDatabase.KEYWORD;
+        return query(NotePadSchema.liveSelection(NotePadSchema.filterSelection(keyword, null)),
+                NotePadSchema.filterArgs(keyword, null), NotePadSchema.expandSearchColumns(NotePadSchema.SEARCH_PROJECTION, keyword),
+                NotePadSchema.DEFAULT_SORT_ORDER, bh);
+    }
+
+    // NoteEditor按notes/#读取整行
+    @Benchmark
+    public int singleNoteRead(Blackhole bh) throws SQLException {
+        String id = String.valueOf(1 + random.nextInt(rows));
+        return query(NotePadSchema.ID + " = ?", new String[]{id}, null, null, bh);
+    }
+
+    // NoteEditor保存：Provider.update对notes/#，附带修改时间和脏标记
+    @Benchmark
+    public int updateNote() throws SQLException {
+        PreparedStatement statement = db.connection.prepareStatement("UPDATE " + NotePadSchema.NOTES + " SET "
+                + NotePadSchema.TITLE + " = ?, " + NotePadSchema.NOTE + " = ?, "
+                + NotePadSchema.MODIFIED_TIME + " = ?, " + NotePadSchema.DIRTY + " = ? WHERE "
+                + NotePadSchema.ID + " = ?");
+        try {
+            statement.setString(1, "标题 " + random.nextInt());
+            statement.setString(2, "更新后的内容 " + random.nextInt());
+            statement.setLong(3, System.currentTimeMillis());
+            statement.setInt(4, 1);
+            statement.setLong(5, 1 + random.nextInt(rows));
+            return statement.executeUpdate();
+        } finally {
+            statement.close();
+        }
+    }
+
+    // 本地删除：Provider.trashNotes只设置移入回收站的时间这一列；回滚以保持数据集不变
+    @Benchmark
+    public int trashNote() throws SQLException {
+        db.connection.setAutoCommit(false);
+        try {
+            PreparedStatement statement = db.connection.prepareStatement("UPDATE " + NotePadSchema.NOTES + " SET "
+                    + NotePadSchema.DELETED_TIME + " = ? WHERE "
+                    + NotePadSchema.liveSelection(NotePadSchema.ID + " = ?"));
+            try {
+                statement.setLong(1, System.currentTimeMillis());
+                statement.setLong(2, 1 + random.nextInt(rows));
+                return statement.executeUpdate();
+            } finally {
+                statement.close();
+            }
+        } finally {
+            db.connection.rollback();
+            db.connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Provider.deleteNotes（彻底删除、同步引擎的删除）：同一事务中读出uuid、写墓碑、删除行。
+     * 为了不改变数据集，每次调用最后回滚，测得的时间包含回滚开销。
+     */
+    @Benchmark
+    public int deleteNote(Blackhole bh) throws SQLException {
+        String[] args = new String[]{String.valueOf(1 + random.nextInt(rows))};
+        db.connection.setAutoCommit(false);
+        try {
+            PreparedStatement select = db.connection.prepareStatement(
+                    BenchmarkDatabase.select(new String[]{NotePadSchema.UUID}, NotePadSchema.ID + " = ?", null));
+            try {
+                BenchmarkDatabase.bind(select, args);
+                ResultSet rs = select.executeQuery();
+                try {
+                    while (rs.next()) {
+                        PreparedStatement tombstone = db.connection.prepareStatement("INSERT OR REPLACE INTO "
+                                + NotePadSchema.TOMBSTONES + " (" + NotePadSchema.UUID + ", "
+                                + NotePadSchema.DELETED_TIME + ") VALUES (?, ?)");
+                        try {
+                            tombstone.setString(1, rs.getString(1));
+                            tombstone.setLong(2, System.currentTimeMillis());
+                            bh.consume(tombstone.executeUpdate());
+                        } finally {
+                            tombstone.close();
+                        }
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                select.close();
+            }
+            PreparedStatement delete = db.connection.prepareStatement(
+                    "DELETE FROM " + NotePadSchema.NOTES + " WHERE " + NotePadSchema.ID + " = ?");
+            try {
+                BenchmarkDatabase.bind(delete, args);
+                return delete.executeUpdate();
+            } finally {
+                delete.close();
+            }
+        } finally {
+            db.connection.rollback();
+            db.connection.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.android.notepad;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 相关度排序的搜索（Provider的order=ranked）与按时间排序的搜索对比，以及单独的打分与前k名选择。
+ * keyword取两档：BenchmarkDatabase.KEYWORD约5%的笔记包含，“会议”几乎每条都包含（候选数约等于行数）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class RankedSearchBenchmark {
+    private static final int LIMIT = 50;
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    @Param({BenchmarkDatabase.KEYWORD, "会议"})
+    public String keyword;
+
+    private BenchmarkDatabase db;
+    private NoteRanker ranker;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = BenchmarkDatabase.createCurrent("FULL");
+        db.seed(rows);
+        db.execute("ANALYZE");
+        // 纯Java部分的输入：与数据集规模相同的随机候选
+        Random random = new Random(BenchmarkDatabase.SEED);
+        ranker = new NoteRanker(1700000000000L + rows * 60000L, rows);
+        for (int i = 0; i < rows; i++) {
+            ranker.add(i + 1, 1700000000000L + i * 60000L, 5 + random.nextInt(20), 50 + random.nextInt(1000),
+                    random.nextInt(8) == 0 ? 1 : 0, random.nextInt(4));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+    }
+
+    // 原有路径：LIKE筛选后按创建时间倒序，取前LIMIT行
+    @Benchmark
+    public int chronological(Blackhole bh) throws SQLException {
+        PreparedStatement statement = db.connection.prepareStatement(
+                BenchmarkDatabase.select(NotePadSchema.LIST_PROJECTION, NotePadSchema.filterSelection(keyword, null),
+                        NotePadSchema.DEFAULT_SORT_ORDER) + " LIMIT " + LIMIT);
+        try {
+            BenchmarkDatabase.bind(statement, NotePadSchema.filterArgs(keyword, null));
+            ResultSet rs = statement.executeQuery();
+            try {
+                return BenchmarkDatabase.drain(rs, bh);
+            } finally {
+                rs.close();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    // Provider.queryRanked：候选查询、打分选出前LIMIT名、按id取回列表投影
+    @Benchmark
+    public int ranked(Blackhole bh) throws SQLException {
+        NoteRanker ranker = new NoteRanker(System.currentTimeMillis(), 256);
+        PreparedStatement candidates = db.connection.prepareStatement(
+                NoteRanker.candidateSql(NotePadSchema.filterSelection(keyword, null)));
+        try {
+            BenchmarkDatabase.bind(candidates, NoteRanker.candidateArgs(keyword, NotePadSchema.filterArgs(keyword, null)));
+            ResultSet rs = candidates.executeQuery();
+            try {
+                while (rs.next()) {
+                    ranker.add(rs.getLong(1), rs.getLong(2), rs.getInt(3), rs.getInt(4), rs.getInt(5), rs.getInt(6));
+                }
+            } finally {
+                rs.close();
+            }
+        } finally {
+            candidates.close();
+        }
+        long[] ids = ranker.top(LIMIT);
+        StringBuilder in = new StringBuilder(NotePadSchema.ID).append(" IN (");
+        for (int i = 0; i < ids.length; i++) {
+            in.append(i > 0 ? "," : "").append(ids[i]);
+        }
+        in.append(')');
+        PreparedStatement fetch = db.connection.prepareStatement(
+                BenchmarkDatabase.select(NotePadSchema.LIST_PROJECTION, in.toString(), null));
+        try {
+            ResultSet rs = fetch.executeQuery();
+            try {
+                return BenchmarkDatabase.drain(rs, bh);
+            } finally {
+                rs.close();
+            }
+        } finally {
+            fetch.close();
+        }
+    }
+
+    // 只测打分与前k名选择
+    @Benchmark
+    public long[] rankTopK() {
+        return ranker.top(LIMIT);
+    }
+
+    // 对照：同样的打分后对全部候选排序
+    @Benchmark
+    public long[] rankFullSort() {
+        return ranker.top(Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.android.notepad;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 版本历史：保存时记下被覆盖的旧版本（读出已有各行、计算差量、插入一行），以及还原离起点最远的版本与
+ * 直接读取快照的对比。每篇笔记已保存50次，每次改动一到三行；构建结束后输出历史占用与当前正文、
+ * 存完整副本的对比。记录在事务内执行后回滚，每次测量的数据相同。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class RevisionHistoryBenchmark {
+    // 与NotePad.Revisions.MAX_COUNT一致
+    private static final int VERSIONS = 50;
+    private static final int NOTES = 200;
+    private static final long NOTE_ID = NOTES / 2;
+
+    // 典型笔记与长笔记的正文字符数
+    @Param({"2000", "20000"})
+    public int chars;
+
+    private BenchmarkDatabase db;
+    // versions[VERSIONS]为当前正文，其余是历史中的旧版本
+    private String[] versions;
+    private String next;
+    private long deepestId;
+    private long snapshotId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Random random = new Random(BenchmarkDatabase.SEED);
+        versions = new String[VERSIONS + 1];
+        List<String> lines = new ArrayList<>();
+        for (int length = 0; length < chars; ) {
+            String line = SearchIndexBenchmark.text(random, 20 + random.nextInt(80)) + "\n";
+            lines.add(line);
+            length += line.length();
+        }
+        for (int v = 0; v <= VERSIONS; v++) {
+            versions[v] = String.join("", lines);
+            edit(random, lines);
+        }
+        next = String.join("", lines);
+
+        // 按NoteHistory的策略依次保存：第v行在正文由versions[v]改为versions[v + 1]时写入
+        boolean[] snapshots = new boolean[VERSIONS];
+        byte[][] data = new byte[VERSIONS][];
+        for (int v = 0; v < VERSIONS; v++) {
+            boolean[] existing = new boolean[v];
+            for (int i = 0; i < v; i++) {
+                existing[i] = snapshots[v - 1 - i];
+            }
+            byte[] delta = TextDelta.diff(versions[v + 1], versions[v]);
+            snapshots[v] = RevisionChain.needsSnapshot(existing, delta.length, versions[v].length());
+            data[v] = snapshots[v] ? RevisionChain.encodeSnapshot(versions[v]) : delta;
+        }
+
+        db = BenchmarkDatabase.createCurrent("OFF");
+        db.execute(NotePadSchema.REVISIONS_TABLE_SQL, NotePadSchema.INDEX_REVISIONS_NOTE_SQL);
+        db.connection.setAutoCommit(false);
+        PreparedStatement note = db.connection.prepareStatement(BenchmarkDatabase.INSERT_SQL);
+        PreparedStatement insert = db.connection.prepareStatement(NotePadSchema.INSERT_REVISION_SQL);
+        try {
+            for (long id = 1; id <= NOTES; id++) {
+                BenchmarkDatabase.bindInsert(note, new BenchmarkDatabase.Note("标题", versions[VERSIONS],
+                        BenchmarkDatabase.CATEGORIES[0], System.currentTimeMillis(), "uuid-" + id));
+                note.executeUpdate();
+                for (int v = 0; v < VERSIONS; v++) {
+                    bindRevision(insert, id, versions[v], snapshots[v], data[v]);
+                    insert.executeUpdate();
+                }
+            }
+            db.connection.commit();
+        } finally {
+            note.close();
+            insert.close();
+            db.connection.setAutoCommit(true);
+        }
+
+        // 每行到起点的差量数，由新到旧
+        long firstId = (NOTE_ID - 1) * VERSIONS + 1;
+        int deepest = VERSIONS - 1;
+        int snapshot = VERSIONS - 1;
+        int maxDepth = 0;
+        for (int v = VERSIONS - 1, depth = 0; v >= 0; v--) {
+            depth = snapshots[v] ? 0 : depth + 1;
+            if (depth > maxDepth) {
+                maxDepth = depth;
+                deepest = v;
+            }
+            if (snapshots[v]) {
+                snapshot = v;
+            }
+        }
+        deepestId = firstId + deepest;
+        snapshotId = firstId + snapshot;
+        db.execute("ANALYZE");
+
+        long historyBytes = 0;
+        long copyBytes = 0;
+        int snapshotCount = 0;
+        for (int v = 0; v < VERSIONS; v++) {
+            historyBytes += data[v].length;
+            copyBytes += versions[v].getBytes(StandardCharsets.UTF_8).length;
+            snapshotCount += snapshots[v] ? 1 : 0;
+        }
+        long liveBytes = versions[VERSIONS].getBytes(StandardCharsets.UTF_8).length;
+        System.out.println();
+        System.out.println(String.format(Locale.US,
+                "[%d chars] history=%dB (%.2fx live, %.1f%% of full copies) snapshots=%d maxDepth=%d",
+                chars, historyBytes, historyBytes / (double) liveBytes, 100.0 * historyBytes / copyBytes,
+                snapshotCount, maxDepth));
+    }
+
+    // 改动一到三行：改写、插入或删除
+    private static void edit(Random random, List<String> lines) {
+        for (int edits = 1 + random.nextInt(3); edits > 0; edits--) {
+            int at = random.nextInt(lines.size());
+            String line = SearchIndexBenchmark.text(random, 20 + random.nextInt(80)) + "\n";
+            int op = random.nextInt(3);
+            if (op == 0) {
+                lines.set(at, line);
+            } else if (op == 1 || lines.size() < 2) {
+                lines.add(at, line);
+            } else {
+                lines.remove(at);
+            }
+        }
+    }
+
+    private static void bindRevision(PreparedStatement insert, long noteId, String text, boolean snapshot,
+                                     byte[] data) throws SQLException {
+        insert.setLong(1, noteId);
+        insert.setLong(2, System.currentTimeMillis());
+        insert.setString(3, "标题");
+        insert.setInt(4, text.length());
+        insert.setInt(5, snapshot ? 1 : 0);
+        insert.setBytes(6, data);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+    }
+
+    // 与NoteHistory.record相同，不含清理（行数未超过上限）
+    @Benchmark
+    public int record() throws SQLException {
+        String old = versions[VERSIONS];
+        db.connection.setAutoCommit(false);
+        try {
+            List<Boolean> existing = new ArrayList<>();
+            PreparedStatement select = db.connection.prepareStatement(NotePadSchema.REVISION_AGES_SQL);
+            try {
+                select.setLong(1, NOTE_ID);
+                ResultSet rs = select.executeQuery();
+                try {
+                    while (rs.next()) {
+                        existing.add(rs.getInt(2) != 0);
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                select.close();
+            }
+            boolean[] snapshots = new boolean[existing.size()];
+            for (int i = 0; i < snapshots.length; i++) {
+                snapshots[i] = existing.get(i);
+            }
+            byte[] delta = TextDelta.diff(next, old);
+            boolean full = RevisionChain.needsSnapshot(snapshots, delta.length, old.length());
+            PreparedStatement insert = db.connection.prepareStatement(NotePadSchema.INSERT_REVISION_SQL);
+            try {
+                bindRevision(insert, NOTE_ID, old, full, full ? RevisionChain.encodeSnapshot(old) : delta);
+                return insert.executeUpdate();
+            } finally {
+                insert.close();
+            }
+        } finally {
+            db.connection.rollback();
+            db.connection.setAutoCommit(true);
+        }
+    }
+
+    @Benchmark
+    public String reconstructDeepest() throws SQLException {
+        return reconstruct(deepestId);
+    }
+
+    @Benchmark
+    public String reconstructSnapshot() throws SQLException {
+        return reconstruct(snapshotId);
+    }
+
+    // 计算差量本身的耗时（不含读写数据库）
+    @Benchmark
+    public byte[] diff() {
+        return TextDelta.diff(next, versions[VERSIONS]);
+    }
+
+    // 与NoteHistory.reconstruct相同：由旧到新读到快照为止，没有快照时从当前正文出发，再由新到旧执行差量
+    private String reconstruct(long revisionId) throws SQLException {
+        List<byte[]> deltas = new ArrayList<>();
+        String anchor = null;
+        PreparedStatement select = db.connection.prepareStatement(NotePadSchema.REVISION_CHAIN_SQL);
+        try {
+            select.setLong(1, NOTE_ID);
+            select.setLong(2, revisionId);
+            ResultSet rs = select.executeQuery();
+            try {
+                while (anchor == null && rs.next()) {
+                    if (rs.getInt(2) != 0) {
+                        anchor = RevisionChain.decodeSnapshot(rs.getBytes(3));
+                    } else {
+                        deltas.add(0, rs.getBytes(3));
+                    }
+                }
+            } finally {
+                rs.close();
+            }
+        } finally {
+            select.close();
+        }
+        if (anchor == null) {
+            PreparedStatement live = db.connection.prepareStatement(
+                    NotePadSchema.revisionSourceSql(NotePadSchema.ID + " = ?"));
+            try {
+                live.setLong(1, NOTE_ID);
+                ResultSet rs = live.executeQuery();
+                try {
+                    rs.next();
+                    anchor = rs.getString(3);
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                live.close();
+            }
+        }
+        return RevisionChain.rebuild(anchor, deltas);
+    }
+}
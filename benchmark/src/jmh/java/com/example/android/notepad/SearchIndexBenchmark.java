@@ -0,0 +1,104 @@
+package com.example.android.notepad;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NoteSearchIndex单次按键的查询耗时（目标：5万条笔记时低于1ms），以及全量构建耗时。
+ * 正文为中文为主、夹杂英文词的随机文本；构建结束后输出索引的内存估算。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SearchIndexBenchmark {
+    private static final String HANZI = "的一是不了人我在有他这中大来上个国到说们为子和你地出道也时年得就那要下以生会自着去之过家学对可"
+            + "里后小么心多天而能好都然没日于起还发成事只作当想看文无开手十用主行方又如前所本见经头面公同三已老从动两长知民样现分将外"
+            + "但身些与高意进把法此实回二理美点月明其种声全工己话儿者向情部正名定女问力机给等几很业最间新什打便位因重被走电四第门相次"
+            + "议记录周报计划复习读书旅行预算会议项目设计发布";
+    private static final String[] WORDS = {
+            "meeting", "project", "review", "draft", "plan", "release", "design", "notes", "android", "database"
+    };
+
+    @Param({"10000", "50000"})
+    public int rows;
+
+    private NoteSearchIndex index;
+
+    static String text(Random random, int chars) {
+        StringBuilder sb = new StringBuilder(chars + 16);
+        while (sb.length() < chars) {
+            if (random.nextInt(12) == 0) {
+                sb.append(' ').append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            } else {
+                // 两次取小使靠前的常用字更常出现
+                sb.append(HANZI.charAt(Math.min(random.nextInt(HANZI.length()), random.nextInt(HANZI.length()))));
+            }
+        }
+        return sb.toString();
+    }
+
+    static NoteSearchIndex build(int rows) {
+        Random random = new Random(BenchmarkDatabase.SEED);
+        NoteSearchIndex index = new NoteSearchIndex(Long.MAX_VALUE);
+        for (int i = 0; i < rows; i++) {
+            int bodyChars = random.nextInt(10) < 9 ? 50 + random.nextInt(400) : 2000 + random.nextInt(4000);
+            index.put(i + 1, text(random, 4 + random.nextInt(12)), text(random, bodyChars), false,
+                    1700000000000L + i * 60000L, random.nextBoolean() ? "工作" : "生活");
+        }
+        return index;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        index = build(rows);
+        System.out.println();
+        System.out.println("[" + rows + " rows] " + index.describe());
+    }
+
+    // 常见二元组，命中较多
+    @Benchmark
+    public NoteSearchIndex.Hits cjkBigram() {
+        return index.search("会议", null, 500);
+    }
+
+    // 四字短语：三个二元组求交
+    @Benchmark
+    public NoteSearchIndex.Hits cjkPhrase() {
+        return index.search("项目设计", null, 500);
+    }
+
+    // 输入到一半的英文词，按前缀展开
+    @Benchmark
+    public NoteSearchIndex.Hits latinPrefix() {
+        return index.search("proj", null, 500);
+    }
+
+    // 中英混合并按分类过滤
+    @Benchmark
+    public NoteSearchIndex.Hits mixedWithCategory() {
+        return index.search("计划 rev", "工作", 500);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public NoteSearchIndex fullBuild() {
+        return build(rows);
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.android.notepad;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多标签筛选与标签计数：直接在note_tags上连接/分组，对比Provider使用的内存位图（TagIndex）。
+ * 50个标签的使用频率呈长尾分布，每篇笔记0~4个标签；筛选条件组合一个常用标签和两个较少用的标签。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class TagFilterBenchmark {
+    private static final int TAGS = 50;
+    private static final List<String> ALL = Arrays.asList("tag0", "tag3");
+    private static final List<String> ANY = Arrays.asList("tag5", "tag8");
+    private static final List<String> NONE = Collections.singletonList("tag1");
+
+    // 与上面的条件等价的连接查询
+    private static final String SQL_FILTER = "SELECT " + NotePadSchema.ID + " FROM " + NotePadSchema.NOTES
+            + " WHERE " + NotePadSchema.ID + " IN (SELECT nt." + NotePadSchema.NOTE_ID + " FROM "
+            + NotePadSchema.NOTE_TAGS + " nt JOIN " + NotePadSchema.TAGS + " t ON t." + NotePadSchema.ID
+            + " = nt." + NotePadSchema.TAG_ID + " WHERE t." + NotePadSchema.NAME + " IN ('tag0', 'tag3')"
+            + " GROUP BY nt." + NotePadSchema.NOTE_ID + " HAVING count(*) = 2)"
+            + " AND " + NotePadSchema.ID + " IN (SELECT nt." + NotePadSchema.NOTE_ID + " FROM "
+            + NotePadSchema.NOTE_TAGS + " nt JOIN " + NotePadSchema.TAGS + " t ON t." + NotePadSchema.ID
+            + " = nt." + NotePadSchema.TAG_ID + " WHERE t." + NotePadSchema.NAME + " IN ('tag5', 'tag8'))"
+            + " AND " + NotePadSchema.ID + " NOT IN (SELECT nt." + NotePadSchema.NOTE_ID + " FROM "
+            + NotePadSchema.NOTE_TAGS + " nt JOIN " + NotePadSchema.TAGS + " t ON t." + NotePadSchema.ID
+            + " = nt." + NotePadSchema.TAG_ID + " WHERE t." + NotePadSchema.NAME + " = 'tag1')";
+    private static final String SQL_COUNTS = "SELECT t." + NotePadSchema.ID + ", t." + NotePadSchema.NAME
+            + ", count(nt." + NotePadSchema.NOTE_ID + ") FROM " + NotePadSchema.TAGS + " t LEFT JOIN "
+            + NotePadSchema.NOTE_TAGS + " nt ON nt." + NotePadSchema.TAG_ID + " = t." + NotePadSchema.ID
+            + " GROUP BY t." + NotePadSchema.ID + " ORDER BY t." + NotePadSchema.NAME;
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    private BenchmarkDatabase db;
+    private TagIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = BenchmarkDatabase.createCurrent("OFF");
+        db.execute(NotePadSchema.TAGS_TABLE_SQL, NotePadSchema.NOTE_TAGS_TABLE_SQL, NotePadSchema.INDEX_NOTE_TAGS_TAG_SQL);
+        db.seed(rows);
+        Random random = new Random(BenchmarkDatabase.SEED);
+        db.connection.setAutoCommit(false);
+        PreparedStatement tag = db.connection.prepareStatement(NotePadSchema.INSERT_TAG_SQL);
+        PreparedStatement link = db.connection.prepareStatement(NotePadSchema.INSERT_NOTE_TAG_SQL);
+        try {
+            for (int t = 0; t < TAGS; t++) {
+                tag.setString(1, "tag" + t);
+                tag.executeUpdate();
+            }
+            for (int id = 1; id <= rows; id++) {
+                int count = random.nextInt(5);
+                for (int k = 0; k < count; k++) {
+                    // 平方使小编号的标签更常用
+                    double r = random.nextDouble();
+                    link.setLong(1, id);
+                    link.setLong(2, 1 + (int) (r * r * TAGS));
+                    link.executeUpdate();
+                }
+            }
+            db.connection.commit();
+        } finally {
+            tag.close();
+            link.close();
+            db.connection.setAutoCommit(true);
+        }
+        db.execute("ANALYZE");
+        index = buildIndex();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+    }
+
+    // 首次按标签查询时的全量构建
+    @Benchmark
+    public TagIndex buildIndex() throws SQLException {
+        TagIndex index = new TagIndex();
+        PreparedStatement tags = db.connection.prepareStatement(NotePadSchema.TAG_INDEX_TAGS_SQL);
+        try {
+            ResultSet rs = tags.executeQuery();
+            while (rs.next()) {
+                index.putTag(rs.getInt(1), rs.getString(2));
+            }
+            rs.close();
+        } finally {
+            tags.close();
+        }
+        PreparedStatement links = db.connection.prepareStatement(NotePadSchema.TAG_INDEX_ROWS_SQL);
+        try {
+            ResultSet rs = links.executeQuery();
+            while (rs.next()) {
+                index.add(rs.getInt(1), rs.getLong(2));
+            }
+            rs.close();
+        } finally {
+            links.close();
+        }
+        return index;
+    }
+
+    @Benchmark
+    public int filterSql() throws SQLException {
+        return countRows(SQL_FILTER);
+    }
+
+    // 位图求出id后，Provider以_id IN (...)查询笔记
+    @Benchmark
+    public int filterBitmap() throws SQLException {
+        TagIndex.Match match = index.match(ALL, ANY, NONE);
+        return countRows("SELECT " + NotePadSchema.ID + " FROM " + NotePadSchema.NOTES + " WHERE "
+                + NotePadSchema.idSelection(match.ids.toArray(), match.complement));
+    }
+
+    @Benchmark
+    public int countsSql() throws SQLException {
+        return countRows(SQL_COUNTS);
+    }
+
+    @Benchmark
+    public List<TagIndex.TagCount> countsBitmap() {
+        return index.counts(null);
+    }
+
+    // 带筛选条件的计数：SQL需要在筛选结果上再分组，位图只是逐个求交的基数
+    @Benchmark
+    public List<TagIndex.TagCount> countsWithinFilterBitmap() {
+        return index.counts(index.match(ALL, ANY, NONE));
+    }
+
+    private int countRows(String sql) throws SQLException {
+        PreparedStatement statement = db.connection.prepareStatement(sql);
+        try {
+            ResultSet rs = statement.executeQuery();
+            int count = 0;
+            try {
+                while (rs.next()) {
+                    count++;
+                }
+            } finally {
+                rs.close();
+            }
+            return count;
+        } finally {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.android.notepad;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回收站：按notes_trash部分索引列出回收站，以及维护任务清理过期笔记时一批（100篇）的耗时，
+ * 对比一次清理全部过期笔记（事务时长随回收站大小增长，期间前台写入只能等待）。
+ * 每10篇笔记有1篇在回收站中，其中一半已过保留期。清理在事务内执行后回滚，每次测量的数据相同。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class TrashBenchmark {
+    // 与DatabaseMaintenance.PURGE_BATCH_SIZE一致
+    private static final int PURGE_BATCH_SIZE = 100;
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    private BenchmarkDatabase db;
+    private long cutoff;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = BenchmarkDatabase.createCurrent("OFF");
+        db.seed(rows);
+        long now = System.currentTimeMillis();
+        cutoff = now - TimeUnit.DAYS.toMillis(30);
+        // 奇数个十位的笔记已过期，其余移入不久
+        db.execute("UPDATE " + NotePadSchema.NOTES + " SET " + NotePadSchema.DELETED_TIME + " = CASE WHEN ("
+                + NotePadSchema.ID + " / 10) % 2 = 1 THEN " + (cutoff - 1000) + " + " + NotePadSchema.ID
+                + " ELSE " + now + " END WHERE " + NotePadSchema.ID + " % 10 = 0");
+        db.execute("ANALYZE");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    public int trashList(Blackhole bh) throws SQLException {
+        PreparedStatement statement = db.connection.prepareStatement(BenchmarkDatabase.select(
+                NotePadSchema.LIST_PROJECTION, NotePadSchema.TRASH_SELECTION, NotePadSchema.DELETED_TIME + " DESC"));
+        try {
+            ResultSet rs = statement.executeQuery();
+            try {
+                return BenchmarkDatabase.drain(rs, bh);
+            } finally {
+                rs.close();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    @Benchmark
+    public int purgeBatch() throws SQLException {
+        return purge(NotePadSchema.expiredTrashSql(PURGE_BATCH_SIZE));
+    }
+
+    @Benchmark
+    public int purgeAll() throws SQLException {
+        return purge(NotePadSchema.expiredTrashSql(Integer.MAX_VALUE));
+    }
+
+    // 与DatabaseMaintenance.purgeTrashBatch相同：取出过期笔记，逐篇写墓碑，再按id列表删除
+    private int purge(String expiredSql) throws SQLException {
+        db.connection.setAutoCommit(false);
+        try {
+            List<Long> expired = new ArrayList<>();
+            PreparedStatement select = db.connection.prepareStatement(expiredSql);
+            try {
+                select.setLong(1, cutoff);
+                ResultSet rs = select.executeQuery();
+                while (rs.next()) {
+                    expired.add(rs.getLong(1));
+                }
+                rs.close();
+            } finally {
+                select.close();
+            }
+            long[] ids = new long[expired.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = expired.get(i);
+            }
+            String selection = NotePadSchema.idSelection(ids, false);
+            PreparedStatement uuids = db.connection.prepareStatement(
+                    BenchmarkDatabase.select(new String[]{NotePadSchema.UUID}, selection, null));
+            PreparedStatement tombstone = db.connection.prepareStatement("INSERT OR REPLACE INTO "
+                    + NotePadSchema.TOMBSTONES + " (" + NotePadSchema.UUID + ", " + NotePadSchema.DELETED_TIME
+                    + ") VALUES (?, ?)");
+            try {
+                ResultSet rs = uuids.executeQuery();
+                while (rs.next()) {
+                    tombstone.setString(1, rs.getString(1));
+                    tombstone.setLong(2, System.currentTimeMillis());
+                    tombstone.executeUpdate();
+                }
+                rs.close();
+            } finally {
+                uuids.close();
+                tombstone.close();
+            }
+            PreparedStatement delete = db.connection.prepareStatement(
+                    "DELETE FROM " + NotePadSchema.NOTES + " WHERE " + selection);
+            try {
+                return delete.executeUpdate();
+            } finally {
+                delete.close();
+            }
+        } finally {
+            db.connection.rollback();
+            db.connection.setAutoCommit(true);
+        }
+    }
+}
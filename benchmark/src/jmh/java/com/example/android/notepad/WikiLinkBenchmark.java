@@ -0,0 +1,191 @@
+package com.example.android.notepad;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 维基式链接：反向链接走note_links的目标标题索引，对比没有链接表时按正文LIKE扫描；
+ * 以及改名时改写全部引用（事务内执行后回滚，每次测量的数据相同）。
+ * 每篇笔记链接0~3篇随机笔记，另有1%的笔记链接到同一篇“热门”笔记。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class WikiLinkBenchmark {
+    private static final String POPULAR = title(1);
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    private BenchmarkDatabase db;
+    private String body;
+
+    private static String title(int id) {
+        return "笔记" + id;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = BenchmarkDatabase.createCurrent("OFF");
+        db.execute(NotePadSchema.LINKS_TABLE_SQL, NotePadSchema.INDEX_LINKS_TARGET_SQL, NotePadSchema.INDEX_TITLE_SQL);
+        Random random = new Random(BenchmarkDatabase.SEED);
+        db.connection.setAutoCommit(false);
+        PreparedStatement insert = db.connection.prepareStatement(
+                "INSERT INTO " + NotePadSchema.NOTES + " (" + NotePadSchema.TITLE + ", " + NotePadSchema.NOTE
+                        + ") VALUES (?, ?)");
+        PreparedStatement link = db.connection.prepareStatement(NotePadSchema.INSERT_LINK_SQL);
+        try {
+            for (int id = 1; id <= rows; id++) {
+                StringBuilder text = new StringBuilder(SearchIndexBenchmark.text(random, 50 + random.nextInt(300)));
+                int links = random.nextInt(4);
+                for (int k = 0; k < links; k++) {
+                    text.append(" [[").append(title(1 + random.nextInt(rows))).append("]]");
+                }
+                if (random.nextInt(100) == 0) {
+                    text.append(" [[").append(POPULAR).append("]]");
+                }
+                insert.setString(1, title(id));
+                insert.setString(2, text.toString());
+                insert.executeUpdate();
+                // 与NoteLinks插入新笔记时写入的行相同
+                for (String target : WikiLinks.parse(text.toString())) {
+                    link.setLong(1, id);
+                    link.setString(2, target);
+                    link.executeUpdate();
+                }
+            }
+            db.connection.commit();
+        } finally {
+            insert.close();
+            link.close();
+            db.connection.setAutoCommit(true);
+        }
+        db.execute("ANALYZE");
+        body = SearchIndexBenchmark.text(random, 300) + " [[" + title(2) + "]] [[" + title(3) + "]]";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+    }
+
+    // Provider每次写入正文时的解析
+    @Benchmark
+    public List<String> parse() {
+        return WikiLinks.parse(body);
+    }
+
+    @Benchmark
+    public int backlinks() throws SQLException {
+        return countNotes(NotePadSchema.BACKLINKS_SELECTION, 1);
+    }
+
+    @Benchmark
+    public int outgoingLinks() throws SQLException {
+        return countNotes(NotePadSchema.OUTGOING_LINKS_SELECTION, rows / 2);
+    }
+
+    // 没有链接表时只能扫描全部正文
+    @Benchmark
+    public int backlinksByScan() throws SQLException {
+        return countNotes(NotePadSchema.NOTE + " LIKE '%[[' || (SELECT " + NotePadSchema.TITLE + " FROM "
+                + NotePadSchema.NOTES + " WHERE " + NotePadSchema.ID + " = ?) || ']]%'", 1);
+    }
+
+    // 热门笔记改名：按索引找到引用它的笔记，逐批改写正文和出链，与NoteLinks.rename相同
+    @Benchmark
+    public int renamePopular() throws SQLException {
+        db.connection.setAutoCommit(false);
+        try {
+            List<Long> sources = new ArrayList<>();
+            PreparedStatement find = db.connection.prepareStatement(NotePadSchema.LINKING_NOTES_SQL);
+            try {
+                find.setString(1, POPULAR);
+                ResultSet rs = find.executeQuery();
+                while (rs.next()) {
+                    sources.add(rs.getLong(1));
+                }
+                rs.close();
+            } finally {
+                find.close();
+            }
+            long[] ids = new long[sources.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = sources.get(i);
+            }
+            int rewritten = 0;
+            PreparedStatement update = db.connection.prepareStatement(NotePadSchema.REWRITE_LINKS_SQL);
+            PreparedStatement delete = db.connection.prepareStatement(NotePadSchema.DELETE_LINK_SQL);
+            PreparedStatement insert = db.connection.prepareStatement(NotePadSchema.INSERT_LINK_SQL);
+            PreparedStatement read = db.connection.prepareStatement(
+                    NotePadSchema.linkSourceSql(NotePadSchema.idSelection(ids, false)));
+            try {
+                ResultSet rs = read.executeQuery();
+                while (rs.next()) {
+                    String renamed = WikiLinks.rename(rs.getString(2), POPULAR, "改名后");
+                    update.setString(1, renamed);
+                    update.setLong(2, 0);
+                    update.setLong(3, rs.getLong(1));
+                    update.executeUpdate();
+                    delete.setLong(1, rs.getLong(1));
+                    delete.setString(2, POPULAR);
+                    delete.executeUpdate();
+                    insert.setLong(1, rs.getLong(1));
+                    insert.setString(2, "改名后");
+                    insert.executeUpdate();
+                    rewritten++;
+                }
+                rs.close();
+            } finally {
+                update.close();
+                delete.close();
+                insert.close();
+                read.close();
+            }
+            return rewritten;
+        } finally {
+            db.connection.rollback();
+            db.connection.setAutoCommit(true);
+        }
+    }
+
+    private int countNotes(String selection, long id) throws SQLException {
+        PreparedStatement statement = db.connection.prepareStatement("SELECT " + NotePadSchema.ID + " FROM "
+                + NotePadSchema.NOTES + " WHERE " + selection);
+        try {
+            statement.setLong(1, id);
+            ResultSet rs = statement.executeQuery();
+            int count = 0;
+            try {
+                while (rs.next()) {
+                    count++;
+                }
+            } finally {
+                rs.close();
+            }
+            return count;
+        } finally {
+            statement.close();
+        }
+    }
+}